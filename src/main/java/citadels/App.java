@@ -4,13 +4,23 @@ import citadels.cli.ConsoleHandler;
 import citadels.cli.CommandHandler;
 import citadels.model.game.CitadelsGame;
 import citadels.model.player.Player;
+import citadels.metrics.Metrics;
+import citadels.server.GameServer;
 
 /**
  * Entry-point for the Citadels Classic CLI application.
  */
 public final class App {
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws java.io.IOException {
+
+        /* "server [port] [players] [humans]" hosts games over sockets instead */
+        if (args.length > 0 && args[0].equalsIgnoreCase("server")) {
+            GameServer.main(java.util.Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+
+        Metrics.registerMBean();                    // throughput visible over JMX
 
         /* Console I/O handler (System.in/out) */
         ConsoleHandler io = new ConsoleHandler();
@@ -54,5 +64,6 @@ public final class App {
 
         /* ---- final scores ---- */
         game.scoreAndPrintResults();
+        io.flush();
     }
 }
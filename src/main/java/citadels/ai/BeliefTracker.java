@@ -0,0 +1,350 @@
+package citadels.ai;
+
+import citadels.model.card.DistrictCard;
+import citadels.model.game.CitadelsGame;
+import citadels.model.game.GameListener;
+import citadels.model.game.ScoreCalculator;
+import citadels.model.player.Player;
+import citadels.util.CardRepoSingleton;
+import citadels.util.CardRepository;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * What one seat can know about the district cards it cannot see.
+ *
+ * <p>Every card is in one of these places, from the observer's point of view:
+ * its own hand, a city (public), an opponent's hand where the observer knows
+ * the card (e.g. the hand it gave away in a Magician swap), the bottom of the
+ * deck where the observer put it, or <em>unseen</em>. Unseen cards are
+ * uniformly spread over the unknown slots: opponents' unknown hand cards,
+ * the unknown part of the deck and face-down discards by other players.</p>
+ *
+ * <p>All counts are primitive per-type-id vectors, so each event is O(1)
+ * (a swap is O(types)), and sampling one determinised world is a shuffle of
+ * the unseen pool. The tracker only reads the card of a private event when
+ * the event belongs to its own seat.</p>
+ */
+public final class BeliefTracker implements GameListener {
+
+    private final CardRepository repo;
+    private final int self;
+    private final int types;
+
+    private final int[] mine;          // [type] cards in own hand
+    private final int[] unseen;        // [type] copies whose place is unknown
+    private final int[][] known;       // [seat][type] known cards in other hands
+    private final int[] knownCount;    // [seat] sum of known[seat]
+    private final int[] handSize;      // [seat] public hand sizes
+    private final int[] deckKnown;     // [type] own returns and destroyed districts at the bottom
+    private int deckKnownCount;
+    private int deckSize;
+    private int hiddenDiscards;        // face-down discards by other seats
+    private int unseenTotal;
+    private int unseenPoints;          // sum of unseen[t] * points(t)
+    private final int[] knownPoints;   // [seat] points of the known cards
+
+    /* scratch for swaps and sampling */
+    private final int[] scratch;
+    private int[] pool = new int[0];
+
+    /**
+     * @param self the seat this tracker observes for
+     * @param seats number of seats in the game
+     * @param deckSize district cards in the deck before the initial deal
+     */
+    public BeliefTracker(int self, int seats, int deckSize) {
+        this(CardRepoSingleton.INSTANCE, self, seats, deckSize);
+    }
+
+    BeliefTracker(CardRepository repo, int self, int seats, int deckSize) {
+        this.repo  = repo;
+        this.self  = self;
+        this.types = repo.districtTypeCount();
+        mine       = new int[types];
+        unseen     = new int[types];
+        known      = new int[seats][types];
+        knownCount = new int[seats];
+        knownPoints = new int[seats];
+        handSize   = new int[seats];
+        deckKnown  = new int[types];
+        scratch    = new int[types];
+        resetPool(deckSize);
+    }
+
+    /* =============================================================
+       Events (GameListener)
+       =========================================================== */
+
+    @Override
+    public void cardDrawn(Player p, DistrictCard c) {
+        deckSize--;
+        int seat = p.getId();
+        handSize[seat]++;
+        if (seat != self) {                        // we only see how many
+            if (deckSize < deckKnownCount) forgetDeck(); // they reached our bottom cards
+            return;
+        }
+        int t = c.getId();
+        if (t < 0) return;
+        mine[t]++;
+        // our own bottom card resurfaces only when nothing unknown is left above it
+        if (deckKnownCount > 0 && deckSize < deckKnownCount && deckKnown[t] > 0) {
+            deckKnown[t]--; deckKnownCount--;
+        } else {
+            takeUnseen(t);
+            if (deckSize < deckKnownCount) forgetDeck(); // not the card we put there: order is off
+        }
+    }
+
+    @Override
+    public void cardReturned(Player p, DistrictCard c) {
+        deckSize++;
+        int seat = p.getId();
+        handSize[seat]--;
+        if (seat != self) { dropUnknownCard(seat); return; }
+        int t = c.getId();
+        if (t < 0) return;
+        mine[t]--;
+        deckKnown[t]++; deckKnownCount++;
+    }
+
+    @Override
+    public void cardDiscarded(Player p, DistrictCard c) {
+        int seat = p.getId();
+        handSize[seat]--;
+        if (seat == self) {
+            if (c.getId() >= 0) mine[c.getId()]--;  // we know where it went: nowhere
+            return;
+        }
+        hiddenDiscards++;
+        dropUnknownCard(seat);
+    }
+
+    @Override
+    public void handsSwapped(Player a, Player b) {
+        int sa = a.getId(), sb = b.getId();
+        int ha = handSize[sa];
+        handSize[sa] = handSize[sb];
+        handSize[sb] = ha;
+
+        if (sa != self && sb != self) {            // two others: labels swap
+            int[] k = known[sa]; known[sa] = known[sb]; known[sb] = k;
+            int kc = knownCount[sa]; knownCount[sa] = knownCount[sb]; knownCount[sb] = kc;
+            int kp = knownPoints[sa]; knownPoints[sa] = knownPoints[sb]; knownPoints[sb] = kp;
+            return;
+        }
+
+        Player me    = (sa == self) ? a : b;
+        int other    = (sa == self) ? sb : sa;
+
+        // our old hand is now fully known to be theirs
+        System.arraycopy(mine, 0, scratch, 0, types);
+        Arrays.fill(mine, 0);
+        for (DistrictCard d : me.getHand()) {      // our new hand = their old hand
+            int t = d.getId();
+            if (t < 0) continue;
+            mine[t]++;
+            if (known[other][t] > 0) { known[other][t]--; knownCount[other]--; knownPoints[other] -= points(t); }
+            else takeUnseen(t);
+        }
+        // anything still "known" for them was wrong; nothing remains of their old hand
+        for (int t = 0; t < types; t++) {
+            if (known[other][t] > 0) giveUnseen(t, known[other][t]);
+            known[other][t] = scratch[t];
+        }
+        knownCount[other] = 0;
+        knownPoints[other] = 0;
+        for (int t = 0; t < types; t++) {
+            knownCount[other]  += scratch[t];
+            knownPoints[other] += scratch[t] * points(t);
+        }
+    }
+
+    @Override
+    public void districtBuilt(Player p, DistrictCard c) {
+        int seat = p.getId();
+        handSize[seat]--;
+        int t = c.getId();
+        if (t < 0) return;
+        if (seat == self) { mine[t]--; return; }
+        if (known[seat][t] > 0) {
+            known[seat][t]--; knownCount[seat]--; knownPoints[seat] -= points(t);
+        } else {
+            takeUnseen(t);
+            dropUnknownCard(seat);                 // a face-down discard may have been a known card
+        }
+    }
+
+    @Override
+    public void districtDestroyed(Player victim, DistrictCard c) {
+        /* a public city card, now at the bottom of the deck for all to know */
+        deckSize++;
+        int t = c.getId();
+        if (t < 0) return;
+        deckKnown[t]++; deckKnownCount++;
+    }
+
+    @Override
+    public void stateRestored(CitadelsGame g) {
+        resetPool(g.getDistrictDeckSize());
+        for (Player p : g.getPlayers()) {
+            handSize[p.getId()] = p.getHand().size();
+            for (DistrictCard d : p.getCity()) if (d.getId() >= 0) takeUnseen(d.getId());
+            if (p.getId() != self) continue;
+            for (DistrictCard d : p.getHand()) {
+                if (d.getId() < 0) continue;
+                mine[d.getId()]++;
+                takeUnseen(d.getId());
+            }
+        }
+        // whatever is neither in the deck nor in a hand/city was discarded
+        hiddenDiscards = Math.max(0, unseenTotal - deckSize - unknownHandSlots());
+    }
+
+    /* =============================================================
+       Queries
+       =========================================================== */
+
+    /** Copies of district type {@code t} whose place this seat cannot see. */
+    public int unseen(int t) { return unseen[t]; }
+
+    /** Total unknown card slots (= total unseen copies). */
+    public int unknownSlots() { return unseenTotal; }
+
+    /**
+     * Expected number of type {@code t} cards in {@code seat}'s hand.
+     * @param seat the seat to look at (own seat returns the exact count)
+     * @param t the district type id
+     * @return expected copies
+     */
+    public double expectedCount(int seat, int t) {
+        if (seat == self) return mine[t];
+        if (unseenTotal == 0) return known[seat][t];
+        return known[seat][t] + unseen[t] * (double) unknownSlots(seat) / unseenTotal;
+    }
+
+    /**
+     * Expected points (cost plus extras) of the cards in {@code seat}'s hand, O(1).
+     * @param seat the seat to look at
+     * @return expected hand value
+     */
+    public double expectedHandPoints(int seat) {
+        if (unseenTotal == 0) return knownPoints[seat];
+        return knownPoints[seat] + unseenPoints * (double) unknownSlots(seat) / unseenTotal;
+    }
+
+    /** Average points of a card this seat has not seen (what a blind draw is worth). */
+    public double averageUnseenPoints() {
+        return unseenTotal == 0 ? 0 : unseenPoints / (double) unseenTotal;
+    }
+
+    /**
+     * Samples one determinised world consistent with everything this seat knows.
+     * @param rng random source
+     * @param hands receives district type ids per seat; {@code hands[s]} must hold
+     *              at least that seat's hand size (own hand is copied as-is)
+     * @param deck receives the deck from top to bottom, unknown part first
+     * @return number of cards written to {@code deck}
+     */
+    public int sample(Random rng, int[][] hands, int[] deck) {
+        if (pool.length < unseenTotal) pool = new int[unseenTotal];
+        int n = 0;
+        for (int t = 0; t < types; t++)
+            for (int c = 0; c < unseen[t]; c++) pool[n++] = t;
+        for (int i = n - 1; i > 0; i--) {              // Fisher-Yates
+            int j = rng.nextInt(i + 1);
+            int x = pool[i]; pool[i] = pool[j]; pool[j] = x;
+        }
+
+        int next = 0;
+        for (int s = 0; s < handSize.length; s++) {
+            int[] out = hands[s];
+            int k = 0;
+            int[] src = (s == self) ? mine : known[s];
+            for (int t = 0; t < types; t++)
+                for (int c = 0; c < src[t]; c++) out[k++] = t;
+            if (s == self) continue;
+            for (int u = unknownSlots(s); u > 0 && next < n; u--) out[k++] = pool[next++];
+        }
+        next += hiddenDiscards;                        // face-down, gone for good
+
+        int d = 0;
+        int unknownDeck = deckSize - deckKnownCount;
+        for (int u = 0; u < unknownDeck && next < n; u++) deck[d++] = pool[next++];
+        for (int t = 0; t < types; t++)                // our returns sit at the bottom
+            for (int c = 0; c < deckKnown[t]; c++) deck[d++] = t;
+        return d;
+    }
+
+    /** Public hand size of {@code seat} as tracked from events. */
+    public int handSize(int seat) { return handSize[seat]; }
+
+    /* =============================================================
+       Internals
+       =========================================================== */
+
+    private int unknownSlots(int seat) {
+        return Math.max(0, handSize[seat] - knownCount[seat]);
+    }
+
+    private int unknownHandSlots() {
+        int n = 0;
+        for (int s = 0; s < handSize.length; s++)
+            if (s != self) n += unknownSlots(s);
+        return n;
+    }
+
+    /** A hand lost a card we cannot identify; forget known cards if they no longer fit. */
+    private void dropUnknownCard(int seat) {
+        if (knownCount[seat] <= handSize[seat]) return;
+        for (int t = 0; t < types; t++) {
+            if (known[seat][t] > 0) giveUnseen(t, known[seat][t]);
+            known[seat][t] = 0;
+        }
+        knownCount[seat] = 0;
+        knownPoints[seat] = 0;
+    }
+
+    /** Order inside our known bottom block is not tracked, so give it up. */
+    private void forgetDeck() {
+        for (int t = 0; t < types; t++) {
+            if (deckKnown[t] > 0) giveUnseen(t, deckKnown[t]);
+            deckKnown[t] = 0;
+        }
+        deckKnownCount = 0;
+    }
+
+    private void takeUnseen(int t) {
+        if (unseen[t] == 0) return;                    // ad-hoc or inconsistent input
+        unseen[t]--; unseenTotal--; unseenPoints -= points(t);
+    }
+
+    private void giveUnseen(int t, int n) {
+        unseen[t] += n; unseenTotal += n; unseenPoints += n * points(t);
+    }
+
+    private int points(int t) {
+        return ScoreCalculator.districtPoints(repo.districtById(t));
+    }
+
+    private void resetPool(int deck) {
+        Arrays.fill(mine, 0);
+        Arrays.fill(deckKnown, 0);
+        Arrays.fill(handSize, 0);
+        Arrays.fill(knownCount, 0);
+        Arrays.fill(knownPoints, 0);
+        for (int[] k : known) Arrays.fill(k, 0);
+        deckKnownCount = 0;
+        hiddenDiscards = 0;
+        unseenTotal = 0;
+        unseenPoints = 0;
+        for (int t = 0; t < types; t++) {
+            unseen[t] = repo.copiesOf(t);
+            unseenTotal += unseen[t];
+            unseenPoints += unseen[t] * points(t);
+        }
+        deckSize = deck;
+    }
+}
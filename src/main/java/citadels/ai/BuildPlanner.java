@@ -0,0 +1,204 @@
+package citadels.ai;
+
+import citadels.model.card.DistrictCard;
+import citadels.model.card.DistrictColor;
+import citadels.model.game.ScoreCalculator;
+import citadels.model.player.Player;
+
+import java.util.Arrays;
+
+/**
+ * Chooses which districts to build this turn.
+ *
+ * <p>Solves a small 0/1 knapsack over the buildable cards in hand: every card
+ * may be taken at most once, at most {@code limit} cards are taken and the
+ * total cost must fit the player's gold. The objective is the points the
+ * cards are worth plus the colour-diversity and completion bonuses from
+ * {@link ScoreCalculator}.</p>
+ *
+ * <p>The DP table is indexed by (card, builds, gold spent, missing-colour mask)
+ * and lives in one reusable {@code int[]}; the colour dimension only exists
+ * for colours the city is still missing, and only when the bonus is
+ * reachable within the build limit, so the common case is a tiny table.</p>
+ *
+ * <p>Not thread-safe: keep one planner per AI seat.</p>
+ */
+public final class BuildPlanner {
+
+    private static final int COLOURS = DistrictColor.values().length;
+    private static final int UNREACHABLE = -1;
+
+    /* scratch space, grown on demand and reused between calls */
+    private int[] table = new int[256];
+    private DistrictCard[] items = new DistrictCard[8];
+    private int[] cost  = new int[8];
+    private int[] value = new int[8];
+    private int[] bits  = new int[8];
+
+    /**
+     * Plans the best set of districts to build.
+     * @param p the player who is building
+     * @param limit how many districts may be built this turn
+     * @param completionBonus bonus for reaching {@link ScoreCalculator#CITY_SIZE}
+     *                        districts (4 if nobody has finished yet, else 2)
+     * @param out receives the chosen cards, most expensive first
+     * @return number of cards written to {@code out}
+     */
+    public int plan(Player p, int limit, int completionBonus, DistrictCard[] out) {
+        int gold = p.getGold();
+        int citySize = p.getCity().size();
+        limit = Math.min(limit, out.length);
+        if (limit <= 0) return 0;
+
+        /* ---- 1. collect distinct, affordable, not-yet-built candidates ---- */
+        int n = 0, totalCost = 0;
+        int cityBits = 0;
+        for (DistrictCard d : p.getCity()) cityBits |= ScoreCalculator.colourBits(d);
+
+        for (DistrictCard c : p.getHand()) {
+            if (c.getCost() > gold || inCity(p, c)) continue;
+            if (indexOfType(c, n) >= 0) continue; // same district twice in hand
+            ensureItems(n + 1);
+            items[n] = c;
+            cost[n]  = c.getCost();
+            value[n] = ScoreCalculator.districtPoints(c);
+            bits[n]  = ScoreCalculator.colourBits(c);
+            totalCost += c.getCost();
+            n++;
+        }
+        if (n == 0) return 0;
+
+        /* ---- 2. colour dimension only for missing colours, only if reachable ---- */
+        int missing = ScoreCalculator.ALL_COLOURS & ~cityBits;
+        int missingCount = Integer.bitCount(missing);
+        boolean trackColours = missingCount > 0 && canCloseColours(n, missing, limit);
+        int masks = trackColours ? 1 << missingCount : 1;
+        int fullMask = masks - 1;
+        for (int i = 0; i < n; i++)
+            bits[i] = trackColours ? compress(bits[i] & missing, missing) : 0;
+
+        /* ---- 3. layered DP ---- */
+        int maxGold = Math.min(gold, totalCost);
+        int layer = (limit + 1) * (maxGold + 1) * masks;
+        ensureTable((n + 1) * layer);
+        Arrays.fill(table, 0, (n + 1) * layer, UNREACHABLE);
+        table[0] = 0; // k = 0, g = 0, mask = 0
+
+        for (int i = 1; i <= n; i++) {
+            int prev = (i - 1) * layer, cur = i * layer;
+            System.arraycopy(table, prev, table, cur, layer); // skip card i
+            int c = cost[i - 1], v = value[i - 1], b = bits[i - 1];
+            for (int k = 0; k < limit; k++) {
+                for (int g = 0; g + c <= maxGold; g++) {
+                    int from = prev + (k * (maxGold + 1) + g) * masks;
+                    int to   = cur + ((k + 1) * (maxGold + 1) + g + c) * masks;
+                    for (int m = 0; m < masks; m++) {
+                        int base = table[from + m];
+                        if (base == UNREACHABLE) continue;
+                        int slot = to + (m | b);
+                        if (base + v > table[slot]) table[slot] = base + v;
+                    }
+                }
+            }
+        }
+
+        /* ---- 4. pick the best terminal state, adding the bonuses ---- */
+        int bestScore = 0, bestK = 0, bestG = 0, bestM = 0;
+        int last = n * layer;
+        for (int k = 1; k <= limit; k++) {
+            int bonus = (citySize < ScoreCalculator.CITY_SIZE
+                         && citySize + k >= ScoreCalculator.CITY_SIZE) ? completionBonus : 0;
+            for (int g = 0; g <= maxGold; g++) {
+                for (int m = 0; m < masks; m++) {
+                    int v = table[last + (k * (maxGold + 1) + g) * masks + m];
+                    if (v == UNREACHABLE) continue;
+                    int score = v + bonus
+                              + (trackColours && m == fullMask ? ScoreCalculator.DIVERSITY_BONUS : 0);
+                    // prefer more points, then keeping gold
+                    if (score > bestScore || (score == bestScore && score > 0 && g < bestG)) {
+                        bestScore = score; bestK = k; bestG = g; bestM = m;
+                    }
+                }
+            }
+        }
+        if (bestK == 0) return 0;
+
+        /* ---- 5. walk the layers back to recover the chosen cards ---- */
+        int k = bestK, g = bestG, m = bestM, count = 0;
+        for (int i = n; i >= 1 && k > 0; i--) {
+            int v = table[i * layer + (k * (maxGold + 1) + g) * masks + m];
+            if (table[(i - 1) * layer + (k * (maxGold + 1) + g) * masks + m] == v) continue;
+            int c = cost[i - 1], b = bits[i - 1];
+            int prevBase = (i - 1) * layer + ((k - 1) * (maxGold + 1) + g - c) * masks;
+            for (int pm = 0; pm < masks; pm++) {
+                if ((pm | b) == m && table[prevBase + pm] == v - value[i - 1]) {
+                    out[count++] = items[i - 1];
+                    k--; g -= c; m = pm;
+                    break;
+                }
+            }
+        }
+        Arrays.sort(out, 0, count, (a, b) -> Integer.compare(b.getCost(), a.getCost()));
+        Arrays.fill(items, 0, n, null); // do not pin cards between turns
+        return count;
+    }
+
+    /* =============================================================
+       Helpers
+       =========================================================== */
+
+    /** Is there an index below {@code n} holding the same district type? */
+    private int indexOfType(DistrictCard c, int n) {
+        for (int i = 0; i < n; i++) {
+            DistrictCard o = items[i];
+            boolean same = (c.getId() >= 0) ? c.getId() == o.getId()
+                                            : c.getName().equals(o.getName());
+            if (same) return i;
+        }
+        return -1;
+    }
+
+    /** Plain-loop version of {@link Player#cityContains} (no stream per card). */
+    private static boolean inCity(Player p, DistrictCard c) {
+        for (DistrictCard d : p.getCity())
+            if (d.getName().equals(c.getName())) return true;
+        return false;
+    }
+
+    /** Could {@code limit} candidates cover every missing colour? */
+    private boolean canCloseColours(int n, int missing, int limit) {
+        if (Integer.bitCount(missing) > limit) {
+            // only a wildcard (School of Magic) can close many colours at once
+            for (int i = 0; i < n; i++)
+                if (bits[i] == ScoreCalculator.ALL_COLOURS) return true;
+            return false;
+        }
+        int covered = 0;
+        for (int i = 0; i < n; i++) covered |= bits[i];
+        return (covered & missing) == missing;
+    }
+
+    /** Packs the bits of {@code x} selected by {@code select} into the low bits. */
+    private static int compress(int x, int select) {
+        int out = 0, pos = 0;
+        for (int c = 0; c < COLOURS; c++) {
+            if ((select & (1 << c)) == 0) continue;
+            if ((x & (1 << c)) != 0) out |= 1 << pos;
+            pos++;
+        }
+        return out;
+    }
+
+    private void ensureTable(int size) {
+        if (table.length < size) table = new int[Math.max(size, table.length * 2)];
+    }
+
+    private void ensureItems(int size) {
+        if (items.length >= size) return;
+        int len = Math.max(size, items.length * 2);
+        items = Arrays.copyOf(items, len);
+        cost  = Arrays.copyOf(cost, len);
+        value = Arrays.copyOf(value, len);
+        bits  = Arrays.copyOf(bits, len);
+    }
+}
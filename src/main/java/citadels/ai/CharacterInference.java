@@ -0,0 +1,196 @@
+package citadels.ai;
+
+import citadels.model.game.GameListener;
+import citadels.model.player.Player;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Infers who holds which character this round, from one seat's point of view.
+ *
+ * <p>When the observer picks it sees the cards still passing. Everything that
+ * is neither face up nor passing went to an earlier seat or is the face-down
+ * card; everything passing (except its own pick) goes to a later seat or stays
+ * unpicked. Each of these places is a <em>slot</em> with an 8-bit mask of the
+ * ranks it can hold (bit {@code r-1} for rank {@code r}). During the turn
+ * phase every called rank is revealed publicly, which narrows the masks.</p>
+ *
+ * <p>All assignments of distinct ranks to slots that fit the masks are counted
+ * with a DP over (slot, used-ranks mask), memoised in two small int tables, and
+ * every consistent assignment is taken as equally likely. That yields
+ * per-seat marginal probabilities. There are at most 8 slots and 256 masks,
+ * so a full solve is a few thousand steps; the result for the start of the
+ * turn phase (no reveals yet) is shared in a cache keyed by the visible
+ * removals and the observer's place in the passing order.</p>
+ */
+public final class CharacterInference implements GameListener {
+
+    /** Bit mask with all eight ranks. */
+    public static final int ALL_RANKS = 0xFF;
+
+    private static final int MAX_SLOTS = 8;
+
+    /** Marginals before any reveal, shared by every observer and game. */
+    private static final Map<Integer, double[]> CACHE = new ConcurrentHashMap<>();
+
+    /* ---- round context ---- */
+    private boolean ready;
+    private int seats;                               // seats in pick order
+    private final int[] slotOf = new int[MAX_SLOTS]; // seat id -> slot index
+    private final int[] mask   = new int[MAX_SLOTS]; // slot -> possible ranks
+    private int slots;
+    private int inPlay;                              // ranks not face up
+    private int baseKey;
+    private boolean revealed;                        // any reveal since the pick?
+
+    /* ---- DP scratch, one per thread: solves never nest, and idle observers stay small ---- */
+    private static final ThreadLocal<int[][][]> DP =
+            ThreadLocal.withInitial(() -> new int[2][MAX_SLOTS + 1][256]);
+    private final double[] scratch = new double[MAX_SLOTS * 8];
+    private double[] marginal = scratch;
+    private boolean solved;
+
+    /* =============================================================
+       Observations
+       =========================================================== */
+
+    /**
+     * Records what the observer saw when it picked.
+     * @param firstSeat seat that picked first (the crowned seat)
+     * @param nSeats number of seats picking
+     * @param position the observer's 0-based place in the pick order
+     * @param faceUpMask ranks removed face up
+     * @param passingMask ranks offered to the observer, own pick included
+     * @param ownRank rank the observer took
+     */
+    public void observePick(int firstSeat, int nSeats, int position,
+                            int faceUpMask, int passingMask, int ownRank) {
+        seats = nSeats;
+        for (int i = 0; i < nSeats; i++) slotOf[(firstSeat + i) % nSeats] = i;
+
+        inPlay      = ALL_RANKS & ~faceUpMask;
+        int before  = inPlay & ~passingMask;           // earlier seats + face-down
+        int own     = bit(ownRank);
+        int after   = passingMask & ~own;              // later seats + leftovers
+
+        slots = Integer.bitCount(inPlay);               // every card in play has a slot
+        for (int i = 0; i < nSeats; i++)
+            mask[i] = (i < position) ? before : (i == position) ? own : after;
+        mask[nSeats] = before;                          // face-down card
+        for (int i = nSeats + 1; i < slots; i++) mask[i] = after; // never picked
+
+        baseKey = faceUpMask | passingMask << 8 | ownRank << 16 | position << 20 | nSeats << 24;
+        revealed = false;
+        solved = false;
+        ready = true;
+    }
+
+    /**
+     * Public reveal in the turn phase: {@code p} is rank {@code rank},
+     * or nobody is if {@code p} is null.
+     */
+    @Override
+    public void characterRevealed(int rank, Player p) {
+        if (!ready) return;
+        int b = bit(rank);
+        if (p != null) {
+            int s = slotOf[p.getId()];
+            for (int i = 0; i < slots; i++) mask[i] = (i == s) ? b : mask[i] & ~b;
+        } else {
+            for (int i = 0; i < seats; i++) mask[i] &= ~b;
+        }
+        revealed = true;
+        solved = false;
+    }
+
+    /** Forget the round (a new selection phase starts). */
+    @Override
+    public void roundEnded() {
+        ready = false;
+    }
+
+    /* =============================================================
+       Queries
+       =========================================================== */
+
+    /** Whether the observer has picked this round and can answer queries. */
+    public boolean isReady() { return ready; }
+
+    /**
+     * Probability that {@code seat} holds {@code rank}, given what the
+     * observer knows.
+     * @param seat seat id
+     * @param rank character rank 1-8
+     * @return probability in [0, 1]; 0 before the observer has picked
+     */
+    public double probability(int seat, int rank) {
+        if (!ready || seat >= seats) return 0;
+        if (!solved) solve();
+        return marginal[slotOf[seat] * 8 + rank - 1];
+    }
+
+    /* =============================================================
+       Solver
+       =========================================================== */
+
+    private void solve() {
+        solved = true;
+        if (!revealed) {
+            double[] hit = CACHE.get(baseKey);
+            if (hit != null) { marginal = hit; return; }
+        }
+
+        // shared results must never be overwritten, so only the cached case allocates
+        double[] out = revealed ? scratch : new double[MAX_SLOTS * 8];
+        Arrays.fill(out, 0);
+
+        int[][][] dp = DP.get();
+        int[][] ways = dp[0], forward = dp[1];
+
+        // ways[i][used] = completions of slots i.. given ranks already used
+        for (int[] w : ways) Arrays.fill(w, 0);
+        ways[slots][inPlay] = 1;
+        for (int i = slots - 1; i >= 0; i--) {
+            for (int used = 0; used < 256; used++) {
+                if (Integer.bitCount(used) != i) continue;
+                int free = mask[i] & ~used, w = 0;
+                while (free != 0) {
+                    int b = free & -free;
+                    w += ways[i + 1][used | b];
+                    free ^= b;
+                }
+                ways[i][used] = w;
+            }
+        }
+        int total = ways[0][0];
+
+        // forward[i][used] = ways to fill slots ..i-1 using exactly 'used'
+        for (int[] f : forward) Arrays.fill(f, 0);
+        forward[0][0] = 1;
+        for (int i = 0; i < slots && total > 0; i++) {
+            for (int used = 0; used < 256; used++) {
+                int f = forward[i][used];
+                if (f == 0) continue;
+                int free = mask[i] & ~used;
+                while (free != 0) {
+                    int b = free & -free;
+                    int w = ways[i + 1][used | b];
+                    if (w != 0) {
+                        forward[i + 1][used | b] += f;
+                        out[i * 8 + Integer.numberOfTrailingZeros(b)] += (double) f * w / total;
+                    }
+                    free ^= b;
+                }
+            }
+        }
+
+        marginal = out;
+        if (!revealed) CACHE.putIfAbsent(baseKey, out);
+    }
+
+    private static int bit(int rank) {
+        return 1 << (rank - 1);
+    }
+}
@@ -0,0 +1,144 @@
+package citadels.ai;
+
+import citadels.model.card.DistrictCard;
+import citadels.model.game.CitadelsGame;
+import citadels.model.game.GamePhase;
+import citadels.model.game.Rules;
+import citadels.model.player.Player;
+import citadels.util.CardRepoSingleton;
+import citadels.util.CardRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deals one possible world as seen by one seat: the cards and characters
+ * that seat cannot see are drawn again at random, consistently with what
+ * it can.
+ *
+ * <p>Opponents' hands and the deck are sampled from a {@link BeliefTracker};
+ * the characters of seats not revealed yet are shuffled among the ranks
+ * they could hold. {@link #sample} only describes the world, for searches
+ * that keep their own copy of the state (the endgame solver); {@link #deal}
+ * writes it into a {@link CitadelsGame#fork fork} for rollouts.</p>
+ */
+public final class Determiniser {
+
+    private static final CardRepository REPO = CardRepoSingleton.INSTANCE;
+
+    private Determiniser() { }
+
+    /**
+     * One sampled world. Cards are district type ids; the observer's own
+     * hand is not part of it.
+     */
+    public static final class World {
+        private final int observer;
+        private final int[][] hands;
+        private final int[] deck;
+        private final int deckSize;
+        private final int[] ranks;
+
+        private World(int observer, int[][] hands, int[] deck, int deckSize, int[] ranks) {
+            this.observer = observer;
+            this.hands = hands;
+            this.deck = deck;
+            this.deckSize = deckSize;
+            this.ranks = ranks;
+        }
+
+        /** Seat the world was sampled for */
+        public int observer() { return observer; }
+
+        /** Type ids in {@code seat}'s hand (not in hand order) */
+        public int[] hand(int seat) { return hands[seat]; }
+
+        /** Cards in the deck */
+        public int deckSize() { return deckSize; }
+
+        /** Type id of the {@code i}-th card from the top of the deck */
+        public int deckCard(int i) { return deck[i]; }
+
+        /** Character rank of {@code seat}, 0 for none */
+        public int rank(int seat) { return ranks[seat]; }
+    }
+
+    /**
+     * Samples what {@code observer} cannot see, leaving the game as it is.
+     * @param g the game
+     * @param observer seat whose knowledge is respected
+     * @param rng random source
+     * @param beliefs a tracker for {@code observer}'s seat, in step with {@code g}
+     * @return the world
+     */
+    public static World sample(CitadelsGame g, int observer, Random rng, BeliefTracker beliefs) {
+        List<Player> players = g.getPlayers();
+        int[][] hands = new int[players.size()][];
+        for (int s = 0; s < hands.length; s++) hands[s] = new int[beliefs.handSize(s)];
+        int[] deck = new int[g.getDistrictDeckSize()];
+        int d = beliefs.sample(rng, hands, deck);
+
+        int[] ranks = new int[players.size()];
+        for (Player p : players) ranks[p.getId()] = p.getCharacter() == null ? 0 : p.getCharacter().getRank();
+        dealCharacters(g, observer, rng, ranks);
+        return new World(observer, hands, deck, d, ranks);
+    }
+
+    /**
+     * Deals again what {@code observer} cannot see. Only call on a fork:
+     * the game's hidden information is overwritten.
+     * @param g the fork
+     * @param observer seat whose knowledge is respected
+     * @param rng random source
+     * @param scratch a tracker for {@code observer}'s seat, reset here; reuse it between calls
+     */
+    public static void deal(CitadelsGame g, int observer, Random rng, BeliefTracker scratch) {
+        scratch.stateRestored(g);
+        World w = sample(g, observer, rng, scratch);
+
+        for (Player p : g.getPlayers()) {
+            int s = p.getId();
+            if (s == observer) continue;
+            List<DistrictCard> hand = new ArrayList<>(w.hands[s].length);
+            for (int t : w.hands[s]) hand.add(REPO.districtById(t));
+            p.replaceHand(hand);
+            if (w.ranks[s] != 0 && (p.getCharacter() == null || p.getCharacter().getRank() != w.ranks[s]))
+                p.setCharacter(g.findCharacterCard(w.ranks[s]));
+        }
+        List<DistrictCard> ordered = new ArrayList<>(w.deckSize);
+        for (int i = 0; i < w.deckSize; i++) ordered.add(REPO.districtById(w.deck[i]));
+        g.resetDistrictDeck(ordered);
+        g.notifyRestored();                                // the fork's AIs rebuild their beliefs
+    }
+
+    /* shuffles the characters the observer cannot place among the seats that might hold them */
+    private static void dealCharacters(CitadelsGame g, int observer, Random rng, int[] ranks) {
+        List<Player> hidden = new ArrayList<>();
+        int pool = 0;
+        if (g.getPhase() == GamePhase.TURN) {
+            int revealed = g.getRevealedRank();
+            for (int r = revealed + 1; r <= Rules.MAX_RANK; r++) pool |= 1 << (r - 1);
+            for (Player p : g.getPlayers()) {
+                if (p.getCharacter() == null || p.getCharacter().getRank() <= revealed) continue;
+                if (p.getId() == observer) pool &= ~(1 << (p.getCharacter().getRank() - 1));
+                else hidden.add(p);
+            }
+        } else if (g.getSeatToMove() == observer) {     // picking: what is gone was taken or laid face down
+            int n = g.getPlayers().size();
+            for (int s = g.getCrownedSeat(); s != observer; s = (s + 1) % n) hidden.add(g.getPlayer(s));
+            pool = ((1 << Rules.MAX_RANK) - 1) & ~g.getAvailableRanks();
+        }
+        pool &= ~g.getFaceUpRanks();
+
+        int[] shuffled = new int[Integer.bitCount(pool)];
+        int k = 0;
+        for (int r = 1; r <= Rules.MAX_RANK; r++) if ((pool & (1 << (r - 1))) != 0) shuffled[k++] = r;
+        for (int i = shuffled.length - 1; i > 0; i--) {  // Fisher-Yates
+            int j = rng.nextInt(i + 1);
+            int x = shuffled[i]; shuffled[i] = shuffled[j]; shuffled[j] = x;
+        }
+        for (int i = 0; i < hidden.size() && i < shuffled.length; i++)
+            ranks[hidden.get(i).getId()] = shuffled[i];
+    }
+}
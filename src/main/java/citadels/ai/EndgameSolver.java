@@ -0,0 +1,842 @@
+package citadels.ai;
+
+import citadels.model.card.DistrictCard;
+import citadels.model.game.CitadelsGame;
+import citadels.model.game.GamePhase;
+import citadels.model.game.Move;
+import citadels.model.game.MoveGenerator;
+import citadels.model.game.Rules;
+import citadels.model.game.ScoreCalculator;
+import citadels.model.game.Zobrist;
+import citadels.model.player.Player;
+import citadels.util.CardRepoSingleton;
+import citadels.util.CardRepository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Exact search of the rest of the current round, for the last rounds of a
+ * game, when the state is fully known or has been sampled by the
+ * {@link Determiniser}.
+ *
+ * <p>The search copies the game into a flat {@code int[]} node and runs
+ * paranoid alpha-beta over it: the seat to move maximises its final margin
+ * over the best opponent, every other seat minimises it. The horizon is the
+ * end of the round: if a city is complete by then the game ends and the
+ * score is exact; otherwise the margin of the cities as they stand is used
+ * and the result is not a proof. Iterative deepening on decisions gives a
+ * best answer whenever the node budget runs out; results go to a shared
+ * {@link TranspositionTable} keyed by the node's contents, so transposed
+ * lines and repeated solves of the same position are searched once.</p>
+ *
+ * <p>A turn is searched in a fixed order, with the character's power where
+ * it matters: Assassin, Thief or Magician power; gold or one of the two
+ * drawn cards; a set of districts to build; Magician or Warlord power. The
+ * Magician only redraws the cards the AI would (duplicates and cards it
+ * cannot nearly afford). Moves that cannot be better than another are
+ * left out: powers aimed at ranks nobody holds, builds to which another
+ * affordable district could still be added (except for the Warlord, who
+ * may want gold left for his power), and an opposing Warlord's attacks on
+ * anyone but the solving seat, his being the last act of the round.</p>
+ *
+ * <p>Not thread-safe: keep one solver per thread. The table may be shared.</p>
+ */
+public final class EndgameSolver {
+
+    /* stages of a node */
+    private static final int PICK = 0, PRE = 1, RES = 2, BUILD = 3, POST = 4, CALL = 5, DONE = 6;
+
+    /* header fields */
+    private static final int STAGE = 0, RANK = 1, SEAT = 2, PICKS = 3, AVAIL = 4, KILLED = 5, ROBBED = 6,
+            CROWN = 7, SHIELD = 8, BUILT = 9, LIMIT = 10, USED = 11, HEAD = 12, APP_HEAD = 13, APP_LEN = 14;
+    private static final int APPENDED = 15;               // ring of cards put under the deck this round
+    private static final int APP_CAP = 32;
+    private static final int SEATS = APPENDED + APP_CAP;
+
+    /* per-seat fields */
+    private static final int GOLD = 0, CHAR = 1, NH = 2, NC = 3, HAND = 4;
+    private static final int MAX_HAND = 32, MAX_CITY = 12;
+    private static final int CITY = HAND + MAX_HAND;
+    private static final int SEAT_SIZE = CITY + MAX_CITY;
+    private static final int NODE_SIZE = SEATS + Zobrist.MAX_SEATS * SEAT_SIZE;
+
+    private static final int MAX_PLY = 48;
+    private static final int MAX_OPT = 1024;
+    private static final int INF = 1 << 12;
+    private static final int COMPLETE = 255;              // table depth of a subtree searched to the horizon
+    private static final int CLOCK_MASK = 1023;           // nodes between looks at the clock
+
+    private static final long SCALAR_SALT = 0x243F6A8885A308D3L, HAND_SALT = 0x13198A2E03707344L,
+            CITY_SALT = 0xA4093822299F31D0L, DECK_SALT = 0x082EFA98EC4E6C89L,
+            APPEND_SALT = 0x452821E638D01377L, ROOT_SALT = 0xBE5466CF34E90C6CL;
+
+    private static final CardRepository REPO = CardRepoSingleton.INSTANCE;
+
+    /* the shared table is only created once a solver needs it */
+    private static final class Shared {
+        static final TranspositionTable TABLE = new TranspositionTable(1 << 18);
+    }
+
+    private final TranspositionTable tt;
+
+    /* one flat node per ply, plus the root and a node for reading the answer out */
+    private static final class Node {
+        final int[] a = new int[NODE_SIZE];
+        long key;
+
+        void copyFrom(Node o, int len) {
+            System.arraycopy(o.a, 0, a, 0, len);
+            key = o.key;
+        }
+    }
+
+    private final Node[] stack = new Node[MAX_PLY + 2];
+    private final int[][] opts = new int[MAX_PLY + 2][MAX_OPT];
+    private final Node root = new Node(), walk = new Node();
+    private final int[] cand = new int[Move.MAX_MASK_BITS];
+    private final int[] optPoints = new int[MAX_OPT];
+
+    /* the position being solved */
+    private int seats, len, rootSeat;
+    private long rootSalt;
+    private int[] base = new int[0];                       // deck below the head, top first, as kinds
+    private long[] suffix = new long[1];                   // hash of base[i..]
+    private int kinds;
+    private int[] cost, points, colours;
+    private boolean[] library;
+    private long[] code;
+
+    /* search state */
+    private long nodes, budget, deadline;
+    private boolean aborted, truncated, timedOut;
+    private int rootBest;
+
+    /** A solver using the table shared by all solvers */
+    public EndgameSolver() { this(Shared.TABLE); }
+
+    /**
+     * @param tt table for search results
+     */
+    public EndgameSolver(TranspositionTable tt) {
+        this.tt = tt;
+        for (int i = 0; i < stack.length; i++) stack[i] = new Node();
+    }
+
+    /**
+     * Outcome of one solve.
+     */
+    public static final class Result {
+        private final int[] moves;
+        private final int value;
+        private final boolean complete, proven, timedOut;
+        private final long nodes;
+        private final int depth;
+
+        private Result(int[] moves, int value, boolean complete, boolean proven, boolean timedOut,
+                       long nodes, int depth) {
+            this.moves = moves;
+            this.value = value;
+            this.complete = complete;
+            this.proven = proven;
+            this.timedOut = timedOut;
+            this.nodes = nodes;
+            this.depth = depth;
+        }
+
+        /**
+         * The seat's next decision as engine moves, up to and including the
+         * first one the engine sees: a pick; an ability, gold or cards; the
+         * builds of one set, highest hand index first; or {@code END}.
+         * @return packed {@link Move}s, to be applied in order
+         */
+        public int[] moves() { return moves.clone(); }
+
+        /**
+         * Twice the seat's final margin over the best opponent, plus one if
+         * a tie goes its way by character rank, minus one if not; positive
+         * means the seat wins
+         * @return the value of the position for the seat
+         */
+        public int value() { return value; }
+
+        /** Whether every line was searched to the end of the round */
+        public boolean isComplete() { return complete; }
+
+        /** Whether, in addition, every line ends the game, so the value is the final outcome */
+        public boolean isProven() { return proven; }
+
+        /** Whether the deadline stopped the search before the node budget or the horizon did */
+        public boolean isTimedOut() { return timedOut; }
+
+        /** Nodes searched */
+        public long nodes() { return nodes; }
+
+        /** Decisions deep the last finished iteration went */
+        public int depth() { return depth; }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            for (int m : moves) sb.append(sb.length() == 0 ? "" : ", ").append(Move.toString(m));
+            return sb + " (value " + value + (proven ? ", proven" : complete ? ", to round end" : "")
+                    + (timedOut ? ", timed out" : "") + ", depth " + depth + ", " + nodes + " nodes)";
+        }
+    }
+
+    /**
+     * Solves a fully known position for the seat to move.
+     * @param g the game, at a pick or a turn of {@link CitadelsGame#getSeatToMove()}
+     * @param nodeBudget nodes to search at most
+     * @return the result, or null if no seat is to move, the state is out of
+     *         the solver's range or not even one decision deep could be searched
+     */
+    public Result solve(CitadelsGame g, long nodeBudget) {
+        return solve(g, null, nodeBudget, Long.MAX_VALUE);
+    }
+
+    /**
+     * Solves one sampled world for the seat it was sampled for, which must
+     * be the seat to move. The hands of the other seats, the deck and the
+     * characters not revealed yet come from {@code world}.
+     * @param g the game, at a pick or a turn of {@code world.observer()}
+     * @param world what the seat cannot see, or null to use the game's own
+     * @param nodeBudget nodes to search at most
+     * @param deadline {@link System#nanoTime()} to stop at, {@code Long.MAX_VALUE} for none;
+     *                 the answer is that of the deepest iteration finished by then
+     * @return the result, or null as for {@link #solve(CitadelsGame, long)}
+     */
+    public Result solve(CitadelsGame g, Determiniser.World world, long nodeBudget, long deadline) {
+        if (!load(g, world)) return null;
+        nodes = 0;
+        budget = nodeBudget;
+        this.deadline = deadline;
+        aborted = false;
+        truncated = false;
+        timedOut = false;
+
+        int last = 0, lastDepth = 0, lastBest = 0;
+        for (int d = 1; d <= MAX_PLY; d++) {
+            stack[0].copyFrom(root, len);
+            rootBest = 0;
+            int r = search(0, d, -INF, INF);
+            if (aborted) break;
+            last = r;
+            lastDepth = d;
+            lastBest = rootBest;
+            if ((r & 2) != 0) break;                       // nothing left beyond the horizon
+        }
+        if (lastDepth == 0) return null;
+        aborted = false;                                   // reading the line out may search a little more
+        budget = nodes + nodeBudget / 4 + CLOCK_MASK + 1;
+        this.deadline = Long.MAX_VALUE;
+        int[] moves = readMoves(lastBest, lastDepth);
+        if (moves == null) return null;
+        boolean complete = (last & 2) != 0 && !truncated;
+        return new Result(moves, last >> 2, complete, complete && (last & 1) != 0, timedOut, nodes, lastDepth);
+    }
+
+    /* =============================================================
+       Search
+       =========================================================== */
+
+    /* returns value << 2 | complete << 1 | exact */
+    private int search(int ply, int depth, int alpha, int beta) {
+        if (++nodes > budget) { aborted = true; return 0; }
+        if ((nodes & CLOCK_MASK) == 0 && System.nanoTime() - deadline > 0) { aborted = timedOut = true; return 0; }
+        Node n = stack[ply];
+        int[] opt = opts[ply];
+        int count = options(n, opt);
+        if (count == 0) return leaf(n, true);
+        if (depth == 0 || ply == MAX_PLY) return leaf(n, false);
+
+        long key = n.key + rootSalt;
+        long e = tt.probe(key);
+        if (e != TranspositionTable.MISS) {
+            int ttMove = TranspositionTable.move(e);
+            int d = TranspositionTable.depth(e);
+            int i = indexOf(opt, count, ttMove);
+            if (d >= depth && i >= 0) {
+                int sv = TranspositionTable.value(e), v = sv >> 1, bound = TranspositionTable.bound(e);
+                if (bound == TranspositionTable.EXACT
+                        || (bound == TranspositionTable.LOWER && v >= beta)
+                        || (bound == TranspositionTable.UPPER && v <= alpha)) {
+                    if (ply == 0) rootBest = ttMove;
+                    return v << 2 | (d == COMPLETE ? 2 : 0) | (sv & 1);
+                }
+            }
+            if (i > 0) {                                   // try the stored best move first
+                System.arraycopy(opt, 0, opt, 1, i);
+                opt[0] = ttMove;
+            }
+        }
+
+        boolean max = n.a[SEAT] == rootSeat;
+        int best = max ? -INF : INF, bestMove = opt[0], flags = 3;
+        int a = alpha, b = beta;
+        Node child = stack[ply + 1];
+        for (int i = 0; i < count; i++) {
+            child.copyFrom(n, len);
+            apply(child, opt[i]);
+            int r = search(ply + 1, depth - 1, a, b);
+            if (aborted) return 0;
+            int v = r >> 2;
+            flags &= r;
+            if (max ? v > best : v < best) { best = v; bestMove = opt[i]; }
+            if (max) a = Math.max(a, best);
+            else b = Math.min(b, best);
+            if (a >= b) break;
+        }
+        int bound = best <= alpha ? TranspositionTable.UPPER
+                  : best >= beta ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+        tt.store(key, bestMove, best * 2 + (flags & 1), (flags & 2) != 0 ? COMPLETE : depth, bound);
+        if (ply == 0) rootBest = bestMove;
+        return best << 2 | flags;
+    }
+
+    private static int indexOf(int[] opt, int count, int move) {
+        for (int i = 0; i < count; i++) if (opt[i] == move) return i;
+        return -1;
+    }
+
+    /* value of a node for the root seat; exact only when the round is over and a city complete */
+    private int leaf(Node n, boolean roundOver) {
+        int[] a = n.a;
+        int first = -1;
+        for (int s = 0; s < seats && first < 0; s++) if (a[seat(s) + NC] >= ScoreCalculator.CITY_SIZE) first = s;
+        int own = score(a, rootSeat, first), other = -1, otherRank = -1;
+        for (int s = 0; s < seats; s++) {
+            if (s == rootSeat) continue;
+            int sc = score(a, s, first), rank = a[seat(s) + CHAR];
+            if (sc > other || (sc == other && rank > otherRank)) { other = sc; otherRank = rank; }
+        }
+        int v = 2 * (own - other);
+        if (v == 0) v = a[seat(rootSeat) + CHAR] > otherRank ? 1 : -1;
+        return v << 2 | (roundOver ? 2 : 0) | (roundOver && first >= 0 ? 1 : 0);
+    }
+
+    /* final score of seat s as things stand, as ScoreCalculator would count it */
+    private int score(int[] a, int s, int first) {
+        int p = seat(s), nc = a[p + NC], sc = 0, bits = 0;
+        for (int i = 0; i < nc; i++) {
+            int k = a[p + CITY + i];
+            sc += points[k];
+            bits |= colours[k];
+        }
+        if (bits == ScoreCalculator.ALL_COLOURS) sc += ScoreCalculator.DIVERSITY_BONUS;
+        if (nc >= ScoreCalculator.CITY_SIZE)
+            sc += s == first ? ScoreCalculator.FIRST_COMPLETE_BONUS : ScoreCalculator.COMPLETE_BONUS;
+        return sc;
+    }
+
+    /* =============================================================
+       Reading the answer out
+       =========================================================== */
+
+    /* follows the best line from the root through the root seat's decision */
+    private int[] readMoves(int firstBest, int depth) {
+        walk.copyFrom(root, len);
+        int[] a = walk.a, buf = opts[MAX_PLY + 1];
+        boolean picking = a[STAGE] == PICK, first = true;
+        List<Integer> moves = new ArrayList<>();
+        while (true) {
+            if (a[STAGE] == CALL || a[STAGE] == DONE || a[SEAT] != rootSeat) {
+                if (!picking) moves.add(Move.of(Move.END, 0));
+                break;
+            }
+            int count = stageOptions(walk, buf);
+            if (count == 0) continue;
+            int o = buf[0];
+            if (count > 1) {
+                if (first) o = firstBest;
+                else {
+                    stack[0].copyFrom(walk, len);
+                    search(0, Math.max(1, depth), -INF, INF);
+                    if (aborted) return null;
+                    o = rootBest;
+                }
+                first = false;
+                depth--;
+            }
+            int before = moves.size();
+            engineMoves(walk, o, moves);
+            apply(walk, o);
+            if (picking || moves.size() > before) break;
+        }
+        int[] out = new int[moves.size()];
+        for (int i = 0; i < out.length; i++) out[i] = moves.get(i);
+        return out;
+    }
+
+    /* the engine moves of one option; hand positions match the engine's hand order */
+    private void engineMoves(Node n, int o, List<Integer> out) {
+        switch (Move.type(o)) {
+            case Move.END:
+                break;                                     // power not used, nothing to tell the engine
+            case Move.CARDS:
+                out.add(Move.of(Move.CARDS, 0));            // which card stays is the player's to choose
+                break;
+            case Move.BUILD:
+                for (int i = Move.MAX_MASK_BITS - 1; i >= 0; i--)
+                    if ((Move.b(o) & (1 << i)) != 0) out.add(Move.of(Move.BUILD, i));
+                break;
+            default:
+                out.add(o);
+        }
+    }
+
+    /* =============================================================
+       Loading
+       =========================================================== */
+
+    private boolean load(CitadelsGame g, Determiniser.World w) {
+        int to = g.getSeatToMove();
+        if (to < 0 || g.isAwaitingDrawChoice() || (w != null && w.observer() != to)) return false;
+        List<Player> players = g.getPlayers();
+        seats = players.size();
+        if (seats > Zobrist.MAX_SEATS) return false;
+        len = SEATS + seats * SEAT_SIZE;
+        rootSeat = to;
+        rootSalt = mix(ROOT_SALT + rootSeat * 16L + seats);
+
+        /* the cards in play, as kinds */
+        Map<String, Integer> byName = new HashMap<>();
+        List<DistrictCard> kindCards = new ArrayList<>();
+        List<List<DistrictCard>> hands = new ArrayList<>();
+        for (Player p : players) {
+            List<DistrictCard> hand = p.getHand();
+            if (w != null && p.getId() != to) {
+                hand = new ArrayList<>();
+                for (int t : w.hand(p.getId())) hand.add(REPO.districtById(t));
+            }
+            if (hand.size() > MAX_HAND - 12 || p.getCity().size() > MAX_CITY - 3) return false; // room to grow this round
+            hands.add(hand);
+        }
+        List<DistrictCard> deck = g.getDistrictDeck();
+        if (w != null) {
+            deck = new ArrayList<>();
+            for (int i = 0; i < w.deckSize(); i++) deck.add(REPO.districtById(w.deckCard(i)));
+        }
+        if (deck.size() > 255) return false;
+        for (List<DistrictCard> h : hands) for (DistrictCard d : h) kind(byName, kindCards, d);
+        for (Player p : players) for (DistrictCard d : p.getCity()) kind(byName, kindCards, d);
+        for (DistrictCard d : deck) kind(byName, kindCards, d);
+        tables(kindCards);
+
+        base = new int[deck.size()];
+        for (int i = 0; i < base.length; i++) base[i] = byName.get(deck.get(i).getName());
+        suffix = new long[base.length + 1];
+        for (int i = base.length - 1; i >= 0; i--) suffix[i] = suffix[i + 1] + deckTerm(base[i], i);
+
+        /* header and seats, through the setters so the key follows */
+        Node n = root;
+        Arrays.fill(n.a, 0);
+        n.key = suffix[0];
+        boolean picking = g.getPhase() == GamePhase.SELECTION;
+        int crowned = g.getCrownedSeat();
+        for (Player p : players) {
+            int s = p.getId(), q = seat(s);
+            set(n, q + GOLD, p.getGold());
+            int rank = w != null ? w.rank(s) : p.getCharacter() == null ? 0 : p.getCharacter().getRank();
+            if (picking && (s - crowned + seats) % seats >= (to - crowned + seats) % seats) rank = 0; // not picked yet
+            set(n, q + CHAR, rank);
+            for (DistrictCard d : hands.get(s)) addHand(n, s, byName.get(d.getName()));
+            for (DistrictCard d : p.getCity()) addCity(n, s, byName.get(d.getName()));
+        }
+        set(n, CROWN, crowned);
+        set(n, SEAT, to);
+        int killed = 0, shield = 0;
+        for (int r : g.getKilledRanks()) killed |= 1 << (r - 1);
+        for (Player p : g.getBishopProtected()) shield |= 1 << p.getId();
+        set(n, KILLED, killed);
+        set(n, SHIELD, shield);
+        set(n, ROBBED, Math.max(0, g.getRobbedRank()));
+        if (picking) {
+            set(n, STAGE, PICK);
+            set(n, PICKS, (to - crowned + seats) % seats);
+            set(n, AVAIL, g.getAvailableRanks());
+        } else {
+            Player p = players.get(to);
+            int rank = n.a[seat(to) + CHAR], flags = g.getTurnFlags();
+            boolean used = (flags & MoveGenerator.ABILITY_USED) != 0;
+            set(n, RANK, rank);
+            set(n, USED, used ? 1 : 0);
+            set(n, BUILT, g.getBuiltThisTurn(p));
+            set(n, LIMIT, p.getBuildLimit());
+            if ((flags & MoveGenerator.RESOURCES_TAKEN) == 0) set(n, STAGE, rank <= 3 && !used ? PRE : RES);
+            else set(n, STAGE, g.getBuiltThisTurn(p) == 0 ? BUILD : POST);
+        }
+        return true;
+    }
+
+    private static void kind(Map<String, Integer> byName, List<DistrictCard> kindCards, DistrictCard d) {
+        if (byName.putIfAbsent(d.getName(), kindCards.size()) == null) kindCards.add(d);
+    }
+
+    private void tables(List<DistrictCard> kindCards) {
+        kinds = kindCards.size();
+        cost = new int[kinds];
+        points = new int[kinds];
+        colours = new int[kinds];
+        library = new boolean[kinds];
+        code = new long[kinds];
+        for (int k = 0; k < kinds; k++) {
+            DistrictCard d = kindCards.get(k);
+            cost[k] = d.getCost();
+            points[k] = ScoreCalculator.districtPoints(d);
+            colours[k] = ScoreCalculator.colourBits(d);
+            library[k] = d.isLibrary();
+            code[k] = Zobrist.code(d);
+        }
+    }
+
+    /* =============================================================
+       Rules on nodes
+       =========================================================== */
+
+    /* options of the next decision with two or more, playing forced steps on the way; 0 once the round is over */
+    private int options(Node n, int[] out) {
+        while (true) {
+            if (n.a[STAGE] == DONE) return 0;
+            if (n.a[STAGE] == CALL) { callNext(n); continue; }
+            int count = stageOptions(n, out);
+            if (count == 1) apply(n, out[0]);
+            else if (count > 1) return count;
+        }
+    }
+
+    /* options of the current stage; 0 if the stage has no decision (it is then moved on) */
+    private int stageOptions(Node n, int[] out) {
+        int[] a = n.a;
+        int s = a[SEAT], p = seat(s), rank = a[RANK], count = 0;
+        switch (a[STAGE]) {
+            case PICK:
+                if (a[PICKS] == seats) { set(n, STAGE, CALL); set(n, RANK, 0); return 0; }
+                return MoveGenerator.picks(a[AVAIL], out);
+            case PRE:
+                if (a[USED] == 0 && rank <= 3) count = power(n, out);
+                if (count <= 1) { set(n, STAGE, RES); return 0; }
+                return count;
+            case RES: {
+                out[count++] = Move.of(Move.GOLD, 0);
+                int size = deckSize(a);
+                if (size > 0) out[count++] = Move.of(Move.CARDS, 0, 0);
+                if (size > 1 && !hasLibrary(a, p) && peek(a, 0) != peek(a, 1)) out[count++] = Move.of(Move.CARDS, 0, 1);
+                return count;
+            }
+            case BUILD:
+                count = builds(n, out);
+                if (count <= 1) { set(n, STAGE, POST); return 0; }
+                return count;
+            case POST:
+                if (a[USED] == 0 && (rank == 3 || rank == 8)) count = power(n, out);
+                if (count <= 1) { set(n, STAGE, CALL); return 0; }
+                return count;
+            default:
+                return 0;
+        }
+    }
+
+    /* uses of the seat's power, most promising first, not using it last */
+    private int power(Node n, int[] out) {
+        int[] a = n.a;
+        int s = a[SEAT], p = seat(s), count = 0, held = 0;
+        for (int t = 0; t < seats; t++) if (a[seat(t) + CHAR] > 0) held |= 1 << (a[seat(t) + CHAR] - 1);
+        switch (a[RANK]) {
+            case 1:
+                for (int r = Rules.MIN_KILL_RANK; r <= Rules.MAX_RANK; r++)
+                    if ((held & (1 << (r - 1))) != 0) out[count++] = Move.of(Move.KILL, r);
+                break;
+            case 2:
+                for (int r = Rules.MIN_STEAL_RANK; r <= Rules.MAX_RANK; r++)
+                    if ((held & (1 << (r - 1))) != 0 && (a[KILLED] & (1 << (r - 1))) == 0)
+                        out[count++] = Move.of(Move.STEAL, r);
+                break;
+            case 3: {
+                for (int t = 0; t < seats; t++) if (t != s) out[count++] = Move.of(Move.SWAP, t);
+                int mask = 0, gold = a[p + GOLD];
+                for (int i = 0; i < a[p + NH] && i < Move.MAX_MASK_BITS; i++) {
+                    int k = a[p + HAND + i];
+                    if (inCity(a, p, k) || cost[k] > gold + 2) mask |= 1 << i;
+                }
+                if (mask != 0) out[count++] = Move.of(Move.REDRAW, 0, mask);
+                break;
+            }
+            case 8: {
+                int gold = a[p + GOLD];
+                for (int t = 0; t < seats; t++) {
+                    int q = seat(t), nc = a[q + NC];
+                    if (t == s || nc >= ScoreCalculator.CITY_SIZE || (a[SHIELD] & (1 << t)) != 0) continue;
+                    if (s != rootSeat && t != rootSeat) continue;  // the last act: an opponent only gains by hitting us
+                    for (int i = 0; i < nc; i++)
+                        if (Math.max(0, cost[a[q + CITY + i]] - 1) <= gold) out[count++] = Move.of(Move.DESTROY, t, i);
+                }
+                break;
+            }
+            default:
+                break;
+        }
+        out[count++] = Move.of(Move.END, 0);
+        return count;
+    }
+
+    /*
+     * every set of districts the seat may build now, by points, the empty set
+     * last. Gold left after a turn is worth nothing before the horizon, so
+     * only the Warlord, who pays for his power after building, is offered
+     * sets that leave an affordable district unbuilt.
+     */
+    private int builds(Node n, int[] out) {
+        int[] a = n.a;
+        int p = seat(a[SEAT]), gold = a[p + GOLD], left = a[LIMIT] - a[BUILT], c = 0;
+        if (left > 0) {
+            for (int i = 0; i < a[p + NH] && i < Move.MAX_MASK_BITS; i++) {
+                int k = a[p + HAND + i];
+                if (cost[k] > gold || inCity(a, p, k)) continue;
+                boolean again = false;                     // only the first copy of a kind
+                for (int j = 0; j < i && !again; j++) again = a[p + HAND + j] == k;
+                if (!again) cand[c++] = i;
+            }
+        }
+        int count = subsets(a, p, c, 0, 0, gold, left, 0, a[RANK] == 8, out, 0);
+        for (int i = 1; i < count; i++) {                  // insertion sort, most points first
+            int m = out[i], pts = optPoints[i], j = i - 1;
+            while (j >= 0 && optPoints[j] < pts) { out[j + 1] = out[j]; optPoints[j + 1] = optPoints[j]; j--; }
+            out[j + 1] = m;
+            optPoints[j + 1] = pts;
+        }
+        return count;
+    }
+
+    private int subsets(int[] a, int p, int c, int from, int mask, int gold, int left, int pts, boolean all,
+                        int[] out, int count) {
+        if (count == MAX_OPT) { truncated = true; return count; }
+        if (all || !canAdd(a, p, c, mask, gold, left)) {
+            out[count] = Move.of(Move.BUILD, 0, mask);
+            optPoints[count++] = mask == 0 ? -1 : pts;
+        }
+        if (left == 0) return count;
+        for (int j = from; j < c; j++) {
+            int k = a[p + HAND + cand[j]];
+            if (cost[k] > gold) continue;
+            count = subsets(a, p, c, j + 1, mask | 1 << cand[j], gold - cost[k], left - 1, pts + points[k], all,
+                    out, count);
+        }
+        return count;
+    }
+
+    /* whether one more candidate fits the gold and the limit */
+    private boolean canAdd(int[] a, int p, int c, int mask, int gold, int left) {
+        if (left == 0) return false;
+        for (int j = 0; j < c; j++)
+            if ((mask & (1 << cand[j])) == 0 && cost[a[p + HAND + cand[j]]] <= gold) return true;
+        return false;
+    }
+
+    /* calls the next rank with a living holder and sets up its turn */
+    private void callNext(Node n) {
+        int[] a = n.a;
+        for (int rank = a[RANK] + 1; rank <= Rules.MAX_RANK; rank++) {
+            int s = holder(a, rank);
+            if (s < 0 || (a[KILLED] & (1 << (rank - 1))) != 0) continue;
+            int p = seat(s);
+            set(n, RANK, rank);
+            set(n, SEAT, s);
+            set(n, BUILT, 0);
+            set(n, USED, 0);
+            set(n, LIMIT, rank == 7 ? 3 : 1);
+            if (rank == 4) set(n, CROWN, s);
+            if (rank == 7) for (int i = 0; i < 2 && deckSize(a) > 0; i++) addHand(n, s, draw(n));
+            int thief = holder(a, 2);
+            if (rank == a[ROBBED] && thief >= 0 && thief != s) {
+                int q = seat(thief);
+                set(n, q + GOLD, a[q + GOLD] + a[p + GOLD]);
+                set(n, p + GOLD, 0);
+            }
+            set(n, STAGE, PRE);
+            return;
+        }
+        set(n, RANK, Rules.MAX_RANK + 1);
+        set(n, STAGE, DONE);
+    }
+
+    private void apply(Node n, int o) {
+        int[] a = n.a;
+        int s = a[SEAT], p = seat(s), stage = a[STAGE];
+        switch (Move.type(o)) {
+            case Move.PICK:
+                set(n, p + CHAR, Move.a(o));
+                set(n, AVAIL, a[AVAIL] & ~(1 << (Move.a(o) - 1)));
+                set(n, PICKS, a[PICKS] + 1);
+                set(n, SEAT, (s + 1) % seats);
+                return;
+            case Move.KILL:
+                set(n, KILLED, a[KILLED] | 1 << (Move.a(o) - 1));
+                break;
+            case Move.STEAL:
+                set(n, ROBBED, Move.a(o));
+                break;
+            case Move.SWAP: {
+                int t = Move.a(o), q = seat(t), mine = a[p + NH], theirs = a[q + NH];
+                int[] tmp = new int[mine];
+                for (int i = 0; i < mine; i++) tmp[i] = a[p + HAND + i];
+                while (a[p + NH] > 0) removeHand(n, s, a[p + NH] - 1);
+                for (int i = 0; i < theirs; i++) addHand(n, s, a[q + HAND + i]);
+                while (a[q + NH] > 0) removeHand(n, t, a[q + NH] - 1);
+                for (int k : tmp) addHand(n, t, k);
+                break;
+            }
+            case Move.REDRAW: {
+                int drawn = 0;
+                for (int i = Move.MAX_MASK_BITS - 1; i >= 0; i--)
+                    if ((Move.b(o) & (1 << i)) != 0 && i < a[p + NH]) { removeHand(n, s, i); drawn++; }
+                for (; drawn > 0 && deckSize(a) > 0; drawn--) addHand(n, s, draw(n));
+                break;
+            }
+            case Move.DESTROY: {
+                int t = Move.a(o), q = seat(t), k = a[q + CITY + Move.b(o)];
+                set(n, p + GOLD, a[p + GOLD] - Math.max(0, cost[k] - 1));
+                removeCity(n, t, Move.b(o));
+                putBottom(n, k);
+                break;
+            }
+            case Move.GOLD:
+                set(n, p + GOLD, a[p + GOLD] + 2);
+                set(n, STAGE, BUILD);
+                return;
+            case Move.CARDS:
+                if (deckSize(a) >= 2) {
+                    int first = draw(n), second = draw(n);
+                    if (hasLibrary(a, p)) { addHand(n, s, first); addHand(n, s, second); }
+                    else {
+                        addHand(n, s, Move.b(o) == 0 ? first : second);
+                        putBottom(n, Move.b(o) == 0 ? second : first);
+                    }
+                } else {
+                    while (deckSize(a) > 0) addHand(n, s, draw(n));
+                }
+                set(n, STAGE, BUILD);
+                return;
+            case Move.BUILD: {
+                int built = 0;
+                for (int i = Move.MAX_MASK_BITS - 1; i >= 0; i--) {
+                    if ((Move.b(o) & (1 << i)) == 0) continue;
+                    int k = a[p + HAND + i];
+                    set(n, p + GOLD, a[p + GOLD] - cost[k]);
+                    removeHand(n, s, i);
+                    addCity(n, s, k);
+                    built++;
+                }
+                set(n, BUILT, a[BUILT] + built);
+                set(n, STAGE, POST);
+                return;
+            }
+            default:                                       // END: power not used
+                set(n, STAGE, stage == PRE ? RES : CALL);
+                return;
+        }
+        set(n, USED, 1);
+        set(n, STAGE, stage == PRE ? RES : CALL);
+    }
+
+    /* =============================================================
+       Node access; every write goes through here so the key follows
+       =========================================================== */
+
+    private static int seat(int s) { return SEATS + s * SEAT_SIZE; }
+
+    private int holder(int[] a, int rank) {
+        for (int s = 0; s < seats; s++) if (a[seat(s) + CHAR] == rank) return s;
+        return -1;
+    }
+
+    private static boolean inCity(int[] a, int p, int k) {
+        for (int i = 0; i < a[p + NC]; i++) if (a[p + CITY + i] == k) return true;
+        return false;
+    }
+
+    private boolean hasLibrary(int[] a, int p) {
+        for (int i = 0; i < a[p + NC]; i++) if (library[a[p + CITY + i]]) return true;
+        return false;
+    }
+
+    private void set(Node n, int i, int v) {
+        n.key += mix(SCALAR_SALT + ((long) i << 32) + v) - mix(SCALAR_SALT + ((long) i << 32) + n.a[i]);
+        n.a[i] = v;
+    }
+
+    private void addHand(Node n, int s, int k) {
+        int p = seat(s);
+        n.a[p + HAND + n.a[p + NH]] = k;
+        set(n, p + NH, n.a[p + NH] + 1);
+        n.key += mix(HAND_SALT + (code[k] << 4) + s);
+    }
+
+    /* shifts the rest down, as the engine's hand list does */
+    private void removeHand(Node n, int s, int i) {
+        int p = seat(s), nh = n.a[p + NH], k = n.a[p + HAND + i];
+        System.arraycopy(n.a, p + HAND + i + 1, n.a, p + HAND + i, nh - i - 1);
+        set(n, p + NH, nh - 1);
+        n.key -= mix(HAND_SALT + (code[k] << 4) + s);
+    }
+
+    private void addCity(Node n, int s, int k) {
+        int p = seat(s);
+        n.a[p + CITY + n.a[p + NC]] = k;
+        set(n, p + NC, n.a[p + NC] + 1);
+        n.key += mix(CITY_SALT + (code[k] << 4) + s);
+    }
+
+    private void removeCity(Node n, int s, int i) {
+        int p = seat(s), nc = n.a[p + NC], k = n.a[p + CITY + i];
+        System.arraycopy(n.a, p + CITY + i + 1, n.a, p + CITY + i, nc - i - 1);
+        set(n, p + NC, nc - 1);
+        n.key -= mix(CITY_SALT + (code[k] << 4) + s);
+    }
+
+    private int deckSize(int[] a) { return base.length - a[HEAD] + a[APP_LEN]; }
+
+    /* the i-th card from the top */
+    private int peek(int[] a, int i) {
+        int h = a[HEAD] + i;
+        return h < base.length ? base[h] : a[APPENDED + ((a[APP_HEAD] + h - base.length) & (APP_CAP - 1))];
+    }
+
+    private int draw(Node n) {
+        int[] a = n.a;
+        if (a[HEAD] < base.length) {
+            int h = a[HEAD];
+            n.key += suffix[h + 1] - suffix[h];
+            set(n, HEAD, h + 1);
+            return base[h];
+        }
+        int pos = a[APP_HEAD], k = a[APPENDED + (pos & (APP_CAP - 1))];
+        n.key -= appendTerm(k, pos);
+        set(n, APP_HEAD, pos + 1);
+        set(n, APP_LEN, a[APP_LEN] - 1);
+        return k;
+    }
+
+    private void putBottom(Node n, int k) {
+        int[] a = n.a;
+        if (a[APP_LEN] == APP_CAP) { truncated = true; return; }   // more returns than a round can make
+        int pos = a[APP_HEAD] + a[APP_LEN];
+        a[APPENDED + (pos & (APP_CAP - 1))] = k;
+        n.key += appendTerm(k, pos);
+        set(n, APP_LEN, a[APP_LEN] + 1);
+    }
+
+    private long deckTerm(int k, int i) { return mix(DECK_SALT + (code[k] << 8) + i); }
+
+    private long appendTerm(int k, int pos) { return mix(APPEND_SALT + (code[k] << 8) + (pos & 0xFF)); }
+
+    /* SplitMix64 finaliser, as in Zobrist */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
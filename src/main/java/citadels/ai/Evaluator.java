@@ -0,0 +1,196 @@
+package citadels.ai;
+
+import citadels.model.card.DistrictCard;
+import citadels.model.game.ScoreCalculator;
+import citadels.model.player.Player;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * Linear evaluation of one player's position.
+ *
+ * <p>Every feature is read from the running aggregates {@link Player} keeps in
+ * step with its gold, hand and city, so evaluating the position after a
+ * candidate move (collect gold, draw, build, lose a district) is a handful of
+ * adds and multiplies; no list is scanned.</p>
+ *
+ * <p>Weights come from {@code /citadels/eval-weights.properties} on the
+ * classpath, or from the file named by the {@code citadels.eval.weights}
+ * system property. Instances are immutable and safe to share.</p>
+ */
+public final class Evaluator {
+
+    /** Features, in weight-vector order. Property keys are the lower-case names. */
+    public enum Feature {
+        /** Points already in the city, diversity bonus included */
+        SCORE,
+        /** Distinct colours in the city */
+        COLOURS,
+        /** Gold in hand */
+        GOLD,
+        /** Points of the cards in hand */
+        HAND_POINTS,
+        /** Number of cards in hand */
+        HAND_SIZE,
+        /** How far the hand is below three cards */
+        HAND_SHORTFALL,
+        /** Districts still needed to complete the city */
+        DISTANCE,
+        /** Districts the Warlord can destroy for at most one gold */
+        EXPOSED
+    }
+
+    private static final String RESOURCE = "/citadels/eval-weights.properties";
+    private static final int HAND_TARGET = 3;
+    private static final Evaluator SHARED = loadDefault();
+
+    private final double[] w = new double[Feature.values().length];
+
+    private Evaluator(Properties props) {
+        for (String key : props.stringPropertyNames()) {
+            Feature f;
+            try {
+                f = Feature.valueOf(key.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown evaluation feature: " + key);
+            }
+            try {
+                w[f.ordinal()] = Double.parseDouble(props.getProperty(key).trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Bad weight for " + key + ": " + props.getProperty(key));
+            }
+        }
+    }
+
+    /* =============================================================
+       Loading
+       =========================================================== */
+
+    /**
+     * Returns the evaluator configured for this JVM (loaded once).
+     * @return the shared evaluator
+     */
+    public static Evaluator shared() { return SHARED; }
+
+    /**
+     * Loads weights from a properties stream ({@code feature = weight}).
+     * Features not listed get weight 0.
+     * @param in the stream to read
+     * @return a new evaluator
+     * @throws IOException if the stream cannot be read
+     */
+    public static Evaluator load(InputStream in) throws IOException {
+        Properties props = new Properties();
+        props.load(in);
+        return new Evaluator(props);
+    }
+
+    /**
+     * Loads weights from a properties file.
+     * @param file path of the file
+     * @return a new evaluator
+     * @throws IOException if the file cannot be read
+     */
+    public static Evaluator load(String file) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            return load(in);
+        }
+    }
+
+    private static Evaluator loadDefault() {
+        String file = System.getProperty("citadels.eval.weights");
+        try {
+            if (file != null) return load(file);
+            InputStream in = Evaluator.class.getResourceAsStream(RESOURCE);
+            if (in == null) throw new RuntimeException(RESOURCE + " not found");
+            try (InputStream r = in) { return load(r); }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to load evaluation weights", e);
+        }
+    }
+
+    /**
+     * Weight of a feature.
+     * @param f the feature
+     * @return its weight
+     */
+    public double weight(Feature f) { return w[f.ordinal()]; }
+
+    /* =============================================================
+       Evaluation (current position and one ply ahead)
+       =========================================================== */
+
+    /** Value of the player's current position. */
+    public double evaluate(Player p) {
+        return value(p.getGold(), p.getHand().size(), p.getHandPoints(),
+                p.getCityPoints(), p.getCityColourBits(), p.getCity().size(),
+                p.getExposedDistricts());
+    }
+
+    /**
+     * Same as {@link #evaluate} but recomputes every feature by scanning the
+     * hand and city. Reference implementation for tests and benchmarks.
+     */
+    public double evaluateFromScratch(Player p) {
+        int handPoints = 0, cityPoints = 0, bits = 0, exposed = 0;
+        for (DistrictCard d : p.getHand()) handPoints += ScoreCalculator.districtPoints(d);
+        for (DistrictCard d : p.getCity()) {
+            cityPoints += ScoreCalculator.districtPoints(d);
+            bits |= ScoreCalculator.colourBits(d);
+            if (d.getCost() <= 2) exposed++;
+        }
+        return value(p.getGold(), p.getHand().size(), handPoints, cityPoints, bits,
+                p.getCity().size(), exposed);
+    }
+
+    /** Value after gaining (or, if negative, spending) {@code delta} gold. */
+    public double afterGold(Player p, int delta) {
+        return value(p.getGold() + delta, p.getHand().size(), p.getHandPoints(),
+                p.getCityPoints(), p.getCityColourBits(), p.getCity().size(),
+                p.getExposedDistricts());
+    }
+
+    /** Value after drawing {@code cards} cards worth {@code pointsPerCard} on average. */
+    public double afterDraw(Player p, int cards, double pointsPerCard) {
+        return value(p.getGold(), p.getHand().size() + cards,
+                p.getHandPoints() + cards * pointsPerCard,
+                p.getCityPoints(), p.getCityColourBits(), p.getCity().size(),
+                p.getExposedDistricts());
+    }
+
+    /** Value after building {@code c} from the hand. */
+    public double afterBuild(Player p, DistrictCard c) {
+        int pts = ScoreCalculator.districtPoints(c);
+        return value(p.getGold() - c.getCost(), p.getHand().size() - 1, p.getHandPoints() - pts,
+                p.getCityPoints() + pts, p.getCityColourBits() | ScoreCalculator.colourBits(c),
+                p.getCity().size() + 1, p.getExposedDistricts() + (c.getCost() <= 2 ? 1 : 0));
+    }
+
+    /** Value after losing city district {@code c} (Warlord). */
+    public double afterLoss(Player p, DistrictCard c) {
+        int bits = p.getCityColourBits();
+        int own = ScoreCalculator.colourBits(c);
+        for (int b = 0; own >> b != 0; b++)          // a colour goes only with its last district
+            if ((own & (1 << b)) != 0 && p.getCityColourCount(b) == 1) bits &= ~(1 << b);
+        return value(p.getGold(), p.getHand().size(), p.getHandPoints(),
+                p.getCityPoints() - ScoreCalculator.districtPoints(c), bits,
+                p.getCity().size() - 1, p.getExposedDistricts() - (c.getCost() <= 2 ? 1 : 0));
+    }
+
+    private double value(int gold, int handSize, double handPoints, int cityPoints,
+                         int colourBits, int citySize, int exposed) {
+        boolean diverse = colourBits == ScoreCalculator.ALL_COLOURS;
+        return w[0] * (cityPoints + (diverse ? ScoreCalculator.DIVERSITY_BONUS : 0))
+             + w[1] * Integer.bitCount(colourBits)
+             + w[2] * gold
+             + w[3] * handPoints
+             + w[4] * handSize
+             + w[5] * Math.max(0, HAND_TARGET - handSize)
+             + w[6] * Math.max(0, ScoreCalculator.CITY_SIZE - citySize)
+             + w[7] * exposed;
+    }
+}
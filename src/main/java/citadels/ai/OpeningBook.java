@@ -0,0 +1,173 @@
+package citadels.ai;
+
+import citadels.model.game.CitadelsGame;
+import citadels.model.player.Player;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.stream.IntStream;
+
+/**
+ * A character to pick for each selection context seen often enough in
+ * self-play, read from a sorted file mapped into memory.
+ *
+ * <p>The context is packed into one long by {@link #key}: seats, position in
+ * the pick order, face-up ranks, ranks still passing, and the gold, hand and
+ * city of every seat in bands, starting with the picker. A lookup is a
+ * binary search over the mapped records: no allocation, no parsing, and
+ * only the pages touched are read in.</p>
+ *
+ * <p>File layout, all little-endian: the magic {@code "CTDB"}, a format
+ * version (int) and the record count (long), then the records in
+ * ascending (signed) key order, 16 bytes each: the key (long), the rank
+ * to pick (short), its win rate in the sample in thousandths (short) and
+ * the games behind it (int).</p>
+ *
+ * <p>Books are built offline by {@link citadels.sim.BookBuilder}. The AI
+ * uses the book named by the {@code citadels.ai.book} system property, if
+ * any.</p>
+ */
+public final class OpeningBook {
+
+    /** File magic, "CTDB" */
+    public static final int MAGIC = 0x42445443;
+    /** Format version */
+    public static final int VERSION = 1;
+    /** Bytes per record */
+    public static final int RECORD_BYTES = 16;
+
+    private static final int HEADER_BYTES = 16;
+    private static final OpeningBook SHARED = loadDefault();
+
+    private final ByteBuffer records;
+    private final int size;
+
+    private OpeningBook(ByteBuffer records, int size) {
+        this.records = records;
+        this.size = size;
+    }
+
+    /**
+     * Maps a book file.
+     * @param file the book
+     * @return the book
+     * @throws IOException if the file cannot be read or is not a book
+     */
+    public static OpeningBook open(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer map = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()).order(ByteOrder.LITTLE_ENDIAN);
+            if (map.limit() < HEADER_BYTES || map.getInt(0) != MAGIC)
+                throw new IOException(file + " is not an opening book");
+            if (map.getInt(4) != VERSION)
+                throw new IOException(file + ": unsupported book version " + map.getInt(4));
+            long count = map.getLong(8);
+            if (count < 0 || HEADER_BYTES + count * RECORD_BYTES != map.limit())
+                throw new IOException(file + " is truncated");
+            return new OpeningBook(map, (int) count);
+        }
+    }
+
+    /**
+     * Returns the book configured for this JVM (mapped once).
+     * @return the book named by {@code citadels.ai.book}, or null if none is
+     */
+    public static OpeningBook shared() { return SHARED; }
+
+    private static OpeningBook loadDefault() {
+        String file = System.getProperty("citadels.ai.book");
+        if (file == null) return null;
+        try {
+            return open(Paths.get(file));
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to load the opening book", e);
+        }
+    }
+
+    /** Number of contexts in the book */
+    public int size() { return size; }
+
+    /**
+     * Returns the rank the book picks in a context.
+     * @param key see {@link #key}
+     * @return the rank, or 0 if the context is not in the book
+     */
+    public int lookup(long key) {
+        int lo = 0, hi = size - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            long k = records.getLong(HEADER_BYTES + mid * RECORD_BYTES);
+            if (k < key) lo = mid + 1;
+            else if (k > key) hi = mid - 1;
+            else return records.getShort(HEADER_BYTES + mid * RECORD_BYTES + 8);
+        }
+        return 0;
+    }
+
+    /**
+     * Packs a selection context:
+     * <pre>
+     *  bits  0-1   seats - 4
+     *  bits  2-4   position in the pick order (0 = crowned)
+     *  bits  5-12  face-up ranks (bit rank-1)
+     *  bits 13-20  ranks still passing
+     *  bits 21-62  per seat from the picker on, 6 bits: gold, hand and city bands
+     * </pre>
+     * @param g the game, in the selection phase
+     * @param seat the picking seat
+     * @param available ranks still passing to the picker (bit rank-1)
+     * @return the key
+     */
+    public static long key(CitadelsGame g, int seat, int available) {
+        int n = g.getPlayers().size();
+        long k = (n - 4)
+                | (long) ((seat - g.getCrownedSeat() + n) % n) << 2
+                | (long) g.getFaceUpRanks() << 5
+                | (long) available << 13;
+        for (int i = 0; i < n; i++) k |= (long) bands(g.getPlayer((seat + i) % n)) << (21 + 6 * i);
+        return k;
+    }
+
+    /* gold 0-1, 2-3, 4-6, 7+; hand 0, 1-2, 3-4, 5+; city 0-2, 3-4, 5-6, 7+ */
+    private static int bands(Player p) {
+        int gold = p.getGold(), hand = p.getHand().size(), city = p.getCity().size();
+        int g = gold < 2 ? 0 : gold < 4 ? 1 : gold < 7 ? 2 : 3;
+        int h = hand == 0 ? 0 : hand < 3 ? 1 : hand < 5 ? 2 : 3;
+        int c = city < 3 ? 0 : city < 5 ? 1 : city < 7 ? 2 : 3;
+        return g | h << 2 | c << 4;
+    }
+
+    /**
+     * Writes a book, sorting the records by key.
+     * @param file the file to create or replace
+     * @param keys contexts, each once
+     * @param ranks rank to pick in each
+     * @param permille win rate of that pick, in thousandths
+     * @param plays games behind each
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(Path file, long[] keys, int[] ranks, int[] permille, int[] plays) throws IOException {
+        int n = keys.length;
+        int[] order = IntStream.range(0, n).boxed()
+                .sorted(Comparator.comparingLong(i -> keys[i])).mapToInt(Integer::intValue).toArray();
+        ByteBuffer buf = ByteBuffer.allocate(HEADER_BYTES + n * RECORD_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buf.putInt(MAGIC).putInt(VERSION).putLong(n);
+        for (int i : order)
+            buf.putLong(keys[i]).putShort((short) ranks[i]).putShort((short) permille[i]).putInt(plays[i]);
+        buf.flip();
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buf.hasRemaining()) out.write(buf);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "OpeningBook[" + size + " contexts]";
+    }
+}
@@ -0,0 +1,220 @@
+package citadels.ai;
+
+import citadels.cli.QuietHandler;
+import citadels.metrics.Metrics;
+import citadels.model.card.DistrictCard;
+import citadels.model.game.CitadelsGame;
+import citadels.model.game.GamePhase;
+import citadels.model.game.Move;
+import citadels.model.game.MoveGenerator;
+import citadels.model.game.Rules;
+import citadels.model.game.Step;
+import citadels.model.player.AIPlayer;
+import citadels.model.player.Player;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Works out AI decisions while a person is thinking.
+ *
+ * <p>When a game stops for a person's pick or turn late in the game (when
+ * the AI searches, see {@link AIPlayer#isEndgame}), {@link #start} forks
+ * it once per likely answer: each character still passing, or gold and
+ * cards at the start of a turn, or the rest of the turn as the heuristics
+ * would play it. Background threads play the forks on to the end of the
+ * round with {@link AIPlayer#speculative speculative} AI players, which
+ * record every searched decision here under the key of the state it was
+ * made in. When the real answer arrives and the real AI reaches one of
+ * those states, it takes the recorded moves instead of searching again
+ * (after checking they are still legal).</p>
+ *
+ * <p>The key is the game's Zobrist key together with what it leaves out
+ * that a decision depends on: round, seat to move, characters passing or
+ * called, turn flags, deck size, and the order of the mover's hand and of
+ * every city, which the recorded moves point into by position. The
+ * recorded decisions are shared by every game in the process, in a small
+ * table overwritten as it goes.</p>
+ */
+public final class Speculator {
+
+    /** Whether games with people in them speculate; {@code -Dcitadels.ai.speculate=false} turns it off */
+    public static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("citadels.ai.speculate", "true"));
+
+    private static final int CACHE_SIZE = 1 << 12;
+    private static final AtomicReferenceArray<Entry> CACHE = new AtomicReferenceArray<>(CACHE_SIZE);
+
+    /** One recorded decision; immutable, so a reader sees all of it or none */
+    private static final class Entry {
+        final long key;
+        final int[] moves;
+
+        Entry(long key, int[] moves) {
+            this.key = key;
+            this.moves = moves;
+        }
+    }
+
+    /* created on first use: most processes (simulations) never speculate */
+    private static final class Pool {
+        static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(
+                Math.max(1, Runtime.getRuntime().availableProcessors() - 1), r -> {
+                    Thread t = new Thread(r, "citadels-speculate");
+                    t.setDaemon(true);
+                    t.setPriority(Thread.MIN_PRIORITY);   // the games being played come first
+                    return t;
+                });
+    }
+
+    private Speculator() { }
+
+    /**
+     * Returns the key a decision in {@code g} is recorded under.
+     * @param g the game, with an AI seat to move
+     * @return 64-bit key
+     */
+    public static long key(CitadelsGame g) {
+        long context = g.getRound()
+                | (long) (g.getSeatToMove() & 0xF) << 16
+                | (long) g.getTurnFlags() << 20
+                | (long) (g.getPhase() == GamePhase.SELECTION ? g.getAvailableRanks() : g.getRevealedRank()) << 24
+                | (long) g.getDistrictDeckSize() << 40
+                | (g.getPhase() == GamePhase.SELECTION ? 1L << 63 : 0);
+        return g.zobrist() ^ mix(mix(context) ^ order(g));
+    }
+
+    /* the Zobrist key sees hands and cities as sets; BUILD, REDRAW and DESTROY name positions */
+    private static long order(CitadelsGame g) {
+        long h = 0;
+        int seat = g.getSeatToMove();
+        if (seat >= 0) for (DistrictCard d : g.getPlayer(seat).getHand()) h = h * 31 + d.getId() + 1;
+        for (Player p : g.getPlayers()) {
+            h *= 31;
+            for (DistrictCard d : p.getCity()) h = h * 31 + d.getId() + 1;
+        }
+        return h;
+    }
+
+    /* SplitMix64 finaliser: spreads the packed context over all 64 bits */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Returns the moves recorded for a state, if any.
+     * @param key see {@link #key}
+     * @return the moves, or null
+     */
+    public static int[] lookup(long key) {
+        Entry e = CACHE.get(index(key));
+        return e != null && e.key == key ? e.moves : null;
+    }
+
+    /**
+     * Records the moves decided in a state, replacing whatever shared its slot.
+     * @param key see {@link #key}
+     * @param moves the decision; not copied, so not to be changed afterwards
+     */
+    public static void record(long key, int[] moves) {
+        CACHE.set(index(key), new Entry(key, moves));
+        Metrics.AI_SPECULATED.inc();
+    }
+
+    private static int index(long key) {
+        return (int) (key ^ key >>> 32) & (CACHE_SIZE - 1);
+    }
+
+    /**
+     * Starts speculating on the answer {@code g} is waiting for. Call on the
+     * game's thread, while it waits: the forks are made before returning.
+     * @param g a game waiting for a person's pick or turn
+     * @return the running speculation, or null if there is nothing worth working out
+     */
+    public static Run start(CitadelsGame g) {
+        int seat = g.getSeatToMove();
+        if (!ENABLED || seat < 0 || g.getThinkMillis() <= 0 || !AIPlayer.isEndgame(g)) return null;
+
+        List<Integer> answers = new ArrayList<>();
+        if (g.getPhase() == GamePhase.SELECTION) {
+            for (int r = 1; r <= Rules.MAX_RANK; r++)
+                if ((g.getAvailableRanks() & 1 << (r - 1)) != 0) answers.add(Move.of(Move.PICK, r));
+        } else if ((g.getTurnFlags() & MoveGenerator.RESOURCES_TAKEN) == 0) {
+            answers.add(Move.of(Move.GOLD, 0));
+            if (g.getDistrictDeckSize() > 0) answers.add(Move.of(Move.CARDS, 0));
+        } else {
+            answers.add(0);                                // the heuristics finish the turn
+        }
+
+        Run run = new Run(g.getRound());
+        for (int m : answers) {
+            CitadelsGame f = g.fork(QuietHandler.INSTANCE, g.zobrist() ^ m,
+                    s -> s == seat ? AIPlayer.rollout(s) : AIPlayer.speculative(s));
+            if (m != 0 && !f.playMove(m)) { f.abandon(); continue; }
+            run.submit(f);
+        }
+        Metrics.AI_SPECULATIONS.inc();
+        return run;
+    }
+
+    /**
+     * The forks of one wait, played a step at a time in turn so the
+     * decisions nearest the present are worked out first.
+     */
+    public static final class Run {
+        private final int round;
+        private final AtomicInteger live = new AtomicInteger();
+        private volatile boolean cancelled;
+
+        private Run(int round) {
+            this.round = round;
+        }
+
+        private void submit(CitadelsGame f) {
+            live.incrementAndGet();
+            Pool.EXECUTOR.execute(() -> play(f));
+        }
+
+        private void play(CitadelsGame f) {
+            boolean more = false;
+            try {
+                more = !cancelled && f.step(null).kind() == Step.Kind.RUNNING && f.getRound() == round;
+            } finally {
+                if (more && !cancelled) {
+                    Pool.EXECUTOR.execute(() -> play(f));  // back of the queue: the other forks go next
+                } else {
+                    f.abandon();
+                    synchronized (this) {
+                        if (live.decrementAndGet() == 0) notifyAll();
+                    }
+                }
+            }
+        }
+
+        /** Stops the forks after the step each is in; the answer has arrived. */
+        public void cancel() {
+            cancelled = true;
+        }
+
+        /**
+         * Waits until every fork has played to the end of the round or stopped.
+         * @param millis longest wait
+         * @return true if the speculation is over
+         */
+        public synchronized boolean await(long millis) throws InterruptedException {
+            long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+            while (live.get() > 0) {
+                long left = end - System.nanoTime();
+                if (left <= 0) return false;
+                TimeUnit.NANOSECONDS.timedWait(this, left);
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package citadels.ai;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size cache of search results keyed by {@link citadels.model.game.Zobrist}
+ * keys, shared by any number of search threads without locks.
+ *
+ * <p>Each entry is two longs: the packed result, and the key XOR the packed
+ * result. A reader accepts an entry only if the two still XOR to its key,
+ * so a pair torn by a concurrent writer reads as a miss instead of as
+ * somebody else's result. Entries are never allocated after construction.</p>
+ *
+ * <p>A key maps to a bucket of two entries. The first keeps the deepest
+ * result seen (replace-by-depth); the second takes whatever the first
+ * refuses, so recent shallow results are not lost.</p>
+ *
+ * <p>Packed result, as returned by {@link #probe}:</p>
+ * <pre>
+ *  bits  0-31  move   packed {@link citadels.model.game.Move}
+ *  bits 32-47  value  signed
+ *  bits 48-55  depth  0-255
+ *  bits 56-57  bound  {@link #EXACT}, {@link #LOWER} or {@link #UPPER}
+ *  bit  63     set in every stored entry
+ * </pre>
+ */
+public final class TranspositionTable {
+
+    /** The value is exact */
+    public static final int EXACT = 0;
+    /** The value is a lower bound (the search failed high) */
+    public static final int LOWER = 1;
+    /** The value is an upper bound (the search failed low) */
+    public static final int UPPER = 2;
+    /** What {@link #probe} returns for a key it does not hold */
+    public static final long MISS = 0;
+
+    private static final long PRESENT = 1L << 63;
+
+    private final AtomicLongArray slots;   // per entry: key ^ data, data
+    private final int bucketMask;
+
+    /**
+     * @param entries capacity, rounded up to a power of two (at least 2)
+     */
+    public TranspositionTable(int entries) {
+        if (entries < 1 || entries > 1 << 29) throw new IllegalArgumentException("Entries must be 1 to 2^29");
+        int buckets = Integer.highestOneBit(Math.max(2, entries) * 2 - 1) / 2;
+        slots = new AtomicLongArray(buckets * 4);
+        bucketMask = buckets - 1;
+    }
+
+    /** Entries the table can hold */
+    public int capacity() { return slots.length() / 2; }
+
+    /**
+     * Packs a result.
+     * @param move best move found, or 0
+     * @param value score, clamped to 16 bits
+     * @param depth remaining depth the result was searched to, clamped to 0-255
+     * @param bound {@link #EXACT}, {@link #LOWER} or {@link #UPPER}
+     * @return the packed result
+     */
+    public static long pack(int move, int value, int depth, int bound) {
+        int v = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, value));
+        int d = Math.max(0, Math.min(255, depth));
+        return PRESENT | (long) bound << 56 | (long) d << 48 | (v & 0xFFFFL) << 32 | (move & 0xFFFFFFFFL);
+    }
+
+    /** Best move of a packed result */
+    public static int move(long data) { return (int) data; }
+
+    /** Value of a packed result */
+    public static int value(long data) { return (short) (data >>> 32); }
+
+    /** Depth of a packed result */
+    public static int depth(long data) { return (int) (data >>> 48) & 0xFF; }
+
+    /** Bound type of a packed result */
+    public static int bound(long data) { return (int) (data >>> 56) & 0x3; }
+
+    /**
+     * Looks a key up.
+     * @param key Zobrist key
+     * @return the packed result, or {@link #MISS}
+     */
+    public long probe(long key) {
+        int i = index(key);
+        for (int e = i; e < i + 4; e += 2) {
+            long data = slots.getOpaque(e + 1);
+            if (data != MISS && (slots.getOpaque(e) ^ data) == key) return data;
+        }
+        return MISS;
+    }
+
+    /**
+     * Stores a result. The deep entry of the bucket is replaced when the
+     * key is the same or the new result is at least as deep; otherwise the
+     * result goes to the bucket's other entry.
+     * @param key Zobrist key
+     * @param move best move found, or 0
+     * @param value score
+     * @param depth remaining depth searched
+     * @param bound {@link #EXACT}, {@link #LOWER} or {@link #UPPER}
+     */
+    public void store(long key, int move, int value, int depth, int bound) {
+        long data = pack(move, value, depth, bound);
+        int e = index(key);
+        long old = slots.getOpaque(e + 1);
+        boolean same = old != MISS && (slots.getOpaque(e) ^ old) == key;
+        if (!(old == MISS || same || depth(data) >= depth(old))) e += 2;
+        // data first: a reader between the two writes sees a mismatch, i.e. a miss
+        slots.setOpaque(e + 1, data);
+        slots.setOpaque(e, key ^ data);
+    }
+
+    /** Forgets everything. Not atomic with respect to concurrent stores. */
+    public void clear() {
+        for (int i = 0; i < slots.length(); i++) slots.setOpaque(i, 0);
+    }
+
+    private int index(long key) {
+        return ((int) (key ^ (key >>> 32)) & bucketMask) << 2;
+    }
+}
@@ -0,0 +1,254 @@
+package citadels.bot;
+
+import citadels.metrics.Metrics;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The engine's end of a bot process: one pair of pipes shared by every
+ * game that seats the bot.
+ *
+ * <h2>Protocol</h2>
+ * <p>Lines of UTF-8 text, in the manner of UCI. The engine starts with
+ * {@code citadels 1} (the protocol version); the bot answers
+ * {@code ready <name>}. Then, any number of times and from any number of
+ * games at once:</p>
+ * <pre>
+ *   engine: req &lt;id&gt; &lt;json&gt;
+ *   bot:    res &lt;id&gt; &lt;choice&gt;
+ * </pre>
+ * <p>The JSON object, on one line, describes the decision from the
+ * deciding seat's point of view (see {@link citadels.model.player.BotPlayer})
+ * and ends with {@code "options"}, the legal choices in the words of the
+ * CLI commands ({@code "gold"}, {@code "build 2"}, {@code "pick King"}, …).
+ * The choice is the 0-based index of an option, or the option itself.
+ * Requests are pipelined: many may be outstanding, and the bot may answer
+ * them in any order, matched by id. The engine ends with {@code quit}.
+ * Lines the engine does not expect are ignored, so a bot may log to its
+ * standard output with lines starting {@code info}.</p>
+ *
+ * <p>A writer thread takes requests off a queue and writes whatever has
+ * queued up before one flush, so parallel games share system calls; a
+ * reader thread hands each answer to the game waiting for it.</p>
+ */
+public final class BotClient implements Closeable {
+
+    /** Protocol version sent in the greeting */
+    public static final int VERSION = 1;
+    /** How long a game waits for an answer before playing without it; {@code -Dcitadels.bot.timeoutMillis} */
+    public static final long DEFAULT_TIMEOUT_MILLIS = Long.getLong("citadels.bot.timeoutMillis", 10_000);
+
+    private static final String QUIT = "quit";
+
+    private final BufferedReader in;
+    private final Writer out;
+    private final Process process;
+    private final String name;
+    private final BlockingQueue<String> outbox = new LinkedBlockingQueue<>();
+    private final Map<Long, CompletableFuture<String>> pending = new ConcurrentHashMap<>();
+    private final AtomicLong ids = new AtomicLong();
+    private final Thread writer, reader;
+    private volatile boolean closed;
+
+    /**
+     * Greets a bot over a pair of streams and starts the pipe threads.
+     * @param fromBot the bot's output
+     * @param toBot the bot's input
+     * @throws IOException if the bot does not answer the greeting
+     */
+    public BotClient(InputStream fromBot, OutputStream toBot) throws IOException {
+        this(fromBot, toBot, null);
+    }
+
+    private BotClient(InputStream fromBot, OutputStream toBot, Process process) throws IOException {
+        this.in = new BufferedReader(new InputStreamReader(fromBot, StandardCharsets.UTF_8));
+        this.out = new BufferedWriter(new OutputStreamWriter(toBot, StandardCharsets.UTF_8), 64 * 1024);
+        this.process = process;
+        out.write("citadels " + VERSION + "\n");
+        out.flush();
+        String line;
+        while ((line = in.readLine()) != null && !line.startsWith("ready")) { }
+        if (line == null) throw new IOException("The bot closed its output before it was ready");
+        this.name = line.length() > 6 ? line.substring(6).trim() : "bot";
+
+        writer = new Thread(this::write, "bot-writer");
+        reader = new Thread(this::read, "bot-reader");
+        writer.setDaemon(true);
+        reader.setDaemon(true);
+        writer.start();
+        reader.start();
+    }
+
+    /**
+     * Starts a bot process and greets it. Its standard error goes to ours.
+     * @param command the program and its arguments
+     * @return the client
+     * @throws IOException if the process cannot be started or does not greet
+     */
+    public static BotClient launch(List<String> command) throws IOException {
+        Process p = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        try {
+            return new BotClient(p.getInputStream(), p.getOutputStream(), p);
+        } catch (IOException e) {
+            p.destroyForcibly();
+            throw e;
+        }
+    }
+
+    /** The name the bot gave when it was ready */
+    public String name() { return name; }
+
+    /** Requests sent and not answered yet */
+    public int outstanding() { return pending.size(); }
+
+    /**
+     * Sends a decision to the bot without waiting.
+     * @param state the decision, without the options
+     * @param options the legal choices
+     * @return the bot's raw answer, completed exceptionally if the bot goes away
+     */
+    @SuppressWarnings("unchecked")
+    public CompletableFuture<String> request(JSONObject state, List<String> options) {
+        CompletableFuture<String> answer = new CompletableFuture<>();
+        if (closed) {
+            answer.completeExceptionally(new IOException("The bot is gone"));
+            return answer;
+        }
+        JSONArray opts = new JSONArray();
+        opts.addAll(options);
+        state.put("options", opts);
+        long id = ids.incrementAndGet();
+        pending.put(id, answer);
+        if (closed && pending.remove(id) != null) {     // went away meanwhile
+            answer.completeExceptionally(new IOException("The bot is gone"));
+            return answer;
+        }
+        outbox.add("req " + id + " " + state.toJSONString());
+        Metrics.BOT_REQUESTS.inc();
+        return answer;
+    }
+
+    /**
+     * Asks the bot to choose and waits for its answer.
+     * @param state the decision, without the options
+     * @param options the legal choices
+     * @param timeoutMillis longest wait
+     * @return the index of the option chosen, or -1 if the bot did not
+     *         answer in time, answered nonsense or is gone
+     */
+    public int choose(JSONObject state, List<String> options, long timeoutMillis) {
+        CompletableFuture<String> f = request(state, options);
+        String answer;
+        try {
+            answer = f.get(timeoutMillis, TimeUnit.MILLISECONDS).trim();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pending.values().remove(f);
+            return -1;
+        } catch (ExecutionException | TimeoutException e) {
+            pending.values().remove(f);                  // a late answer finds nobody waiting
+            return -1;
+        }
+        try {
+            int i = Integer.parseInt(answer);
+            return i >= 0 && i < options.size() ? i : -1;
+        } catch (NumberFormatException e) {
+            return options.indexOf(answer);
+        }
+    }
+
+    /* sends what has queued up, one flush per batch */
+    private void write() {
+        List<String> batch = new ArrayList<>();
+        try {
+            while (true) {
+                batch.add(outbox.take());
+                outbox.drainTo(batch);
+                boolean quit = false;
+                for (String line : batch) {
+                    out.write(line);
+                    out.write('\n');
+                    quit |= line.equals(QUIT);
+                }
+                out.flush();
+                batch.clear();
+                if (quit) break;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            gone();
+        }
+    }
+
+    /* hands each answer to the game waiting for it */
+    private void read() {
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (!line.startsWith("res ")) continue;
+                int sp = line.indexOf(' ', 4);
+                if (sp < 0) continue;
+                CompletableFuture<String> f;
+                try {
+                    f = pending.remove(Long.parseLong(line.substring(4, sp)));
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                if (f != null) f.complete(line.substring(sp + 1));
+            }
+        } catch (IOException e) {
+            // as if the bot had closed its output
+        }
+        gone();
+    }
+
+    /* the bot is not answering any more: nobody should wait for it */
+    private void gone() {
+        closed = true;
+        for (Long id : pending.keySet()) {
+            CompletableFuture<String> f = pending.remove(id);
+            if (f != null) f.completeExceptionally(new IOException("The bot is gone"));
+        }
+    }
+
+    /**
+     * Says goodbye, and ends the bot process if this client started it.
+     */
+    @Override
+    public void close() throws IOException {
+        if (!closed) outbox.add(QUIT);
+        try {
+            writer.join(1000);
+            if (process != null && !process.waitFor(2, TimeUnit.SECONDS)) process.destroyForcibly();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writer.interrupt();
+        gone();
+        out.close();
+        in.close();
+    }
+}
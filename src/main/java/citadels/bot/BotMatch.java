@@ -0,0 +1,104 @@
+package citadels.bot;
+
+import citadels.cli.QuietHandler;
+import citadels.metrics.Metrics;
+import citadels.model.game.CitadelsGame;
+import citadels.model.game.ScoreCalculator;
+import citadels.model.game.Step;
+import citadels.model.player.AIPlayer;
+import citadels.model.player.BotPlayer;
+import citadels.sim.Campaign;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Plays a bot against the built-in AI: many games on several threads, the
+ * bot in one seat of each (rotating), all of them over one {@link BotClient}.
+ */
+public final class BotMatch {
+
+    private final BotClient bot;
+    private final int players;
+    private final AtomicLong next = new AtomicLong();
+    private final AtomicLong games = new AtomicLong();
+    private final AtomicLong wins = new AtomicLong();
+
+    /**
+     * @param bot the bot, shared by every game
+     * @param players seats per game, 4 to 7
+     */
+    public BotMatch(BotClient bot, int players) {
+        this.bot = bot;
+        this.players = players;
+    }
+
+    /** Games played to the end */
+    public long games() { return games.get(); }
+
+    /** Games the bot won */
+    public long wins() { return wins.get(); }
+
+    /**
+     * Plays {@code count} games on {@code threads} threads and waits for them.
+     * @param count how many games
+     * @param threads worker threads, each with one game going at a time
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void run(long count, int threads) throws InterruptedException {
+        List<Thread> workers = new ArrayList<>(threads);
+        for (int t = 0; t < threads; t++) {
+            Thread w = new Thread(() -> {
+                long i;
+                while ((i = next.getAndIncrement()) < count) play((int) (i % players));
+            }, "match-" + t);
+            w.setDaemon(true);
+            workers.add(w);
+            w.start();
+        }
+        for (Thread w : workers) w.join();
+    }
+
+    private void play(int botSeat) {
+        CitadelsGame g = new CitadelsGame(players, QuietHandler.INSTANCE, ThreadLocalRandom.current().nextLong(),
+                s -> s == botSeat ? new BotPlayer(s, bot) : new AIPlayer(s));
+        Step s = g.step(null);
+        while (s.kind() != Step.Kind.GAME_OVER) {
+            if (g.getRound() > Campaign.ROUND_LIMIT) {
+                g.abandon();
+                return;
+            }
+            s = g.step(null);
+        }
+        if (ScoreCalculator.winner(g.finalScores()).getId() == botSeat) wins.incrementAndGet();
+        games.incrementAndGet();
+    }
+
+    /**
+     * Runs a match and prints the bot's win rate and request rate.
+     * @param args {@code games threads players command [args...]}, for example
+     *             {@code 1000 8 4 java -cp citadels.jar citadels.bot.EchoBot}
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 4) {
+            System.err.println("usage: BotMatch games threads players command [args...]");
+            System.exit(2);
+        }
+        long count = Long.parseLong(args[0]);
+        int threads = Integer.parseInt(args[1]);
+        int players = Integer.parseInt(args[2]);
+        try (BotClient bot = BotClient.launch(Arrays.asList(args).subList(3, args.length))) {
+            BotMatch m = new BotMatch(bot, players);
+            long t0 = System.nanoTime(), r0 = Metrics.BOT_REQUESTS.get();
+            m.run(count, threads);
+            double secs = (System.nanoTime() - t0) / 1e9;
+            System.out.printf("%s: %d of %d games won (%.1f%%, fair share %.1f%%), %.0f requests/s, %d fallbacks%n",
+                    bot.name(), m.wins(), m.games(), 100.0 * m.wins() / Math.max(1, m.games()), 100.0 / players,
+                    (Metrics.BOT_REQUESTS.get() - r0) / secs, Metrics.BOT_FALLBACKS.get());
+        }
+    }
+}
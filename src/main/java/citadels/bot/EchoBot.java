@@ -0,0 +1,53 @@
+package citadels.bot;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The smallest bot that speaks the {@link BotClient} protocol: it always
+ * takes the first option. A stand-in for real bots in tests, and a
+ * template for writing one.
+ *
+ * <p>Answers are written as requests are read, and flushed only once no
+ * more input is waiting, so a batch of requests gets a batch of answers.</p>
+ *
+ * <p>Run with {@code java -cp citadels.jar citadels.bot.EchoBot}.</p>
+ */
+public final class EchoBot {
+
+    private EchoBot() { }
+
+    /**
+     * Plays the protocol until {@code quit} or the end of the input.
+     * @param in requests from the engine
+     * @param out answers to the engine
+     * @throws IOException if either stream fails
+     */
+    public static void serve(InputStream in, OutputStream out) throws IOException {
+        BufferedReader r = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        PrintWriter w = new PrintWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), false);
+        String line;
+        while ((line = r.readLine()) != null) {
+            if (line.startsWith("citadels ")) {
+                w.print("ready echo\n");
+            } else if (line.startsWith("req ")) {
+                int sp = line.indexOf(' ', 4);
+                if (sp > 0) w.print("res " + line.substring(4, sp) + " 0\n");
+            } else if (line.equals("quit")) {
+                break;
+            }
+            if (!r.ready()) w.flush();                   // nothing more queued: send the batch
+        }
+        w.flush();
+    }
+
+    public static void main(String[] args) throws IOException {
+        serve(System.in, System.out);
+    }
+}
@@ -1,21 +1,37 @@
 package citadels.cli;
 
+import citadels.metrics.LatencyHistogram;
+import citadels.metrics.Metrics;
+import citadels.metrics.PersistenceEvent;
 import citadels.model.card.*;
+import citadels.model.game.Action;
 import citadels.model.game.CitadelsGame;
+import citadels.model.game.MoveGenerator;
+import citadels.model.player.HumanPlayer;
 import citadels.model.player.Player;
+import citadels.sim.ResultQuery;
+import citadels.sim.ResultWriter;
+import citadels.sim.WinOracle;
 import org.json.simple.JSONObject; // used for saving and loading
 import org.json.simple.parser.JSONParser; // used for loading
 
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.List;
+import java.util.function.Supplier;
 
 /**
  * This interface provides low-level I/O operations and a method for handling human turns.
  */
 public interface CommandHandler {
 
+    /** Most continuations one {@code whatif} plays, and the most where files are not allowed */
+    int MAX_CONTINUATIONS = 200_000, SHARED_MAX_CONTINUATIONS = 10_000;
+    /** Longest {@code hint}, in ms, and the longest where files are not allowed */
+    long MAX_HINT_MILLIS = 60_000, SHARED_MAX_HINT_MILLIS = 5_000;
+
     /* low-level I/O */
 
     /**
@@ -24,83 +40,238 @@ public interface CommandHandler {
      */
     void println(String msg);
 
+    /**
+     * Prints a message that is only built if someone reads it. The engine
+     * narrates through this, so a quiet handler costs no string building.
+     * @param msg supplies the message
+     */
+    default void println(Supplier<String> msg) { println(msg.get()); }
+
+    /**
+     * Sends output buffered so far. Called at prompt boundaries and when the
+     * game ends; handlers that write through ignore it.
+     */
+    default void flush() { }
+
     /**
      * Prompts the user for input
      * @param msg prompt message
      * @return an output string
      */
     String prompt(String msg);
-    
+
+    /**
+     * Sends the following output to one seat only (hands, prompts, replies
+     * to that seat's commands); -1 sends it to everyone again. Handlers with
+     * a single reader ignore it.
+     * @param seat the seat, or -1 for everyone
+     */
+    default void setAudience(int seat) { }
+
+    /* session state (handlers that host a game keep these) */
+
+    /**
+     * Attaches the game this handler serves.
+     * @param g the game
+     */
+    default void attachGame(CitadelsGame g) { }
+
     /**
-     * Handles the human player's turn
+     * Returns the game this handler serves.
+     * @return the game, or null if none is attached
+     */
+    default CitadelsGame getGame() { return null; }
+
+    /**
+     * Returns whether AI hands are shown after their turns.
+     * @return the debug mode
+     */
+    default boolean isDebug() { return false; }
+
+    /**
+     * Toggles the debug mode on and off.
+     */
+    default void toggleDebug() { println("Debug mode is not available here."); }
+
+    /**
+     * Returns whether players may save games to files through this handler.
+     * @return true if {@code save} is allowed
+     */
+    default boolean allowsFiles() { return true; }
+
+    /**
+     * Returns how many threads {@code whatif} and {@code hint} may keep busy.
+     * @return worker threads per analysis
+     */
+    default int analysisThreads() { return Runtime.getRuntime().availableProcessors(); }
+
+    /**
+     * Opens a saved game for the {@code load} command.
+     * @param file the file name
+     * @return the loaded game, or null if it could not be loaded
+     */
+    default CitadelsGame openSavedGame(String file) {
+        println("Loading is not available here.");
+        return null;
+    }
+
+    /**
+     * Handles the {@code quit} command: offers to save, then exits.
+     * @param game the game being played
+     */
+    default void quitGame(CitadelsGame game) {
+        println("Do you want to save the game before quitting? (y/n)");
+        String save = prompt(""); //prompt user for save confirmation
+        if (save.equalsIgnoreCase("y")) {
+            println("What would you like to name your save file?");
+            String fileName = prompt("");
+            println("Saving game...");
+            saveGame(game, fileName+".json");
+        }
+        flush();
+        System.exit(0);
+    }
+
+    /**
+     * Handles the human player's turn, blocking until they end it.
+     * The engine itself feeds {@link #handleTurnCommand} one line at a time.
      * @param human human player
      */
     default void humanTurnLoop(Player human) {
-        ConsoleHandler io   = (ConsoleHandler) this; //cast to ConsoleHandler
-        CitadelsGame game = io.getGame();
-        boolean collected_resources = false; // used to flag 2 gold collection by player 1
-        boolean initial_choice_prompt_given = false; //used to flag initial choice prompt
-
-        loop: // labeling the loop (easy to break out of)
-        while(true) {
-            Command cmd = CommandParser.parse(prompt("> ")); 
-
-            //if the initial choice prompt is not given, give it
-            if (!initial_choice_prompt_given) {
-                initial_choice_prompt_given = true;
-            }
+        CitadelsGame game = getGame();
+        while (true) {
+            String line = prompt("> ");
+            LatencyHistogram h = CommandLatency.of(line);
+            long t0 = System.nanoTime();
+            boolean ended = false;
+            if (game.isAwaitingDrawChoice()) game.resolveDraw(line);
+            else ended = handleTurnCommand(game, human, line);
+            h.stop(t0);
+            if (ended) return;
+        }
+    }
 
-            switch (cmd.keyword()) { //outputs based on different commands by human player
-                case "save":
-                    if (cmd.args().isEmpty()) {
-                        println("save <file_name>");
-                        break;
-                    }
-                    saveGame(game, cmd.arg(0, ""));
+    /**
+     * Handles one command typed by the human player during their turn
+     * @param game the game
+     * @param human human player
+     * @param line the command line
+     * @return true if the command ended the turn
+     */
+    default boolean handleTurnCommand(CitadelsGame game, Player human, String line) {
+        Command cmd = CommandParser.parse(line);
+        // used to flag 2 gold collection / card draw by the player this turn
+        boolean collected_resources = (game.getTurnFlags() & MoveGenerator.RESOURCES_TAKEN) != 0;
+
+        switch (cmd.keyword()) { //outputs based on different commands by human player
+            case "save":
+                if (!allowsFiles()) {
+                    println("Saving is not available here.");
                     break;
+                }
+                if (cmd.args().isEmpty()) {
+                    println("save <file_name>");
+                    break;
+                }
+                saveGame(game, cmd.arg(0, ""));
+                break;
 
-                case "load":
-                    if (cmd.args().isEmpty()) {
-                        println("load <file_name>");
-                        break;
-                    }
-                    CitadelsGame newG = loadGame(cmd.arg(0, ""), io);
-                    if (newG != null) io.attachGame(newG);
+            case "load":
+                if (cmd.args().isEmpty()) {
+                    println("load <file_name>");
                     break;
+                }
+                CitadelsGame newG = openSavedGame(cmd.arg(0, ""));
+                if (newG != null) attachGame(newG);
+                break;
 
-                case "quit":
-                    println("Do you want to save the game before quitting? (y/n)");
-                    String save = prompt(""); //prompt user for save confirmation
-                    if (save.equalsIgnoreCase("y")) {
-                        println("What would you like to name your save file?");
-                        String fileName = prompt("");
-                        println("Saving game...");
-                        saveGame(game, fileName+".json");
-                    }
-                    System.exit(0);
+            case "quit":
+                quitGame(game);
+                return true;
+
+            case "stats":
+                printStats();
+                break;
+
+            case "latency":
+                printLatency();
+                break;
+
+            case "query":
+                if (!allowsFiles()) {
+                    println("Queries are not available here.");
                     break;
+                }
+                queryResults(String.join(" ", cmd.args()));
+                break;
 
-                case "end":
-                    println("You ended your turn.");
-                    break loop;
-
-                case "hand": //display player's gold and cards in hand
-                    println("You have " + human.getGold() + " gold. Cards in hand:");
-                    List<DistrictCard> hand = human.getHand();
-                    for (int i = 0; i < hand.size(); i++) {
-                        DistrictCard card = hand.get(i);
-                        println((i + 1) + ". " + card.getName() + " (" +
-                        card.getColor().toString().toLowerCase() + "), cost: " + card.getCost());
-                    }
+            case "whatif":
+                whatIf(game, human, cmd.args());
+                break;
+
+            case "hint":
+                hint(game, human, cmd.arg(0, ""));
+                break;
+
+            case "think":
+                think(game, cmd.arg(0, ""));
+                break;
+
+            case "end":
+                if (!game.apply(Action.end(human.getId()))) break;
+                println("You ended your turn.");
+                return true;
+
+            case "hand": //display player's gold and cards in hand
+                println("You have " + human.getGold() + " gold. Cards in hand:");
+                List<DistrictCard> hand = human.getHand();
+                for (int i = 0; i < hand.size(); i++) {
+                    DistrictCard card = hand.get(i);
+                    println((i + 1) + ". " + card.getName() + " (" +
+                    card.getColor().toString().toLowerCase() + "), cost: " + card.getCost());
+                }
+                break;
+
+            case "gold": {
+                //first time collection command in a round
+                if (!collected_resources) {game.apply(Action.gold(human.getId())); break;}
+
+                //rest part is to check current gold count after user either collected gold or drew 2 district cards
+                int seat = cmd.args().isEmpty()
+                    ? human.getId()                    // default to current player
+                    : parseInt(cmd.arg(0, "1"), -1) - 1;  // 1-based → 0-based; not a number is invalid
+
+                //handle index out of bounds
+                if (seat < 0 || seat >= game.getPlayers().size()) {
+                    println("Invalid player number. Enter a number between 1 and " + game.getPlayers().size() + ".");
                     break;
+                }
 
-                case "gold": {
-                    //first time collection command in a round
-                    if (!collected_resources) {game.collectGold(human); collected_resources = true; break;}
+                Player target = game.getPlayers().get(seat);
+                println("Player " + (seat + 1) + " has " + target.getGold() + " gold.");
+                break;
+            }
+
+            case "build":
+                if (cmd.args().isEmpty()) {
+                    println("build <index>"); //error message for no args
+                    break;
+                }
+                int idx = parseInt(cmd.arg(0, "-1"), -1) - 1;
+                if (idx < 0 || idx >= human.getHand().size()) {
+                    println("Invalid index. Enter a number between 1 and " + human.getHand().size() + ".");
+                    break;
+                }
+                game.apply(Action.build(human.getId(), idx));
+                break;
 
-                    //rest part is to check current gold count after user either collected gold or drew 2 district cards
+            //optional [p] parameter for city/citadel/list
+            case "city":
+            case "citadel":
+            case "list": { //either city , citadel or list was entered
+                try { //handle index out of bounds
                     int seat = cmd.args().isEmpty()
-                        ? human.getId()                    // default to current player
+                        ? 0                              // default to player 1
                         : Integer.parseInt(cmd.arg(0, "1")) - 1;  // 1-based → 0-based
 
                     //handle index out of bounds
@@ -109,120 +280,53 @@ public interface CommandHandler {
                         break;
                     }
 
-                    Player target = game.getPlayers().get(seat);
-                    println("Player " + (seat + 1) + " has " + target.getGold() + " gold.");
-                    break;
-                }
-
-                case "build":
-                    if (cmd.args().isEmpty()) {
-                        println("build <index>"); //error message for no args
-                        break;
-                    }
-                    try {
-                        int idx = Integer.parseInt(cmd.arg(0, "-1")) - 1;
-                        game.buildDistrict(human, human.getHand().get(idx));
-                    } catch (Exception e) {
-                        println("Invalid index. Enter a number between 1 and " + human.getHand().size() + ".");
-                    }
-                    break;
+                    Player target = game.getPlayers().get(seat);          // assume sane input
+                    List<DistrictCard> city = target.getCity();  
 
-                //optional [p] parameter for city/citadel/list
-                case "city":
-                case "citadel":
-                case "list": { //either city , citadel or list was entered
-                    try { //handle index out of bounds
-                        int seat = cmd.args().isEmpty()
-                            ? 0                              // default to player 1
-                            : Integer.parseInt(cmd.arg(0, "1")) - 1;  // 1-based → 0-based
-
-                        //handle index out of bounds
-                        if (seat < 0 || seat >= game.getPlayers().size()) {
-                            println("Invalid player number. Enter a number between 1 and " + game.getPlayers().size() + ".");
-                            break;
-                        }
-
-                        Player target = game.getPlayers().get(seat);          // assume sane input
-                        List<DistrictCard> city = target.getCity();  
-
-                        println("Player " + (seat + 1) + " city:");
-                        if (city.isEmpty()) {
-                            println("no districts built yet!");
-                        } else {
-                            for (DistrictCard d : city) println("  " + d.toString());
-                        }
-                    } catch (NumberFormatException e) {
-                        println("Invalid player number. Enter a number between 1 and " + game.getPlayers().size() + ".");
+                    println("Player " + (seat + 1) + " city:");
+                    if (city.isEmpty()) {
+                        println("no districts built yet!");
+                    } else {
+                        for (DistrictCard d : city) println("  " + d.toString());
                     }
-                    break;
+                } catch (NumberFormatException e) {
+                    println("Invalid player number. Enter a number between 1 and " + game.getPlayers().size() + ".");
                 }
+                break;
+            }
 
-                case "all": { //show everyone's gold, no. of cards  and built districts
-                    List<Player> players = game.getPlayers();
-                    
-                    for (Player p : players) {
-                        StringBuilder sb = new StringBuilder();
-                        sb.append("Player ").append(p.getId() + 1);
-                        
-                        // Add "(you)" for the human player
-                        if (p.getId() == 0) {  // Human player is always player 0
-                            sb.append(" (you)");
-                        }
-                        
-                        sb.append(": cards=").append(p.getHand().size());
-                        sb.append(" gold=").append(p.getGold());
-                        sb.append(" city=");
-                        List<DistrictCard> city = p.getCity();
-                        if (city.isEmpty()) {
-                            sb.append("");
-                        } else {
-                            for (int i = 0; i < city.size(); i++) {
-                                DistrictCard card = city.get(i);
-                                sb.append(card.getName())
-                                  .append(" [")
-                                  .append(card.getColor().toString().toLowerCase())
-                                  .append(card.getCost())
-                                  .append("]");
-                                if (i < city.size() - 1) {
-                                    sb.append(", ");
-                                }
-                            }
-                        }
-                        
-                        println(sb.toString());
-                    }
-                    break;
-                }
+            case "all": //show everyone's gold, no. of cards  and built districts
+                game.printAll(human.getId());
+                break;
 
-                case "action":
-                    handleActionCommand(game, human, cmd.args());
-                    break;
+            case "action":
+                handleActionCommand(game, human, cmd.args());
+                break;
 
-                case "info":
-                    if (cmd.args().isEmpty()) {
-                        println("info <name OR index>");
-                        break;
-                    }
-                    infoCommand(game, human, cmd.arg(0, ""));
+            case "info":
+                if (cmd.args().isEmpty()) {
+                    println("info <name OR index>");
                     break;
+                }
+                infoCommand(game, human, cmd.arg(0, ""));
+                break;
 
-                case "cards":
-                    if (collected_resources) { println("You already gathered resources this round!"); break;}
-                    game.drawTwoChoose(human);
-                    collected_resources = true;
-                    break;
+            case "cards":
+                if (collected_resources) { println("You already gathered resources this round!"); break;}
+                game.apply(Action.cards(human.getId()));
+                break;
 
-                case "debug":
-                    io.toggleDebug();
-                    println("Debug " + (io.isDebug() ? "enabled." : "disabled."));
-                    break;
+            case "debug":
+                toggleDebug();
+                println("Debug " + (isDebug() ? "enabled." : "disabled."));
+                break;
 
-                case "help":
-                default:
-                    printHelp();
-                    break;
-            }
+            case "help":
+            default:
+                printHelp();
+                break;
         }
+        return false;
     }
 
     /**
@@ -242,24 +346,21 @@ public interface CommandHandler {
             return;
         }
 
+        int me = human.getId();
         switch (rank) { //switch-case to handle the action command for specific character card
             case 1: // Assassin (enters "kill <2-8>")
                 if (args.size() == 2 && "kill".equalsIgnoreCase(args.get(0))) {
                     int r = parseRank(args.get(1));
-                    if (r >= 2 && r <= 8) {
-                        game.killCharacter(r);
+                    if (game.apply(Action.kill(me, clampRank(r))))
                         println("You chose to kill the " + game.rankName(r) + ".");
-                    } else println("Rank must be 2-8.");
                 } else println("Format: action kill <2-8>");
                 break;
 
             case 2: // Thief
                 if (args.size() == 2 && "steal".equalsIgnoreCase(args.get(0))) {
                     int r = parseRank(args.get(1));
-                    if (r >= 3 && r <= 8) {
-                        game.setRobTarget(human, r);
+                    if (game.apply(Action.steal(me, clampRank(r))))
                         println("You chose to steal from the " + game.rankName(r) + ".");
-                    } else println("Rank must be 3-8.");
                 } else println("Format: action steal <3-8>");
                 break;
 
@@ -267,27 +368,13 @@ public interface CommandHandler {
                 String sub = args.get(0).toLowerCase();
                 if ("swap".equals(sub) && args.size() == 2) {
                     int seat = parseInt(args.get(1), -1) - 1;
-                    if (seat >= 0 && seat < game.getPlayers().size()
-                            && seat != human.getId()) {
-                        game.swapHands(human, game.getPlayers().get(seat));
+                    if (seat < 0 || seat >= game.getPlayers().size()) println("Invalid player number.");
+                    else if (game.apply(Action.swap(me, seat)))
                         println("Swapped hands with player " + (seat + 1) + ".");
-                    } else println("Invalid player number.");
                 } else if ("redraw".equals(sub) && args.size() == 2) {
-                    String[] parts = args.get(1).split(",");
-                    List<Integer> indexes = new java.util.ArrayList<>();
-                    for (String s : parts)
-                        indexes.add(parseInt(s.trim(), -1) - 1);
-
-                    int count = 0;
-                    for (int i = indexes.size() - 1; i >= 0; i--) {
-                        int idx = indexes.get(i);
-                        if (idx >= 0 && idx < human.getHand().size()) {
-                            human.getHand().remove(idx);
-                            count++;
-                        }
-                    }
-                    game.drawCards(human, count);
-                    println("Redrew " + count + " card(s).");
+                    int mask = HumanPlayer.parseHandMask(args.get(1), human.getHand().size());
+                    if (game.apply(Action.redraw(me, mask)))
+                        println("Redrew " + Integer.bitCount(mask) + " card(s).");
                 } else {
                     println("swap <player#> OR redraw <idx,idx,...>");
                 }
@@ -297,10 +384,11 @@ public interface CommandHandler {
                 if (args.size() == 3 && "destroy".equalsIgnoreCase(args.get(0))) {
                     int seat = parseInt(args.get(1), -1) - 1;
                     int idx  = parseInt(args.get(2), -1) - 1;
-                    if (seat >= 0 && seat < game.getPlayers().size()) {
-                        Player victim = game.getPlayers().get(seat);
-                        game.destroyDistrict(human, victim, idx);
-                    } else println("Invalid player number.");
+                    if (seat < 0 || seat >= game.getPlayers().size()) { println("Invalid player number."); break; }
+                    Player victim = game.getPlayers().get(seat);
+                    if (idx < 0 || idx >= victim.getCity().size())
+                        println("Invalid index. Enter a number between 1 and " + victim.getCity().size() + ".");
+                    else game.apply(Action.destroy(me, seat, idx));
                 } else println("Format: action destroy <player#> <district#>");
                 break;
 
@@ -328,33 +416,170 @@ public interface CommandHandler {
         }
     }
 
-    static void printHelp() {
-        System.out.println("--------------HELP--------------");
-        System.out.println("info : show information about a character or building");
-        System.out.println("t : processes turns");
-        System.out.println("all : shows all current game info");
-        System.out.println("citadel/list/city : shows districts built by a player");
-        System.out.println("hand : shows cards in hand");
-        System.out.println("gold [p] : shows gold of a player");
-        System.out.println("build <place in hand> : Builds a building into your city");
-        System.out.println("action : Gives info about your special action and how to perform it");
-        System.out.println("end : Ends your turn");
-        System.out.println("save <file_name> : Saves the game to a file in JSON format in 'saved games' folder");
-        System.out.println("load <file_name> : Loads the game from a file in JSON format in 'saved games' folder");
-        System.out.println("debug : Toggles debug mode");
-        System.out.println("quit : Quits the game");
-        System.out.println("--------------------------------");
+    /**
+     * Prints the list of commands
+     */
+    default void printHelp() {
+        println("--------------HELP--------------");
+        println("info : show information about a character or building");
+        println("t : processes turns");
+        println("all : shows all current game info");
+        println("citadel/list/city : shows districts built by a player");
+        println("hand : shows cards in hand");
+        println("gold [p] : shows gold of a player");
+        println("build <place in hand> : Builds a building into your city");
+        println("action : Gives info about your special action and how to perform it");
+        println("end : Ends your turn");
+        println("save <file_name> : Saves the game to a file in JSON format in 'saved games' folder");
+        println("load <file_name> : Loads the game from a file in JSON format in 'saved games' folder");
+        println("debug : Toggles debug mode");
+        println("stats : shows engine throughput metrics");
+        println("latency : shows command response times (p50/p99/p99.9/max)");
+        println("query <agg> [col] [where col=value and ...] [by col] : queries stored campaign results");
+        println("whatif [file] [n] : estimates everyone's chance to win by playing the game (or a saved one) out n times");
+        println("hint [ms] : ranks your possible moves by how often you win after them");
+        println("think [ms] : shows or sets how long the AI players may think per decision (0: heuristics only)");
+        println("quit : Quits the game");
+        println("--------------------------------");
     }
 
     static int parseRank(String s) {
         return parseInt(s, -1);
     }
 
+    /* out-of-range ranks become 0, which every rank check rejects */
+    static int clampRank(int r) {
+        return r < 0 || r > 0xFF ? 0 : r;
+    }
+
     static int parseInt(String s, int def) {
         try { return Integer.parseInt(s); } catch (Exception e) { return def; }
     }
 
-    static void infoCommand(CitadelsGame g, Player h, String token) {
+    /**
+     * Prints the engine metrics, one per line
+     */
+    default void printStats() {
+        for (String line : Metrics.report()) println(line);
+    }
+
+    /**
+     * Prints the response time percentiles of each command typed so far
+     */
+    default void printLatency() {
+        for (String line : Metrics.latencyReport()) println(line);
+    }
+
+    /**
+     * Runs a query over the campaign results in the "results" folder
+     * @param text the query, e.g. {@code winrate where seat=1 and first=Architect and seats=5}
+     */
+    default void queryResults(String text) {
+        try {
+            for (String line : ResultQuery.parse(text).report(Paths.get(ResultWriter.DEFAULT_DIR))) println(line);
+        } catch (IllegalArgumentException e) {
+            println(e.getMessage());
+        } catch (IOException e) {
+            println("Query failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Estimates each seat's chance to win and final score, from what this
+     * player can know, by playing the game out many times
+     * @param game the game being played
+     * @param human the player asking
+     * @param args an optional saved game to analyse instead, then an optional number of
+     *             continuations, at most {@link #MAX_CONTINUATIONS} (fewer where files are not allowed)
+     */
+    default void whatIf(CitadelsGame game, Player human, List<String> args) {
+        CitadelsGame target = game;
+        int i = 0;
+        if (!args.isEmpty() && parseInt(args.get(0), -1) < 0) {
+            if (!allowsFiles()) {
+                println("Saved games cannot be analysed here.");
+                return;
+            }
+            try {
+                target = WinOracle.load(Paths.get(args.get(0)));
+            } catch (IOException e) {
+                println("Could not load " + args.get(0) + ": " + e.getMessage());
+                return;
+            }
+            i = 1;
+        }
+        int n = args.size() > i ? parseInt(args.get(i), -1) : WinOracle.DEFAULT_CONTINUATIONS;
+        if (n <= 0) {
+            println("whatif [file] [continuations]");
+            return;
+        }
+        int most = allowsFiles() ? MAX_CONTINUATIONS : SHARED_MAX_CONTINUATIONS;
+        if (n > most) {
+            println("Playing " + most + " continuations, the most allowed here.");
+            n = most;
+        }
+        try {
+            WinOracle.Estimate e = new WinOracle(analysisThreads()).estimate(target, human.getId(), n, 0);
+            for (String line : e.report(human.getId())) println(line);
+        } catch (IllegalArgumentException e) {
+            println(e.getMessage());
+        }
+    }
+
+    /**
+     * Ranks the moves open to the player by how often they win after each
+     * @param game the game being played
+     * @param human the player asking
+     * @param millis time to spend, empty for the {@code citadels.hint.millis} default (2000),
+     *               at most {@link #MAX_HINT_MILLIS} (less where files are not allowed)
+     */
+    default void hint(CitadelsGame game, Player human, String millis) {
+        long budget = millis.isEmpty() ? Long.getLong("citadels.hint.millis", 2000) : parseInt(millis, -1);
+        if (budget <= 0) {
+            println("hint [milliseconds]");
+            return;
+        }
+        long most = allowsFiles() ? MAX_HINT_MILLIS : SHARED_MAX_HINT_MILLIS;
+        if (budget > most) {
+            println("Thinking for " + most + " ms, the most allowed here.");
+            budget = most;
+        }
+        if (game.getSeatToMove() != human.getId()) {
+            println("It is not your turn.");
+            return;
+        }
+        List<WinOracle.Choice> ranked = new WinOracle(analysisThreads()).rankMoves(game, budget);
+        if (ranked.isEmpty()) {
+            println("No moves to rank.");
+            return;
+        }
+        for (int i = 0; i < Math.min(5, ranked.size()); i++) println((i + 1) + ". " + ranked.get(i));
+    }
+
+    /**
+     * Shows or sets the AI think budget of the game
+     * @param game the game being played
+     * @param millis new budget in milliseconds, empty to show it
+     */
+    default void think(CitadelsGame game, String millis) {
+        if (!millis.isEmpty()) {
+            int ms = parseInt(millis, -1);
+            if (ms < 0) {
+                println("think [milliseconds]");
+                return;
+            }
+            game.setThinkMillis(ms);
+        }
+        println("AI players think up to " + game.getThinkMillis() + " ms per decision.");
+    }
+
+    /**
+     * Describes a hand card (by index or name) or a character (by name)
+     * @param g the game
+     * @param h the player asking
+     * @param token hand index, card name or character name
+     */
+    default void infoCommand(CitadelsGame g, Player h, String token) {
         try {
             int idx = Integer.parseInt(token) - 1;
             DistrictCard d = h.getHand().get(idx);
@@ -364,7 +589,7 @@ public interface CommandHandler {
 
         for (int r = 1; r <= 8; r++)
             if (token.equalsIgnoreCase(g.rankName(r))) {
-                System.out.println(actionHelp(g.findCharacterCard(r)));
+                println(actionHelp(g.findCharacterCard(r)));
                 return;
             }
 
@@ -373,11 +598,15 @@ public interface CommandHandler {
                 printDistrictInfo(d); return;
             }
 
-        System.out.println("No such card or character.");
+        println("No such card or character.");
     }
 
-    static void printDistrictInfo(DistrictCard d) {
-        System.out.println(d +
+    /**
+     * Prints a district card with its special text, if any
+     * @param d the card
+     */
+    default void printDistrictInfo(DistrictCard d) {
+        println(d +
                 (d.getSpecialText() == null ? ""
                         : " - " + d.getSpecialText()));
     }
@@ -387,13 +616,26 @@ public interface CommandHandler {
      * @param g the game to save
      * @param file the file to save the game to
      */
-    static void saveGame(CitadelsGame g, String file) {
+    default void saveGame(CitadelsGame g, String file) {
+        long t0 = System.nanoTime();
+        PersistenceEvent ev = new PersistenceEvent();
+        ev.begin();
         try (FileWriter fw = new FileWriter(file + ".json")) {
             JSONObject js = citadels.model.game.GameState.serialise(g); 
             js.writeJSONString(fw); 
-            System.out.println("Game saved successfully as " + file);
+            fw.flush();
+            Metrics.SAVE.stop(t0);
+            ev.succeeded = true;
+            println("Game saved successfully as " + file);
         } catch (IOException e) { //if the file is not found or cannot be written to
-            System.out.println("Save failed: " + e.getMessage());
+            println("Save failed: " + e.getMessage());
+        } finally {
+            if (ev.shouldCommit()) {
+                ev.about(g, null);
+                ev.operation = "save";
+                ev.file = file + ".json";
+                ev.commit();
+            }
         }
     }
 
@@ -404,13 +646,29 @@ public interface CommandHandler {
      * @return the loaded game
      */
     static CitadelsGame loadGame(String file, ConsoleHandler io) {
+        long t0 = System.nanoTime();
+        PersistenceEvent ev = new PersistenceEvent();
+        ev.begin();
         try (FileReader fr = new FileReader(file)) {
             JSONObject js = (JSONObject) new JSONParser().parse(fr);
             CitadelsGame g = citadels.model.game.GameState.deserialise(js, io, io.cardRepo());
-            System.out.println("Game loaded.");
+            Metrics.LOAD.stop(t0);
+            if (ev.shouldCommit()) {
+                ev.about(g, null);
+                ev.operation = "load";
+                ev.file = file;
+                ev.succeeded = true;
+                ev.commit();
+            }
+            io.println("Game loaded.");
             return g;
         } catch (Exception e) { //if the file is not found or cannot be read
-            System.out.println("Load failed: " + e.getMessage() + "\n\nPlease enter a valid file name.");
+            if (ev.shouldCommit()) {
+                ev.operation = "load";
+                ev.file = file;
+                ev.commit();
+            }
+            io.println("Load failed: " + e.getMessage() + "\n\nPlease enter a valid file name.");
             return loadGame(io.askString(), io);
         }
     }
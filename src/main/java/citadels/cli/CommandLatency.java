@@ -0,0 +1,52 @@
+package citadels.cli;
+
+import citadels.metrics.LatencyHistogram;
+import citadels.metrics.Metrics;
+
+/**
+ * One latency histogram per command keyword, named {@code cmd.<keyword>}.
+ * Lines that are not a known command share {@code cmd.other}, so typing
+ * nonsense cannot grow the set.
+ */
+public final class CommandLatency {
+
+    private CommandLatency() { }
+
+    private static final String[] KEYWORDS = {
+        "t", "hand", "all", "build", "action", "info", "save", "load", "gold", "cards",
+        "city", "citadel", "list", "end", "help", "debug", "stats", "latency", "query",
+        "whatif", "hint", "think", "quit"
+    };
+    private static final LatencyHistogram[] BY_KEYWORD = new LatencyHistogram[KEYWORDS.length];
+
+    /** Character picks in the selection phase */
+    public static final LatencyHistogram PICK  = Metrics.latency("cmd.pick");
+    /** Anything else: draw choices, typos */
+    public static final LatencyHistogram OTHER = Metrics.latency("cmd.other");
+
+    static {
+        for (int i = 0; i < KEYWORDS.length; i++) {
+            String k = KEYWORDS[i];
+            boolean city = k.equals("citadel") || k.equals("list"); // aliases of "city"
+            BY_KEYWORD[i] = Metrics.latency("cmd." + (city ? "city" : k));
+        }
+    }
+
+    /**
+     * Finds the histogram for the first word of a command line, ignoring
+     * case, without allocating.
+     * @param line the line as typed
+     * @return the keyword's histogram, or {@link #OTHER}
+     */
+    public static LatencyHistogram of(String line) {
+        int start = 0, end = line.length();
+        while (start < end && Character.isWhitespace(line.charAt(start))) start++;
+        int stop = start;
+        while (stop < end && !Character.isWhitespace(line.charAt(stop))) stop++;
+        int len = stop - start;
+        for (int i = 0; i < KEYWORDS.length; i++)
+            if (KEYWORDS[i].length() == len && line.regionMatches(true, start, KEYWORDS[i], 0, len))
+                return BY_KEYWORD[i];
+        return OTHER;
+    }
+}
@@ -2,15 +2,24 @@ package citadels.cli;
 
 import citadels.model.game.CitadelsGame;
 import citadels.util.CardRepoSingleton;
+
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
 import java.util.Scanner;
 
 /**
  * Immutable class that implements the CommandHandler interface.
  * Handles the console input and output.
+ *
+ * <p>Output is buffered and written in one go whenever the player is
+ * asked for input (or {@link #flush} is called), instead of one
+ * synchronised, flushed {@code System.out} write per line.</p>
  */
 public final class ConsoleHandler implements CommandHandler {
 
     private final Scanner in = new Scanner(System.in);
+    private final PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16));
     private CitadelsGame game;
     private boolean debug = false;
 
@@ -18,17 +27,20 @@ public final class ConsoleHandler implements CommandHandler {
      * Attaches the game to the console handler.
      * @param g the game to attach
      */
+    @Override
     public void attachGame(CitadelsGame g) { this.game = g; }
 
     /**
      * Returns the game attached to the console handler.
      * @return the game attached to the console handler
      */
+    @Override
     public CitadelsGame getGame() { return game; }
 
     /**
      * Toggles the debug mode on and off.
      */
+    @Override
     public void toggleDebug()  { 
         debug = !debug;
         if (!debug) println("Disabled debug mode. You will no longer see all player's hands.");
@@ -57,8 +69,17 @@ public final class ConsoleHandler implements CommandHandler {
      * Returns the debug mode.
      * @return the debug mode
      */
+    @Override
     public boolean isDebug()   { return debug;   }
 
+    /**
+     * Loads a saved game, asking again for a file name until one loads.
+     * @param file the file name
+     * @return the loaded game
+     */
+    @Override
+    public CitadelsGame openSavedGame(String file) { return CommandHandler.loadGame(file, this); }
+
 
     /**
      * Returns the card repository singleton.
@@ -71,14 +92,20 @@ public final class ConsoleHandler implements CommandHandler {
      * Prints a message to the console.
      * @param m the message to print
      */
-    public void println(String m){ System.out.println(m); }
+    public void println(String m){ out.println(m); }
 
     /**
      * Prompts the user for input.
      * @param m the prompt message
      * @return the user's input
      */
-    public String prompt(String m){ System.out.print(m); return in.nextLine(); }
+    public String prompt(String m){ out.print(m); out.flush(); return in.nextLine(); }
+
+    /**
+     * Writes the buffered output to the console.
+     */
+    @Override
+    public void flush() { out.flush(); }
 
     /**
      * Read an entire line (no extra prompt).
@@ -86,6 +113,7 @@ public final class ConsoleHandler implements CommandHandler {
      * @return the user's input
      */
     public String askString() {
+        out.flush();
         return in.nextLine();
     }
 
@@ -0,0 +1,35 @@
+package citadels.cli;
+
+import java.util.function.Supplier;
+
+/**
+ * Handler for headless games (simulations, benchmarks): all output is
+ * dropped, and lazy messages are never built.
+ *
+ * <p>Only AI seats may play through it, since nobody can answer a prompt.</p>
+ */
+public final class QuietHandler implements CommandHandler {
+
+    /** The shared instance; the handler has no state */
+    public static final QuietHandler INSTANCE = new QuietHandler();
+
+    private QuietHandler() { }
+
+    @Override
+    public void println(String msg) { }
+
+    @Override
+    public void println(Supplier<String> msg) { }
+
+    /**
+     * Headless games have nobody to ask.
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public String prompt(String msg) {
+        throw new UnsupportedOperationException("a quiet game cannot ask for input");
+    }
+
+    @Override
+    public boolean allowsFiles() { return false; }
+}
@@ -0,0 +1,17 @@
+package citadels.event;
+
+/**
+ * Receives events on its own thread, in publication order.
+ */
+@FunctionalInterface
+public interface EventConsumer {
+
+    /**
+     * Called for every event after the consumer was attached.
+     * @param e the event; the slot is reused once this returns
+     * @param sequence position of the event in the ring
+     * @param endOfBatch true for the last event currently available, a good
+     *                   moment to flush anything buffered
+     */
+    void onEvent(GameEvent e, long sequence, boolean endOfBatch);
+}
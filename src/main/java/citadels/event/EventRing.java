@@ -0,0 +1,159 @@
+package citadels.event;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Single-producer ring buffer of {@link GameEvent}s with any number of
+ * consumers, each on its own thread (the Disruptor pattern).
+ *
+ * <p>The game thread fills a preallocated slot and moves the cursor; it
+ * never locks, allocates or wakes anyone. Consumers poll the cursor and
+ * take every event published since their last look as one batch. The
+ * producer only looks at consumer progress when it is about to lap the
+ * slowest one, and then waits for it, so no event is ever lost.</p>
+ */
+public final class EventRing {
+
+    private static final Sequence[] NONE = new Sequence[0];
+
+    private final GameEvent[] slots;
+    private final int mask;
+    private final Sequence cursor = new Sequence(-1);   // last published
+    private volatile Sequence[] gating = NONE;          // consumer progress
+    private volatile Processor[] processors = new Processor[0];
+    private long next = 0;                               // producer only
+    private long cachedMinGate = -1;                     // producer only
+    private volatile boolean halted;
+
+    /**
+     * @param size number of slots, a power of two
+     */
+    public EventRing(int size) {
+        if (size < 1 || Integer.bitCount(size) != 1)
+            throw new IllegalArgumentException("Size must be a power of two");
+        slots = new GameEvent[size];
+        for (int i = 0; i < size; i++) slots[i] = new GameEvent();
+        mask = size - 1;
+    }
+
+    /**
+     * Publishes one event. Game thread only.
+     * @param type one of the {@link EventType} constants
+     * @param round current round
+     * @param seat seat the event is about, or -1
+     * @param a first argument
+     * @param b second argument
+     */
+    public void publish(int type, int round, int seat, int a, int b) {
+        long seq = next++;
+        long wrap = seq - slots.length;
+        if (wrap > cachedMinGate) waitForSpace(wrap);
+        GameEvent e = slots[(int) seq & mask];
+        e.type = type;
+        e.round = round;
+        e.seat = seat;
+        e.a = a;
+        e.b = b;
+        cursor.lazySet(seq);                             // release: slot writes happen-before
+    }
+
+    private void waitForSpace(long wrap) {
+        long min;
+        while (wrap > (min = minGate())) {
+            if (halted) return;
+            LockSupport.parkNanos(1_000);
+        }
+        cachedMinGate = min;
+    }
+
+    private long minGate() {
+        long min = Long.MAX_VALUE;
+        for (Sequence s : gating) min = Math.min(min, s.get());
+        return min == Long.MAX_VALUE ? cursor.get() : min;
+    }
+
+    /** Sequence of the last published event, -1 before the first */
+    public long cursor() { return cursor.get(); }
+
+    /**
+     * Starts a daemon thread that feeds {@code consumer} every event
+     * published from now on.
+     * @param consumer the consumer
+     * @param name thread name
+     */
+    public synchronized void attach(EventConsumer consumer, String name) {
+        Sequence seq = new Sequence(cursor.get());
+        Processor p = new Processor(consumer, seq);
+        Sequence[] g = java.util.Arrays.copyOf(gating, gating.length + 1);
+        g[g.length - 1] = seq;
+        gating = g;
+        Processor[] ps = java.util.Arrays.copyOf(processors, processors.length + 1);
+        ps[ps.length - 1] = p;
+        processors = ps;
+        Thread t = new Thread(p, name);
+        t.setDaemon(true);
+        p.thread = t;
+        t.start();
+    }
+
+    /**
+     * Lets every consumer finish what is published, then stops their threads.
+     * @param timeoutMillis longest wait per consumer
+     * @return true if all consumers caught up in time
+     */
+    public boolean close(long timeoutMillis) {
+        halted = true;
+        boolean drained = true;
+        for (Processor p : processors) {
+            try {
+                p.thread.join(timeoutMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            drained &= !p.thread.isAlive();
+        }
+        return drained;
+    }
+
+    /** Runs one consumer: waits for the cursor to move, then hands over the batch. */
+    private final class Processor implements Runnable {
+        private final EventConsumer consumer;
+        private final Sequence seq;
+        Thread thread;
+
+        Processor(EventConsumer consumer, Sequence seq) {
+            this.consumer = consumer;
+            this.seq = seq;
+        }
+
+        @Override
+        public void run() {
+            long done = seq.get();
+            int idle = 0;
+            while (true) {
+                long available = cursor.get();
+                if (available > done) {
+                    for (long s = done + 1; s <= available; s++) {
+                        try {
+                            consumer.onEvent(slots[(int) s & mask], s, s == available);
+                        } catch (RuntimeException ex) {
+                            System.err.println("Event consumer failed on " + slots[(int) s & mask] + ": " + ex);
+                        }
+                    }
+                    done = available;
+                    seq.lazySet(done);                   // free the slots for the producer
+                    idle = 0;
+                } else if (halted) {
+                    if (cursor.get() == done) return;    // drained everything before the halt
+                } else if (idle < 100) {
+                    idle++;                              // spin briefly: events come in bursts
+                } else if (idle < 200) {
+                    idle++;
+                    Thread.yield();
+                } else {
+                    LockSupport.parkNanos(100_000);      // the producer never has to wake us
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package citadels.event;
+
+/**
+ * Kinds of {@link GameEvent}, with what {@code seat}, {@code a} and
+ * {@code b} mean for each. Seats are 0-based; -1 means none.
+ */
+public final class EventType {
+
+    private EventType() { }
+
+    /** seat = crowned seat, a = round number */
+    public static final int ROUND_START        = 1;
+    /** seat picked character a (rank) */
+    public static final int CHARACTER_CHOSEN   = 2;
+    /** seat starts its turn as rank a */
+    public static final int TURN_START         = 3;
+    /** seat gained a gold (b = district colour ordinal, or -1 for the basic 2) */
+    public static final int GOLD_COLLECTED     = 4;
+    /** seat took a cards from the deck */
+    public static final int CARDS_DRAWN        = 5;
+    /** seat built district a (card id) for b gold */
+    public static final int DISTRICT_BUILT     = 6;
+    /** district a (card id) destroyed in seat's city for b gold */
+    public static final int DISTRICT_DESTROYED = 7;
+    /** seat (Assassin) kills rank a */
+    public static final int KILL               = 8;
+    /** seat (Thief) took b gold from rank a */
+    public static final int ROB                = 9;
+    /** seat now holds the crown */
+    public static final int CROWN              = 10;
+    /** seat won with a points (b = number of seats tied on top) */
+    public static final int GAME_OVER          = 11;
+
+    private static final String[] NAMES = { "NONE", "ROUND_START", "CHARACTER_CHOSEN", "TURN_START",
+            "GOLD_COLLECTED", "CARDS_DRAWN", "DISTRICT_BUILT", "DISTRICT_DESTROYED", "KILL", "ROB",
+            "CROWN", "GAME_OVER" };
+
+    /** Number of event kinds, plus one for the unused 0 */
+    public static final int COUNT = NAMES.length;
+
+    /**
+     * Name of an event kind, for logs.
+     * @param type the kind
+     * @return its name
+     */
+    public static String name(int type) {
+        return type > 0 && type < NAMES.length ? NAMES[type] : "UNKNOWN(" + type + ")";
+    }
+}
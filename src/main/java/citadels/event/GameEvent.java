@@ -0,0 +1,40 @@
+package citadels.event;
+
+/**
+ * One slot of an {@link EventRing}. Slots are allocated once and reused,
+ * so a consumer must copy what it wants to keep before returning from
+ * {@link EventConsumer#onEvent}.
+ *
+ * <p>Events carry the full truth, hidden information included (who chose
+ * which character); consumers that show them to players must filter.</p>
+ */
+public final class GameEvent {
+
+    int type;
+    int round;
+    int seat;
+    int a;
+    int b;
+
+    GameEvent() { }
+
+    /** Kind of event, one of the {@link EventType} constants */
+    public int type() { return type; }
+
+    /** Round the event happened in */
+    public int round() { return round; }
+
+    /** Seat the event is about, or -1 */
+    public int seat() { return seat; }
+
+    /** First argument; see {@link EventType} */
+    public int a() { return a; }
+
+    /** Second argument; see {@link EventType} */
+    public int b() { return b; }
+
+    @Override
+    public String toString() {
+        return EventType.name(type) + "[round=" + round + ", seat=" + seat + ", a=" + a + ", b=" + b + ']';
+    }
+}
@@ -0,0 +1,22 @@
+package citadels.event;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A position in an {@link EventRing}, padded so that the producer's cursor
+ * and each consumer's progress sit on cache lines of their own.
+ */
+final class Sequence extends AtomicLong {
+
+    private static final long serialVersionUID = 1L;
+
+    @SuppressWarnings("unused")
+    private long p1, p2, p3, p4, p5, p6, p7;   // keeps neighbours off this line
+
+    Sequence(long initial) {
+        super(initial);
+    }
+
+    /** Sum of the padding, so it is never optimised away */
+    long padding() { return p1 + p2 + p3 + p4 + p5 + p6 + p7; }
+}
@@ -0,0 +1,26 @@
+package citadels.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A count that many threads bump at once. Striped, so games on different
+ * threads do not fight over one cache line.
+ */
+public final class Counter {
+
+    private final LongAdder adder = new LongAdder();
+
+    Counter() { }
+
+    /** Adds one */
+    public void inc() { adder.increment(); }
+
+    /**
+     * Adds {@code n}.
+     * @param n amount, may be negative
+     */
+    public void add(long n) { adder.add(n); }
+
+    /** Current total */
+    public long get() { return adder.sum(); }
+}
@@ -0,0 +1,15 @@
+package citadels.metrics;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/** One AI decision (a whole turn, a pick, a target) */
+@Name("citadels.AiDecision")
+@Label("AI Decision")
+@Description("Time an AI player spent in one decision method")
+public final class DecisionEvent extends GameTraceEvent {
+
+    @Label("Decision")
+    public String decision;
+}
@@ -0,0 +1,21 @@
+package citadels.metrics;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/** A district built or destroyed */
+@Name("citadels.District")
+@Label("District")
+@Description("Building or destroying a district")
+public final class DistrictEvent extends GameTraceEvent {
+
+    @Label("Action")
+    public String action;
+
+    @Label("District")
+    public String district;
+
+    @Label("Succeeded")
+    public boolean succeeded;
+}
@@ -0,0 +1,40 @@
+package citadels.metrics;
+
+import static citadels.metrics.Metrics.*;
+
+/**
+ * Reads the engine {@link Metrics} for JMX.
+ */
+public final class EngineStats implements EngineStatsMBean {
+
+    /** Where the bean is registered */
+    public static final String OBJECT_NAME = "citadels:type=Engine";
+
+    /** Rounds per completed game, 0 before the first one ends */
+    static double averageRounds() {
+        long games = GAMES_COMPLETED.get();
+        return games == 0 ? 0 : (double) COMPLETED_ROUNDS.get() / games;
+    }
+
+    @Override public double getRoundsPerSecond()        { return perSecond(ROUNDS); }
+    @Override public double getDecisionsPerSecond()     { return perSecond(DECISIONS); }
+    @Override public long getGamesStarted()             { return GAMES_STARTED.get(); }
+    @Override public long getGamesCompleted()           { return GAMES_COMPLETED.get(); }
+    @Override public long getActiveGames()              { return GAMES_STARTED.get() - GAMES_COMPLETED.get() - GAMES_ABANDONED.get(); }
+    @Override public double getAverageRoundsPerGame()   { return averageRounds(); }
+    @Override public double getMeanSelectionPhaseMillis() { return SELECTION_PHASE.meanMillis(); }
+    @Override public double getMeanTurnPhaseMillis()    { return TURN_PHASE.meanMillis(); }
+    @Override public double getMeanAiTurnMillis()       { return AI_TURN.meanMillis(); }
+    @Override public double getAiDecisionP99Millis()    { return AI_DECISION.percentile(99) / 1e6; }
+    @Override public long getAiSearches()               { return AI_SEARCHES.get(); }
+    @Override public long getAiDeadlineHits()           { return AI_DEADLINE_HITS.get(); }
+    @Override public long getAiFallbacks()              { return AI_FALLBACKS.get(); }
+    @Override public long getAiSpeculations()           { return AI_SPECULATIONS.get(); }
+    @Override public long getAiSpeculationHits()        { return AI_SPECULATION_HITS.get(); }
+    @Override public long getSaveCount()                { return SAVE.count(); }
+    @Override public double getMeanSaveMillis()         { return SAVE.meanMillis(); }
+    @Override public double getMaxSaveMillis()          { return SAVE.maxNanos() / 1e6; }
+    @Override public long getLoadCount()                { return LOAD.count(); }
+    @Override public double getMeanLoadMillis()         { return LOAD.meanMillis(); }
+    @Override public double getMaxLoadMillis()          { return LOAD.maxNanos() / 1e6; }
+}
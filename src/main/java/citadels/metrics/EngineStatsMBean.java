@@ -0,0 +1,50 @@
+package citadels.metrics;
+
+/**
+ * Engine throughput as seen by JMX clients (JConsole, VisualVM, …).
+ * Rates are averages since the metrics started.
+ */
+public interface EngineStatsMBean {
+
+    double getRoundsPerSecond();
+
+    double getDecisionsPerSecond();
+
+    long getGamesStarted();
+
+    long getGamesCompleted();
+
+    long getActiveGames();
+
+    double getAverageRoundsPerGame();
+
+    double getMeanSelectionPhaseMillis();
+
+    double getMeanTurnPhaseMillis();
+
+    double getMeanAiTurnMillis();
+
+    double getAiDecisionP99Millis();
+
+    long getAiSearches();
+
+    long getAiDeadlineHits();
+
+    long getAiFallbacks();
+
+    long getAiSpeculations();
+
+    long getAiSpeculationHits();
+
+    long getSaveCount();
+
+    double getMeanSaveMillis();
+
+    double getMaxSaveMillis();
+
+    long getLoadCount();
+
+    double getMeanLoadMillis();
+
+    double getMaxLoadMillis();
+}
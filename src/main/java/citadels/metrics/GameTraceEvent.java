@@ -0,0 +1,44 @@
+package citadels.metrics;
+
+import citadels.model.game.CitadelsGame;
+import citadels.model.player.Player;
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+
+/**
+ * Common fields of the Citadels Flight Recorder events, so a recording can
+ * be filtered down to one game, round, seat or character.
+ *
+ * <p>Events follow the usual JFR pattern: create, {@code begin()}, do the
+ * work, then {@code commit()}. With recording off the JIT removes the
+ * event object and the calls cost next to nothing.</p>
+ */
+@Category("Citadels")
+public abstract class GameTraceEvent extends Event {
+
+    @Label("Game Id")
+    public long gameId;
+
+    @Label("Round")
+    public int round;
+
+    @Label("Seat")
+    public int seat = -1;
+
+    @Label("Rank")
+    public int rank;
+
+    /**
+     * Fills the common fields; call only when {@code shouldCommit()}.
+     * @param g the game
+     * @param p the player concerned, or null
+     */
+    public final void about(CitadelsGame g, Player p) {
+        gameId = g.getGameId();
+        round = g.getRound();
+        if (p == null) return;
+        seat = p.getId();
+        rank = p.getCharacter() == null ? 0 : p.getCharacter().getRank();
+    }
+}
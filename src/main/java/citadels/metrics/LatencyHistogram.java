@@ -0,0 +1,94 @@
+package citadels.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size histogram of durations in nanoseconds, laid out like
+ * HdrHistogram: each power of two is split into 64 linear sub-buckets, so
+ * any recorded value is known to within 1/64 (about 1.6%).
+ *
+ * <p>Values from 1 ns to about 18 minutes fit in 2,240 counters (18 KB);
+ * longer ones land in the top bucket. Recording is one atomic add plus a
+ * max update and never allocates, so sessions on any number of threads can
+ * share one histogram.</p>
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BITS = 7;                     // 128 exact values below the first split
+    private static final int HALF = 1 << (SUB_BITS - 1);       // 64 sub-buckets per power of two
+    private static final int MAX_SHIFT = 33;                   // top bucket starts near 2^40 ns
+    static final int BUCKETS = (MAX_SHIFT + 1) * HALF + HALF;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    LatencyHistogram() { }
+
+    /**
+     * Records one duration.
+     * @param nanos how long it took; negative values count as 0
+     */
+    public void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        counts.incrementAndGet(index(nanos));
+        total.incrementAndGet();
+        long m;
+        while (nanos > (m = max.get()) && !max.compareAndSet(m, nanos)) { }
+    }
+
+    /**
+     * Records the time since {@code startNanos}.
+     * @param startNanos a {@link System#nanoTime} reading
+     */
+    public void stop(long startNanos) { record(System.nanoTime() - startNanos); }
+
+    static int index(long v) {
+        if (v < 2 * HALF) return (int) v;
+        int shift = 64 - Long.numberOfLeadingZeros(v) - SUB_BITS;
+        if (shift > MAX_SHIFT) return BUCKETS - 1;
+        return shift * HALF + (int) (v >>> shift);             // v >>> shift is in [64, 128)
+    }
+
+    /* largest value that lands in bucket i */
+    static long highestEquivalent(int i) {
+        if (i < 2 * HALF) return i;
+        int shift = i / HALF - 1;
+        long top = i - shift * HALF;
+        return ((top + 1) << shift) - 1;
+    }
+
+    /** Durations recorded */
+    public long count() { return total.get(); }
+
+    /** Longest duration, in nanoseconds */
+    public long maxNanos() { return max.get(); }
+
+    /**
+     * The duration that {@code percentile} percent of the recordings did not
+     * exceed, rounded up to its bucket (never above the maximum; the
+     * open-ended top bucket reports the maximum).
+     * @param percentile 0 to 100
+     * @return nanoseconds, 0 if nothing was recorded
+     */
+    public long percentile(double percentile) {
+        long n = total.get();
+        if (n == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * n));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen < rank) continue;
+            return i == BUCKETS - 1 ? max.get() : Math.min(highestEquivalent(i), max.get());
+        }
+        return max.get();
+    }
+
+    /** Forgets everything recorded so far. */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) counts.set(i, 0);
+        total.set(0);
+        max.set(0);
+    }
+}
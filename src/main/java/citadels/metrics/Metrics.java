@@ -0,0 +1,207 @@
+package citadels.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Process-wide registry of engine metrics, plus the well-known metrics the
+ * engine records. Recording is a striped add (a few nanoseconds), so the
+ * metrics stay on in simulations; reading sums the stripes.
+ */
+public final class Metrics {
+
+    private Metrics() { }
+
+    private static final Map<String, Object> REGISTRY = new LinkedHashMap<>();
+    private static final long START_NANOS = System.nanoTime();
+
+    /* ---- engine metrics ---- */
+
+    /** Games created */
+    public static final Counter GAMES_STARTED   = counter("games.started");
+    /** Games that reached the end of a round with a complete city */
+    public static final Counter GAMES_COMPLETED = counter("games.completed");
+    /** Unfinished games given up (players left) */
+    public static final Counter GAMES_ABANDONED = counter("games.abandoned");
+    /** Rounds played, in all games */
+    public static final Counter ROUNDS          = counter("rounds");
+    /** Rounds played in completed games */
+    public static final Counter COMPLETED_ROUNDS = counter("rounds.completedGames");
+    /** Decisions applied (picks, resources, builds, abilities, turn ends) */
+    public static final Counter DECISIONS       = counter("decisions");
+    /** Selection phases, wall time including waits for input */
+    public static final Timer SELECTION_PHASE   = timer("phase.selection");
+    /** Turn phases, wall time including waits for input */
+    public static final Timer TURN_PHASE        = timer("phase.turn");
+    /** AI turns */
+    public static final Timer AI_TURN           = timer("ai.turn");
+    /** AI picks and turns, wall time against the game's think budget */
+    public static final LatencyHistogram AI_DECISION = latency("ai.decision");
+    /** AI decisions that searched (the endgame solver) */
+    public static final Counter AI_SEARCHES     = counter("ai.searches");
+    /** Searching AI decisions that ran into their deadline */
+    public static final Counter AI_DEADLINE_HITS = counter("ai.deadlineHits");
+    /** Searching AI decisions settled, in whole or part, by the heuristics */
+    public static final Counter AI_FALLBACKS    = counter("ai.fallbacks");
+    /** Waits for a person's input that started speculative AI work */
+    public static final Counter AI_SPECULATIONS = counter("ai.speculations");
+    /** AI decisions worked out ahead by speculation */
+    public static final Counter AI_SPECULATED   = counter("ai.speculated");
+    /** AI decisions taken from speculation instead of searched */
+    public static final Counter AI_SPECULATION_HITS = counter("ai.speculationHits");
+    /** Decisions sent to external bots */
+    public static final Counter BOT_REQUESTS    = counter("bot.requests");
+    /** Bot decisions played without the bot: no answer in time, a bad answer, or the bot gone */
+    public static final Counter BOT_FALLBACKS   = counter("bot.fallbacks");
+    /** Time interactive game work waited for a thread */
+    public static final LatencyHistogram SCHED_INTERACTIVE_WAIT = latency("sched.interactiveWait");
+    /** Slices of batch work run, about a game round each */
+    public static final Counter SCHED_BATCH_SLICES = counter("sched.batchSlices");
+    /** Times batch work stepped aside for waiting interactive work */
+    public static final Counter SCHED_PREEMPTIONS = counter("sched.preemptions");
+    /** Saving a game, serialising and writing the file */
+    public static final Timer SAVE              = timer("state.save");
+    /** Loading a game, reading and rebuilding it */
+    public static final Timer LOAD              = timer("state.load");
+
+    static {
+        gauge("games.active", () -> GAMES_STARTED.get() - GAMES_COMPLETED.get() - GAMES_ABANDONED.get());
+    }
+
+    /* ---- registry ---- */
+
+    /**
+     * Returns the counter with this name, creating it if needed.
+     * @param name dotted name
+     * @return the counter
+     */
+    public static synchronized Counter counter(String name) {
+        return (Counter) REGISTRY.computeIfAbsent(name, n -> new Counter());
+    }
+
+    /**
+     * Returns the timer with this name, creating it if needed.
+     * @param name dotted name
+     * @return the timer
+     */
+    public static synchronized Timer timer(String name) {
+        return (Timer) REGISTRY.computeIfAbsent(name, n -> new Timer());
+    }
+
+    /**
+     * Returns the latency histogram with this name, creating it if needed.
+     * @param name dotted name
+     * @return the histogram
+     */
+    public static synchronized LatencyHistogram latency(String name) {
+        return (LatencyHistogram) REGISTRY.computeIfAbsent(name, n -> new LatencyHistogram());
+    }
+
+    /**
+     * Registers a value computed when read.
+     * @param name dotted name
+     * @param value computes the value
+     */
+    public static synchronized void gauge(String name, LongSupplier value) {
+        REGISTRY.put(name, value);
+    }
+
+    /** Seconds since the metrics started */
+    public static double uptimeSeconds() {
+        return (System.nanoTime() - START_NANOS) / 1e9;
+    }
+
+    /**
+     * Per-second rate of a counter since the metrics started.
+     * @param c the counter
+     * @return events per second
+     */
+    public static double perSecond(Counter c) {
+        double s = uptimeSeconds();
+        return s <= 0 ? 0 : c.get() / s;
+    }
+
+    /**
+     * Current values, one line per metric, for the {@code stats} command.
+     * @return the lines
+     */
+    public static synchronized List<String> report() {
+        List<String> lines = new ArrayList<>();
+        lines.add(String.format("uptime %.0f s, %.1f rounds/s, %.1f decisions/s, %.1f rounds/game",
+                uptimeSeconds(), perSecond(ROUNDS), perSecond(DECISIONS), EngineStats.averageRounds()));
+        for (Map.Entry<String, Object> e : REGISTRY.entrySet()) {
+            Object m = e.getValue();
+            if (m instanceof Counter) {
+                lines.add(e.getKey() + " = " + ((Counter) m).get());
+            } else if (m instanceof Timer) {
+                Timer t = (Timer) m;
+                lines.add(String.format("%s = %d, mean %.3f ms, max %.3f ms",
+                        e.getKey(), t.count(), t.meanMillis(), t.maxNanos() / 1e6));
+            } else if (m instanceof LongSupplier) {
+                lines.add(e.getKey() + " = " + ((LongSupplier) m).getAsLong());
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Percentiles of every latency histogram that has recordings, one line
+     * each, for the {@code latency} command and the periodic dump.
+     * @return the lines
+     */
+    public static synchronized List<String> latencyReport() {
+        List<String> lines = new ArrayList<>();
+        lines.add(String.format("%-14s %8s %9s %9s %9s %9s", "(ms)", "count", "p50", "p99", "p99.9", "max"));
+        for (Map.Entry<String, Object> e : REGISTRY.entrySet()) {
+            if (!(e.getValue() instanceof LatencyHistogram)) continue;
+            LatencyHistogram h = (LatencyHistogram) e.getValue();
+            if (h.count() == 0) continue;
+            lines.add(String.format("%-14s %8d %9.3f %9.3f %9.3f %9.3f", e.getKey(), h.count(),
+                    h.percentile(50) / 1e6, h.percentile(99) / 1e6, h.percentile(99.9) / 1e6, h.maxNanos() / 1e6));
+        }
+        return lines;
+    }
+
+    /**
+     * Prints {@link #latencyReport()} every {@code periodSeconds} on a daemon thread.
+     * @param periodSeconds seconds between dumps; 0 or less does nothing
+     * @param out receives each line
+     */
+    public static void startLatencyDump(long periodSeconds, Consumer<String> out) {
+        if (periodSeconds <= 0) return;
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "latency-dump");
+            t.setDaemon(true);
+            return t;
+        });
+        timer.scheduleAtFixedRate(() -> {
+            List<String> lines = latencyReport();
+            if (lines.size() > 1) lines.forEach(out);
+        }, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Makes the metrics visible to JMX clients as {@code citadels:type=Engine}.
+     * Safe to call more than once.
+     */
+    public static synchronized void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(EngineStats.OBJECT_NAME);
+            if (!server.isRegistered(name)) server.registerMBean(new EngineStats(), name);
+        } catch (JMException e) {
+            System.err.println("Could not register metrics MBean: " + e.getMessage());
+        }
+    }
+}
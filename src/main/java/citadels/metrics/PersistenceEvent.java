@@ -0,0 +1,21 @@
+package citadels.metrics;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/** Saving or loading a game */
+@Name("citadels.Persistence")
+@Label("Save/Load")
+@Description("Saving a game to, or loading one from, a file")
+public final class PersistenceEvent extends GameTraceEvent {
+
+    @Label("Operation")
+    public String operation;
+
+    @Label("File")
+    public String file;
+
+    @Label("Succeeded")
+    public boolean succeeded;
+}
@@ -0,0 +1,15 @@
+package citadels.metrics;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/** One round, from the crown announcement to the last turn */
+@Name("citadels.Round")
+@Label("Round")
+@Description("A whole round, selection and turn phases, including waits for input")
+public final class RoundEvent extends GameTraceEvent {
+
+    @Label("Game Over")
+    public boolean gameOver;
+}
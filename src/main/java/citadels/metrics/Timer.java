@@ -0,0 +1,47 @@
+package citadels.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Count, total and maximum of a duration, striped like {@link Counter}.
+ */
+public final class Timer {
+
+    private final LongAdder count = new LongAdder();
+    private final LongAdder nanos = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    Timer() { }
+
+    /**
+     * Records one duration.
+     * @param elapsedNanos how long it took
+     */
+    public void record(long elapsedNanos) {
+        count.increment();
+        nanos.add(elapsedNanos);
+        max.accumulate(elapsedNanos);
+    }
+
+    /**
+     * Records the time since {@code startNanos}.
+     * @param startNanos a {@link System#nanoTime} reading
+     */
+    public void stop(long startNanos) { record(System.nanoTime() - startNanos); }
+
+    /** Durations recorded */
+    public long count() { return count.sum(); }
+
+    /** Sum of all durations, in nanoseconds */
+    public long totalNanos() { return nanos.sum(); }
+
+    /** Longest duration, in nanoseconds */
+    public long maxNanos() { return max.get(); }
+
+    /** Mean duration in milliseconds, 0 if none */
+    public double meanMillis() {
+        long n = count.sum();
+        return n == 0 ? 0 : nanos.sum() / 1e6 / n;
+    }
+}
@@ -0,0 +1,15 @@
+package citadels.metrics;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/** One character's turn in the turn phase */
+@Name("citadels.Turn")
+@Label("Turn")
+@Description("A called character's turn, from its call to the end of the turn")
+public final class TurnEvent extends GameTraceEvent {
+
+    @Label("Interactive")
+    public boolean interactive;
+}
@@ -8,19 +8,44 @@ import java.util.Locale;
  */
 public final class DistrictCard extends Card {
 
+    private final int id;              // row index in cards.tsv, -1 if ad-hoc
     private final DistrictColor color;
     private final int cost;
     private final String specialText;  // null/empty if no special rule
 
+    /* purple-effect flags, fixed by name so computed once */
+    private final boolean library, schoolOfMagic, hauntedQuarter, extraPoints;
+
     public DistrictCard(String name,
                         DistrictColor color,
                         int cost,
                         String specialText) {
+        this(-1, name, color, cost, specialText);
+    }
+
+    /** Card of a known type; every copy of the same district shares its id. */
+    public DistrictCard(int id,
+                        String name,
+                        DistrictColor color,
+                        int cost,
+                        String specialText) {
         super(name);
+        this.id    = id;
         this.color = color;
         this.cost  = cost;
         this.specialText = (specialText == null || specialText.isEmpty())
                            ? null : specialText;
+
+        String n = name.toLowerCase(Locale.ROOT);
+        this.library        = n.equals("library");
+        this.schoolOfMagic  = n.equals("school of magic");
+        this.hauntedQuarter = n.equals("haunted quarter");
+        this.extraPoints    = n.contains("dragon gate") || n.contains("university");
+    }
+
+    /** @return district type id (0-based row in cards.tsv), or -1 for ad-hoc cards. */
+    public int getId() {
+        return id;
     }
 
     public DistrictColor getColor() {
@@ -41,21 +66,20 @@ public final class DistrictCard extends Card {
        =========================================================== */
 
     public boolean isLibrary() {
-        return getName().equalsIgnoreCase("Library");
+        return library;
     }
 
     public boolean isSchoolOfMagic() {
-        return getName().equalsIgnoreCase("School of Magic");
+        return schoolOfMagic;
     }
 
     public boolean isHauntedQuarter() {
-        return getName().equalsIgnoreCase("Haunted Quarter");
+        return hauntedQuarter;
     }
 
     /** Dragon Gate or University give +2 victory points. */
     public boolean givesExtraPoints() {
-        String n = getName().toLowerCase(Locale.ROOT);
-        return n.contains("dragon gate") || n.contains("university");
+        return extraPoints;
     }
 
     /* ============================================================= */
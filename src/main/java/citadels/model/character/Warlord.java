@@ -22,7 +22,7 @@ public final class Warlord extends CharacterCard {
             Player target = game.promptPlayerSelection(
                     self, "Choose a player whose district to destroy:");
             int districtIndex = game.promptDistrictSelection(
-                    target, "Choose district index to destroy:");
+                    self, target, "Choose district index to destroy:");
             game.destroyDistrict(self, target, districtIndex);
         }
     }
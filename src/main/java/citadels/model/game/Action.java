@@ -0,0 +1,68 @@
+package citadels.model.game;
+
+/**
+ * One decision by one seat, as applied by {@link CitadelsGame#apply}.
+ *
+ * <p>An action is a seat plus a packed {@link Move}, so the moves listed by
+ * {@link MoveGenerator} convert to actions without translation, and an
+ * action can be journaled or replayed as two ints. Instances are immutable.</p>
+ */
+public final class Action {
+
+    private final int seat;
+    private final int move;
+
+    private Action(int seat, int move) {
+        this.seat = seat;
+        this.move = move;
+    }
+
+    /**
+     * Wraps a packed move.
+     * @param seat the acting seat (0-based)
+     * @param move a {@link Move}
+     * @return the action
+     */
+    public static Action of(int seat, int move) { return new Action(seat, move); }
+
+    /* -- factories, one per move type -- */
+
+    public static Action pick(int seat, int rank)        { return of(seat, Move.of(Move.PICK, rank)); }
+    public static Action gold(int seat)                  { return of(seat, Move.of(Move.GOLD, 0)); }
+    public static Action cards(int seat)                 { return of(seat, Move.of(Move.CARDS, 0)); }
+    public static Action build(int seat, int handIdx)    { return of(seat, Move.of(Move.BUILD, handIdx)); }
+    public static Action kill(int seat, int rank)        { return of(seat, Move.of(Move.KILL, rank)); }
+    public static Action steal(int seat, int rank)       { return of(seat, Move.of(Move.STEAL, rank)); }
+    public static Action swap(int seat, int target)      { return of(seat, Move.of(Move.SWAP, target)); }
+    public static Action redraw(int seat, int handMask)  { return of(seat, Move.of(Move.REDRAW, 0, handMask)); }
+    public static Action destroy(int seat, int victim, int cityIdx) {
+        return of(seat, Move.of(Move.DESTROY, victim, cityIdx));
+    }
+    public static Action end(int seat)                   { return of(seat, Move.of(Move.END, 0)); }
+
+    /* -- accessors -- */
+
+    /** Acting seat (0-based) */
+    public int seat() { return seat; }
+    /** The packed {@link Move} */
+    public int move() { return move; }
+    /** Move type, one of the {@link Move} constants */
+    public int type() { return Move.type(move); }
+    /** First operand: rank, hand index or seat */
+    public int a() { return Move.a(move); }
+    /** Second operand: city index or hand mask */
+    public int b() { return Move.b(move); }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof Action)) return false;
+        Action x = (Action) o;
+        return seat == x.seat && move == x.move;
+    }
+
+    @Override
+    public int hashCode() { return 31 * seat + move; }
+
+    @Override
+    public String toString() { return "Player " + (seat + 1) + ": " + Move.toString(move); }
+}
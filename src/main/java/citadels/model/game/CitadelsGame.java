@@ -1,12 +1,22 @@
 package citadels.model.game;
 
+import citadels.ai.Speculator;
 import citadels.cli.CommandHandler;
-import citadels.cli.ConsoleHandler;
+import citadels.cli.CommandLatency;
+import citadels.event.EventRing;
+import citadels.event.EventType;
+import citadels.metrics.DistrictEvent;
+import citadels.metrics.LatencyHistogram;
+import citadels.metrics.Metrics;
+import citadels.metrics.RoundEvent;
+import citadels.metrics.TurnEvent;
 import citadels.model.card.*;
 import citadels.model.character.*;
 import citadels.model.player.*;
 import citadels.util.TSVLoader;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
 
 /**
  * Core game controller: maintains mutable state and drives
@@ -18,9 +28,17 @@ public final class CitadelsGame {
     /* ------------------------------------------------------------------ *
      *  Immutable configuration                                            *
      * ------------------------------------------------------------------ */
+    private static final AtomicLong NEXT_GAME_ID = new AtomicLong();
+
+    /** AI think budget of new games, in ms per decision ({@code -Dcitadels.ai.thinkMillis}, 50) */
+    public static final long DEFAULT_THINK_MILLIS = Long.getLong("citadels.ai.thinkMillis", 50);
+
+    private final long gameId;
+    private final boolean playout;        // a fork: kept out of metrics, recordings and the event ring
     private final List<Player> players;
     private final CommandHandler cli;
-    private final Random rng = new Random();
+    private final long seed;
+    private final Random rng;
 
     /* ------------------------------------------------------------------ *
      *  Mutable game-state                                                *
@@ -38,29 +56,291 @@ public final class CitadelsGame {
     private Player thiefPlayer  = null;
     private final Set<Player> bishopProtected  = new HashSet<>();
     private final Map<Player,Integer> builtThisTurn = new HashMap<>();
+    private int availableRanks;   // characters still passing in the selection phase (bit rank-1)
+    private List<CharacterCard> passing = new ArrayList<>();
+    private int pickingSeat = -1;
+
+    /* — current turn, checked by apply() — */
+    private Player turnPlayer;
+    private boolean resourcesTaken;
+    private boolean abilityUsed;
+    private DistrictCard[] pendingDraw;   // two cards an interactive player is choosing from
+
+    /* — where step() resumes — */
+    private enum Stage { ROUND_START, REMOVE_CHARACTERS, PICK, CALL_RANK, START_TURN, HUMAN_TURN, PAUSE, ROUND_END }
+    private Stage stage = Stage.ROUND_START;
+    private Stage afterPause;
+    private int upMask;                   // face-up removals this round (bit rank-1)
+    private int pickIndex;                // picks made so far this round
+    private boolean pickPrompted;         // interactive picker has seen the list
+    private int callRank;                 // rank being called in the turn phase
+    private long phaseStart;              // System.nanoTime() when the current phase began
+    private RoundEvent roundEvent;        // Flight Recorder spans of the open round and turn
+    private TurnEvent turnEvent;
+    private boolean abandoned;            // given up before the end (metrics only)
+    private long flagsKey;                // Zobrist key of the crown and round flags, see zobrist()
+    private long thinkMillis = DEFAULT_THINK_MILLIS; // AI think budget per decision, see setThinkMillis
+    private Speculator.Run speculation;   // AI work ahead of the awaited input, see step
+    private long speculatedKey;           // Speculator.key of the wait it was started for
+
+    /* — card-movement observers (AI belief trackers, …) — */
+    private final List<GameListener> listeners = new ArrayList<>();
+
+    /* — typed events for off-thread consumers, created when first asked for — */
+    private static final int EVENT_RING_SIZE = 1024;
+    private static final long EVENT_DRAIN_MILLIS = 1_000;
+    private volatile EventRing events;   // asked for from any thread, published to from the game's
 
     /* ------------------------------------------------------------------ *
      *  Construction                                                       *
      * ------------------------------------------------------------------ */
     public CitadelsGame(int nPlayers, CommandHandler cli) {
+        this(nPlayers, 1, cli);
+    }
+
+    /**
+     * Creates a game in which the first {@code nHumans} seats are people
+     * and the rest are AI players.
+     * @param nPlayers total seats (4-7)
+     * @param nHumans human seats (0 to nPlayers)
+     * @param cli handler for all input and output
+     */
+    public CitadelsGame(int nPlayers, int nHumans, CommandHandler cli) {
+        this(nPlayers, nHumans, cli, java.util.concurrent.ThreadLocalRandom.current().nextLong());
+    }
+
+    /**
+     * Creates a game whose deal, crown and character tray follow {@code seed}.
+     * @param nPlayers total seats (4-7)
+     * @param nHumans human seats (0 to nPlayers)
+     * @param cli handler for all input and output
+     * @param seed seed of the game's shuffles
+     */
+    public CitadelsGame(int nPlayers, int nHumans, CommandHandler cli, long seed) {
+        this(nPlayers, cli, seed, humansFirst(nPlayers, nHumans));
+    }
+
+    /**
+     * Creates a game with players of the caller's choosing, for simulations
+     * that need AI players other than the default one.
+     * @param nPlayers total seats (4-7)
+     * @param cli handler for all input and output
+     * @param seed seed of the game's shuffles
+     * @param seats makes the player of a seat, given its number
+     */
+    public CitadelsGame(int nPlayers, CommandHandler cli, long seed, IntFunction<? extends Player> seats) {
         if (nPlayers < 4 || nPlayers > 7)
             throw new IllegalArgumentException("Players must be 4-7");
+        this.gameId = NEXT_GAME_ID.incrementAndGet();
+        this.playout = false;
         this.cli = cli;
+        this.seed = seed;
+        this.rng = new Random(seed);
 
         /* players */
         players = new ArrayList<>();
-        players.add(new HumanPlayer(0));
-        for (int i = 1; i < nPlayers; i++) players.add(new AIPlayer(i));
+        for (int i = 0; i < nPlayers; i++) players.add(seats.apply(i));
 
         this.crownedSeat = rng.nextInt(nPlayers);
+        this.flagsKey = Zobrist.crown(crownedSeat);
 
         /* district deck */
         districtDeck = new Deck<>(TSVLoader.loadDistrictDeck());
         districtDeck.shuffle(rng);
 
+        /* let players hook into the game before any card moves */
+        for (Player p : players) p.joinGame(this);
+
         /* initial deal (4 cards, 2 gold already) */
-        for (Player p : players)
-            for (int i = 0; i < 4; i++) p.addCardToHand(districtDeck.draw());
+        for (Player p : players) drawCards(p, 4);
+        Metrics.GAMES_STARTED.inc();
+    }
+
+    /**
+     * Copies {@code src} at its current point, with the given AI in every seat.
+     * Listeners, the event ring and Flight Recorder spans are not copied, and
+     * the copy is a playout: it shares the game's id and counts for nothing
+     * in {@link Metrics} or the recordings.
+     */
+    private CitadelsGame(CitadelsGame src, CommandHandler cli, long seed, IntFunction<AIPlayer> seats) {
+        this.gameId = src.gameId;
+        this.playout = true;
+        this.cli = cli;
+        this.seed = seed;
+        this.rng = new Random(seed);
+
+        players = new ArrayList<>();
+        for (Player s : src.players) {
+            AIPlayer p = seats.apply(s.getId());
+            p.gainGold(s.getGold() - p.getGold());
+            for (DistrictCard d : s.getHand()) p.addCardToHand(d);
+            for (DistrictCard d : s.getCity()) p.addDistrictToCity(d);
+            if (s.getCharacter() != null) p.setCharacter(findCharacterCard(s.getCharacter().getRank()));
+            p.setBuildLimit(s.getBuildLimit());
+            players.add(p);
+        }
+        districtDeck = new Deck<>(src.districtDeck.asListView());
+
+        crownedSeat = src.crownedSeat;
+        roundNo = src.roundNo;
+        phase = src.phase;
+        killedRanks.addAll(src.killedRanks);
+        robbedRank = src.robbedRank;
+        thiefPlayer = same(src.thiefPlayer);
+        for (Player p : src.bishopProtected) bishopProtected.add(same(p));
+        src.builtThisTurn.forEach((p, n) -> builtThisTurn.put(same(p), n));
+        availableRanks = src.availableRanks;
+        for (CharacterCard c : src.passing) passing.add(findCharacterCard(c.getRank()));
+        pickingSeat = src.pickingSeat;
+        turnPlayer = same(src.turnPlayer);
+        resourcesTaken = src.resourcesTaken;
+        abilityUsed = src.abilityUsed;
+        upMask = src.upMask;
+        pickIndex = src.pickIndex;
+        callRank = src.callRank;
+        phaseStart = src.phaseStart;
+        thinkMillis = src.thinkMillis;
+        stage = src.stage == Stage.HUMAN_TURN ? Stage.START_TURN : src.stage; // the AI plays the rest of the turn
+        afterPause = src.afterPause == Stage.HUMAN_TURN ? Stage.START_TURN : src.afterPause;
+        if (src.pendingDraw != null) { // settle an open draw the way a cautious player would
+            DistrictCard[] d = src.pendingDraw;
+            boolean first = d[0].getCost() >= d[1].getCost();
+            turnPlayer.addCardToHand(first ? d[0] : d[1]);
+            districtDeck.putOnBottom(first ? d[1] : d[0]);
+        }
+
+        flagsKey = Zobrist.flags(this);
+
+        for (Player p : players) p.joinGame(this);
+        notifyRestored();
+    }
+
+    /** People in the first {@code nHumans} seats, the default AI in the rest */
+    private static IntFunction<Player> humansFirst(int nPlayers, int nHumans) {
+        if (nHumans < 0 || nHumans > nPlayers)
+            throw new IllegalArgumentException("Humans must be 0-" + nPlayers);
+        return i -> i < nHumans ? new HumanPlayer(i) : new AIPlayer(i);
+    }
+
+    /** This game's player in the seat of {@code p} from another game */
+    private Player same(Player p) {
+        return p == null ? null : players.get(p.getId());
+    }
+
+    /**
+     * Returns an independent copy of this game at its current point, in
+     * which playout AI players (see {@link AIPlayer#rollout}) make every
+     * remaining decision. Hidden information is copied as it is; callers
+     * that must not see it re-sample it before playing on. Give up an
+     * unfinished fork with {@link #abandon}.
+     * @param cli handler for the fork's output, usually a quiet one
+     * @param seed seed of the fork's shuffles
+     * @return the copy
+     */
+    public CitadelsGame fork(CommandHandler cli, long seed) {
+        return fork(cli, seed, AIPlayer::rollout);
+    }
+
+    /**
+     * Returns an independent copy of this game, as {@link #fork(CommandHandler, long)},
+     * with AI players of the caller's choosing.
+     * @param cli handler for the fork's output, usually a quiet one
+     * @param seed seed of the fork's shuffles
+     * @param seats makes the AI player of a seat
+     * @return the copy
+     */
+    public CitadelsGame fork(CommandHandler cli, long seed, IntFunction<AIPlayer> seats) {
+        return new CitadelsGame(this, cli, seed, seats);
+    }
+
+    /**
+     * Plays one move for the seat the game is waiting on, as the first
+     * decision of a continuation. Later decisions come from the seat's
+     * player; {@code END} ends the turn there and then.
+     * @param move packed {@link Move}
+     * @return false if nobody is to move or the move is illegal
+     */
+    public boolean playMove(int move) {
+        int seat = getSeatToMove();
+        if (seat < 0 || !apply(Action.of(seat, move))) return false;
+        if (stage == Stage.PICK) {
+            pickIndex++;
+            pickingSeat = (pickingSeat + 1) % players.size();
+        } else if (Move.type(move) == Move.END) {
+            endTurn();
+        }
+        return true;
+    }
+
+    /**
+     * Returns the seat whose decision the game stands at
+     * @return the picking seat, the seat whose turn it is, or -1 between decisions
+     */
+    public int getSeatToMove() {
+        if (stage == Stage.PICK && pickIndex < players.size()) return pickingSeat;
+        if ((stage == Stage.START_TURN || stage == Stage.HUMAN_TURN) && turnPlayer != null) return turnPlayer.getId();
+        return -1;
+    }
+
+    /**
+     * Returns the characters removed face up this round
+     * @return bit {@code rank-1} per face-up character
+     */
+    public int getFaceUpRanks() { return upMask; }
+
+    /**
+     * Returns the highest rank called so far in the turn phase; who holds
+     * the characters up to it is public
+     * @return the rank, or 0 in the selection phase
+     */
+    public int getRevealedRank() {
+        if (phase != GamePhase.TURN) return 0;
+        boolean calling = stage == Stage.CALL_RANK || (stage == Stage.PAUSE && afterPause == Stage.CALL_RANK);
+        return Math.min(calling ? callRank - 1 : callRank, Rules.MAX_RANK);
+    }
+
+    /**
+     * Registers an observer for card movements.
+     * @param l the listener to add
+     */
+    public void addListener(GameListener l) { listeners.add(l); }
+
+    /**
+     * Tells every listener that the state was replaced wholesale (e.g. loaded).
+     */
+    public void notifyRestored() {
+        for (GameListener l : listeners) l.stateRestored(this);
+    }
+
+    /**
+     * Returns the game's event ring, creating it on first use. Attach
+     * consumers before play starts to see every event; see {@link EventType}.
+     * The ring is closed, and its consumers' threads end, when the game is
+     * over or abandoned.
+     * @return the ring this game publishes to
+     */
+    public EventRing events() {
+        EventRing r = events;
+        if (r == null) {
+            synchronized (this) {
+                r = events;
+                if (r == null) events = r = new EventRing(EVENT_RING_SIZE);
+            }
+        }
+        return r;
+    }
+
+    /* lets the consumers take what is left, then stops their threads */
+    private void closeEvents() {
+        EventRing r = events;
+        if (r != null) r.close(EVENT_DRAIN_MILLIS);
+    }
+
+    /** Publishes an event if anyone asked for the ring; a playout never does */
+    private void publish(int type, int seat, int a, int b) {
+        if (playout) return;
+        EventRing r = events;
+        if (r != null) r.publish(type, roundNo, seat, a, b);
     }
 
     /* ================================================================ *
@@ -68,28 +348,213 @@ public final class CitadelsGame {
      * ================================================================ */
 
     /**
-     * Plays a round of the game
+     * Plays a round of the game, blocking on the command handler whenever
+     * input is needed. A thin loop over {@link #step}.
      */
     public void playRound() {
+        Step s = step(null);
+        while (!s.isRoundOver())
+            s = step(s.isAwaitingInput() ? cli.prompt(s.prompt()) : null);
+    }
 
-        /* crowned player / press-t gating (like PDF) */
-        cli.println("Player " + (crownedSeat + 1) +
-                " is the crowned player and goes first.");
-        cli.println("Press t to process turns");
+    /**
+     * Advances the game as far as it can without more input.
+     *
+     * <p>The round is an explicit state machine, so a game that waits for
+     * a person holds no thread: the host keeps the game object and calls
+     * {@code step} again once the awaited line arrives. Output goes to the
+     * command handler as the game progresses.</p>
+     *
+     * @param input the line typed by the awaited seat, or null to just continue
+     * @return why the engine stopped
+     */
+    public Step step(String input) {
+        Step s;
+        if (input == null) {
+            s = advance(null);
+        } else {
+            // response time of a command: until the game waits for the next line
+            LatencyHistogram h = stage == Stage.PICK ? CommandLatency.PICK : CommandLatency.of(input);
+            long t0 = System.nanoTime();
+            s = advance(input);
+            h.stop(t0);
+        }
+        if (!s.isAwaitingInput()) {
+            stopSpeculation();
+        } else {
+            long k = Speculator.key(this);
+            if (speculation == null || k != speculatedKey) { // a command that changed nothing keeps it going
+                stopSpeculation();
+                speculation = Speculator.start(this);  // AI decisions worked out while the person thinks
+                speculatedKey = k;
+            }
+        }
+        return s;
+    }
 
-        selectionPhase(); //SELECTION PHASE
-        turnPhase(); //TURN PHASE
+    /* the answer is here, or the game moved on: the forks give the real AI the cores back */
+    private void stopSpeculation() {
+        if (speculation != null) speculation.cancel();
+        speculation = null;
+    }
 
-        /* End-of-round line */
-        cli.println("Everyone is done, new round!");
-        waitForHumanT();
+    /**
+     * Waits for the AI decisions being worked out ahead of the awaited
+     * input (see {@link Speculator}) to be done, for tests and benchmarks.
+     * @param millis longest wait
+     * @return true if there is no speculation left running
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitSpeculation(long millis) throws InterruptedException {
+        Speculator.Run run = speculation;
+        return run == null || run.await(millis);
+    }
 
-        //prepare for next round
-        roundNo++;
-        killedRanks.clear(); //clear the killed ranks
-        robbedRank  = -1; //reset the robbed rank
-        thiefPlayer = null; //reset the thief player
-        bishopProtected.clear(); //clear the bishop protection
+    private Step advance(String input) {
+        while (true) {
+            switch (stage) {
+                case ROUND_START:
+                    /* crowned player / press-t gating (like PDF) */
+                    cli.println(() -> "Player " + (crownedSeat + 1) +
+                            " is the crowned player and goes first.");
+                    if (inputSeat() >= 0) cli.println("Press t to process turns");
+                    phase = GamePhase.SELECTION;
+                    phaseStart = System.nanoTime();
+                    if (!playout) {
+                        roundEvent = new RoundEvent();
+                        roundEvent.begin();
+                    }
+                    publish(EventType.ROUND_START, crownedSeat, roundNo, 0);
+                    cli.println("================================");
+                    cli.println("SELECTION PHASE");
+                    cli.println("================================");
+                    pauseThen(Stage.REMOVE_CHARACTERS);
+                    break;
+
+                case REMOVE_CHARACTERS:
+                    removeCharacters();
+                    pauseThen(Stage.PICK);
+                    break;
+
+                case PICK: {
+                    if (pickIndex == players.size()) { endSelection(); break; }
+                    Player p = players.get(pickingSeat);
+                    availableRanks = 0;
+                    for (CharacterCard c : passing) availableRanks |= 1 << (c.getRank() - 1);
+
+                    CharacterCard chosen;
+                    if (p.isInteractive()) {
+                        if (!pickPrompted) {
+                            cli.setAudience(p.getId()); //what is still passing is private
+                            cli.println("Choose your character. Available:");
+                            for (CharacterCard c : passing) cli.println(" - " + c.getName());
+                            cli.setAudience(-1);
+                            pickPrompted = true;
+                        }
+                        if (input == null) return Step.awaiting(p.getId());
+                        chosen = characterNamed(input.trim());
+                        input = null;
+                        if (chosen == null) {
+                            cli.setAudience(p.getId());
+                            cli.println("Invalid name, try again.");
+                            cli.setAudience(-1);
+                            return Step.awaiting(p.getId());
+                        }
+                    } else {
+                        chosen = p.chooseCharacter(this, pickIndex, upMask,
+                                Collections.unmodifiableList(passing));
+                    }
+                    apply(Action.pick(pickingSeat, chosen.getRank()));
+                    cli.println(() -> "Player " + (pickingSeat+1) + " chose a character.");
+                    pickPrompted = false;
+                    pickIndex++;
+                    pickingSeat = (pickingSeat + 1) % players.size(); // seat resets to 0 after last player
+                    break;
+                }
+
+                case CALL_RANK:
+                    if (callRank > 8) {
+                        cli.println("Everyone is done, new round!");
+                        pauseThen(Stage.ROUND_END);
+                        break;
+                    }
+                    callRank();
+                    break;
+
+                case START_TURN:
+                    if (turnPlayer.isInteractive()) {
+                        cli.setAudience(turnPlayer.getId());
+                        cli.println("Your turn.\nCollect 2 gold or draw two cards and pick one [gold/cards]:");
+                        cli.setAudience(-1);
+                        stage = Stage.HUMAN_TURN;
+                        break;
+                    }
+                    long t0 = System.nanoTime();
+                    turnPlayer.takeTurn(this);
+                    if (!playout) Metrics.AI_TURN.stop(t0);
+                    //if debug is on and the player is an AI, print the hand of the player
+                    if (cli.isDebug())
+                        cli.println(() -> "Debug: " + turnPlayer.getHand());
+                    endTurn();
+                    return Step.RUNNING; // a turn is a good place for a host to yield
+
+                case HUMAN_TURN: {
+                    if (input == null) return Step.awaiting(turnPlayer.getId());
+                    String in = input;
+                    input = null;
+                    Player human = turnPlayer;
+                    cli.setAudience(human.getId()); //replies to a seat's commands are its own
+                    try {
+                        if (pendingDraw != null) resolveDraw(in);
+                        else if (cli.handleTurnCommand(this, human, in)) endTurn();
+                    } finally {
+                        cli.setAudience(-1);
+                    }
+                    break;
+                }
+
+                case PAUSE: {
+                    int seat = inputSeat();
+                    if (seat < 0) { stage = afterPause; break; } // nobody to press t
+                    if (input == null) return Step.awaiting(seat);
+                    String in = input.trim();
+                    input = null;
+                    if (in.equalsIgnoreCase("t")) { stage = afterPause; break; } //t was pressed
+                    cli.setAudience(seat);
+                    if (in.equalsIgnoreCase("all")) printAll(seat);        //"all" can be used at any time
+                    else if (in.equalsIgnoreCase("debug")) cli.toggleDebug(); //so can "debug"
+                    else if (in.equalsIgnoreCase("stats")) cli.printStats();  //and "stats"
+                    else if (in.equalsIgnoreCase("latency")) cli.printLatency();
+                    else cli.println("It is not your turn. Press t to continue with other player turns.");
+                    cli.setAudience(-1);
+                    break;
+                }
+
+                case ROUND_END:
+                default:
+                    //prepare for next round
+                    for (GameListener l : listeners) l.roundEnded();
+                    if (!playout) {
+                        if (phase == GamePhase.TURN) Metrics.TURN_PHASE.stop(phaseStart);
+                        Metrics.ROUNDS.inc();
+                        commitRound();
+                    }
+                    roundNo++;
+                    setKilledRanks(Collections.emptySet()); //clear the killed ranks
+                    setRobbedRank(-1); //reset the robbed rank
+                    thiefPlayer = null; //reset the thief player
+                    setBishopProtected(Collections.emptySet()); //clear the bishop protection
+                    stage = Stage.ROUND_START;
+                    if (!isGameOver()) return Step.ROUND_OVER;
+                    if (!playout) {
+                        Metrics.GAMES_COMPLETED.inc();
+                        Metrics.COMPLETED_ROUNDS.add(roundNo - 1);
+                        if (events != null) publishGameOver();
+                    }
+                    closeEvents();
+                    return Step.GAME_OVER;
+            }
+        }
     }
 
     /**
@@ -104,39 +569,80 @@ public final class CitadelsGame {
      * This method calculates the scores of all players and prints the results.
      */
     public void scoreAndPrintResults() {
-        int firstDone = players.stream()
-                .filter(p -> p.getCity().size() >= 8)
-                .mapToInt(Player::getId).min().orElse(-1);
-
-        Map<Player,Integer> score = ScoreCalculator.compute(players, firstDone);
+        Map<Player,Integer> score = finalScores();
 
         cli.println("\n=== FINAL SCORES ===");
         score.forEach((p,s) ->
-                cli.println("Player " + (p.getId()+1) + ": " + s + " pts"));
+                cli.println(() -> "Player " + (p.getId()+1) + ": " + s + " pts"));
 
         List<Player> winners = ScoreCalculator.winners(score);
         if (winners.size() == 1)
-            cli.println("Congratulations Player " +
+            cli.println(() -> "Congratulations Player " +
                     (winners.get(0).getId()+1) + "!");
         else
             cli.println("Tie game: break tie by highest last-round rank.");
     }
 
+    private void commitRound() {
+        RoundEvent e = roundEvent;
+        roundEvent = null;
+        if (e == null || !e.shouldCommit()) return;
+        e.about(this, null);
+        e.seat = crownedSeat;
+        e.gameOver = isGameOver();
+        e.commit();
+    }
+
+    /**
+     * Scores with the bonus for the first completed city
+     * @return points per player, in seat order
+     */
+    public Map<Player,Integer> finalScores() {
+        int firstDone = players.stream()
+                .filter(p -> p.getCity().size() >= 8)
+                .mapToInt(Player::getId).min().orElse(-1);
+        return ScoreCalculator.compute(players, firstDone);
+    }
+
+    private void publishGameOver() {
+        Map<Player,Integer> score = finalScores();
+        List<Player> winners = ScoreCalculator.winners(score);
+        Player w = winners.get(0);
+        publish(EventType.GAME_OVER, w.getId(), score.get(w), winners.size());
+    }
+
+    /**
+     * Waits for "t" before going on to {@code next}
+     * @param next the stage after the pause
+     */
+    private void pauseThen(Stage next) {
+        afterPause = next;
+        stage = Stage.PAUSE;
+    }
+
+    /**
+     * Returns the seat that presses t to continue. Games with several
+     * people do not pause: none of them should hold up the others.
+     * @return the only interactive seat, or -1 if there are none or several
+     */
+    private int inputSeat() {
+        int seat = -1;
+        for (Player p : players) {
+            if (!p.isInteractive()) continue;
+            if (seat >= 0) return -1;
+            seat = p.getId();
+        }
+        return seat;
+    }
+
     /* ================================================================ *
      *  Selection phase                                                  *
      * ================================================================ */
 
     /**
-     * Plays the selection phase
+     * Removes the face-up and face-down characters and gets the picks ready
      */
-    private void selectionPhase() {
-        phase = GamePhase.SELECTION;
-
-        cli.println("================================");
-        cli.println("SELECTION PHASE");
-        cli.println("================================");
-        waitForHumanT();
-
+    private void removeCharacters() {
         List<CharacterCard> tray = new ArrayList<>(characterDeck.asListView());
         Collections.shuffle(tray, rng); //shuffle the tray using the random number generator
 
@@ -156,165 +662,302 @@ public final class CitadelsGame {
             while (it.hasNext()) chars.add(it.next()); //add the remaining cards to the pool
 
             if (up.stream().anyMatch(King.class::isInstance)){ //if the face-up cards include King, clear the pool
-                System.out.println("The King cannot be visibly removed, trying again..");
+                cli.println("The King cannot be visibly removed, trying again..");
                 chars.clear(); //clear the pool
             } 
             else break; //else break
         }
 
         for (CharacterCard c : up) {
-            cli.println(c.getName() + " was removed.");
+            cli.println(() -> c.getName() + " was removed.");
         }
         cli.println("A mystery character was removed."); //1 facedown card irrespective of no. of players
-        waitForHumanT();
-
-        int seat = crownedSeat; //index of the player who is crowned in current round
-        List<CharacterCard> passing = new ArrayList<>(chars);
 
-        for (int i = 0; i < players.size(); i++) {
-            Player p = players.get(seat);
-
-            CharacterCard chosen;
-            if (p instanceof HumanPlayer) {
-                cli.println("Choose your character. Available:");
-                for (CharacterCard c : passing) cli.println(" - " + c.getName());
-                chosen = humanChooseCharacter(passing);
-            } else {
-                chosen = passing.remove(0);
-            }
+        passing = new ArrayList<>(chars);
+        upMask = 0; //face-up removals as rank bits, public to everyone
+        for (CharacterCard c : up) upMask |= 1 << (c.getRank() - 1);
+        pickIndex = 0;
+        pickingSeat = crownedSeat; //the crowned player picks first
+        pickPrompted = false;
+    }
 
-            p.setCharacter(chosen);
-            cli.println("Player " + (seat+1) + " chose a character.");
+    /**
+     * Finds a passing character by name, ignoring case
+     * @param name the name typed
+     * @return the character, or null if none matches
+     */
+    private CharacterCard characterNamed(String name) {
+        for (CharacterCard c : passing)
+            if (c.getName().equalsIgnoreCase(name)) return c;
+        return null;
+    }
 
-            seat = (seat + 1) % players.size(); // seat resets to 0 after last player
-        }
+    private void endSelection() {
+        availableRanks = 0;
+        pickingSeat = -1;
 
-    /* ================================================================ *
-     *  Turn phase                                                      *
-     * ================================================================ */
-    
         cli.println("\nCharacter choosing is over, action round will now begin.");
         cli.println("================================");
         cli.println("TURN PHASE");
         cli.println("================================");
+        phase = GamePhase.TURN;
+        if (!playout) Metrics.SELECTION_PHASE.stop(phaseStart);
+        phaseStart = System.nanoTime();
+        callRank = 1;
+        stage = Stage.CALL_RANK;
     }
 
-    private CharacterCard humanChooseCharacter(List<CharacterCard> pool) {
-        while (true) {
-            String in = cli.prompt("> ").trim(); //trim means
-            for (CharacterCard c : pool)
-                if (c.getName().equalsIgnoreCase(in)) {
-                    pool.remove(c); return c;
-                }
-            cli.println("Invalid name, try again.");
-        }
-    }
+    /* ================================================================ *
+     *  Turn phase                                                      *
+     * ================================================================ */
 
-    private void turnPhase() {
-        phase = GamePhase.TURN;
+    /**
+     * Calls the next rank and sets up its player's turn, if any
+     */
+    private void callRank() {
+        int rank = callRank;
+        Player acting = findPlayerByRank(rank);
 
-        for (int rank = 1; rank <= 8; rank++) {
-            Player acting = findPlayerByRank(rank);
+        cli.println(() -> rank + ": " + rankName(rank));
+        for (GameListener l : listeners) l.characterRevealed(rank, acting); //calling a rank is public
 
-            cli.println(rank + ": " + rankName(rank));
+        if (acting == null) { //checked first: a killed rank may be held by nobody
+            cli.println(() -> "No one is the " + rankName(rank));
+            callRank++;
+            pauseThen(Stage.CALL_RANK);
+            return;
+        }
+        if (killedRanks.contains(rank)) {
+            cli.println(() -> "Player " + (acting.getId()+1) + " loses their turn because they were assassinated.");
+            callRank++;
+            pauseThen(Stage.CALL_RANK);
+            return;
+        }
 
-            if (killedRanks.contains(rank)) {
-                cli.println("Player " + (acting.getId()+1) + " loses their turn because they were assassinated.");
-                waitForHumanT();
-                continue;
-            }
-            if (acting == null) {
-                cli.println("No one is the " + rankName(rank));
-                waitForHumanT();
-                continue;
-            }
+        cli.println(() -> "Player " + (acting.getId()+1) +
+                    " is the " + rankName(rank));
 
-            cli.println("Player " + (acting.getId()+1) +
-                        " is the " + rankName(rank));
+        publish(EventType.TURN_START, acting.getId(), rank, 0);
+        if (!playout) {
+            turnEvent = new TurnEvent();
+            turnEvent.begin();
+        }
+        if (rank == 4) crown(acting.getId()); // King crown
+
+        builtThisTurn.put(acting, 0); //reset the builtThisTurn map for the current player
+        turnPlayer = acting;
+        resourcesTaken = false;
+        abilityUsed = false;
+        if (rank == 7) { // Architect draws 2 extra cards and may build up to 3
+            drawCards(acting, 2);
+            acting.setBuildLimit(3);
+        }
 
-            if (rank == 4) crownedSeat = acting.getId(); // King crown
+        if (rank == robbedRank && thiefPlayer != null && thiefPlayer != acting) {
+            int stolen = acting.getGold();
+            acting.spendGold(stolen);
+            thiefPlayer.gainGold(stolen);   
+            publish(EventType.ROB, thiefPlayer.getId(), rank, stolen);
+            cli.println(() -> "The Thief steals " + stolen + " gold.");
+            pauseThen(Stage.START_TURN);
+            return;
+        }
+        stage = Stage.START_TURN;
+    }
 
-            builtThisTurn.put(acting, 0); //reset the builtThisTurn map for the current player
+    private void endTurn() {
+        TurnEvent e = turnEvent;
+        turnEvent = null;
+        if (e != null && e.shouldCommit()) {
+            e.about(this, turnPlayer);
+            e.interactive = turnPlayer.isInteractive();
+            e.commit();
+        }
+        turnPlayer = null;
+        callRank++;
+        pauseThen(Stage.CALL_RANK);
+    }
 
-            if (rank == robbedRank && thiefPlayer != null && thiefPlayer != acting) {
-                int stolen = acting.getGold();
-                acting.spendGold(stolen);
-                thiefPlayer.gainGold(stolen);   
-                cli.println("The Thief steals " + stolen + " gold.");
-                waitForHumanT();
+    /**
+     * Prints everyone's cards, gold and city (the "all" command)
+     * @param viewer the seat asking, marked "(you)"; -1 marks nobody
+     */
+    public void printAll(int viewer) {
+        for (Player p : players) {
+            StringBuilder sb = new StringBuilder();
+            sb.append("Player ").append(p.getId() + 1);
+            
+            // Add "(you)" for the player asking
+            if (p.getId() == viewer) {
+                sb.append(" (you)");
             }
-
-            if (acting instanceof HumanPlayer) {
-               cli.println("Your turn.\nCollect 2 gold or draw two cards and pick one [gold/cards]:");
+            
+            // Add cards count
+            sb.append(": cards=").append(p.getHand().size());
+            
+            // Add gold count
+            sb.append(" gold=").append(p.getGold());
+            
+            // Add city information
+            sb.append(" city=");
+            List<DistrictCard> city = p.getCity();
+            if (city.isEmpty()) {
+                sb.append("");
+            } else {
+                for (int i = 0; i < city.size(); i++) {
+                    DistrictCard card = city.get(i);
+                    sb.append(card.getName())
+                      .append(" [")
+                      .append(card.getColor().toString().toLowerCase())
+                      .append(card.getCost())
+                      .append("]");
+                    if (i < city.size() - 1) {
+                        sb.append(", ");
+                    }
+                }
             }
+            
+            cli.println(sb.toString());
+        }
+    }
 
-            acting.takeTurn(this); 
-
-            //if debug is on and the player is an AI, print the hand of the player
-            if (cli instanceof ConsoleHandler && ((ConsoleHandler)cli).isDebug()
-                    && acting instanceof AIPlayer)
-                cli.println("Debug: " + acting.getHand());
+    /* ================================================================ *
+     *  Actions                                                         *
+     * ================================================================ */
 
-            waitForHumanT();
+    /**
+     * Validates and applies one player decision. This is the only way
+     * players change the game during selection and turns; the low-level
+     * mutators below stay public for abilities, loading and tests.
+     * @param a the action
+     * @return true if applied; false if illegal (the reason is printed)
+     */
+    public boolean apply(Action a) {
+        String err = check(a);
+        if (err != null) { cli.println(err); return false; }
+        stopSpeculation();
+
+        Player p = players.get(a.seat());
+        switch (a.type()) {
+            case Move.PICK:
+                for (int i = 0; i < passing.size(); i++)
+                    if (passing.get(i).getRank() == a.a()) { p.setCharacter(passing.remove(i)); break; }
+                availableRanks &= ~(1 << (a.a() - 1));
+                publish(EventType.CHARACTER_CHOSEN, a.seat(), a.a(), 0);
+                for (GameListener l : listeners) l.characterChosen(p, a.a());
+                break;
+            case Move.GOLD:    collectGold(p);  resourcesTaken = true; break;
+            case Move.CARDS:   beginDraw(p); resourcesTaken = true; break;
+            case Move.BUILD:   buildDistrict(p, p.getHand().get(a.a())); break;
+            case Move.KILL:    killCharacter(a.a()); abilityUsed = true; break;
+            case Move.STEAL:   setRobTarget(p, a.a()); abilityUsed = true; break;
+            case Move.SWAP:    swapHands(p, players.get(a.a())); abilityUsed = true; break;
+            case Move.REDRAW:  drawCards(p, discardMask(p, a.b())); abilityUsed = true; break;
+            case Move.DESTROY: destroyDistrict(p, players.get(a.a()), a.b()); abilityUsed = true; break;
+            default:           break; // END: nothing to change
         }
+        if (!playout) Metrics.DECISIONS.inc();
+        return true;
     }
 
     /**
-     * Waits for the human player to press t to continue
+     * Marks an unfinished game as given up, e.g. when its players leave.
+     * The active-games metric counts it, and its event ring is closed.
      */
-    private void waitForHumanT() {
-        //if (!(cli instanceof ConsoleHandler)) return;
-        while (true) {
-            String in = cli.prompt("> ").trim();
-            if (in.equalsIgnoreCase("t")) return; //t was pressed
-            if (in.equalsIgnoreCase("all")) { //"all" can be used at any time
-                for (Player p : players) {
-                    StringBuilder sb = new StringBuilder();
-                    sb.append("Player ").append(p.getId() + 1);
-                    
-                    // Add "(you)" for the human player
-                    if (p.getId() == 0) {
-                        sb.append(" (you)");
-                    }
-                    
-                    // Add cards count
-                    sb.append(": cards=").append(p.getHand().size());
-                    
-                    // Add gold count
-                    sb.append(" gold=").append(p.getGold());
-                    
-                    // Add city information
-                    sb.append(" city=");
-                    List<DistrictCard> city = p.getCity();
-                    if (city.isEmpty()) {
-                        sb.append("");
-                    } else {
-                        for (int i = 0; i < city.size(); i++) {
-                            DistrictCard card = city.get(i);
-                            sb.append(card.getName())
-                              .append(" [")
-                              .append(card.getColor().toString().toLowerCase())
-                              .append(card.getCost())
-                              .append("]");
-                            if (i < city.size() - 1) {
-                                sb.append(", ");
-                            }
-                        }
-                    }
-                    
-                    cli.println(sb.toString());
-                }
-                continue;
+    public void abandon() {
+        if (abandoned || isGameOver()) return;
+        abandoned = true;
+        if (!playout) Metrics.GAMES_ABANDONED.inc();
+        closeEvents();
+    }
+
+    /**
+     * Returns why an action is illegal right now
+     * @param a the action
+     * @return an error message for the player, or null if legal
+     */
+    private String check(Action a) {
+        if (a.seat() < 0 || a.seat() >= players.size()) return "Invalid player number.";
+        Player p = players.get(a.seat());
+
+        if (a.type() == Move.PICK) {
+            if (phase != GamePhase.SELECTION || a.seat() != pickingSeat) return "It is not your pick.";
+            if (a.a() < 1 || a.a() > Rules.MAX_RANK || (availableRanks & (1 << (a.a() - 1))) == 0)
+                return "That character is not available.";
+            return null;
+        }
+        if (phase != GamePhase.TURN || p != turnPlayer) return "It is not your turn.";
+
+        int rank = p.getCharacter() == null ? 0 : p.getCharacter().getRank();
+        switch (a.type()) {
+            case Move.GOLD:
+            case Move.CARDS:
+                if (resourcesTaken) return "You already gathered resources this round!";
+                if (a.type() == Move.CARDS && districtDeck.isEmpty()) return "The district deck is empty.";
+                return null;
+            case Move.BUILD: {
+                if (!resourcesTaken) return "Collect gold or draw cards first.";
+                int idx = a.a();
+                if (idx >= p.getHand().size())
+                    return "Invalid index. Enter a number between 1 and " + p.getHand().size() + ".";
+                DistrictCard c = p.getHand().get(idx);
+                if (!Rules.hasBuildsLeft(p, getBuiltThisTurn(p))) return "You cannot build more districts this turn.";
+                if (Rules.isDuplicate(p, c)) return "You already have that district.";
+                if (!Rules.canAfford(p, c)) return "Cannot afford.";
+                return null;
             }
+            case Move.END:
+                return resourcesTaken ? null : "Collect gold or draw cards first.";
+            default:
+                break;
+        }
 
-            if (in.equalsIgnoreCase("debug")) { //"debug" can be used at any time
-                ((ConsoleHandler)cli).toggleDebug();
-                continue;
+        /* character abilities: once per turn, own character only */
+        int needs = a.type() == Move.KILL ? 1 : a.type() == Move.STEAL ? 2
+                  : a.type() == Move.DESTROY ? 8 : 3;
+        if (rank != needs) return "Your character cannot do that.";
+        if (abilityUsed) return "You already used your ability this turn.";
+        switch (a.type()) {
+            case Move.KILL:
+                return Rules.canKill(a.a()) ? null : "Rank must be 2-8.";
+            case Move.STEAL:
+                if (!Rules.isStealRank(a.a())) return "Rank must be 3-8.";
+                return Rules.canSteal(this, a.a()) ? null : "You cannot steal from the assassinated character.";
+            case Move.SWAP:
+                return a.a() < players.size() && Rules.canSwap(p, players.get(a.a()))
+                        ? null : "Invalid player number.";
+            case Move.REDRAW: {
+                int h = Math.min(p.getHand().size(), Move.MAX_MASK_BITS);
+                if (a.b() == 0 || (a.b() >>> h) != 0) return "Invalid index.";
+                return null;
+            }
+            default: { // DESTROY
+                if (a.a() >= players.size()) return "Invalid player number.";
+                Player victim = players.get(a.a());
+                if (a.b() >= victim.getCity().size())
+                    return "Invalid index. Enter a number between 1 and " + victim.getCity().size() + ".";
+                if (bishopProtected.contains(victim)) return "Protected by Bishop.";
+                if (!Rules.isAttackable(this, victim)) return "That city is complete.";
+                return Rules.canDestroy(this, p, victim, a.b()) ? null : "Not enough gold.";
             }
-            cli.println("It is not your turn. Press t to continue with other player turns.");
         }
     }
 
+    /**
+     * Returns what the current player has already done this turn
+     * @return {@link MoveGenerator} flags for the turn in progress
+     */
+    public int getTurnFlags() {
+        return (resourcesTaken ? MoveGenerator.RESOURCES_TAKEN : 0)
+             | (abilityUsed ? MoveGenerator.ABILITY_USED : 0);
+    }
+
+    /**
+     * Returns the current phase
+     * @return SELECTION or TURN
+     */
+    public GamePhase getPhase() { return phase; }
+
     /* ================================================================ *
      *  Helper look-ups                                                 *
      * ================================================================ */
@@ -374,7 +1017,8 @@ public final class CitadelsGame {
      */
     public void collectGold(Player p) {
         p.gainGold(2);
-        cli.println("Player " + (p.getId()+1) + " collected 2 gold.");
+        publish(EventType.GOLD_COLLECTED, p.getId(), 2, -1);
+        cli.println(() -> "Player " + (p.getId()+1) + " collected 2 gold.");
     }
 
     /**
@@ -382,7 +1026,10 @@ public final class CitadelsGame {
      * @param p the player to gain the gold for
      * @param n the amount of gold to gain
      */
-    public void gainGold(Player p, int n) { p.gainGold(n); }
+    public void gainGold(Player p, int n) {
+        p.gainGold(n);
+        publish(EventType.GOLD_COLLECTED, p.getId(), n, -1);
+    }
 
     /**
      * Gains gold for the player based on the color of the district 
@@ -394,6 +1041,7 @@ public final class CitadelsGame {
                 .filter(d -> d.getColor()==color || d.isSchoolOfMagic())
                 .count();
         p.gainGold((int) n);
+        if (n > 0) publish(EventType.GOLD_COLLECTED, p.getId(), (int) n, color.ordinal());
     }
 
     /**
@@ -402,55 +1050,125 @@ public final class CitadelsGame {
      * @param n the number of cards to draw
      */
     public void drawCards(Player p, int n) {
-        for (int i = 0; i < n && !districtDeck.isEmpty(); i++)
-            p.addCardToHand(districtDeck.draw());
+        int drawn = 0;
+        for (; drawn < n && !districtDeck.isEmpty(); drawn++)
+            p.addCardToHand(takeFromDeck(p));
+        if (drawn > 0) publish(EventType.CARDS_DRAWN, p.getId(), drawn, 0);
     }
 
-    boolean picked_one = false; //flag to check if the player has already picked a card out of 2
+    /**
+     * Draws the top card of the district deck for a player and tells listeners.
+     * @param p the player drawing
+     * @return the card drawn
+     */
+    private DistrictCard takeFromDeck(Player p) {
+        DistrictCard c = districtDeck.draw();
+        for (GameListener l : listeners) l.cardDrawn(p, c);
+        return c;
+    }
 
     /**
-     * Draws two cards and allows the player to pick one.
-     * If the player is an AI, it will pick the card with the lower cost.
-     * If the player is a human, it will prompt the player to pick one.
+     * Puts a card from a player's draw back under the district deck.
+     * @param p the player returning the card
+     * @param c the card returned
+     */
+    private void returnToDeck(Player p, DistrictCard c) {
+        districtDeck.putOnBottom(c);
+        for (GameListener l : listeners) l.cardReturned(p, c);
+    }
+
+    /**
+     * Discards a card face down from a player's hand (Magician redraw).
+     * @param p the player discarding
+     * @param idx 0-based index into the hand
+     */
+    public void discardFromHand(Player p, int idx) {
+        DistrictCard c = p.removeCardFromHand(idx);
+        for (GameListener l : listeners) l.cardDiscarded(p, c);
+    }
+
+    /**
+     * Draws two cards and lets the player keep one; the other goes under the deck.
+     * With a Library in the city both are kept. Blocks on interactive players.
      * @param p the player to draw the cards for
      */
     public void drawTwoChoose(Player p) {
-        if (districtDeck.size() < 2) { drawCards(p, 2); return; }
+        if (!offerTwo(p)) return;
+        keepDrawn(p, p.chooseDrawnCard(this, pendingDraw[0], pendingDraw[1]));
+    }
+
+    /**
+     * Like {@link #drawTwoChoose}, but an interactive player's choice is left
+     * pending and arrives later through {@link #resolveDraw}.
+     * @param p the player to draw the cards for
+     */
+    private void beginDraw(Player p) {
+        if (!offerTwo(p)) return;
+        if (p.isInteractive()) {
+            cli.println("Pick one of the following cards: 1 or 2.\n1. " + pendingDraw[0] + "\n2. " + pendingDraw[1]);
+            return;
+        }
+        keepDrawn(p, p.chooseDrawnCard(this, pendingDraw[0], pendingDraw[1]));
+    }
+
+    /**
+     * Takes two cards for the player
+     * @param p the player drawing
+     * @return true if a choice between the two is pending, false if already settled
+     */
+    private boolean offerTwo(Player p) {
+        if (districtDeck.size() < 2) { drawCards(p, 2); return false; }
         //the 2 cards from which either 1 is drawn or if player has library, both are drawn
-        DistrictCard a = districtDeck.draw();
-        DistrictCard b = districtDeck.draw();
+        DistrictCard a = takeFromDeck(p);
+        DistrictCard b = takeFromDeck(p);
+        publish(EventType.CARDS_DRAWN, p.getId(), 2, 0);
 
         // check if the player has a library in their city (library purple card effect)
         boolean hasLib = p.getCity().stream().anyMatch(DistrictCard::isLibrary);
         if (hasLib) {
             p.addCardToHand(a); p.addCardToHand(b);
             cli.println("Library effect: kept both.");
-            return;
-        }
-        /* if the player is an AI, add the card with the lower cost to the player's hand
-        and put the other card at the bottom of the deck*/
-        if (p instanceof AIPlayer) {
-            p.addCardToHand(a.getCost() >= b.getCost() ? a : b);
-            districtDeck.putOnBottom(a.getCost() >= b.getCost() ? b : a);
-            return;
+            return false;
         }
+        pendingDraw = new DistrictCard[] { a, b };
+        return true;
+    }
 
-        cli.println("Pick one of the following cards: 1 or 2.\n1. " + a + "\n2. " + b);
-        
-        while (true) {
-            String in = cli.prompt("> ").trim();
-            //player can see info about the cards which they can pick
-            if(in.startsWith("info")) {
-                if(in.equals("info 1")) { CommandHandler.printDistrictInfo(a); }
-                if(in.equals("info 2")) { CommandHandler.printDistrictInfo(b); }
-                continue;
-            }
-            // pick the chosen card and put the other one at the bottom of the deck
-            if (in.equals("1") && !picked_one) {p.addCardToHand(a); districtDeck.putOnBottom(b); picked_one = true; return;}
-            if (in.equals("2") && !picked_one) {p.addCardToHand(b); districtDeck.putOnBottom(a); picked_one = true; return;}
-            if (picked_one) { cli.println("You already picked one card!"); return; }
-            cli.println("Invalid input, enter '1' or '2'.");
+    /* keep the chosen card and put the other one at the bottom of the deck */
+    private void keepDrawn(Player p, DistrictCard kept) {
+        DistrictCard other = kept == pendingDraw[0] ? pendingDraw[1] : pendingDraw[0];
+        pendingDraw = null;
+        p.addCardToHand(kept);
+        returnToDeck(p, other);
+    }
+
+    /**
+     * Checks if the current player still has to pick one of two drawn cards
+     * @return true while a draw choice is pending
+     */
+    public boolean isAwaitingDrawChoice() { return pendingDraw != null; }
+
+    /**
+     * Handles one line typed while a draw choice is pending:
+     * {@code 1} or {@code 2} picks, {@code info 1}/{@code info 2} describes.
+     * @param line the input line
+     * @return true once the choice is made
+     */
+    public boolean resolveDraw(String line) {
+        if (pendingDraw == null) return true;
+        String in = line.trim();
+        //player can see info about the cards which they can pick
+        if (in.startsWith("info")) {
+            if (in.equals("info 1")) { cli.printDistrictInfo(pendingDraw[0]); }
+            if (in.equals("info 2")) { cli.printDistrictInfo(pendingDraw[1]); }
+            return false;
+        }
+        if (in.equals("1") || in.equals("2")) {
+            keepDrawn(turnPlayer, pendingDraw[in.equals("1") ? 0 : 1]);
+            return true;
         }
+        cli.println("Invalid input, enter '1' or '2'.");
+        return false;
     }
 
     /**
@@ -459,16 +1177,40 @@ public final class CitadelsGame {
      * @param card the district card to build
      */
     public void buildDistrict(Player p, DistrictCard card) {
+        if (playout) { tryBuild(p, card); return; }
+        DistrictEvent e = new DistrictEvent();
+        e.begin();
+        boolean ok = tryBuild(p, card);
+        if (e.shouldCommit()) {
+            e.about(this, p);
+            e.action = "build";
+            e.district = card.getName();
+            e.succeeded = ok;
+            e.commit();
+        }
+    }
+
+    private boolean tryBuild(Player p, DistrictCard card) {
+        int built = getBuiltThisTurn(p);
+        //cannot build more than the build limit in one turn
+        if (!Rules.hasBuildsLeft(p, built)) {
+            cli.println("You cannot build more districts this turn."); return false;
+        }
         //cannot build a district if the player already has it
-        if (p.getCity().stream().anyMatch(d -> d.getName().equals(card.getName()))) {
-            cli.println("You already have that district."); return;
+        if (Rules.isDuplicate(p, card)) {
+            cli.println("You already have that district."); return false;
         }
         //cannot afford the district
-        if (!p.spendGold(card.getCost())) { cli.println("Cannot afford."); return; }
+        if (!Rules.canAfford(p, card)) { cli.println("Cannot afford."); return false; }
         //remove card from hand and add to city
-        p.getHand().remove(card);
+        p.spendGold(card.getCost());
+        p.removeCardFromHand(card);
         p.addDistrictToCity(card);
-        cli.println("Built " + card);
+        builtThisTurn.put(p, built + 1);
+        for (GameListener l : listeners) l.districtBuilt(p, card);
+        publish(EventType.DISTRICT_BUILT, p.getId(), card.getId(), card.getCost());
+        cli.println(() -> "Built " + card);
+        return true;
     }
 
     /* -- character-specific helpers -- */
@@ -477,7 +1219,11 @@ public final class CitadelsGame {
      * Kills a character
      * @param rank the rank of the character to kill
      */
-    public void killCharacter(int rank) { killedRanks.add(rank); }
+    public void killCharacter(int rank) {
+        if (killedRanks.add(rank)) flagsKey ^= Zobrist.killed(rank);
+        Player assassin = findPlayerByRank(1);
+        publish(EventType.KILL, assassin == null ? -1 : assassin.getId(), rank, 0);
+    }
 
     /**
      * Sets the target for the thief
@@ -485,7 +1231,7 @@ public final class CitadelsGame {
      * @param rank the rank of the character to steal from
      */
     public void setRobTarget(Player thief, int rank) {
-        thiefPlayer = thief; robbedRank = rank;
+        thiefPlayer = thief; setRobbedRank(rank);
     }
 
     /**
@@ -496,10 +1242,11 @@ public final class CitadelsGame {
     public void swapHands(Player a, Player b) {
         //store the hand of player a in a temporary list
         List<DistrictCard> tmp = new ArrayList<>(a.getHand());
-        //clear the hand of player a and add the hand of player b to it
-        a.getHand().clear(); a.getHand().addAll(b.getHand());
-        //clear the hand of player b and add the temporary list to it
-        b.getHand().clear(); b.getHand().addAll(tmp);
+        //replace the hand of player a with the hand of player b
+        a.replaceHand(b.getHand());
+        //replace the hand of player b with the temporary list
+        b.replaceHand(tmp);
+        for (GameListener l : listeners) l.handsSwapped(a, b);
     }
 
     /**
@@ -509,20 +1256,42 @@ public final class CitadelsGame {
      * @param idx the index of the district to destroy
      */
     public void destroyDistrict(Player attacker, Player victim, int idx) {
+        if (playout) { tryDestroy(attacker, victim, idx); return; }
+        DistrictEvent e = new DistrictEvent();
+        e.begin();
+        String name = idx >= 0 && idx < victim.getCity().size() ? victim.getCity().get(idx).getName() : null;
+        boolean ok = tryDestroy(attacker, victim, idx);
+        if (e.shouldCommit()) {
+            e.about(this, attacker);
+            e.action = "destroy";
+            e.district = name;
+            e.succeeded = ok;
+            e.commit();
+        }
+    }
+
+    private boolean tryDestroy(Player attacker, Player victim, int idx) {
         //invalid input
-        if (idx<0||idx>=victim.getCity().size()) { cli.println("Invalid index. Enter a number between 1 and " + victim.getCity().size() + "."); return; }
+        if (idx<0||idx>=victim.getCity().size()) { cli.println("Invalid index. Enter a number between 1 and " + victim.getCity().size() + "."); return false; }
         //warlord cannot destroy bishop's district
-        if (bishopProtected.contains(victim)) { cli.println("Protected by Bishop."); return; }
+        if (bishopProtected.contains(victim)) { cli.println("Protected by Bishop."); return false; }
+        //a completed city cannot be attacked
+        if (!Rules.isAttackable(this, victim)) { cli.println("That city is complete."); return false; }
         //get the district to destroy
         DistrictCard d = victim.getCity().get(idx);
         //calculate the cost to destroy the district (cost of district - 1)
-        int cost = Math.max(0, d.getCost() - 1);
+        int cost = Rules.destroyCost(d);
         //not enough gold
-        if (!attacker.spendGold(cost)) { cli.println("Not enough gold."); return; }
-        //remove the district from the city
-        victim.getCity().remove(idx);
-        cli.println("Destroyed " + d.getName() + " in Player " +
+        if (!attacker.spendGold(cost)) { cli.println("Not enough gold."); return false; }
+        //remove the district from the city; it goes under the deck, as an unkept drawn card does
+        //(a Magician's discards, unlike it, leave the game)
+        victim.removeDistrictFromCity(idx);
+        districtDeck.putOnBottom(d);
+        for (GameListener l : listeners) l.districtDestroyed(victim, d);
+        publish(EventType.DISTRICT_DESTROYED, victim.getId(), d.getId(), cost);
+        cli.println(() -> "Destroyed " + d.getName() + " in Player " +
                 (victim.getId()+1) + "'s city.");
+        return true;
     }
 
     /**
@@ -530,8 +1299,15 @@ public final class CitadelsGame {
      * @param p the player who is taking the crown
      */
     public void takeCrown(Player p) {
-        crownedSeat = p.getId();
-        cli.println("Player " + (p.getId()+1) + " receives the crown.");
+        crown(p.getId());
+        cli.println(() -> "Player " + (p.getId()+1) + " receives the crown.");
+    }
+
+    /** Moves the crown, publishing only real changes */
+    private void crown(int seat) {
+        if (seat == crownedSeat) return;
+        setCrownedSeat(seat);
+        publish(EventType.CROWN, seat, 0, 0);
     }
 
     /**
@@ -540,7 +1316,17 @@ public final class CitadelsGame {
      * @param limit the limit to set
      */
     public void setBuildLimit(Player p, int limit) {
-        builtThisTurn.put(p, -limit); //-limit = may build up to limit
+        p.setBuildLimit(limit);
+    }
+
+    /**
+     * Returns how many districts the player has built this turn
+     * @param p the player to check
+     * @return districts built since the player's turn started
+     */
+    public int getBuiltThisTurn(Player p) {
+        Integer n = builtThisTurn.get(p);
+        return n == null ? 0 : n;
     }
 
     /**
@@ -550,103 +1336,80 @@ public final class CitadelsGame {
      */
     public boolean isBishopProtected(Player p) { return bishopProtected.contains(p); }
 
+    /**
+     * Checks if the character with the given rank was killed this round
+     * @param rank the rank to check
+     * @return true if the Assassin chose that rank
+     */
+    public boolean isKilled(int rank) { return killedRanks.contains(rank); }
+
+    /**
+     * Returns the characters still available in the selection phase
+     * @return rank bits (bit rank-1) offered to the picking player; 0 outside selection
+     */
+    public int getAvailableRanks() { return availableRanks; }
+
     /**
      * Sets the bishop protection for the player if they chose bishop character
      * @param p the player to set the bishop protection for
      * @param on true if the player is protected by the bishop, false otherwise
      */
     public void setBishopProtection(Player p, boolean on) {
-        if (on) bishopProtected.add(p); else bishopProtected.remove(p);
+        if (on ? bishopProtected.add(p) : bishopProtected.remove(p)) flagsKey ^= Zobrist.bishop(p.getId());
     }
 
-    /* -- prompt helpers for Human players -- */
+    /* -- decision helpers used by character abilities -- */
 
     /**
-     * Prompts the player to select a character
+     * Asks the player to select a character
      * @param actor the player who is selecting the character
      * @param from the starting rank of the character
      * @param to the ending rank of the character
      * @param verb the verb to use in the prompt
      * @return the rank of the selected character
      */
-    public int promptCharacterSelection(Player actor, int from,int to,String verb) {
-        //if the player is an AI, return a random character
-        if (actor instanceof AIPlayer) return from + rng.nextInt(to-from+1);
-        //if human player
-        while (true) {
-            String in = cli.prompt("Who do you want to "+verb+
-                    "? Choose a character from "+from+"-"+to+":\n> ");
-            try { int r=Integer.parseInt(in.trim());
-                if (r>=from&&r<=to) return r;
-            } catch (NumberFormatException ignored) { }
-            cli.println("Please enter a number between "+from+" and "+to+".");
-        }
+    public int promptCharacterSelection(Player actor, int from, int to, String verb) {
+        return actor.chooseRank(this, from, to, verb);
     }
 
     /**
-     * Prompts the player to select a player
+     * Asks the player to select a player
      * @param actor the player who is selecting the player
      * @param q the question to prompt the player with
      * @return the player who is selected
      */
-    public Player promptPlayerSelection(Player actor,String q) {
-        //if the player is an AI, return a random player
-        if (actor instanceof AIPlayer) return players.get(rng.nextInt(players.size()));
-        //if human player
-        while (true) {
-            String in=cli.prompt(q+" (1-"+players.size()+"):\n> ");
-
-            try { int seat=Integer.parseInt(in.trim())-1;
-                if (seat>=0&&seat<players.size()) return players.get(seat);
-            } catch (NumberFormatException ignored) { }
-            cli.println("Invalid player number.");
-        }
+    public Player promptPlayerSelection(Player actor, String q) {
+        return actor.choosePlayer(this, q);
     }
 
     /**
-     * Prompts the player who chose Warlord to select a district
+     * Asks the Warlord to select a district in the victim's city
+     * @param actor the player who is choosing
      * @param victim the player who is being selected from
      * @param q the question to prompt the player with
-     * @return the index of the selected district
-     */
-    public int promptDistrictSelection(Player victim,String q) {
-        if (victim.getCity().isEmpty()) return -1;
-        if (victim instanceof AIPlayer) return 0;
-        cli.println("Victim city:");
-        for (int i=0;i<victim.getCity().size();i++)
-            cli.println((i+1)+". "+victim.getCity().get(i));
-        while (true) {
-            String in=cli.prompt(q+" (1-"+victim.getCity().size()+"):\n> ");
-            try { int idx=Integer.parseInt(in.trim())-1;
-                if (idx>=0&&idx<victim.getCity().size()) return idx;
-            } catch (NumberFormatException ignored) { }
-            cli.println("Invalid index.");
-        }
+     * @return the index of the selected district, -1 if the city is empty
+     */
+    public int promptDistrictSelection(Player actor, Player victim, String q) {
+        return actor.chooseDistrict(this, victim, q);
     }
 
     /**
-     * Prompts the player to discard cards (Magician ability)
+     * Asks the player which cards to discard and discards them (Magician ability)
      * @param p the player who is discarding the cards
      * @param msg the message to prompt the player with
      * @return the number of cards discarded
      */
-    public int promptAndDiscardCards(Player p,String msg){
-        if(p instanceof AIPlayer)return 0;
-        cli.println(msg+" (comma-separated hand indexes, blank cancels):");
-        for (int i=0;i<p.getHand().size();i++)
-            cli.println((i+1)+". "+p.getHand().get(i));
-        String in=cli.prompt("> ").trim();
-        if(in.isEmpty())return 0;
-        int disc=0;
-        for(String s:in.split(",")){
-            try{
-                int idx=Integer.parseInt(s.trim())-1;
-                if(idx>=0&&idx<p.getHand().size()){ p.getHand().remove(idx); disc++; }
-            }catch(NumberFormatException ignore){}
-        }
-        return disc;
+    public int promptAndDiscardCards(Player p, String msg) {
+        return discardMask(p, p.chooseDiscards(this, msg));
     }
 
+    /* discards the hand cards in mask, highest index first so indexes stay valid */
+    private int discardMask(Player p, int mask) {
+        int disc = 0;
+        for (int i = Math.min(p.getHand().size(), Move.MAX_MASK_BITS) - 1; i >= 0; i--)
+            if ((mask & (1 << i)) != 0) { discardFromHand(p, i); disc++; }
+        return disc;
+    }
 
     /**
      * Returns the rank of the robbed character
@@ -670,16 +1433,24 @@ public final class CitadelsGame {
      * Sets the robbed rank
      * @param r the rank of the robbed character
      */
-    public void setRobbedRank(int r){ robbedRank=r; }
+    public void setRobbedRank(int r){ flagsKey ^= Zobrist.robbed(robbedRank) ^ Zobrist.robbed(r); robbedRank=r; }
 
     /**
      * Sets the killed ranks
      * @param ks the set of killed ranks
      */
-    public void setKilledRanks(Set<Integer> ks){ killedRanks.clear(); killedRanks.addAll(ks); }
+    public void setKilledRanks(Set<Integer> ks){
+        for (int r : killedRanks) flagsKey ^= Zobrist.killed(r);
+        killedRanks.clear(); killedRanks.addAll(ks);
+        for (int r : killedRanks) flagsKey ^= Zobrist.killed(r);
+    }
 
 
-    public void setBishopProtected(Set<Player> ps){ bishopProtected.clear(); bishopProtected.addAll(ps); }
+    public void setBishopProtected(Set<Player> ps){
+        for (Player p : bishopProtected) flagsKey ^= Zobrist.bishop(p.getId());
+        bishopProtected.clear(); bishopProtected.addAll(ps);
+        for (Player p : bishopProtected) flagsKey ^= Zobrist.bishop(p.getId());
+    }
 
     /**
      * Returns the player at the given seat
@@ -715,12 +1486,73 @@ public final class CitadelsGame {
      */
     public int getRound() { return roundNo; }
 
+    /**
+     * Returns this game's process-unique id, used to tell games apart in traces;
+     * a fork has the id of the game it was forked from
+     * @return the id
+     */
+    public long getGameId() { return gameId; }
+
+    /**
+     * Returns whether this game is a fork played out for look-ahead, which
+     * metrics and recordings leave out
+     * @return true for a fork
+     */
+    public boolean isPlayout() { return playout; }
+
+    /**
+     * Returns the seed of this game's shuffles (AI choices are not seeded)
+     * @return the seed
+     */
+    public long getSeed() { return seed; }
+
+    /**
+     * Sets how long an AI may think about one decision, a pick or a whole
+     * turn. Searches stop when the time is up with the best answer found
+     * so far; with no time at all the AI plays by its heuristics alone.
+     * @param millis milliseconds per decision, 0 for heuristics only
+     */
+    public void setThinkMillis(long millis) {
+        if (millis < 0) throw new IllegalArgumentException("Think budget must be 0 or more");
+        thinkMillis = millis;
+    }
+
+    /**
+     * Returns the AI think budget
+     * @return milliseconds per decision
+     */
+    public long getThinkMillis() { return thinkMillis; }
+
     /**
      * Returns the crowned seat
      * @return the crowned seat
      */
     public int getCrownedSeat() { return crownedSeat; }
 
+    /**
+     * Returns the Zobrist key of the state: characters, gold, hands, cities,
+     * crown and round flags (see {@link Zobrist}). Kept up to date by every
+     * mutator, so this is a handful of XORs.
+     * @return the 64-bit key
+     */
+    public long zobrist() {
+        long k = flagsKey;
+        for (int i = 0; i < players.size(); i++) k ^= players.get(i).zobrist();
+        return k;
+    }
+
+    /**
+     * Returns the number of cards left in the district deck
+     * @return the district deck size
+     */
+    public int getDistrictDeckSize() { return districtDeck.size(); }
+
+    /**
+     * Returns the district deck, top card first
+     * @return a read-only copy of the deck
+     */
+    public java.util.List<DistrictCard> getDistrictDeck() { return districtDeck.asListView(); }
+
     /** 
      * Returns the list of district deck names
      * @return the list of district deck names
@@ -741,7 +1573,7 @@ public final class CitadelsGame {
      * Sets the crowned seat
      * @param seat the seat of the crowned player
      */
-    public void setCrownedSeat(int seat) { this.crownedSeat = seat; }
+    public void setCrownedSeat(int seat) { flagsKey ^= Zobrist.crown(crownedSeat) ^ Zobrist.crown(seat); this.crownedSeat = seat; }
 
     /**
      * Replaces the current deck with an ordered list of cards
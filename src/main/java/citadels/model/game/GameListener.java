@@ -0,0 +1,48 @@
+package citadels.model.game;
+
+import citadels.model.card.DistrictCard;
+import citadels.model.player.Player;
+
+/**
+ * Synchronous observer of card movements inside {@link CitadelsGame}.
+ *
+ * <p>Callbacks run on the game thread, right after the state changed.
+ * Every event carries the real card, but only some of them are public:
+ * an honest listener may only look at the card of a draw, return or
+ * discard when the acting player is the seat it observes for.</p>
+ */
+public interface GameListener {
+
+    /** {@code p} took {@code c} from the top of the district deck (private). */
+    default void cardDrawn(Player p, DistrictCard c) {}
+
+    /** {@code p} put {@code c} on the bottom of the district deck (private). */
+    default void cardReturned(Player p, DistrictCard c) {}
+
+    /** {@code p} discarded {@code c} face down from their hand (private). */
+    default void cardDiscarded(Player p, DistrictCard c) {}
+
+    /** {@code a} and {@code b} exchanged their whole hands (public). */
+    default void handsSwapped(Player a, Player b) {}
+
+    /** {@code p} built {@code c} into their city (public). */
+    default void districtBuilt(Player p, DistrictCard c) {}
+
+    /** {@code c} was destroyed in {@code victim}'s city and put under the deck (public). */
+    default void districtDestroyed(Player victim, DistrictCard c) {}
+
+    /** {@code p} took the character of rank {@code rank} in the selection phase (private). */
+    default void characterChosen(Player p, int rank) {}
+
+    /**
+     * A rank was called in the turn phase: {@code p} holds it, or nobody
+     * does if {@code p} is null (public).
+     */
+    default void characterRevealed(int rank, Player p) {}
+
+    /** The round is over; character knowledge is stale from here on. */
+    default void roundEnded() {}
+
+    /** The whole state was replaced, e.g. after loading a save. */
+    default void stateRestored(CitadelsGame g) {}
+}
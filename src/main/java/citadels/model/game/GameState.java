@@ -29,6 +29,7 @@ public final class GameState {
         root.put("round",        g.getRound());
         root.put("crownSeat",    g.getCrownedSeat());
         root.put("robbedRank",   g.getRobbedRank());
+        root.put("thinkMillis",  g.getThinkMillis());
 
         /* killed rank set */
         JSONArray killed = new JSONArray();
@@ -88,6 +89,10 @@ public final class GameState {
         /* robbery / kill flags */
         g.setRobbedRank( ((Number) root.get("robbedRank")).intValue() );
 
+        /* AI think budget (older saves have none: keep the default) */
+        if (root.get("thinkMillis") instanceof Number)
+            g.setThinkMillis(Math.max(0, ((Number) root.get("thinkMillis")).longValue()));
+
         Set<Integer> killed = new HashSet<>();
         for (Object o : (JSONArray) root.get("killedRanks"))
             killed.add(((Number) o).intValue());
@@ -113,6 +118,7 @@ public final class GameState {
         for (String n : deckNames) ordered.add(repo.districtByName(n));
         g.resetDistrictDeck(ordered);
 
+        g.notifyRestored(); // listeners rebuild from the loaded state
         return g;
     }
 
@@ -130,9 +136,11 @@ public final class GameState {
         int gold = ((Number) jo.get("gold")).intValue();
         p.gainGold(gold - p.getGold());
 
-        /* hand */
+        /* hand, replacing the cards the new game dealt */
+        List<DistrictCard> hand = new ArrayList<>();
         for (Object o : (JSONArray) jo.get("hand"))
-            p.addCardToHand(repo.districtByName((String) o));
+            hand.add(repo.districtByName((String) o));
+        p.replaceHand(hand);
 
         /* city */
         for (Object o : (JSONArray) jo.get("city"))
@@ -0,0 +1,93 @@
+package citadels.model.game;
+
+/**
+ * A legal action packed into one {@code int}, as written by {@link MoveGenerator}.
+ *
+ * <pre>
+ *  bits  0-3   type   (PICK, GOLD, CARDS, BUILD, …)
+ *  bits  4-11  a      rank, hand index or seat
+ *  bits 12-31  b      district index, or a hand-index mask for REDRAW
+ * </pre>
+ *
+ * <p>Packing keeps move lists in plain {@code int[]} buffers, so search code can
+ * enumerate and replay moves without creating objects.</p>
+ */
+public final class Move {
+
+    /** Take character {@code a} (rank) in the selection phase */
+    public static final int PICK    = 1;
+    /** Collect 2 gold */
+    public static final int GOLD    = 2;
+    /** Draw two district cards and keep one */
+    public static final int CARDS   = 3;
+    /** Build hand card {@code a} */
+    public static final int BUILD   = 4;
+    /** Assassin: kill rank {@code a} */
+    public static final int KILL    = 5;
+    /** Thief: rob rank {@code a} */
+    public static final int STEAL   = 6;
+    /** Magician: swap hands with seat {@code a} */
+    public static final int SWAP    = 7;
+    /** Magician: discard the hand cards in mask {@code b} and redraw as many */
+    public static final int REDRAW  = 8;
+    /** Warlord: destroy district {@code b} in seat {@code a}'s city */
+    public static final int DESTROY = 9;
+    /** End the turn */
+    public static final int END     = 10;
+
+    /** Hand cards a REDRAW mask can address */
+    public static final int MAX_MASK_BITS = 20;
+
+    private Move() { }
+
+    /**
+     * Packs a move.
+     * @param type one of the type constants
+     * @param a first operand (0-255)
+     * @param b second operand (0 to 2^20-1)
+     * @return the packed move
+     */
+    public static int of(int type, int a, int b) {
+        return type | a << 4 | b << 12;
+    }
+
+    /** Packs a move with only a first operand */
+    public static int of(int type, int a) { return of(type, a, 0); }
+
+    /** Type of a packed move */
+    public static int type(int m) { return m & 0xF; }
+
+    /** First operand of a packed move */
+    public static int a(int m) { return (m >>> 4) & 0xFF; }
+
+    /** Second operand of a packed move */
+    public static int b(int m) { return m >>> 12; }
+
+    /**
+     * Human-readable form, in the words of the CLI commands (seats and
+     * indexes 1-based).
+     * @param m packed move
+     * @return description of the move
+     */
+    public static String toString(int m) {
+        switch (type(m)) {
+            case PICK:    return "pick " + CitadelsGame.rankName(a(m));
+            case GOLD:    return "gold";
+            case CARDS:   return "cards";
+            case BUILD:   return "build " + (a(m) + 1);
+            case KILL:    return "action kill " + a(m);
+            case STEAL:   return "action steal " + a(m);
+            case SWAP:    return "action swap " + (a(m) + 1);
+            case REDRAW: {
+                StringBuilder sb = new StringBuilder("action redraw ");
+                int mask = b(m);
+                for (int i = 0; mask >> i != 0; i++)
+                    if ((mask & (1 << i)) != 0) sb.append(i + 1).append(mask >> (i + 1) != 0 ? "," : "");
+                return sb.toString();
+            }
+            case DESTROY: return "action destroy " + (a(m) + 1) + " " + (b(m) + 1);
+            case END:     return "end";
+            default:      return "?" + m;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package citadels.model.game;
+
+import citadels.model.card.DistrictCard;
+import citadels.model.player.Player;
+
+import java.util.List;
+
+/**
+ * Enumerates every legal action of one player as packed {@link Move}s.
+ *
+ * <p>Moves are written into a caller-owned {@code int[]}; nothing is
+ * allocated, so the generator can be called in tight search and fuzzing
+ * loops. If the buffer is too small the moves that fit are written and the
+ * full count is still returned, so the caller can grow the buffer and retry.</p>
+ *
+ * <p>The turn is modelled as two steps: before resources are taken only
+ * {@code GOLD}/{@code CARDS} (and the character ability) are legal; after
+ * that, builds, the ability and {@code END}. The caller passes which of
+ * these it has already done as {@code flags}.</p>
+ *
+ * <p>A Magician's redraws are not listed subset by subset, which would be
+ * 2<sup>h</sup>&minus;1 moves for a hand of h: the generator offers each
+ * card on its own, the cards the AI would redraw (duplicates of the city
+ * and cards out of reach), and the whole hand. The game still accepts any
+ * mask.</p>
+ */
+public final class MoveGenerator {
+
+    /** Flag: the player has already collected gold or drawn this turn */
+    public static final int RESOURCES_TAKEN = 1;
+    /** Flag: the character ability has already been used this turn */
+    public static final int ABILITY_USED    = 2;
+
+    private MoveGenerator() { }
+
+    /**
+     * Writes the legal moves of {@code p}.
+     * @param g current game
+     * @param p the player to move
+     * @param phase SELECTION (character picks) or TURN
+     * @param flags {@link #RESOURCES_TAKEN} and/or {@link #ABILITY_USED}
+     * @param out destination buffer
+     * @return number of legal moves (may exceed {@code out.length})
+     */
+    public static int generate(CitadelsGame g, Player p, GamePhase phase, int flags, int[] out) {
+        if (phase == GamePhase.SELECTION) return picks(g.getAvailableRanks(), out);
+
+        int n = 0;
+        if ((flags & RESOURCES_TAKEN) == 0) {
+            n = put(out, n, Move.of(Move.GOLD, 0));
+            if (g.getDistrictDeckSize() > 0) n = put(out, n, Move.of(Move.CARDS, 0));
+        } else {
+            n = builds(g, p, out, n);
+        }
+        if ((flags & ABILITY_USED) == 0 && p.getCharacter() != null) n = ability(g, p, out, n);
+        if ((flags & RESOURCES_TAKEN) != 0) n = put(out, n, Move.of(Move.END, 0));
+        return n;
+    }
+
+    /**
+     * Writes one {@code PICK} per rank in {@code rankMask} (bit {@code r-1}).
+     * @param rankMask characters still available
+     * @param out destination buffer
+     * @return number of moves
+     */
+    public static int picks(int rankMask, int[] out) {
+        int n = 0;
+        for (int r = 1; r <= Rules.MAX_RANK; r++)
+            if ((rankMask & (1 << (r - 1))) != 0) n = put(out, n, Move.of(Move.PICK, r));
+        return n;
+    }
+
+    /* one BUILD per distinct buildable card, while the build limit allows */
+    private static int builds(CitadelsGame g, Player p, int[] out, int n) {
+        if (!Rules.hasBuildsLeft(p, g.getBuiltThisTurn(p))) return n;
+        List<DistrictCard> hand = p.getHand();
+        for (int i = 0; i < hand.size(); i++) {
+            DistrictCard c = hand.get(i);
+            if (!Rules.canBuild(p, c) || sameNameBefore(hand, i)) continue;
+            n = put(out, n, Move.of(Move.BUILD, i));
+        }
+        return n;
+    }
+
+    private static int ability(CitadelsGame g, Player p, int[] out, int n) {
+        List<Player> players = g.getPlayers();
+        switch (p.getCharacter().getRank()) {
+            case 1:
+                for (int r = Rules.MIN_KILL_RANK; r <= Rules.MAX_RANK; r++)
+                    n = put(out, n, Move.of(Move.KILL, r));
+                break;
+            case 2:
+                for (int r = Rules.MIN_STEAL_RANK; r <= Rules.MAX_RANK; r++)
+                    if (Rules.canSteal(g, r)) n = put(out, n, Move.of(Move.STEAL, r));
+                break;
+            case 3: {
+                for (int s = 0; s < players.size(); s++)
+                    if (Rules.canSwap(p, players.get(s))) n = put(out, n, Move.of(Move.SWAP, s));
+                n = redraws(p, out, n);
+                break;
+            }
+            case 8:
+                for (int s = 0; s < players.size(); s++) {
+                    Player victim = players.get(s);
+                    if (!Rules.isAttackable(g, victim)) continue;
+                    for (int i = 0; i < victim.getCity().size(); i++)
+                        if (Rules.canDestroy(g, p, victim, i)) n = put(out, n, Move.of(Move.DESTROY, s, i));
+                }
+                break;
+            default:
+                break; // abilities of the other characters are automatic
+        }
+        return n;
+    }
+
+    /* each card alone, the dead cards, and the whole hand */
+    private static int redraws(Player p, int[] out, int n) {
+        List<DistrictCard> hand = p.getHand();
+        int h = Math.min(hand.size(), Move.MAX_MASK_BITS);
+        int dead = 0;
+        for (int i = 0; i < h; i++) {
+            n = put(out, n, Move.of(Move.REDRAW, 0, 1 << i));
+            DistrictCard c = hand.get(i);
+            if (Rules.isDuplicate(p, c) || c.getCost() > p.getGold() + 2) dead |= 1 << i;
+        }
+        int all = (1 << h) - 1;
+        if (Integer.bitCount(dead) > 1 && dead != all) n = put(out, n, Move.of(Move.REDRAW, 0, dead));
+        if (h > 1) n = put(out, n, Move.of(Move.REDRAW, 0, all));
+        return n;
+    }
+
+    private static boolean sameNameBefore(List<DistrictCard> hand, int i) {
+        String name = hand.get(i).getName();
+        for (int j = 0; j < i; j++)
+            if (hand.get(j).getName().equals(name)) return true;
+        return false;
+    }
+
+    private static int put(int[] out, int n, int move) {
+        if (n < out.length) out[n] = move;
+        return n + 1;
+    }
+}
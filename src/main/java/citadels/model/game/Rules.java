@@ -0,0 +1,98 @@
+package citadels.model.game;
+
+import citadels.model.card.DistrictCard;
+import citadels.model.player.Player;
+
+/**
+ * The legality checks of the game, in one place.
+ *
+ * <p>The engine ({@link CitadelsGame}), the CLI and the AI all ask here, and
+ * {@link MoveGenerator} enumerates exactly what these methods allow. None of
+ * them allocate, so they are cheap enough for search.</p>
+ */
+public final class Rules {
+
+    /** Lowest rank the Assassin may kill (not himself) */
+    public static final int MIN_KILL_RANK  = 2;
+    /** Lowest rank the Thief may rob (not the Assassin or himself) */
+    public static final int MIN_STEAL_RANK = 3;
+    /** Highest character rank */
+    public static final int MAX_RANK       = 8;
+
+    private Rules() { }
+
+    /* -- building -- */
+
+    /** Whether {@code p} already has a district with the same name */
+    public static boolean isDuplicate(Player p, DistrictCard c) {
+        return p.cityContains(c.getName());
+    }
+
+    /** Whether {@code p} can pay for {@code c} */
+    public static boolean canAfford(Player p, DistrictCard c) {
+        return c.getCost() <= p.getGold();
+    }
+
+    /** Whether {@code p} may build {@code c} (build limit aside) */
+    public static boolean canBuild(Player p, DistrictCard c) {
+        return canAfford(p, c) && !isDuplicate(p, c);
+    }
+
+    /**
+     * Whether {@code p} may still build this turn.
+     * @param p the player
+     * @param builtThisTurn districts already built this turn
+     * @return true if the build limit is not reached
+     */
+    public static boolean hasBuildsLeft(Player p, int builtThisTurn) {
+        return builtThisTurn < p.getBuildLimit();
+    }
+
+    /* -- character abilities -- */
+
+    /** Whether the Assassin may target {@code rank} */
+    public static boolean canKill(int rank) {
+        return rank >= MIN_KILL_RANK && rank <= MAX_RANK;
+    }
+
+    /** Whether {@code rank} is a valid Thief target at all */
+    public static boolean isStealRank(int rank) {
+        return rank >= MIN_STEAL_RANK && rank <= MAX_RANK;
+    }
+
+    /** Whether the Thief may rob {@code rank}: not the Assassin, Thief or the killed character */
+    public static boolean canSteal(CitadelsGame g, int rank) {
+        return isStealRank(rank) && !g.isKilled(rank);
+    }
+
+    /** Whether the Magician {@code p} may swap hands with {@code target} */
+    public static boolean canSwap(Player p, Player target) {
+        return target != p;
+    }
+
+    /** Gold the Warlord pays to destroy {@code d}: its cost minus one */
+    public static int destroyCost(DistrictCard d) {
+        return Math.max(0, d.getCost() - 1);
+    }
+
+    /** Whether {@code victim}'s city can be attacked at all (no Bishop, not complete) */
+    public static boolean isAttackable(CitadelsGame g, Player victim) {
+        return !g.isBishopProtected(victim)
+                && victim.getCity().size() < ScoreCalculator.CITY_SIZE;
+    }
+
+    /**
+     * Whether the Warlord {@code attacker} may destroy district {@code idx}
+     * in {@code victim}'s city.
+     * @param g current game
+     * @param attacker the Warlord
+     * @param victim owner of the city
+     * @param idx 0-based index into the city
+     * @return true if the target exists, is attackable and affordable
+     */
+    public static boolean canDestroy(CitadelsGame g, Player attacker, Player victim, int idx) {
+        return idx >= 0 && idx < victim.getCity().size()
+                && isAttackable(g, victim)
+                && destroyCost(victim.getCity().get(idx)) <= attacker.getGold();
+    }
+}
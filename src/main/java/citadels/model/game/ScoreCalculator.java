@@ -13,8 +13,42 @@ import java.util.stream.Collectors;
  */
 public final class ScoreCalculator {
 
+    /** Districts needed to complete a city (and end the game). */
+    public static final int CITY_SIZE         = 8;
+    /** Bonus for owning all five colours. */
+    public static final int DIVERSITY_BONUS   = 3;
+    /** Bonus for the first player to complete their city. */
+    public static final int FIRST_COMPLETE_BONUS = 4;
+    /** Bonus for every other completed city. */
+    public static final int COMPLETE_BONUS    = 2;
+    /** Extra points printed on Dragon Gate / University. */
+    public static final int EXTRA_POINTS      = 2;
+
+    /** Bit set with one bit per {@link DistrictColor} ordinal. */
+    public static final int ALL_COLOURS = (1 << DistrictColor.values().length) - 1;
+
     private ScoreCalculator() { }
 
+    /**
+     * Colour bits a district contributes towards the diversity bonus.
+     * School of Magic / Haunted Quarter count as every colour.
+     * @param d the district
+     * @return bit set over {@link DistrictColor} ordinals
+     */
+    public static int colourBits(DistrictCard d) {
+        if (d.isSchoolOfMagic() || d.isHauntedQuarter()) return ALL_COLOURS;
+        return 1 << d.getColor().ordinal();
+    }
+
+    /**
+     * Points a single district is worth on its own (cost plus printed extras).
+     * @param d the district
+     * @return base points
+     */
+    public static int districtPoints(DistrictCard d) {
+        return d.getCost() + (d.givesExtraPoints() ? EXTRA_POINTS : 0);
+    }
+
     public static Map<Player, Integer> compute(List<Player> players,
                                                int firstCompletedSeat) {
 
@@ -45,13 +79,14 @@ public final class ScoreCalculator {
             if (hasHaunted) colours.addAll(EnumSet.allOf(DistrictColor.class));
 
             if (colours.size() == 5)
-                score.put(p, score.get(p) + 3);
+                score.put(p, score.get(p) + DIVERSITY_BONUS);
         }
 
         /* — 3. completion bonuses — */
         for (Player p : players) {
-            if (p.getCity().size() >= 8) {
-                int bonus = (p.getId() == firstCompletedSeat) ? 4 : 2;
+            if (p.getCity().size() >= CITY_SIZE) {
+                int bonus = (p.getId() == firstCompletedSeat) ? FIRST_COMPLETE_BONUS
+                                                               : COMPLETE_BONUS;
                 score.put(p, score.get(p) + bonus);
             }
         }
@@ -60,7 +95,7 @@ public final class ScoreCalculator {
         for (Player p : players) {
             int extra = 0;
             for (DistrictCard d : p.getCity())
-                if (d.givesExtraPoints()) extra += 2;
+                if (d.givesExtraPoints()) extra += EXTRA_POINTS;
             score.put(p, score.get(p) + extra);
         }
         return score;
@@ -75,4 +110,25 @@ public final class ScoreCalculator {
                      .map(Map.Entry::getKey)
                      .collect(Collectors.toList());
     }
+
+    /**
+     * Returns the single winner: highest score, ties broken by the highest
+     * character rank held in the last round.
+     * @param scores final scores
+     * @return the winner, or null if there are no players
+     */
+    public static Player winner(Map<Player, Integer> scores) {
+        Player best = null;
+        int bestScore = -1, bestRank = -1;
+        for (Map.Entry<Player, Integer> e : scores.entrySet()) {
+            Player p = e.getKey();
+            int rank = p.getCharacter() == null ? 0 : p.getCharacter().getRank();
+            if (e.getValue() > bestScore || (e.getValue() == bestScore && rank > bestRank)) {
+                best = p;
+                bestScore = e.getValue();
+                bestRank = rank;
+            }
+        }
+        return best;
+    }
 }
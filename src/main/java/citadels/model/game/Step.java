@@ -0,0 +1,70 @@
+package citadels.model.game;
+
+/**
+ * Result of one {@link CitadelsGame#step} call: why the engine stopped.
+ *
+ * <p>Output produced during the step has already gone to the game's
+ * {@link citadels.cli.CommandHandler}. A host that buffers that output per
+ * game can drive any number of games from a few threads: call {@code step}
+ * again right away when the result is {@link Kind#RUNNING}, and only once a
+ * line from the awaited seat arrives when it is {@link Kind#AWAITING_INPUT}.</p>
+ */
+public final class Step {
+
+    /** Why {@link CitadelsGame#step} returned */
+    public enum Kind {
+        /** Waiting for one line of input from {@link #seat()} */
+        AWAITING_INPUT,
+        /** Made progress (e.g. an AI turn) and can continue without input */
+        RUNNING,
+        /** A round just finished and the game goes on */
+        ROUND_OVER,
+        /** A round just finished and a city is complete */
+        GAME_OVER
+    }
+
+    static final Step RUNNING    = new Step(Kind.RUNNING, -1, null);
+    static final Step ROUND_OVER = new Step(Kind.ROUND_OVER, -1, null);
+    static final Step GAME_OVER  = new Step(Kind.GAME_OVER, -1, null);
+
+    private static final String PROMPT = "> ";
+    private static final Step[] AWAITING = new Step[8]; // one per seat, so steps never allocate
+    static {
+        for (int i = 0; i < AWAITING.length; i++) AWAITING[i] = new Step(Kind.AWAITING_INPUT, i, PROMPT);
+    }
+
+    private final Kind kind;
+    private final int seat;
+    private final String prompt;
+
+    private Step(Kind kind, int seat, String prompt) {
+        this.kind = kind;
+        this.seat = seat;
+        this.prompt = prompt;
+    }
+
+    /** Waiting for a line from {@code seat}, shown the standard prompt */
+    static Step awaiting(int seat) {
+        return seat < AWAITING.length ? AWAITING[seat] : new Step(Kind.AWAITING_INPUT, seat, PROMPT);
+    }
+
+    /** Why the engine stopped */
+    public Kind kind() { return kind; }
+
+    /** Seat the engine waits for, or -1 when it is not waiting */
+    public int seat() { return seat; }
+
+    /** Prompt to show the awaited seat, or null */
+    public String prompt() { return prompt; }
+
+    /** Whether the engine needs a line of input before it can go on */
+    public boolean isAwaitingInput() { return kind == Kind.AWAITING_INPUT; }
+
+    /** Whether the round (or the game) ended with this step */
+    public boolean isRoundOver() { return kind == Kind.ROUND_OVER || kind == Kind.GAME_OVER; }
+
+    @Override
+    public String toString() {
+        return kind == Kind.AWAITING_INPUT ? "AWAITING_INPUT(seat " + (seat + 1) + ")" : kind.name();
+    }
+}
@@ -0,0 +1,166 @@
+package citadels.model.game;
+
+import citadels.model.card.CharacterCard;
+import citadels.model.card.DistrictCard;
+import citadels.model.player.Player;
+
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * 64-bit Zobrist keys of game states.
+ *
+ * <p>A state's key is the XOR of one random number per fact about it: each
+ * seat's character, gold, hand and city cards, the crowned seat, and the
+ * round flags (killed ranks, robbed rank, Bishop protection). Every mutator
+ * of {@link Player} and {@link CitadelsGame} flips the numbers of what it
+ * changes, so {@link CitadelsGame#zobrist()} costs a few XORs, and two
+ * states with the same key are, barring a 2^-64 accident, the same.</p>
+ *
+ * <p>Hands and cities may hold two copies of a card, which would cancel
+ * out under XOR, so card numbers are indexed by copy: the second Temple in
+ * a hand has a number of its own. Phase, round number and deck order are
+ * not part of the key.</p>
+ */
+public final class Zobrist {
+
+    private Zobrist() { }
+
+    /** Seats the tables cover */
+    public static final int MAX_SEATS = 7;
+
+    private static final long[][] CHARACTER = new long[MAX_SEATS][Rules.MAX_RANK + 1]; // [seat][0] = no character
+    private static final long[] CROWN     = new long[MAX_SEATS];
+    private static final long[] PROTECTED = new long[MAX_SEATS];
+    private static final long[] KILLED    = new long[Rules.MAX_RANK + 1];
+    private static final long[] ROBBED    = new long[Rules.MAX_RANK + 1];
+    private static final long GOLD_SALT, HAND_SALT, CITY_SALT;
+
+    static {
+        SplittableRandom r = new SplittableRandom(0x5EED_C17AD315L);  // fixed: keys must not change between runs
+        for (long[] row : CHARACTER)
+            for (int k = 1; k < row.length; k++) row[k] = r.nextLong();
+        for (int s = 0; s < MAX_SEATS; s++) { CROWN[s] = r.nextLong(); PROTECTED[s] = r.nextLong(); }
+        for (int k = 1; k <= Rules.MAX_RANK; k++) { KILLED[k] = r.nextLong(); ROBBED[k] = r.nextLong(); }
+        GOLD_SALT = r.nextLong();
+        HAND_SALT = r.nextLong();
+        CITY_SALT = r.nextLong();
+    }
+
+    /**
+     * @param seat 0-based seat
+     * @param c the seat's character, or null
+     * @return the number of the seat holding {@code c}; 0 for none
+     */
+    public static long character(int seat, CharacterCard c) {
+        return c == null ? 0 : CHARACTER[seat][c.getRank()];
+    }
+
+    /**
+     * @param seat 0-based seat
+     * @param gold the seat's gold
+     * @return the number of the seat having exactly {@code gold}
+     */
+    public static long gold(int seat, int gold) {
+        return mix(GOLD_SALT + ((long) seat << 32) + gold);
+    }
+
+    /**
+     * @param seat 0-based seat
+     * @param c a hand card
+     * @param copy how many cards of the same kind come before it (0 for the first)
+     * @return the number of that card in that hand
+     */
+    public static long hand(int seat, DistrictCard c, int copy) {
+        return mix(HAND_SALT + ((long) seat << 48) + ((long) copy << 40) + code(c));
+    }
+
+    /**
+     * @param seat 0-based seat
+     * @param c a built district
+     * @param copy how many districts of the same kind come before it (0 for the first)
+     * @return the number of that district in that city
+     */
+    public static long city(int seat, DistrictCard c, int copy) {
+        return mix(CITY_SALT + ((long) seat << 48) + ((long) copy << 40) + code(c));
+    }
+
+    /** @return the number of {@code seat} wearing the crown */
+    public static long crown(int seat) { return CROWN[seat]; }
+
+    /** @return the number of {@code rank} being killed this round */
+    public static long killed(int rank) { return rank >= 1 && rank <= Rules.MAX_RANK ? KILLED[rank] : 0; }
+
+    /** @return the number of {@code rank} being robbed this round; 0 for none (-1) */
+    public static long robbed(int rank) { return rank >= 1 && rank <= Rules.MAX_RANK ? ROBBED[rank] : 0; }
+
+    /** @return the number of {@code seat} being under Bishop protection */
+    public static long bishop(int seat) { return PROTECTED[seat]; }
+
+    /**
+     * Cards of the same kind share a code: the district's type id, or a
+     * hash of the name for cards made up outside the card table.
+     * @param c the card
+     * @return a non-negative code below 2^40
+     */
+    public static long code(DistrictCard c) {
+        return c.getId() >= 0 ? c.getId() : (1L << 32) | (c.getName().hashCode() & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Counts the cards of the same kind as {@code c} in {@code cards}.
+     * @param cards a hand or city
+     * @param c the card
+     * @return how many there are
+     */
+    public static int copies(List<DistrictCard> cards, DistrictCard c) {
+        long code = code(c);
+        int n = 0;
+        for (int i = 0; i < cards.size(); i++) if (code(cards.get(i)) == code) n++;
+        return n;
+    }
+
+    /**
+     * Computes a seat's key from scratch.
+     * @param p the player
+     * @return what {@link Player#zobrist()} must equal
+     */
+    public static long compute(Player p) {
+        int seat = p.getId();
+        long k = character(seat, p.getCharacter()) ^ gold(seat, p.getGold());
+        List<DistrictCard> hand = p.getHand(), city = p.getCity();
+        for (int i = 0; i < hand.size(); i++) k ^= hand(seat, hand.get(i), copies(hand.subList(0, i), hand.get(i)));
+        for (int i = 0; i < city.size(); i++) k ^= city(seat, city.get(i), copies(city.subList(0, i), city.get(i)));
+        return k;
+    }
+
+    /**
+     * Computes the key of the crown and round flags from scratch.
+     * @param g the game
+     * @return the part of {@link CitadelsGame#zobrist()} that is not the players'
+     */
+    public static long flags(CitadelsGame g) {
+        long k = crown(g.getCrownedSeat()) ^ robbed(g.getRobbedRank());
+        for (int r : g.getKilledRanks()) k ^= killed(r);
+        for (Player p : g.getBishopProtected()) k ^= bishop(p.getId());
+        return k;
+    }
+
+    /**
+     * Computes a game's key from scratch, the slow way.
+     * @param g the game
+     * @return what {@link CitadelsGame#zobrist()} must equal
+     */
+    public static long compute(CitadelsGame g) {
+        long k = flags(g);
+        for (Player p : g.getPlayers()) k ^= compute(p);
+        return k;
+    }
+
+    /* SplitMix64 finaliser: spreads a structured input over all 64 bits */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
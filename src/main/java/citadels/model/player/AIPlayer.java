@@ -1,8 +1,24 @@
 package citadels.model.player;
 
+import citadels.ai.BeliefTracker;
+import citadels.ai.BuildPlanner;
+import citadels.ai.CharacterInference;
+import citadels.ai.Determiniser;
+import citadels.ai.EndgameSolver;
+import citadels.ai.Evaluator;
+import citadels.ai.OpeningBook;
+import citadels.ai.Speculator;
+import citadels.metrics.DecisionEvent;
+import citadels.metrics.Metrics;
 import citadels.model.card.*;
+import citadels.model.game.Action;
 import citadels.model.game.CitadelsGame;
+import citadels.model.game.Move;
+import citadels.model.game.MoveGenerator;
+import citadels.model.game.Rules;
+import citadels.model.game.ScoreCalculator;
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.stream.Collectors; //used to stream through cards
 
 /**
@@ -12,17 +28,242 @@ import java.util.stream.Collectors; //used to stream through cards
 public final class AIPlayer extends Player {
 
     private static final Random RNG = new Random(); //random no. generator
+    private static final Evaluator EVAL = Evaluator.shared(); //one-ply position evaluation
+    private static final OpeningBook BOOK = OpeningBook.shared(); //character picks from self-play, or null
+    private static final int[] NO_MOVES = new int[0]; //speculated search that came to nothing
+
+    private final BuildPlanner planner = new BuildPlanner(); //knapsack over the hand
+    private final DistrictCard[] plan = new DistrictCard[3]; //reused plan buffer (Architect max)
+    private BeliefTracker beliefs; //what this seat can know about hidden cards
+    private final CharacterInference inference = new CharacterInference(); //who holds which rank
+    private int seats; //players in the current game
+    private final boolean endgame; //whether late decisions are searched
+    private final boolean speculative; //whether decisions are recorded for the real game (see Speculator)
+    private final double explore; //chance of picking a character at random (book building)
+    private final Determiniser.World[] worlds = new Determiniser.World[ENDGAME_WORLDS]; //endgame samples of this turn
+    private long deadline; //System.nanoTime() by which the current decision is due
+    private boolean searched, timedOut; //what the current decision's search did
+
+    /** Expected hand-value advantage (in points) before the Magician swaps */
+    private static final int SWAP_MARGIN = 6;
+
+    /** Nodes the endgame solver may search per sampled world (within the think budget); 0 turns it off */
+    private static final long ENDGAME_NODES = Long.getLong("citadels.endgame.nodes", 20_000);
+    /** Worlds sampled per endgame decision */
+    private static final int ENDGAME_WORLDS = 3;
+    /** Solver decisions per turn at most (a turn is at most a handful) */
+    private static final int ENDGAME_STEPS = 8;
+    private static final ThreadLocal<EndgameSolver> SOLVER = ThreadLocal.withInitial(EndgameSolver::new);
 
     /** Constructor for AIPlayer */
     public AIPlayer(int id) {
+        this(id, true, false, 0);
+    }
+
+    private AIPlayer(int id, boolean endgame, boolean speculative, double explore) {
         super(id);
+        this.endgame = endgame;
+        this.speculative = speculative;
+        this.explore = explore;
+    }
+
+    /**
+     * An AI for playouts: the same heuristics, but no endgame search, which
+     * would cost more than the playout it improves.
+     * @param id seat
+     * @return the player
+     */
+    public static AIPlayer rollout(int id) {
+        return new AIPlayer(id, false, false, 0);
+    }
+
+    /**
+     * An AI for building opening books: picks a character at random with
+     * chance {@code explore}, so that every pick gets tried, and otherwise
+     * plays like a playout AI.
+     * @param id seat
+     * @param explore chance of a random pick, 0 to 1
+     * @return the player
+     */
+    public static AIPlayer explorer(int id, double explore) {
+        return new AIPlayer(id, false, false, explore);
+    }
+
+    /**
+     * An AI for speculative forks: searches like the real one and records
+     * each searched decision with {@link Speculator#record}, for the real
+     * game to pick up if it gets there.
+     * @param id seat
+     * @return the player
+     */
+    public static AIPlayer speculative(int id) {
+        return new AIPlayer(id, true, true, 0);
+    }
+
+    /**
+     * Returns whether AI decisions in {@code game} are searched: someone
+     * could end the game this round, a city being one district short and
+     * its owner holding cards.
+     * @param game the game
+     * @return true late in the game
+     */
+    public static boolean isEndgame(CitadelsGame game) {
+        for (Player p : game.getPlayers())
+            if (p.getCity().size() >= ScoreCalculator.CITY_SIZE - 1 && !p.getHand().isEmpty()) return true;
+        return false;
+    }
+
+    /**
+     * Starts tracking hidden cards from this seat's point of view.
+     * @param game the game being joined
+     */
+    @Override
+    public void joinGame(CitadelsGame game) {
+        seats = game.getPlayers().size();
+        beliefs = new BeliefTracker(getId(), seats, game.getDistrictDeckSize());
+        game.addListener(beliefs);
+        game.addListener(inference);
+    }
+
+    /**
+     * Returns this seat's belief about hidden cards (null before joining a game)
+     * @return the belief tracker
+     */
+    public BeliefTracker beliefs() { return beliefs; }
+
+    /**
+     * Picks a character in the selection phase and remembers what was visible.
+     * The crowned seat picks first, so it anchors the pick order.
+     */
+    @Override
+    public CharacterCard chooseCharacter(CitadelsGame game, int position, int upMask,
+                                         List<CharacterCard> passing) {
+        DecisionEvent ev = new DecisionEvent();
+        ev.begin();
+        long t0 = startDecision(game);
+        CharacterCard chosen = pickCharacter(game, position, upMask, passing);
+        trace(ev, game, "pick");
+        endDecision(t0);
+        return chosen;
+    }
+
+    private CharacterCard pickCharacter(CitadelsGame game, int position, int upMask,
+                                        List<CharacterCard> passing) {
+        int passingMask = 0;
+        for (CharacterCard c : passing) passingMask |= 1 << (c.getRank() - 1);
+        CharacterCard chosen = passing.get(0);
+        int[] solved = solveEndgame(game, true);
+        if (solved != null && solved.length == 1 && Move.type(solved[0]) == Move.PICK) {
+            for (CharacterCard c : passing) if (c.getRank() == Move.a(solved[0])) chosen = c;
+        } else if (explore > 0 && ThreadLocalRandom.current().nextDouble() < explore) {
+            chosen = passing.get(ThreadLocalRandom.current().nextInt(passing.size()));
+        } else {
+            if (searched) Metrics.AI_FALLBACKS.inc();
+            int booked = BOOK == null ? 0 : BOOK.lookup(OpeningBook.key(game, getId(), passingMask));
+            for (CharacterCard c : passing) if (c.getRank() == booked) chosen = c;
+        }
+        inference.observePick(game.getCrownedSeat(), seats, position, upMask, passingMask,
+                chosen.getRank());
+        return chosen;
+    }
+
+    /** Keeps the more expensive card (more points if it gets built). */
+    @Override
+    public DistrictCard chooseDrawnCard(CitadelsGame game, DistrictCard a, DistrictCard b) {
+        return a.getCost() >= b.getCost() ? a : b;
+    }
+
+    @Override
+    public int chooseRank(CitadelsGame game, int from, int to, String verb) {
+        DecisionEvent ev = new DecisionEvent();
+        ev.begin();
+        int rank = chooseTargetRank(game, from, to);
+        trace(ev, game, verb);
+        return rank;
+    }
+
+    @Override
+    public Player choosePlayer(CitadelsGame game, String question) {
+        return game.getPlayers().get(RNG.nextInt(game.getPlayers().size()));
+    }
+
+    @Override
+    public int chooseDistrict(CitadelsGame game, Player victim, String question) {
+        return victim.getCity().isEmpty() ? -1 : 0;
+    }
+
+    @Override
+    public int chooseDiscards(CitadelsGame game, String question) {
+        return 0;
+    }
+
+    /**
+     * Picks the rank to kill or rob: the one most likely held by rich opponents,
+     * using only what this seat can infer from the selection phase.
+     * @param game current game
+     * @param from lowest allowed rank
+     * @param to highest allowed rank
+     * @return the chosen rank
+     */
+    public int chooseTargetRank(CitadelsGame game, int from, int to) {
+        int best = from;
+        double bestScore = -1;
+        for (int r = from; r <= to; r++) {
+            if (game.isKilled(r)) continue; // the Thief may not rob the assassinated
+            double score = 0;
+            if (!inference.isReady()) score = RNG.nextDouble(); // nothing to infer from: uniform
+            else for (Player p : game.getPlayers()) {
+                if (p == this) continue;
+                score += inference.probability(p.getId(), r) * (1 + p.getGold());
+            }
+            if (score > bestScore) { bestScore = score; best = r; }
+        }
+        return best;
     }
 
     @Override
     public void takeTurn(CitadelsGame game) {
+        DecisionEvent ev = new DecisionEvent();
+        ev.begin();
+        long t0 = startDecision(game);
+        playTurn(game);
+        trace(ev, game, "turn");
+        endDecision(t0);
+    }
+
+    /* starts the clock of a pick or a turn against the game's think budget */
+    private long startDecision(CitadelsGame game) {
+        long now = System.nanoTime();
+        deadline = now + game.getThinkMillis() * 1_000_000;
+        searched = false;
+        timedOut = false;
+        return now;
+    }
+
+    private void endDecision(long t0) {
+        if (!endgame || speculative) return;            // playouts would swamp the figures
+        Metrics.AI_DECISION.stop(t0);
+        if (searched) Metrics.AI_SEARCHES.inc();
+        if (timedOut) Metrics.AI_DEADLINE_HITS.inc();
+    }
+
+    /** Commits a timed decision if Flight Recorder wants it. */
+    private void trace(DecisionEvent ev, CitadelsGame game, String decision) {
+        if (game.isPlayout() || !ev.shouldCommit()) return;
+        ev.about(game, this);
+        ev.decision = decision;
+        ev.commit();
+    }
+
+    private void playTurn(CitadelsGame game) {
+        if (solveTurn(game)) return;
+        if (searched) Metrics.AI_FALLBACKS.inc();
+        int flags = game.getTurnFlags();
+        boolean taken = (flags & MoveGenerator.RESOURCES_TAKEN) != 0;
+        boolean used = (flags & MoveGenerator.ABILITY_USED) != 0;
 
         /* ---------- 0. Execute mandatory / early ability ---------- */
-        switch (character.getRank()) {
+        if (!taken && !used) switch (character.getRank()) {
             case 1:
                 assassinTurn(game);    // Assassin
                 break;
@@ -32,17 +273,13 @@ public final class AIPlayer extends Player {
         }
 
         /* ---------- 1. Gather resources -------------------------- */
-        gatherResources(game);
-
-        /* ---------- 2. Architect extra 2 draw ---------------------- */
-        if (character.getRank() == 7)   // Architect
-            game.drawCards(this, 2);
+        if (!taken) gatherResources(game);
 
-        /* ---------- 3. Build districts --------------------------- */
-        buildPhase(game);
+        /* ---------- 2. Build districts (Architect: up to 3) ------ */
+        if (game.getBuiltThisTurn(this) == 0) buildPhase(game);
 
         /* ---------- 4. Late abilities ---------------------------- */
-        switch (character.getRank()) {
+        if (!used) switch (character.getRank()) {
             case 3:
                 magicianPostBuild(game);  // Magician
                 break;
@@ -50,25 +287,114 @@ public final class AIPlayer extends Player {
                 warlordTurn(game);        // Warlord
                 break;
         }
+        game.apply(Action.end(getId()));
+    }
+
+    /* =============================================================
+       ENDGAME
+       =========================================================== */
+
+    /**
+     * Plays the turn as the endgame solver sees it, one decision at a time,
+     * all within the turn's deadline.
+     * The sampled worlds are kept until a move shows cards they may have
+     * got wrong, so the searches after the first mostly hit the table.
+     * @param game current game
+     * @return true if the turn was ended, false to finish it with the heuristics
+     */
+    private boolean solveTurn(CitadelsGame game) {
+        boolean fresh = true;
+        for (int step = 0; step < ENDGAME_STEPS; step++) {
+            int[] moves = solveEndgame(game, fresh);
+            if (moves == null) return false;
+            fresh = false;
+            for (int m : moves) {
+                if (!game.apply(Action.of(getId(), m))) return false;
+                int type = Move.type(m);
+                if (type == Move.END) return true;
+                if (type == Move.CARDS || type == Move.REDRAW || type == Move.SWAP) fresh = true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Solves the rest of the round in a few worlds sampled from this seat's
+     * beliefs, once a city one district short of complete has cards to build.
+     * Anytime: when the deadline strikes, the worlds solved so far vote, or
+     * failing those the deepest answer of the world being solved stands.
+     * A decision worked out ahead by {@link Speculator} for the same state is
+     * taken as it is, including one left to the heuristics.
+     * @param game current game, with this seat to move
+     * @param fresh sample new worlds rather than reuse the last ones
+     * @return the moves most worlds agree on, or null to use the heuristics: no
+     *         time left, or a world too big to search to the end of the round
+     */
+    private int[] solveEndgame(CitadelsGame game, boolean fresh) {
+        if (!endgame || ENDGAME_NODES <= 0 || beliefs == null || game.getThinkMillis() <= 0) return null;
+        if (!isEndgame(game)) return null;
+        long key = Speculator.key(game);
+        int[] known = Speculator.lookup(key);
+        if (known != null) {
+            if (!speculative) Metrics.AI_SPECULATION_HITS.inc();
+            return known.length == 0 ? null : known;
+        }
+        int[] moves = searchEndgame(game, fresh);
+        // a search that gave up on big worlds is worth recording too; one cut short by time is not
+        if (speculative && !timedOut) Speculator.record(key, moves == null ? NO_MOVES : moves);
+        return moves;
+    }
+
+    private int[] searchEndgame(CitadelsGame game, boolean fresh) {
+        searched = true;
+        if (System.nanoTime() - deadline >= 0) {
+            timedOut = true;
+            return null;
+        }
+
+        if (fresh) Arrays.fill(worlds, null);
+        EndgameSolver solver = SOLVER.get();
+        List<int[]> answers = new ArrayList<>();
+        int[] votes = new int[ENDGAME_WORLDS];
+        for (int w = 0; w < ENDGAME_WORLDS; w++) {
+            if (worlds[w] == null) worlds[w] = Determiniser.sample(game, getId(), RNG, beliefs);
+            EndgameSolver.Result r = solver.solve(game, worlds[w], ENDGAME_NODES, deadline);
+            if (r != null && r.isTimedOut()) {
+                timedOut = true;
+                if (answers.isEmpty()) return r.moves(); // the best found in the time there was
+                break;
+            }
+            if (r == null || !r.isComplete()) break;     // the other worlds are no smaller
+            int[] moves = r.moves();
+            int i = 0;
+            while (i < answers.size() && !Arrays.equals(answers.get(i), moves)) i++;
+            if (i == answers.size()) answers.add(moves);
+            votes[i]++;
+        }
+        int best = -1;
+        for (int i = 0; i < answers.size(); i++) if (best < 0 || votes[i] > votes[best]) best = i;
+        return best < 0 ? null : answers.get(best);
     }
 
     /* =============================================================
        RESOURCE CHOICE
        =========================================================== */
 
-    /** Gather resources */
+    /**
+     * Gather resources: looks one ply ahead and takes whichever of
+     * "2 gold" or "draw" leaves the better position
+     */
     private void gatherResources(CitadelsGame game) {
-        //iterate through hand to check if player can afford at least one card
-        boolean canAffordSomething = hand.stream()
-                .anyMatch(c -> (c.getCost() <= gold));
-
-        // ai feat. --> if broke or cannot build, prefer gold; else take cards if hand small
-        if (!canAffordSomething && gold < 2) {
-            game.collectGold(this); //collect gold at turnphase beginning
-        } else if (hand.size() <= 2) {
-            game.drawTwoChoose(this); //draw 2 cards and choose 1
+        boolean hasLibrary = city.stream().anyMatch(DistrictCard::isLibrary);
+        double perCard = (beliefs != null) ? beliefs.averageUnseenPoints() : 3.0;
+
+        double goldValue = EVAL.afterGold(this, 2);
+        double cardValue = EVAL.afterDraw(this, hasLibrary ? 2 : 1, perCard);
+
+        if (cardValue > goldValue && game.getDistrictDeckSize() > 0) {
+            game.apply(Action.cards(getId())); //draw 2 cards and choose 1
         } else {
-            game.collectGold(this); //if player has enough districts to build, collect gold
+            game.apply(Action.gold(getId())); //collect gold at turnphase beginning
         }
     }
 
@@ -77,36 +403,25 @@ public final class AIPlayer extends Player {
        =========================================================== */
 
     /**
-     * Builds districts up to the build limit if possible
+     * Builds the best set of districts the build limit and gold allow.
+     * The choice is made by {@link BuildPlanner} over the whole hand at once,
+     * so the Architect does not waste gold on a greedy first pick.
      * @param game current game
      * @return void
      */
     private void buildPhase(CitadelsGame game) {
-        // try to build up to limit each turn (Architect has limit 3)
-        int limit = getBuildLimit();
-        int built = 0; //counter for built districts
-
-        while (built < limit) {
-            Optional<DistrictCard> best = hand.stream()
-                    .filter(c -> c.getCost() <= gold && !cityContains(c.getName()))
-                    .sorted(buildComparator())
-                    .findFirst(); //find first district that can be built
-
-            if (!best.isPresent()) break; //if no district can be built, break (AI skips)
-            game.buildDistrict(this, best.get()); //otherwise build district
-            built++;
+        int limit = Math.min(getBuildLimit(), plan.length);
+        boolean someoneDone = game.getPlayers().stream()
+                .anyMatch(p -> p.getCity().size() >= ScoreCalculator.CITY_SIZE);
+        int bonus = someoneDone ? ScoreCalculator.COMPLETE_BONUS
+                                : ScoreCalculator.FIRST_COMPLETE_BONUS;
+
+        int n = planner.plan(this, limit, bonus, plan);
+        for (int i = 0; i < n; i++) {
+            game.apply(Action.build(getId(), hand.indexOf(plan[i]))); //build each planned district
+            plan[i] = null;
         }
     }
-    
-    /**
-     * Comparator for building districts
-     * @return Comparator<DistrictCard>
-     */
-    private static Comparator<DistrictCard> buildComparator() {
-        return Comparator.<DistrictCard>comparingInt(DistrictCard::getCost).reversed()
-                .thenComparing(c -> c.getColor() == DistrictColor.PURPLE ? 0 : 1) // prefer purple
-                .thenComparing(DistrictCard::getName); //returns compared district card
-    }
 
     /* =============================================================
        CHARACTER POWERS
@@ -114,135 +429,85 @@ public final class AIPlayer extends Player {
 
     /* ---------- Assassin (kill) ---------- */
     /**
-     * Prioritizes killing the richest opponent
+     * Kills the rank most likely held by the richest opponents
      * @param game current game
      * @return void
      */
-    private void assassinTurn(CitadelsGame game) { //prioritizes killing the richest opponent
-        Player target = richestOpponent(game, this);
-        //randomly select a character from 2-8 if no target
-        int victimRank = (target == null || target.getCharacter() == null)
-                ? RNG.nextInt(7) + 2   // random 2-8 (because assassin is character 1)
-                : target.getCharacter().getRank();
-        game.killCharacter(victimRank); //kill the selected character
+    private void assassinTurn(CitadelsGame game) {
+        game.apply(Action.kill(getId(), chooseTargetRank(game, 2, 8))); // 2-8 (assassin is character 1)
     }
 
     /* ---------- Thief (rob) -------------- */
     /**
-     * Prioritizes robbing the richest opponent
+     * Robs the rank most likely held by the richest opponents
      * @param game current game
      * @return void
      */
-    private void thiefTurn(CitadelsGame game) { //prioritizes robbing the richest opponent
-        Player target = richestOpponent(game, this);
-        int victimRank = (target == null || target.getCharacter() == null)
-                ? RNG.nextInt(6) + 3   // random 3-8 (because thief is character 2)
-                : target.getCharacter().getRank();
-        game.setRobTarget(this, victimRank); //set the target for robbing
+    private void thiefTurn(CitadelsGame game) {
+        game.apply(Action.steal(getId(), chooseTargetRank(game, 3, 8))); // 3-8 (thief is character 2)
     }
 
     /* ---------- Magician ----------------- */
     /**
-     * Prioritizes swapping hands with the richest player
+     * Swaps hands with the opponent whose hand is expected to be worth the most,
+     * judged from public information only; otherwise redraws dead cards
      * @param game current game
      * @return void
      */
-    private void magicianPostBuild(CitadelsGame game) { //prioritizes swapping hands with the richest player
-        // find player with most cards
-        Player richestHand = game.getPlayers().stream()
-                .filter(p -> p != this)
-                .max(Comparator.comparingInt(p -> p.getHand().size()))
-                .orElse(null); //filter out self, then find the player with the most cards
+    private void magicianPostBuild(CitadelsGame game) {
+        int ownPoints = 0;
+        for (DistrictCard d : hand) ownPoints += ScoreCalculator.districtPoints(d);
+
+        // find the opponent whose hand we expect to be worth the most
+        Player best = null;
+        double bestPoints = Double.NEGATIVE_INFINITY;
+        for (Player p : game.getPlayers()) {
+            if (p == this) continue;
+            double pts = (beliefs != null) ? beliefs.expectedHandPoints(p.getId())
+                                           : 3.0 * p.getHand().size();
+            if (pts > bestPoints) { bestPoints = pts; best = p; }
+        }
 
-        //if the richest player has at least 2 more cards than magician, swap hands
-        if (richestHand != null && richestHand.getHand().size() >= hand.size() + 2) {
-            game.swapHands(this, richestHand);
+        if (best != null && bestPoints >= ownPoints + SWAP_MARGIN) {
+            game.apply(Action.swap(getId(), best.getId()));
         } else {
             // discard duplicates or high-cost unbuildable
-            List<Integer> discIdx = new ArrayList<>();
-            for (int i = 0; i < hand.size(); i++) {
+            int discard = 0;
+            for (int i = 0; i < hand.size() && i < Move.MAX_MASK_BITS; i++) {
                 DistrictCard d = hand.get(i);
                 boolean duplicate = cityContains(d.getName());
                 boolean tooExpensive = d.getCost() > gold + 2;
-                if (duplicate || tooExpensive) discIdx.add(i); //if duplicate or too expensive, discard
-            }
-            if (!discIdx.isEmpty()) { //if there are duplicates or too expensive, discard
-                discIdx.sort(Comparator.reverseOrder()); //sort in descending order
-                discIdx.forEach(i -> hand.remove((int) i)); //discard
-                game.drawCards(this, discIdx.size()); //draw same amount
+                if (duplicate || tooExpensive) discard |= 1 << i; //if duplicate or too expensive, discard
             }
+            if (discard != 0) game.apply(Action.redraw(getId(), discard)); //discard and draw same amount
         }
     }
 
     /* ---------- Warlord ------------------ */
     /**
-     * Prioritizes destroying the cheapest destroyable district of a vulnerable player
+     * Destroys the district whose loss hurts its owner most relative to what
+     * the gold is worth to us, if any such trade is positive
      * @param game current game
      * @return void
      */
     private void warlordTurn(CitadelsGame game) {
-        // choose cheapest destroyable district of a vulnerable player
-        Player victim = game.getPlayers().stream()
-                .filter(p -> p != this)
-                .filter(p -> p.getCity().size() < 8)          // incomplete city
-                .filter(p -> !game.isBishopProtected(p))      // does not have bishop immunity
-                .min(Comparator.comparingInt(p ->
-                        p.getCity().stream()
-                                .mapToInt(DistrictCard::getCost)
-                                .min().orElse(Integer.MAX_VALUE)))
-                .orElse(null); //if no vulnerable player, return null
-
-        if (victim == null) return; //if no vulnerable player, dont use ability
-
-        int idx = -1; //index of the cheapest destroyable district
-        int minCost = Integer.MAX_VALUE; //minimum cost of a destroyable district
-
-        //iterate through the city of the vulnerable player
-        //find the cheapest destroyable district
-        for (int i = 0; i < victim.getCity().size(); i++) {
-            DistrictCard d = victim.getCity().get(i);
-            int trueCost = Math.max(0, d.getCost() - 1);
-            if (trueCost <= gold && trueCost < minCost) {
-                idx = i; minCost = trueCost;
+        Player victim = null;
+        int idx = -1;
+        double best = 0; //only trades that gain something
+        double self = EVAL.evaluate(this);
+
+        for (Player p : game.getPlayers()) {
+            if (p == this || !Rules.isAttackable(game, p)) continue; // bishop immunity, complete city
+            double before = EVAL.evaluate(p);
+            for (int i = 0; i < p.getCity().size(); i++) {
+                if (!Rules.canDestroy(game, this, p, i)) continue;
+                DistrictCard d = p.getCity().get(i);
+                int trueCost = Rules.destroyCost(d);
+                double gain = (before - EVAL.afterLoss(p, d))
+                            - (self - EVAL.afterGold(this, -trueCost));
+                if (gain > best) { best = gain; victim = p; idx = i; }
             }
         }
-        if (idx >= 0) game.destroyDistrict(this, victim, idx);
+        if (victim != null) game.apply(Action.destroy(getId(), victim.getId(), idx));
     }
-
-    /* =============================================================
-       Helper utilities
-       =========================================================== */
-
-/**
- * Choose a target for the Assassin (or Thief) AI.
- *
- * 1) Try to pick the richest computer-controlled player (AI) who is not 'self'.
- * 2) If there are no other AIs (for example, in a 2-player game), fall back to picking
- *    the richest player among all opponents (the human).
- * 
- * High preference for AI opponents, low preference for human player.
- *
- * @param g    the current game state
- * @param self the AI player invoking this method
- * @return     the chosen opponent player, or null if none exist
- */
-private static Player richestOpponent(CitadelsGame g, Player self) {
-    // filter out self, then only AIs, then find the one with max gold
-    Optional<Player> richestAI = g.getPlayers().stream()
-        .filter(p -> p != self)              // exclude self
-        .filter(p -> p instanceof AIPlayer)  // only other AIs
-        .max(Comparator.comparingInt(Player::getGold)); // richest among them
-
-    // if at least one AI opponent found, return that richest AI
-    if (richestAI.isPresent()) {
-        return richestAI.get();
-    }
-
-    // if no other AIs available, fall back to richest among all opponents (human)
-    return g.getPlayers().stream()
-        .filter(p -> p != self)                          // exclude self
-        .max(Comparator.comparingInt(Player::getGold))   // richest remaining
-        .orElse(null);                                   // null if no opponents
-}
-
 }
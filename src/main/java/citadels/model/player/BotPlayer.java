@@ -0,0 +1,182 @@
+package citadels.model.player;
+
+import citadels.bot.BotClient;
+import citadels.metrics.Metrics;
+import citadels.model.card.CharacterCard;
+import citadels.model.card.DistrictCard;
+import citadels.model.game.Action;
+import citadels.model.game.CitadelsGame;
+import citadels.model.game.GamePhase;
+import citadels.model.game.Move;
+import citadels.model.game.MoveGenerator;
+import citadels.model.game.Rules;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A seat played by an external bot through {@link BotClient}.
+ *
+ * <p>Each pick, each step of a turn and each choice between two drawn
+ * cards goes to the bot as a request. Its JSON describes what the seat can
+ * see:</p>
+ * <pre>
+ *  decision   "pick", "turn" or "keep"
+ *  seat       this seat, 0-based
+ *  round, crown, deck      round number, crowned seat, cards in the deck
+ *  character  this seat's character, once it has one
+ *  hand       names of the cards in this seat's hand
+ *  faceUp     characters removed face up (picks only)
+ *  killed     ranks the Assassin has killed this round
+ *  players    per seat: seat, gold, hand (a count), city (names), and
+ *             character where it is known to this seat
+ *  options    the legal choices, see {@link BotClient}
+ * </pre>
+ *
+ * <p>If the bot does not answer in time, answers something that is not an
+ * option, or is gone, the seat plays the first option (the first character
+ * passing, the dearer drawn card) and the game goes on.</p>
+ */
+public final class BotPlayer extends Player {
+
+    /** Requests per turn at most, before the turn is ended for the bot */
+    private static final int TURN_STEPS = 32;
+
+    private final BotClient bot;
+    private final long timeoutMillis;
+    private int[] moves = new int[64];                         // grown when a turn has more
+
+    /**
+     * @param id seat
+     * @param bot the bot process, shared with any other seats it plays
+     */
+    public BotPlayer(int id, BotClient bot) {
+        this(id, bot, BotClient.DEFAULT_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * @param id seat
+     * @param bot the bot process, shared with any other seats it plays
+     * @param timeoutMillis longest wait for each answer
+     */
+    public BotPlayer(int id, BotClient bot, long timeoutMillis) {
+        super(id);
+        this.bot = bot;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public CharacterCard chooseCharacter(CitadelsGame game, int position, int upMask,
+                                         List<CharacterCard> passing) {
+        JSONObject s = state(game, "pick");
+        s.put("position", position);
+        s.put("faceUp", ranks(upMask));
+        List<String> options = new ArrayList<>();
+        for (CharacterCard c : passing) options.add("pick " + c.getName());
+        return passing.get(ask(s, options, 0));
+    }
+
+    @Override
+    public void takeTurn(CitadelsGame game) {
+        for (int step = 0; step < TURN_STEPS; step++) {
+            int n = MoveGenerator.generate(game, this, GamePhase.TURN, game.getTurnFlags(), moves);
+            if (n > moves.length) {
+                moves = new int[Math.max(n, moves.length * 2)];
+                n = MoveGenerator.generate(game, this, GamePhase.TURN, game.getTurnFlags(), moves);
+            }
+            if (n == 0) break;
+            List<String> options = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) options.add(Move.toString(moves[i]));
+            int m = moves[ask(state(game, "turn"), options, 0)];
+            if (!game.apply(Action.of(getId(), m))) break;
+            if (Move.type(m) == Move.END) return;
+        }
+        game.apply(Action.end(getId()));
+    }
+
+    @Override
+    public DistrictCard chooseDrawnCard(CitadelsGame game, DistrictCard a, DistrictCard b) {
+        List<String> options = new ArrayList<>(2);
+        options.add("keep " + a.getName());
+        options.add("keep " + b.getName());
+        return ask(state(game, "keep"), options, a.getCost() >= b.getCost() ? 0 : 1) == 0 ? a : b;
+    }
+
+    /* abilities come through takeTurn as moves; these answer the older prompts plainly */
+
+    @Override
+    public int chooseRank(CitadelsGame game, int from, int to, String verb) {
+        return from;
+    }
+
+    @Override
+    public Player choosePlayer(CitadelsGame game, String question) {
+        return game.getPlayers().get((getId() + 1) % game.getPlayers().size());
+    }
+
+    @Override
+    public int chooseDistrict(CitadelsGame game, Player victim, String question) {
+        return victim.getCity().isEmpty() ? -1 : 0;
+    }
+
+    @Override
+    public int chooseDiscards(CitadelsGame game, String question) {
+        return 0;
+    }
+
+    /* the bot's choice, or the fallback if it has none */
+    private int ask(JSONObject state, List<String> options, int fallback) {
+        int i = bot.choose(state, options, timeoutMillis);
+        if (i >= 0) return i;
+        Metrics.BOT_FALLBACKS.inc();
+        return fallback;
+    }
+
+    /* what this seat can see of the game */
+    @SuppressWarnings("unchecked")
+    private JSONObject state(CitadelsGame game, String decision) {
+        JSONObject s = new JSONObject();
+        s.put("decision", decision);
+        s.put("seat", getId());
+        s.put("round", game.getRound());
+        s.put("crown", game.getCrownedSeat());
+        s.put("deck", game.getDistrictDeckSize());
+        if (character != null) s.put("character", character.getName());
+        s.put("hand", names(getHand()));
+        JSONArray killed = new JSONArray();
+        for (int r = 1; r <= Rules.MAX_RANK; r++) if (game.isKilled(r)) killed.add(r);
+        s.put("killed", killed);
+
+        int revealed = game.getRevealedRank();
+        JSONArray players = new JSONArray();
+        for (Player p : game.getPlayers()) {
+            JSONObject o = new JSONObject();
+            o.put("seat", p.getId());
+            o.put("gold", p.getGold());
+            o.put("hand", p.getHand().size());
+            o.put("city", names(p.getCity()));
+            CharacterCard c = p.getCharacter();
+            if (c != null && (p == this || c.getRank() <= revealed)) o.put("character", c.getName());
+            players.add(o);
+        }
+        s.put("players", players);
+        return s;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static JSONArray names(List<DistrictCard> cards) {
+        JSONArray a = new JSONArray();
+        for (DistrictCard d : cards) a.add(d.getName());
+        return a;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static JSONArray ranks(int mask) {
+        JSONArray a = new JSONArray();
+        for (int r = 1; r <= Rules.MAX_RANK; r++) if ((mask & 1 << (r - 1)) != 0) a.add(CitadelsGame.rankName(r));
+        return a;
+    }
+}
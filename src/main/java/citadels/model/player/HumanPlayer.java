@@ -1,9 +1,16 @@
 package citadels.model.player;
 
+import citadels.cli.CommandHandler;
+import citadels.model.card.CharacterCard;
+import citadels.model.card.DistrictCard;
 import citadels.model.game.CitadelsGame;
+import citadels.model.game.Move;
+
+import java.util.List;
 
 /**
  * Delegates its entire turn flow to the CLI handler injected in {@link CitadelsGame}.
+ * Every other decision is asked for on the same handler.
  */
 public final class HumanPlayer extends Player {
 
@@ -23,4 +30,117 @@ public final class HumanPlayer extends Player {
     public void takeTurn(CitadelsGame game) {
         game.cli().humanTurnLoop(this);   // the CLI layer drives everything interactively
     }
+
+    @Override
+    public boolean isInteractive() { return true; }
+
+    /**
+     * Asks for a character by name until one of the available ones is typed.
+     */
+    @Override
+    public CharacterCard chooseCharacter(CitadelsGame game, int position, int upMask,
+                                         List<CharacterCard> passing) {
+        CommandHandler cli = game.cli();
+        cli.println("Choose your character. Available:");
+        for (CharacterCard c : passing) cli.println(" - " + c.getName());
+        while (true) {
+            String in = cli.prompt("> ").trim();
+            for (CharacterCard c : passing)
+                if (c.getName().equalsIgnoreCase(in)) return c;
+            cli.println("Invalid name, try again.");
+        }
+    }
+
+    /**
+     * Shows both cards and asks for 1 or 2; {@code info 1}/{@code info 2} describe them.
+     */
+    @Override
+    public DistrictCard chooseDrawnCard(CitadelsGame game, DistrictCard a, DistrictCard b) {
+        CommandHandler cli = game.cli();
+        cli.println("Pick one of the following cards: 1 or 2.\n1. " + a + "\n2. " + b);
+        while (true) {
+            String in = cli.prompt("> ").trim();
+            //player can see info about the cards which they can pick
+            if (in.startsWith("info")) {
+                if (in.equals("info 1")) { cli.printDistrictInfo(a); }
+                if (in.equals("info 2")) { cli.printDistrictInfo(b); }
+                continue;
+            }
+            if (in.equals("1")) return a;
+            if (in.equals("2")) return b;
+            cli.println("Invalid input, enter '1' or '2'.");
+        }
+    }
+
+    @Override
+    public int chooseRank(CitadelsGame game, int from, int to, String verb) {
+        CommandHandler cli = game.cli();
+        while (true) {
+            String in = cli.prompt("Who do you want to " + verb +
+                    "? Choose a character from " + from + "-" + to + ":\n> ");
+            try { int r = Integer.parseInt(in.trim());
+                if (r >= from && r <= to) return r;
+            } catch (NumberFormatException ignored) { }
+            cli.println("Please enter a number between " + from + " and " + to + ".");
+        }
+    }
+
+    @Override
+    public Player choosePlayer(CitadelsGame game, String question) {
+        CommandHandler cli = game.cli();
+        List<Player> players = game.getPlayers();
+        while (true) {
+            String in = cli.prompt(question + " (1-" + players.size() + "):\n> ");
+            try { int seat = Integer.parseInt(in.trim()) - 1;
+                if (seat >= 0 && seat < players.size()) return players.get(seat);
+            } catch (NumberFormatException ignored) { }
+            cli.println("Invalid player number.");
+        }
+    }
+
+    @Override
+    public int chooseDistrict(CitadelsGame game, Player victim, String question) {
+        List<DistrictCard> city = victim.getCity();
+        if (city.isEmpty()) return -1;
+        CommandHandler cli = game.cli();
+        cli.println("Victim city:");
+        for (int i = 0; i < city.size(); i++) cli.println((i + 1) + ". " + city.get(i));
+        while (true) {
+            String in = cli.prompt(question + " (1-" + city.size() + "):\n> ");
+            try { int idx = Integer.parseInt(in.trim()) - 1;
+                if (idx >= 0 && idx < city.size()) return idx;
+            } catch (NumberFormatException ignored) { }
+            cli.println("Invalid index.");
+        }
+    }
+
+    /**
+     * Reads comma-separated 1-based hand indexes; blank cancels, bad entries are skipped.
+     */
+    @Override
+    public int chooseDiscards(CitadelsGame game, String question) {
+        CommandHandler cli = game.cli();
+        cli.println(question + " (comma-separated hand indexes, blank cancels):");
+        for (int i = 0; i < hand.size(); i++) cli.println((i + 1) + ". " + hand.get(i));
+        return parseHandMask(cli.prompt("> "), hand.size());
+    }
+
+    /**
+     * Turns {@code "1,3,4"} into a hand-index mask, skipping entries that are
+     * not numbers or not in {@code 1..handSize}.
+     * @param csv comma-separated 1-based indexes
+     * @param handSize cards in hand
+     * @return mask with bit i set for hand card i
+     */
+    public static int parseHandMask(String csv, int handSize) {
+        int mask = 0;
+        if (csv == null || csv.trim().isEmpty()) return 0;
+        for (String s : csv.split(",")) {
+            try {
+                int idx = Integer.parseInt(s.trim()) - 1;
+                if (idx >= 0 && idx < handSize && idx < Move.MAX_MASK_BITS) mask |= 1 << idx;
+            } catch (NumberFormatException ignore) { }
+        }
+        return mask;
+    }
 }
@@ -2,6 +2,9 @@ package citadels.model.player;
 
 import citadels.model.card.CharacterCard;
 import citadels.model.card.DistrictCard;
+import citadels.model.card.DistrictColor;
+import citadels.model.game.ScoreCalculator;
+import citadels.model.game.Zobrist;
 import java.util.*;
 
 /**
@@ -24,18 +27,32 @@ public abstract class Player {
 
     protected final List<DistrictCard> hand = new ArrayList<>(); //hand of cards
     protected final List<DistrictCard> city = new ArrayList<>(); //city of cards
+    private final List<DistrictCard> handView = Collections.unmodifiableList(hand);
+    private final List<DistrictCard> cityView = Collections.unmodifiableList(city);
     protected int gold = 2; //gold (starting gold)
     protected CharacterCard character = null; //character
 
     // Default limit = 1; Architect may raise to 3 for the current turn.
     protected int buildLimitThisTurn = 1; //build limit
 
+    /* ------------------------------------------------- *
+     * Running aggregates, kept in step with hand/city   *
+     * so evaluators never rescan the lists              *
+     * ------------------------------------------------- */
+
+    private int handPoints;                                  //sum of district points in hand
+    private int cityPoints;                                  //sum of district points in city
+    private final int[] cityColours = new int[DistrictColor.values().length]; //count per colour bit
+    private int exposedDistricts;                            //cheap for the Warlord (cost <= 2)
+    private long zobrist;                                    //key of character, gold, hand and city
+
     /* ------------------------------------------------- *
      * Construction                                      *
      * ------------------------------------------------- */
 
     protected Player(int id) { //construct using id (immutable 0-based seat order)
         this.id = id;
+        this.zobrist = Zobrist.gold(id, gold);
     }
 
     /* ------------------------------------------------- *
@@ -45,50 +62,180 @@ public abstract class Player {
     /** Called by the game engine when it’s this player’s moment in the Turn phase. */
     public abstract void takeTurn(citadels.model.game.CitadelsGame game); //must be implemented by subclasses
 
+    /**
+     * Called once by the game engine after it has been set up, before the
+     * initial deal. Subclasses may register listeners here.
+     */
+    public void joinGame(citadels.model.game.CitadelsGame game) { }
+
+    /**
+     * Whether this seat's decisions come as typed input. The engine waits
+     * for such seats instead of calling the {@code choose…} methods below.
+     */
+    public boolean isInteractive() { return false; }
+
+    /* ------------------------------------------------- *
+     * Decisions: the engine asks, the player answers,   *
+     * and the engine applies the answer                 *
+     * ------------------------------------------------- */
+
+    /**
+     * Picks a character in the selection phase. Must not modify {@code passing}.
+     * @param game current game
+     * @param position this seat's 0-based place in the pick order
+     * @param upMask ranks removed face up (bit rank-1)
+     * @param passing characters still available
+     * @return the chosen character, one of {@code passing}
+     */
+    public abstract CharacterCard chooseCharacter(citadels.model.game.CitadelsGame game, int position,
+                                                  int upMask, List<CharacterCard> passing);
+
+    /**
+     * Keeps one of two drawn district cards; the other goes under the deck.
+     * @return {@code a} or {@code b}
+     */
+    public abstract DistrictCard chooseDrawnCard(citadels.model.game.CitadelsGame game,
+                                                 DistrictCard a, DistrictCard b);
+
+    /**
+     * Picks a character rank in {@code [from, to]} (Assassin, Thief).
+     * @param verb what happens to the chosen character, for prompts
+     * @return the chosen rank
+     */
+    public abstract int chooseRank(citadels.model.game.CitadelsGame game, int from, int to, String verb);
+
+    /**
+     * Picks a player (Magician swap, Warlord target).
+     * @param question prompt text
+     * @return the chosen player
+     */
+    public abstract Player choosePlayer(citadels.model.game.CitadelsGame game, String question);
+
+    /**
+     * Picks a district in {@code victim}'s city (Warlord).
+     * @param question prompt text
+     * @return 0-based city index, or -1 if the city is empty
+     */
+    public abstract int chooseDistrict(citadels.model.game.CitadelsGame game, Player victim, String question);
+
+    /**
+     * Picks hand cards to discard (Magician redraw).
+     * @param question prompt text
+     * @return hand-index mask (bit i = card i), 0 for none
+     */
+    public abstract int chooseDiscards(citadels.model.game.CitadelsGame game, String question);
+
     /* ------------------------------------------------- *
      * Convenience getters                               *
      * ------------------------------------------------- */
 
     public int getId() { return id; } //get id of the player
-    public List<DistrictCard> getHand() { return hand; } //get hand
-    public List<DistrictCard> getCity() { return city; } //get city
+    public List<DistrictCard> getHand() { return handView; } //get hand (read-only)
+    public List<DistrictCard> getCity() { return cityView; } //get city (read-only)
     public int getGold() { return gold; } //get gold
+    public int getHandPoints() { return handPoints; } //points of the cards in hand
+    public int getCityPoints() { return cityPoints; } //points of the built districts
+    public int getExposedDistricts() { return exposedDistricts; } //districts the Warlord destroys for <= 1 gold
+
+    /** Districts counting towards colour bit {@code bit} (wildcards count for every bit) */
+    public int getCityColourCount(int bit) { return cityColours[bit]; }
+
+    /** Colour bits present in the city (see {@link ScoreCalculator#colourBits}) */
+    public int getCityColourBits() {
+        int bits = 0;
+        for (int c = 0; c < cityColours.length; c++)
+            if (cityColours[c] > 0) bits |= 1 << c;
+        return bits;
+    }
     public CharacterCard getCharacter() { return character; } //get character
 
+    /** Zobrist key of this seat's character, gold, hand and city, kept up to date by the mutators */
+    public long zobrist() { return zobrist; }
+
     /* ------------------------------------------------- *
      * Mutators used by the engine / abilities           *
      * ------------------------------------------------- */
 
     /** Set the character of the player */
     public void setCharacter(CharacterCard c) {
+        zobrist ^= Zobrist.character(id, character) ^ Zobrist.character(id, c);
         this.character = c;
         this.buildLimitThisTurn = 1;    // reset for new round
     }
 
     public void gainGold(int amount) {
-        gold += amount;
+        setGold(gold + amount);
     }
 
     /** Spend gold */
     public boolean spendGold(int amount) {
         if (amount > gold) return false;
-        gold -= amount;
+        setGold(gold - amount);
         return true;
     }
 
+    private void setGold(int g) {
+        zobrist ^= Zobrist.gold(id, gold) ^ Zobrist.gold(id, g);
+        gold = g;
+    }
+
     /** Add a card to the hand */
     public void addCardToHand(DistrictCard c) {
+        zobrist ^= Zobrist.hand(id, c, Zobrist.copies(hand, c));
         hand.add(c);
+        handPoints += ScoreCalculator.districtPoints(c);
+    }
+
+    /** Remove a card from the hand by index */
+    public DistrictCard removeCardFromHand(int idx) {
+        DistrictCard c = hand.remove(idx);
+        handPoints -= ScoreCalculator.districtPoints(c);
+        zobrist ^= Zobrist.hand(id, c, Zobrist.copies(hand, c));
+        return c;
+    }
+
+    /** Remove a card (first one with the same name) from the hand */
+    public boolean removeCardFromHand(DistrictCard c) {
+        if (!hand.remove(c)) return false;
+        handPoints -= ScoreCalculator.districtPoints(c);
+        zobrist ^= Zobrist.hand(id, c, Zobrist.copies(hand, c));
+        return true;
+    }
+
+    /** Replace the whole hand (Magician swap) */
+    public void replaceHand(Collection<DistrictCard> cards) {
+        while (!hand.isEmpty()) removeCardFromHand(hand.size() - 1);
+        for (DistrictCard c : cards) addCardToHand(c);
     }
 
     /** Check if the city contains a card with the given name */
     public boolean cityContains(String cardName) { //helpful for confirming that 2 same districts are not in the city
-        return city.stream().anyMatch(d -> d.getName().equals(cardName));
+        for (int i = 0; i < city.size(); i++)
+            if (city.get(i).getName().equals(cardName)) return true;
+        return false;
     }
 
     /** Add a district to the city */
     public void addDistrictToCity(DistrictCard c) {
         city.add(c);
+        trackCity(c, 1);
+    }
+
+    /** Remove a district from the city by index (Warlord) */
+    public DistrictCard removeDistrictFromCity(int idx) {
+        DistrictCard c = city.remove(idx);
+        trackCity(c, -1);
+        return c;
+    }
+
+    /** Apply a city card's contribution to the aggregates (+1 added, -1 removed) */
+    private void trackCity(DistrictCard c, int sign) {
+        cityPoints += sign * ScoreCalculator.districtPoints(c);
+        zobrist ^= Zobrist.city(id, c, Zobrist.copies(city, c) - (sign > 0 ? 1 : 0)); //c is in the list if added
+        int bits = ScoreCalculator.colourBits(c);
+        for (int b = 0; b < cityColours.length; b++)
+            if ((bits & (1 << b)) != 0) cityColours[b] += sign;
+        if (c.getCost() <= 2) exposedDistricts += sign;
     }
 
     /** Get the build limit for player in current turn (for architect it's 3)*/
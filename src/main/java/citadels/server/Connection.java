@@ -0,0 +1,92 @@
+package citadels.server;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * One client socket. Reading and line splitting happen on the selector
+ * thread only; game threads may queue output from anywhere.
+ *
+ * <p>An idle connection holds no buffers: a partial input line gets a byte
+ * array only while it is incomplete, and the output queue is empty.</p>
+ */
+final class Connection {
+
+    final SocketChannel channel;
+    SelectionKey key;
+
+    /* — game seat, set once the lobby fills — */
+    volatile GameSession session;
+    volatile int seat = -1;
+
+    /* — input (selector thread) — */
+    private byte[] partial;          // bytes of an unfinished line, or null
+    private int partialLen;
+
+    /* — output (any thread → selector thread) — */
+    final Queue<ByteBuffer> out = new ConcurrentLinkedQueue<>();
+    volatile boolean closeWhenFlushed;
+
+    Connection(SocketChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Queues text for sending; the selector thread writes it.
+     * @param text the text, sent as UTF-8
+     */
+    void enqueue(String text) {
+        out.add(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Splits freshly read bytes into lines, keeping any unfinished tail.
+     * @param buf bytes read
+     * @param len how many of them are valid
+     * @param maxLine longest line accepted
+     * @param sink receives each complete line, without its line ending
+     * @return false if a line was longer than {@code maxLine}
+     */
+    boolean feed(byte[] buf, int len, int maxLine, LineSink sink) {
+        int start = 0;
+        for (int i = 0; i < len; i++) {
+            if (buf[i] != '\n') continue;
+            int end = i;
+            String line;
+            if (partial == null) {
+                if (end - start > maxLine) return false;
+                if (end > start && buf[end - 1] == '\r') end--;
+                line = new String(buf, start, end - start, StandardCharsets.UTF_8);
+            } else {
+                if (!append(buf, start, end - start, maxLine)) return false;
+                int n = partialLen;
+                if (n > 0 && partial[n - 1] == '\r') n--;
+                line = new String(partial, 0, n, StandardCharsets.UTF_8);
+                partial = null;
+                partialLen = 0;
+            }
+            sink.line(this, line);
+            start = i + 1;
+        }
+        return start == len || append(buf, start, len - start, maxLine);
+    }
+
+    private boolean append(byte[] buf, int off, int n, int maxLine) {
+        if (partialLen + n > maxLine) return false;
+        if (partial == null) partial = new byte[Math.max(64, n)];
+        if (partialLen + n > partial.length)
+            partial = java.util.Arrays.copyOf(partial, Math.min(maxLine, Math.max(partial.length * 2, partialLen + n)));
+        System.arraycopy(buf, off, partial, partialLen, n);
+        partialLen += n;
+        return true;
+    }
+
+    /** Receiver of complete input lines */
+    interface LineSink {
+        void line(Connection c, String line);
+    }
+}
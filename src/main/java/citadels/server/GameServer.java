@@ -0,0 +1,301 @@
+package citadels.server;
+
+import citadels.metrics.Metrics;
+import citadels.model.game.CitadelsGame;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Hosts many games over plain-text sockets, speaking the same commands as
+ * the console ({@code t}, {@code gold}, {@code build 2}, …), one per line.
+ *
+ * <p>A single selector thread owns every socket. It reads, splits lines and
+ * writes; it never runs game logic. Each game is a {@link GameSession} that
+ * sits idle between lines and is driven by a small pool of game threads, so
+ * thousands of waiting players cost a connection object each and no
+ * thread.</p>
+ *
+ * <p>Connections wait in a lobby until enough people are there to fill the
+ * human seats of a game; the remaining seats are AI players.</p>
+ *
+ * <p>Game threads come from a {@link Scheduler}, which the server may share
+ * with a {@link JobService}: the people's games then go ahead of the
+ * simulations.</p>
+ */
+public final class GameServer implements Closeable {
+
+    /** Longest command line accepted; longer lines close the connection */
+    static final int MAX_LINE = 1024;
+
+    private final int players;
+    private final int humans;
+    private final Selector selector;
+    private final ServerSocketChannel server;
+    private final Scheduler games;
+    private final boolean ownsGames;
+    private final ByteBuffer readBuf = ByteBuffer.allocateDirect(16 * 1024); // shared: one reader thread
+    private final byte[] readBytes = new byte[16 * 1024];
+
+    private final List<Connection> lobby = new ArrayList<>();
+    private final Queue<Connection> writable = new ConcurrentLinkedQueue<>();
+    private final Connection.LineSink onLine = this::onLine;
+    private volatile int connections;
+    private volatile long thinkMillis = CitadelsGame.DEFAULT_THINK_MILLIS;
+    private volatile boolean running;
+    private Thread thread;
+
+    /**
+     * Opens the listening socket. Call {@link #start} to accept connections.
+     * @param address where to listen (port 0 picks a free one)
+     * @param players seats per game (4-7)
+     * @param humans people per game (1 to players)
+     * @param gameThreads threads that run game logic
+     * @throws IOException if the socket cannot be opened
+     */
+    public GameServer(InetSocketAddress address, int players, int humans, int gameThreads) throws IOException {
+        this(address, players, humans, new Scheduler(gameThreads, gameThreads), true);
+    }
+
+    /**
+     * Opens the listening socket, running games on a scheduler shared with
+     * other work. Call {@link #start} to accept connections.
+     * @param address where to listen (port 0 picks a free one)
+     * @param players seats per game (4-7)
+     * @param humans people per game (1 to players)
+     * @param games the game threads; the server does not close them
+     * @throws IOException if the socket cannot be opened
+     */
+    public GameServer(InetSocketAddress address, int players, int humans, Scheduler games) throws IOException {
+        this(address, players, humans, games, false);
+    }
+
+    private GameServer(InetSocketAddress address, int players, int humans, Scheduler games,
+                       boolean ownsGames) throws IOException {
+        if (players < 4 || players > 7) throw new IllegalArgumentException("Players must be 4-7");
+        if (humans < 1 || humans > players) throw new IllegalArgumentException("Humans must be 1-" + players);
+        this.players = players;
+        this.humans = humans;
+        this.selector = Selector.open();
+        this.server = ServerSocketChannel.open();
+        server.bind(address, 1024);
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+        this.games = games;
+        this.ownsGames = ownsGames;
+    }
+
+    /** Port the server listens on */
+    public int getPort() {
+        return server.socket().getLocalPort();
+    }
+
+    /** Open client connections */
+    public int getConnectionCount() {
+        return connections;
+    }
+
+    /**
+     * Sets the AI think budget of the games dealt from now on, the
+     * server's difficulty and response time.
+     * @param millis milliseconds per AI decision, 0 for heuristics only
+     */
+    public void setThinkMillis(long millis) {
+        if (millis < 0) throw new IllegalArgumentException("Think budget must be 0 or more");
+        thinkMillis = millis;
+    }
+
+    /** AI think budget of new games, in milliseconds per decision */
+    public long getThinkMillis() {
+        return thinkMillis;
+    }
+
+    /** Starts the selector thread. */
+    public synchronized void start() {
+        if (thread != null) return;
+        running = true;
+        thread = new Thread(this::run, "citadels-selector");
+        thread.start();
+    }
+
+    /** Stops accepting, closes every connection and stops the threads. */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        selector.wakeup();
+        Thread t;
+        synchronized (this) { t = thread; }
+        if (t != null) {
+            try { t.join(5000); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+        } else {
+            closeAll();
+        }
+        if (ownsGames) games.close();
+    }
+
+    /**
+     * Asks the selector thread to write a connection's queued output.
+     * Any thread may call this.
+     */
+    void wantWrite(Connection c) {
+        writable.add(c);
+        selector.wakeup();
+    }
+
+    /* ================================================================ *
+     *  Selector thread                                                  *
+     * ================================================================ */
+
+    private void run() {
+        try {
+            while (running) {
+                selector.select();
+                Connection w;
+                while ((w = writable.poll()) != null) write(w);
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    if (!key.isValid()) continue;
+                    if (key.isAcceptable()) accept();
+                    else {
+                        Connection c = (Connection) key.attachment();
+                        if (key.isReadable()) read(c);
+                        if (key.isValid() && key.isWritable()) write(c);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Server stopped: " + e.getMessage());
+        } finally {
+            closeAll();
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel ch;
+        while ((ch = server.accept()) != null) {
+            ch.configureBlocking(false);
+            ch.socket().setTcpNoDelay(true);
+            Connection c = new Connection(ch);
+            c.key = ch.register(selector, SelectionKey.OP_READ, c);
+            connections++;
+            c.enqueue("Welcome to Citadels. Waiting for " + humans + " player(s) to start a "
+                    + players + "-player game.\n");
+            write(c);
+            lobby.add(c);
+            if (lobby.size() == humans) {
+                Connection[] seats = lobby.toArray(new Connection[0]);
+                lobby.clear();
+                new GameSession(this, seats, players, games).start();
+            }
+        }
+    }
+
+    private void read(Connection c) {
+        readBuf.clear();
+        int n;
+        try {
+            n = c.channel.read(readBuf);
+        } catch (IOException e) {
+            n = -1;
+        }
+        if (n < 0) { drop(c); return; }
+        readBuf.flip();
+        readBuf.get(readBytes, 0, n);
+        if (!c.feed(readBytes, n, MAX_LINE, onLine)) {
+            c.enqueue("Line too long.\n");
+            c.closeWhenFlushed = true;
+            write(c);
+        }
+    }
+
+    private void onLine(Connection c, String line) {
+        GameSession s = c.session;
+        if (s != null) s.offer(c.seat, line);
+        else if (!c.closeWhenFlushed) {
+            c.enqueue("Waiting for more players.\n");
+            write(c);
+        }
+    }
+
+    /** Writes as much queued output as the socket takes; OP_WRITE only while some is left. */
+    private void write(Connection c) {
+        if (!c.key.isValid()) return;
+        try {
+            ByteBuffer b;
+            while ((b = c.out.peek()) != null) {
+                c.channel.write(b);
+                if (b.hasRemaining()) break;
+                c.out.poll();
+            }
+        } catch (IOException e) {
+            drop(c);
+            return;
+        }
+        if (c.out.isEmpty()) {
+            if (c.closeWhenFlushed) { drop(c); return; }
+            c.key.interestOps(SelectionKey.OP_READ);
+        } else {
+            c.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+    }
+
+    private void drop(Connection c) {
+        if (!c.key.isValid()) return;
+        c.key.cancel();
+        try { c.channel.close(); } catch (IOException ignored) { }
+        connections--;
+        lobby.remove(c);
+        GameSession s = c.session;
+        if (s != null && !c.closeWhenFlushed) s.offer(c.seat, null);
+    }
+
+    private void closeAll() {
+        for (SelectionKey k : selector.keys()) {
+            if (k.attachment() instanceof Connection) drop((Connection) k.attachment());
+        }
+        try { server.close(); } catch (IOException ignored) { }
+        try { selector.close(); } catch (IOException ignored) { }
+    }
+
+    /**
+     * Runs a server until the process is stopped, with a {@link JobService}
+     * on the next port ({@code -Dcitadels.jobs.port}, -1 for none) whose
+     * simulations run behind the games.
+     * @param args {@code [port] [players] [humans] [thinkMillis]}, default 4777 4 1 50
+     */
+    public static void main(String[] args) throws IOException {
+        int port    = args.length > 0 ? Integer.parseInt(args[0]) : 4777;
+        int players = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int humans  = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+        int threads = Runtime.getRuntime().availableProcessors();
+        Scheduler games = new Scheduler(threads + 1);       // one thread more, kept for the people
+        GameServer s = new GameServer(new InetSocketAddress(port), players, humans, games);
+        if (args.length > 3) s.setThinkMillis(Long.parseLong(args[3]));
+        Metrics.registerMBean();
+        // command response times every minute; -Dcitadels.latencyDump=0 turns it off
+        Metrics.startLatencyDump(Long.getLong("citadels.latencyDump", 60), System.out::println);
+        s.start();
+        System.out.println("Citadels server listening on port " + s.getPort()
+                + " (" + players + " players, " + humans + " human(s) per game, AI thinks up to "
+                + s.getThinkMillis() + " ms)");
+        int jobsPort = Integer.getInteger("citadels.jobs.port", port + 1);
+        if (jobsPort >= 0) {
+            JobService jobs = new JobService(new InetSocketAddress("127.0.0.1", jobsPort), games, threads);
+            jobs.start();
+            System.out.println("Simulation jobs on http://127.0.0.1:" + jobs.getPort() + "/jobs");
+        }
+    }
+}
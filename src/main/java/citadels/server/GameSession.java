@@ -0,0 +1,240 @@
+package citadels.server;
+
+import citadels.cli.CommandHandler;
+import citadels.model.card.DistrictCard;
+import citadels.model.game.CitadelsGame;
+import citadels.model.game.GameListener;
+import citadels.model.game.Step;
+import citadels.model.player.Player;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * One game hosted by the {@link GameServer}. The first seats belong to the
+ * connected people, the rest are AI players.
+ *
+ * <p>The game holds no thread while it waits. Lines arrive from the
+ * selector thread into an inbox; a game thread then drains the inbox,
+ * runs {@link CitadelsGame#step} until the game waits again, and hands the
+ * buffered output of each seat back to its connection in one piece. At most
+ * one game thread works on a session at a time.</p>
+ */
+final class GameSession implements CommandHandler, GameListener {
+
+    private final GameServer server;
+    private final Connection[] seats;          // one per human seat, by seat
+    private final StringBuilder[] out;         // output not yet flushed, per seat
+    private final int nPlayers;
+    private final Executor executor;
+
+    private final Queue<Input> inbox = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    /* — touched by the one game thread that holds {@code scheduled} — */
+    private CitadelsGame game;                 // built on a game thread, not the selector
+    private Step current;
+    private int audience = -1;
+    private boolean finished;
+    private boolean answered;                  // the awaited seat typed a line this drive
+
+    GameSession(GameServer server, Connection[] seats, int nPlayers, Executor executor) {
+        this.server = server;
+        this.seats = seats;
+        this.nPlayers = nPlayers;
+        this.executor = executor;
+        this.out = new StringBuilder[seats.length];
+        for (int i = 0; i < seats.length; i++) {
+            out[i] = new StringBuilder();
+            seats[i].session = this;
+            seats[i].seat = i;
+        }
+    }
+
+    /** Deals the game and runs it up to the first input, on a game thread. */
+    void start() {
+        offer(-1, "");
+    }
+
+    /**
+     * Hands over a line typed by a seat. Called from the selector thread.
+     * @param seat the seat
+     * @param line the line, or null if the connection closed
+     */
+    void offer(int seat, String line) {
+        inbox.add(new Input(seat, line));
+        if (scheduled.compareAndSet(false, true)) executor.execute(this::drive);
+    }
+
+    /* ================================================================ *
+     *  Game thread                                                      *
+     * ================================================================ */
+
+    private void drive() {
+        do {
+            try {
+                Input in;
+                while ((in = inbox.poll()) != null) {
+                    if (finished) continue;
+                    if (game == null) deal();
+                    if (in.line == null) leave(in.seat);
+                    else if (current == null) current = advance(null);
+                    else if (current.isAwaitingInput() && current.seat() == in.seat) {
+                        current = advance(in.line);
+                        answered = true;
+                    }
+                    else tell(in.seat, "Waiting for Player " + (current.seat() + 1) + ".");
+                }
+            } catch (RuntimeException e) {
+                if (game != null) game.abandon();
+                audience = -1;
+                println("The game stopped because of an error: " + e);
+                finish();
+            }
+            flush();
+            answered = false;
+            scheduled.set(false);
+        } while (!inbox.isEmpty() && scheduled.compareAndSet(false, true));
+    }
+
+    private void deal() {
+        game = new CitadelsGame(nPlayers, seats.length, this);
+        game.setThinkMillis(server.getThinkMillis());
+        game.addListener(this);
+        for (int i = 0; i < seats.length; i++)
+            out[i].append("Starting Citadels with ").append(nPlayers)
+                  .append(" players...\nYou are player ").append(i + 1).append('\n');
+    }
+
+    /** Steps the game until it waits for a person or ends. */
+    private Step advance(String line) {
+        Step s = game.step(line);
+        while (!s.isAwaitingInput()) {
+            if (s.kind() == Step.Kind.GAME_OVER) {
+                game.scoreAndPrintResults();
+                finish();
+                return s;
+            }
+            s = game.step(null);
+        }
+        return s;
+    }
+
+    private void leave(int seat) {
+        if (game != null) game.abandon();
+        audience = -1;
+        println("Player " + (seat + 1) + " left the game.");
+        finish();
+    }
+
+    private void finish() {
+        finished = true;
+    }
+
+    private void tell(int seat, String msg) {
+        int saved = audience;
+        audience = seat;
+        println(msg);
+        audience = saved;
+    }
+
+    /** Sends each seat its buffered output, with the prompt for the awaited seat. */
+    @Override
+    public void flush() {
+        for (int i = 0; i < seats.length; i++) {
+            Connection c = seats[i];
+            StringBuilder sb = out[i];
+            if (!finished && current != null && current.isAwaitingInput() && current.seat() == i
+                    && (sb.length() > 0 || answered))
+                sb.append(current.prompt());      // every answer gets a fresh prompt
+            if (sb.length() > 0) {
+                c.enqueue(sb.toString());
+                sb.setLength(0);
+            }
+            if (finished) c.closeWhenFlushed = true;  // only once the last output is queued
+            if (!c.out.isEmpty() || c.closeWhenFlushed) server.wantWrite(c);
+        }
+    }
+
+    /* ================================================================ *
+     *  CommandHandler                                                   *
+     * ================================================================ */
+
+    @Override
+    public void println(String msg) {
+        if (audience < 0) {
+            for (int i = 0; i < out.length; i++) out[i].append(msg).append('\n');
+        } else if (audience < out.length) {
+            out[audience].append(msg).append('\n');
+        }
+    }
+
+    /** Output meant for an AI seat is never built */
+    @Override
+    public void println(java.util.function.Supplier<String> msg) {
+        if (audience < out.length) println(msg.get());
+    }
+
+    /** Hosted games never block; input arrives through {@link CitadelsGame#step}. */
+    @Override
+    public String prompt(String msg) {
+        throw new UnsupportedOperationException("hosted games do not block for input");
+    }
+
+    @Override
+    public void setAudience(int seat) { audience = seat; }
+
+    @Override
+    public CitadelsGame getGame() { return game; }
+
+    @Override
+    public boolean allowsFiles() { return false; }
+
+    @Override
+    public int analysisThreads() { return 1; }   // a hint must not starve the other tables
+
+    /** Leaving ends the game for everyone at the table. */
+    @Override
+    public void quitGame(CitadelsGame g) {
+        leave(audience);
+    }
+
+    /* ================================================================ *
+     *  GameListener: public events reach the other seats                *
+     * ================================================================ */
+
+    @Override
+    public void districtBuilt(Player p, DistrictCard c) {
+        others("Player " + (p.getId() + 1) + " built " + c.getName() + ".");
+    }
+
+    @Override
+    public void districtDestroyed(Player victim, DistrictCard c) {
+        others("The Warlord destroyed " + c.getName() + " in Player " + (victim.getId() + 1) + "'s city.");
+    }
+
+    @Override
+    public void handsSwapped(Player a, Player b) {
+        others("Player " + (a.getId() + 1) + " swapped hands with Player " + (b.getId() + 1) + ".");
+    }
+
+    /** Tells the other seats about a public event while output is private to one seat. */
+    private void others(String msg) {
+        if (audience < 0) return; // everyone sees the engine's own line already
+        for (int i = 0; i < out.length; i++)
+            if (i != audience) out[i].append(msg).append('\n');
+    }
+
+    /** A line from a seat; a null line means the seat disconnected */
+    private static final class Input {
+        final int seat;
+        final String line;
+
+        Input(int seat, String line) {
+            this.seat = seat;
+            this.line = line;
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package citadels.server;
+
+import citadels.sim.SimJob;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Simulation jobs over local HTTP, run as batch work on a {@link Scheduler}
+ * so that they only use what the people's games leave.
+ *
+ * <pre>
+ *  POST   /jobs               {"from": 0, "to": 10000, "players": 4,
+ *                              "strategies": ["ai", "rollout"], "thinkMillis": 0}
+ *                             starts a job; answers its progress (201)
+ *  GET    /jobs               progress of every job
+ *  GET    /jobs/&lt;id&gt;          progress: state, games done, games/s, wins by strategy
+ *  GET    /jobs/&lt;id&gt;/results  one JSON line per finished game, streamed
+ *                             until the job ends
+ *  DELETE /jobs/&lt;id&gt;          cancels the job and forgets it
+ * </pre>
+ *
+ * <p>All fields of a new job but {@code to} are optional; see {@link SimJob}
+ * for what they mean. Errors answer 400, 404 or 405 with
+ * {@code {"error": "..."}}. A job keeps its last {@link SimJob#KEPT_RESULTS}
+ * result lines, so a reader that falls further behind skips some. Finished
+ * jobs are forgotten beyond the newest {@link #KEPT_JOBS}.</p>
+ */
+public final class JobService implements Closeable {
+
+    /** Finished jobs remembered; {@code -Dcitadels.jobs.kept} */
+    public static final int KEPT_JOBS = Integer.getInteger("citadels.jobs.kept", 100);
+
+    private final HttpServer http;
+    private final ExecutorService handlers;
+    private final Scheduler scheduler;
+    private final int lanes;
+    private final Map<Long, SimJob> jobs = new ConcurrentSkipListMap<>();
+    private final AtomicLong ids = new AtomicLong();
+
+    /**
+     * Opens the HTTP socket. Call {@link #start} to serve.
+     * @param address where to listen (port 0 picks a free one)
+     * @param scheduler where the games run; the service does not close it
+     * @param lanes games of one job played at once
+     * @throws IOException if the socket cannot be opened
+     */
+    public JobService(InetSocketAddress address, Scheduler scheduler, int lanes) throws IOException {
+        if (lanes < 1) throw new IllegalArgumentException("Lanes must be 1 or more");
+        this.scheduler = scheduler;
+        this.lanes = lanes;
+        this.http = HttpServer.create(address, 64);
+        this.handlers = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "citadels-http");
+            t.setDaemon(true);
+            return t;
+        });
+        http.setExecutor(handlers);
+        http.createContext("/jobs", this::handle);
+    }
+
+    /** Port the service listens on */
+    public int getPort() {
+        return http.getAddress().getPort();
+    }
+
+    /** Starts serving. */
+    public void start() {
+        http.start();
+    }
+
+    /**
+     * Starts a job.
+     * @param from first seed
+     * @param to seed after the last
+     * @param players seats per game
+     * @param strategies strategies the seats take turns at
+     * @param thinkMillis AI think budget per decision
+     * @return the job, queued on the scheduler
+     */
+    public SimJob submit(long from, long to, int players, List<String> strategies, long thinkMillis) {
+        SimJob job = new SimJob(ids.incrementAndGet(), from, to, players, strategies, thinkMillis);
+        jobs.put(job.id(), job);
+        forgetOldJobs();
+        for (long i = 0, n = Math.min(lanes, job.total()); i < n; i++) scheduler.submit(job.lane()::getAsBoolean);
+        return job;
+    }
+
+    /**
+     * Finds a job.
+     * @param id the job's number
+     * @return the job, or null
+     */
+    public SimJob job(long id) {
+        return jobs.get(id);
+    }
+
+    /* drops the oldest finished jobs beyond KEPT_JOBS, with their results */
+    private void forgetOldJobs() {
+        int finished = 0;
+        for (SimJob j : jobs.values()) if (j.isFinished()) finished++;
+        for (SimJob j : jobs.values()) {
+            if (finished <= KEPT_JOBS) break;
+            if (j.isFinished() && jobs.remove(j.id(), j)) finished--;
+        }
+    }
+
+    /** Stops serving and cancels the jobs still running. */
+    @Override
+    public void close() {
+        http.stop(0);
+        handlers.shutdownNow();
+        for (SimJob j : jobs.values()) j.cancel();
+    }
+
+    /* ================================================================ *
+     *  HTTP                                                             *
+     * ================================================================ */
+
+    private void handle(HttpExchange ex) throws IOException {
+        try {
+            String[] path = ex.getRequestURI().getPath().split("/");   // "", "jobs", id, "results"
+            String method = ex.getRequestMethod();
+            if (path.length <= 2) {
+                if (method.equals("GET")) list(ex);
+                else if (method.equals("POST")) create(ex);
+                else error(ex, 405, "Use GET or POST");
+                return;
+            }
+            SimJob job;
+            try {
+                job = jobs.get(Long.parseLong(path[2]));
+            } catch (NumberFormatException e) {
+                job = null;
+            }
+            if (job == null || path.length > 4 || (path.length == 4 && !path[3].equals("results"))) {
+                error(ex, 404, "No such job");
+            } else if (path.length == 4) {
+                if (method.equals("GET")) stream(ex, job);
+                else error(ex, 405, "Use GET");
+            } else if (method.equals("GET")) {
+                send(ex, 200, job.progress().toJSONString());
+            } else if (method.equals("DELETE")) {
+                job.cancel();
+                jobs.remove(job.id());
+                send(ex, 200, job.progress().toJSONString());
+            } else {
+                error(ex, 405, "Use GET or DELETE");
+            }
+        } finally {
+            ex.close();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void list(HttpExchange ex) throws IOException {
+        JSONArray a = new JSONArray();
+        for (SimJob j : jobs.values()) a.add(j.progress());
+        send(ex, 200, a.toJSONString());
+    }
+
+    private void create(HttpExchange ex) throws IOException {
+        Object body;
+        try (InputStream in = ex.getRequestBody()) {
+            body = new JSONParser().parse(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        } catch (ParseException e) {
+            error(ex, 400, "The body is not JSON");
+            return;
+        }
+        if (!(body instanceof JSONObject) || !(((JSONObject) body).get("to") instanceof Number)) {
+            error(ex, 400, "A job needs at least {\"to\": <seed>}");
+            return;
+        }
+        JSONObject o = (JSONObject) body;
+        List<String> strategies = new ArrayList<>();
+        Object s = o.get("strategies");
+        if (s instanceof List) for (Object x : (List<?>) s) strategies.add(String.valueOf(x));
+        else strategies = Collections.singletonList("ai");
+        try {
+            SimJob job = submit(number(o, "from", 0), number(o, "to", 0), (int) number(o, "players", 4),
+                    strategies, number(o, "thinkMillis", 0));
+            send(ex, 201, job.progress().toJSONString());
+        } catch (IllegalArgumentException e) {
+            error(ex, 400, e.getMessage());
+        }
+    }
+
+    private static long number(JSONObject o, String key, long otherwise) {
+        Object v = o.get(key);
+        if (v == null) return otherwise;
+        if (!(v instanceof Number)) throw new IllegalArgumentException(key + " must be a number");
+        return ((Number) v).longValue();
+    }
+
+    /* result lines as the games finish, in one chunked response */
+    private static void stream(HttpExchange ex, SimJob job) throws IOException {
+        ex.getResponseHeaders().set("Content-Type", "application/x-ndjson");
+        ex.sendResponseHeaders(200, 0);
+        OutputStream out = ex.getResponseBody();
+        List<String> lines = new ArrayList<>();
+        long next = 0;
+        boolean last;
+        try {
+            do {
+                last = job.isFinished();              // before copying: no line comes after the end
+                if (!last) job.awaitResults(next, 1000);
+                lines.clear();
+                next = job.results(next, lines);
+                if (lines.isEmpty()) continue;
+                StringBuilder sb = new StringBuilder();
+                for (String l : lines) sb.append(l).append('\n');
+                out.write(sb.toString().getBytes(StandardCharsets.UTF_8));
+                out.flush();
+            } while (!last);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        out.close();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void error(HttpExchange ex, int status, String message) throws IOException {
+        JSONObject o = new JSONObject();
+        o.put("error", message);
+        send(ex, status, o.toJSONString());
+    }
+
+    private static void send(HttpExchange ex, int status, String json) throws IOException {
+        byte[] b = (json + "\n").getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", "application/json");
+        ex.sendResponseHeaders(status, b.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(b);
+        }
+    }
+
+    /**
+     * Runs a job service on its own scheduler until the process is stopped.
+     * @param args {@code [port] [threads]}, default 4778 and all CPUs
+     */
+    public static void main(String[] args) throws IOException {
+        int port    = args.length > 0 ? Integer.parseInt(args[0]) : 4778;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        JobService s = new JobService(new InetSocketAddress("127.0.0.1", port), new Scheduler(threads, threads), threads);
+        s.start();
+        System.out.println("Citadels job service listening on http://127.0.0.1:" + s.getPort() + "/jobs");
+    }
+}
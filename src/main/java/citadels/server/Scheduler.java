@@ -0,0 +1,203 @@
+package citadels.server;
+
+import citadels.metrics.Metrics;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * The threads that run game logic, shared by people's games and background
+ * simulation, in two tiers.
+ *
+ * <p>Interactive work (a {@link GameSession} driving its game up to the next
+ * input) comes in through {@link #execute} and always goes first. Batch work
+ * is a {@link Batch}, cut into slices of about one game round: a thread runs
+ * slices of one batch until interactive work is waiting, then puts the batch
+ * back at the head of its queue and takes the interactive work. So a
+ * person waits for at most the rest of one simulated round, however much
+ * simulation is queued. Batch work also never holds more than
+ * {@code batchThreads} threads, so with a spare thread interactive work
+ * starts at once.</p>
+ *
+ * <p>Batches take turns: after {@link #QUANTUM_NANOS} of slices a batch goes
+ * to the back of the queue, so a long job does not shut out a short one.</p>
+ */
+public final class Scheduler implements Executor, Closeable {
+
+    /** Longest run of one batch's slices before the next batch gets a turn */
+    static final long QUANTUM_NANOS = 50_000_000L;
+
+    /** Batch work, done a slice at a time. */
+    public interface Batch {
+        /**
+         * Does one short piece of the work, about a game round.
+         * @return false once there is nothing left to do
+         */
+        boolean slice();
+    }
+
+    private final ArrayDeque<Queued> interactive = new ArrayDeque<>();  // guarded by this
+    private final ArrayDeque<Batch> batches = new ArrayDeque<>();       // guarded by this
+    private final List<Thread> workers = new ArrayList<>();
+    private final int batchThreads;
+    private int batchRunning;                                           // guarded by this
+    private volatile int interactiveWaiting;
+    private boolean closed;                                             // guarded by this
+
+    /**
+     * Starts the threads.
+     * @param threads threads in all
+     * @param batchThreads most threads batch work may hold at once, 1 to {@code threads}
+     */
+    public Scheduler(int threads, int batchThreads) {
+        if (threads < 1) throw new IllegalArgumentException("Threads must be 1 or more");
+        if (batchThreads < 1 || batchThreads > threads)
+            throw new IllegalArgumentException("Batch threads must be 1-" + threads);
+        this.batchThreads = batchThreads;
+        for (int i = 0; i < threads; i++) {
+            Thread t = new Thread(this::work, "citadels-game");
+            t.setDaemon(true);
+            workers.add(t);
+            t.start();
+        }
+    }
+
+    /**
+     * Starts the threads, keeping one of them (if there are two or more) for
+     * interactive work only.
+     * @param threads threads in all
+     */
+    public Scheduler(int threads) {
+        this(threads, Math.max(1, threads - 1));
+    }
+
+    /**
+     * Queues interactive work ahead of every batch.
+     * @param task the work
+     * @throws RejectedExecutionException once closed
+     */
+    @Override
+    public void execute(Runnable task) {
+        synchronized (this) {
+            if (closed) throw new RejectedExecutionException("Scheduler closed");
+            interactive.add(new Queued(task, System.nanoTime()));
+            interactiveWaiting++;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Queues batch work behind any interactive work.
+     * @param b the work; its slices run on the scheduler's threads until it says it is done
+     * @throws RejectedExecutionException once closed
+     */
+    public void submit(Batch b) {
+        synchronized (this) {
+            if (closed) throw new RejectedExecutionException("Scheduler closed");
+            batches.add(b);
+            notifyAll();
+        }
+    }
+
+    /** Batches queued, not counting those being worked on */
+    public synchronized int queuedBatches() {
+        return batches.size();
+    }
+
+    /** Stops the threads; work still queued is dropped. */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            interactive.clear();
+            batches.clear();
+            notifyAll();
+        }
+        for (Thread t : workers) t.interrupt();
+    }
+
+    /* ================================================================ *
+     *  Worker threads                                                   *
+     * ================================================================ */
+
+    private void work() {
+        while (true) {
+            Runnable task;
+            Batch batch = null;
+            synchronized (this) {
+                Queued q;
+                while ((q = interactive.poll()) == null
+                        && (batchRunning >= batchThreads || (batch = batches.poll()) == null)) {
+                    if (closed) return;
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        if (closed) return;
+                    }
+                }
+                if (q != null) {
+                    interactiveWaiting--;
+                    Metrics.SCHED_INTERACTIVE_WAIT.record(System.nanoTime() - q.queued);
+                    task = q.task;
+                } else {
+                    batchRunning++;
+                    task = null;
+                }
+            }
+            if (task != null) runInteractive(task);
+            else runBatch(batch);
+        }
+    }
+
+    private static void runInteractive(Runnable task) {
+        try {
+            task.run();
+        } catch (RuntimeException e) {
+            System.err.println("Game task failed: " + e);
+        }
+    }
+
+    /** Slices until the batch is done, interactive work waits or the quantum is used up. */
+    private void runBatch(Batch b) {
+        boolean more;
+        boolean yielded = false;
+        long end = System.nanoTime() + QUANTUM_NANOS;
+        try {
+            do {
+                more = b.slice();
+                Metrics.SCHED_BATCH_SLICES.inc();
+                yielded = interactiveWaiting > 0;
+            } while (more && !yielded && System.nanoTime() < end);
+        } catch (RuntimeException e) {
+            System.err.println("Batch task failed: " + e);
+            more = false;
+        }
+        synchronized (this) {
+            batchRunning--;
+            if (more && !closed) {
+                if (yielded) {
+                    batches.addFirst(b);                  // its turn is not over, only interrupted
+                    Metrics.SCHED_PREEMPTIONS.inc();
+                } else {
+                    batches.addLast(b);
+                }
+            }
+            notifyAll();
+        }
+    }
+
+    /** Interactive work and when it was queued */
+    private static final class Queued {
+        final Runnable task;
+        final long queued;
+
+        Queued(Runnable task, long queued) {
+            this.task = task;
+            this.queued = queued;
+        }
+    }
+}
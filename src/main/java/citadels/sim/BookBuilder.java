@@ -0,0 +1,195 @@
+package citadels.sim;
+
+import citadels.ai.OpeningBook;
+import citadels.cli.QuietHandler;
+import citadels.model.game.CitadelsGame;
+import citadels.model.game.GameListener;
+import citadels.model.game.ScoreCalculator;
+import citadels.model.game.Step;
+import citadels.model.player.AIPlayer;
+import citadels.model.player.Player;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Builds an {@link OpeningBook} from self-play.
+ *
+ * <p>Every seat is an {@link AIPlayer#explorer explorer}, which picks a
+ * character at random some of the time, so each pick in a context gets
+ * played. Every pick is counted under its {@link OpeningBook#key context}
+ * with whether the picker went on to win the game. The book then keeps,
+ * for each context seen often enough, the pick with the best win rate
+ * (smoothed, so that a pick tried twice and won twice does not take it).</p>
+ *
+ * <p>Building with a book already loaded ({@code -Dcitadels.ai.book})
+ * makes the seats that do not explore play the old book, so running it
+ * again refines the book against itself.</p>
+ */
+public final class BookBuilder {
+
+    private final int players;
+    private final double explore;
+    private final Map<Long, int[]> counts = new ConcurrentHashMap<>();   // per context: plays per rank, then wins
+    private final AtomicLong next = new AtomicLong();
+    private final AtomicLong played = new AtomicLong();
+
+    /**
+     * @param players seats per game, 4 to 7; 0 cycles through all of them
+     * @param explore chance of a random pick, 0 to 1
+     */
+    public BookBuilder(int players, double explore) {
+        if (explore < 0 || explore > 1) throw new IllegalArgumentException("Explore must be 0 to 1");
+        this.players = players;
+        this.explore = explore;
+    }
+
+    /** Games played to the end so far */
+    public long games() { return played.get(); }
+
+    /** Distinct contexts seen so far */
+    public int contexts() { return counts.size(); }
+
+    /**
+     * Plays {@code games} games on {@code threads} threads and waits for them.
+     * @param games how many games
+     * @param threads worker threads
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void run(long games, int threads) throws InterruptedException {
+        List<Thread> workers = new ArrayList<>(threads);
+        for (int t = 0; t < threads; t++) {
+            Thread w = new Thread(() -> {
+                long i;
+                while ((i = next.getAndIncrement()) < games) play(players > 0 ? players : 4 + (int) (i % 4));
+            }, "book-" + t);
+            w.setDaemon(true);
+            workers.add(w);
+            w.start();
+        }
+        for (Thread w : workers) w.join();
+    }
+
+    private void play(int seats) {
+        CitadelsGame g = new CitadelsGame(seats, QuietHandler.INSTANCE, ThreadLocalRandom.current().nextLong(),
+                s -> AIPlayer.explorer(s, explore));
+        g.setThinkMillis(0);                     // explorers play the heuristics, never search
+        PickLog picks = new PickLog(g);
+        g.addListener(picks);
+        Step s = g.step(null);
+        while (s.kind() != Step.Kind.GAME_OVER) {
+            if (g.getRound() > Campaign.ROUND_LIMIT) {
+                g.abandon();
+                return;
+            }
+            s = g.step(null);
+        }
+        Player winner = ScoreCalculator.winner(g.finalScores());
+        for (int i = 0; i < picks.size; i++) {
+            int rank = picks.ranks[i] & 0xF;
+            boolean won = picks.ranks[i] >> 4 == winner.getId();
+            counts.compute(picks.keys[i], (k, c) -> {
+                if (c == null) c = new int[16];
+                c[rank - 1]++;
+                if (won) c[8 + rank - 1]++;
+                return c;
+            });
+        }
+        played.incrementAndGet();
+    }
+
+    /** Every pick of one game: its context, and the seat and rank packed as {@code seat << 4 | rank}. */
+    private static final class PickLog implements GameListener {
+        final CitadelsGame game;
+        long[] keys = new long[64];
+        int[] ranks = new int[64];
+        int size;
+
+        PickLog(CitadelsGame game) {
+            this.game = game;
+        }
+
+        @Override
+        public void characterChosen(Player p, int rank) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                ranks = Arrays.copyOf(ranks, size * 2);
+            }
+            int before = game.getAvailableRanks() | 1 << (rank - 1);   // the pick is already taken out
+            keys[size] = OpeningBook.key(game, p.getId(), before);
+            ranks[size++] = p.getId() << 4 | rank;
+        }
+    }
+
+    /**
+     * Writes the book of what was played so far.
+     * @param file the book to create or replace
+     * @param minPlays games a context needs to be kept
+     * @return contexts written
+     * @throws IOException if the file cannot be written
+     */
+    public int write(Path file, int minPlays) throws IOException {
+        int n = 0;
+        long[] keys = new long[counts.size()];
+        int[] ranks = new int[keys.length], permille = new int[keys.length], plays = new int[keys.length];
+        for (Map.Entry<Long, int[]> e : counts.entrySet()) {
+            int[] c = e.getValue();
+            int total = 0, best = -1;
+            for (int r = 0; r < 8; r++) {
+                total += c[r];
+                if (c[r] > 0 && (best < 0 || smoothed(c, r) > smoothed(c, best))) best = r;
+            }
+            if (total < minPlays || n == keys.length) continue;
+            keys[n] = e.getKey();
+            ranks[n] = best + 1;
+            permille[n] = (int) (1000L * c[8 + best] / c[best]);
+            plays[n++] = total;
+        }
+        OpeningBook.write(file, Arrays.copyOf(keys, n), Arrays.copyOf(ranks, n),
+                Arrays.copyOf(permille, n), Arrays.copyOf(plays, n));
+        return n;
+    }
+
+    /* win rate with one win and one loss added, so few games count for little */
+    private static double smoothed(int[] c, int r) {
+        return (c[8 + r] + 1.0) / (c[r] + 2.0);
+    }
+
+    /**
+     * Builds a book and reports progress every 10 seconds.
+     * @param args {@code [games] [threads] [players] [book file] [explore] [min plays]},
+     *             default 100000, all CPUs, 0 (all), opening.book, 0.3, 20
+     */
+    public static void main(String[] args) throws InterruptedException, IOException {
+        long games   = args.length > 0 ? Long.parseLong(args[0]) : 100_000;
+        int threads  = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int players  = args.length > 2 ? Integer.parseInt(args[2]) : 0;
+        Path file    = Paths.get(args.length > 3 ? args[3] : "opening.book");
+        double explore = args.length > 4 ? Double.parseDouble(args[4]) : 0.3;
+        int minPlays = args.length > 5 ? Integer.parseInt(args[5]) : 20;
+
+        BookBuilder b = new BookBuilder(players, explore);
+        Thread runner = new Thread(() -> {
+            try { b.run(games, threads); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+        }, "book");
+        long t0 = System.nanoTime();
+        runner.start();
+        while (true) {
+            runner.join(10_000);
+            if (!runner.isAlive()) break;
+            System.out.printf("%d games, %d contexts, %.0f games/s%n", b.games(), b.contexts(),
+                    b.games() / ((System.nanoTime() - t0) / 1e9));
+        }
+        int n = b.write(file, minPlays);
+        System.out.printf("Done in %.1f s: %d games, %d of %d contexts written to %s%n",
+                (System.nanoTime() - t0) / 1e9, b.games(), n, b.contexts(), file);
+    }
+}
@@ -0,0 +1,160 @@
+package citadels.sim;
+
+import citadels.cli.QuietHandler;
+import citadels.model.game.CitadelsGame;
+import citadels.model.game.GameListener;
+import citadels.model.game.Step;
+import citadels.model.player.Player;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Plays many all-AI games on several threads, headless, and gathers
+ * {@link SimStats} about them, optionally keeping every game in a results
+ * store for {@link ResultQuery}.
+ */
+public final class Campaign {
+
+    /** A game still going after this many rounds is given up */
+    public static final int ROUND_LIMIT = 500;
+
+    private final int players;
+    private final ResultWriter store;
+    private final TrainingWriter training;
+    private final SimStats stats = new SimStats();
+    private final AtomicLong next = new AtomicLong();
+
+    /**
+     * @param players seats per game, 4 to 7; 0 cycles through all of them
+     */
+    public Campaign(int players) {
+        this(players, null, null);
+    }
+
+    /**
+     * @param players seats per game, 4 to 7; 0 cycles through all of them
+     * @param store where to append every finished game, or null
+     */
+    public Campaign(int players, ResultWriter store) {
+        this(players, store, null);
+    }
+
+    /**
+     * @param players seats per game, 4 to 7; 0 cycles through all of them
+     * @param store where to append every finished game, or null
+     * @param training where to stream decision-point features, or null
+     */
+    public Campaign(int players, ResultWriter store, TrainingWriter training) {
+        this.players = players;
+        this.store = store;
+        this.training = training;
+    }
+
+    /** The statistics, readable at any time */
+    public SimStats stats() { return stats; }
+
+    /**
+     * Plays {@code games} games on {@code threads} threads and waits for them.
+     * @param games how many games
+     * @param threads worker threads
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void run(long games, int threads) throws InterruptedException {
+        List<Thread> workers = new ArrayList<>(threads);
+        for (int t = 0; t < threads; t++) {
+            Thread w = new Thread(() -> {
+                TrainingWriter.Recorder rec = training == null ? null : training.recorder();
+                long i;
+                while ((i = next.getAndIncrement()) < games) play(players > 0 ? players : 4 + (int) (i % 4), rec);
+                if (rec != null) rec.flush();
+            }, "campaign-" + t);
+            w.setDaemon(true);
+            workers.add(w);
+            w.start();
+        }
+        for (Thread w : workers) w.join();
+    }
+
+    private void play(int seats, TrainingWriter.Recorder rec) {
+        CitadelsGame g = new CitadelsGame(seats, 0, QuietHandler.INSTANCE);
+        g.setThinkMillis(0);                     // no endgame search: a game takes milliseconds
+        PickLog picks = new PickLog(g, seats);
+        g.addListener(picks);
+        if (rec != null) rec.begin(g);
+        Step s = g.step(null);
+        while (s.kind() != Step.Kind.GAME_OVER) {
+            if (g.getRound() > ROUND_LIMIT) {
+                g.abandon();
+                stats.recordAbandoned();
+                if (rec != null) rec.discard();
+                return;
+            }
+            s = g.step(null);
+        }
+        if (rec != null) rec.finish();
+        int[] first = new int[seats];
+        for (int i = 0; i < seats; i++) first[i] = (int) (picks.chars[i] & 0xF);
+        stats.record(g, first);
+        if (store != null) {
+            try {
+                store.append(g, picks.chars);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /** Remembers the character each seat took in each of the first 16 rounds, 4 bits per round. */
+    static final class PickLog implements GameListener {
+        final CitadelsGame game;
+        final long[] chars;
+
+        PickLog(CitadelsGame game, int seats) {
+            this.game = game;
+            this.chars = new long[seats];
+        }
+
+        @Override
+        public void characterChosen(Player p, int rank) {
+            int round = game.getRound();
+            if (round <= 16) chars[p.getId()] |= (long) rank << (4 * (round - 1));
+        }
+    }
+
+    /**
+     * Runs a campaign and prints the tables, with progress every 10 seconds.
+     * @param args {@code [games] [threads] [players] [store dir|-] [features file]},
+     *             default 100000, all CPUs, 4, no store, no features
+     */
+    public static void main(String[] args) throws InterruptedException, IOException {
+        long games  = args.length > 0 ? Long.parseLong(args[0]) : 100_000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int players = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        boolean storing = args.length > 3 && !args[3].equals("-");
+        try (ResultWriter store = storing ? new ResultWriter(Paths.get(args[3])) : null;
+             TrainingWriter training = args.length > 4 ? new TrainingWriter(Paths.get(args[4]), 4 * threads) : null) {
+            run(new Campaign(players, store, training), games, threads);
+        }
+    }
+
+    private static void run(Campaign c, long games, int threads) throws InterruptedException {
+        Thread runner = new Thread(() -> {
+            try { c.run(games, threads); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+        }, "campaign");
+        long t0 = System.nanoTime();
+        runner.start();
+        while (true) {
+            runner.join(10_000);
+            if (!runner.isAlive()) break;
+            SimStats.Snapshot s = c.stats().snapshot();   // workers keep going
+            System.out.printf("%d games, %.0f games/s%n", s.games(), s.games() / ((System.nanoTime() - t0) / 1e9));
+        }
+        System.out.printf("Done in %.1f s%n", (System.nanoTime() - t0) / 1e9);
+        for (String line : c.stats().snapshot().report()) System.out.println(line);
+    }
+}
@@ -0,0 +1,46 @@
+package citadels.sim;
+
+import java.util.Locale;
+
+/**
+ * Columns of the results store: one row per player per finished game,
+ * each column a fixed-width little-endian file {@code <name>.col}.
+ */
+public enum Column {
+    GAME(8),       // game id, unique within one campaign run
+    SEED(8),       // seed of the game's shuffles
+    SEATS(1),      // players in the game
+    SEAT(1),       // 1-based, as shown to players
+    ROUNDS(1),     // rounds played, capped at 255
+    FIRST(1),      // rank picked in round 1
+    FINAL(1),      // rank held in the last round
+    CHARS(8),      // rank per round, 4 bits each, rounds 1-16 from the low bits
+    GOLD(2),
+    HAND(1),       // cards in hand at the end
+    CITY(8),       // built districts as a bit set of district type ids (cards.tsv rows)
+    DISTRICTS(1),  // size of the city
+    PURPLE(1),     // purple districts in the city
+    SCORE(2),
+    WON(1);        // 1 for the winner (ties broken by last-round rank)
+
+    /** Bytes per value */
+    public final int width;
+
+    Column(int width) {
+        this.width = width;
+    }
+
+    /** Lower-case name, as used in queries and file names */
+    public String key() { return name().toLowerCase(Locale.ROOT); }
+
+    /**
+     * Finds a column by its query name.
+     * @param key name, any case
+     * @return the column
+     * @throws IllegalArgumentException if there is none
+     */
+    public static Column of(String key) {
+        for (Column c : values()) if (c.name().equalsIgnoreCase(key)) return c;
+        throw new IllegalArgumentException("Unknown column '" + key + "'.");
+    }
+}
@@ -0,0 +1,94 @@
+package citadels.sim;
+
+import citadels.model.card.DistrictColor;
+import citadels.model.game.CitadelsGame;
+import citadels.model.player.Player;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fixed-width numeric description of one decision point, as seen by the
+ * deciding seat, plus two label slots for the outcome of the game.
+ *
+ * <p>Only public information goes in besides the seat's own hand:
+ * opponents appear through their gold, hand size and city, in seat order
+ * after the decider, padded with zeros up to six opponents.</p>
+ */
+public final class FeatureVector {
+
+    private FeatureVector() { }
+
+    /** Decision kinds */
+    public static final int PICK = 0, TURN = 1;
+
+    private static final int MAX_OPPONENTS = 6;
+    private static final String[] OWN = {
+        "kind", "round", "seats", "seat", "crowned", "rank",
+        "gold", "hand_size", "hand_points", "city_size", "city_points", "exposed", "deck_size"
+    };
+    private static final String[] PER_OPPONENT = { "gold", "hand", "city", "points" };
+
+    /** Field names, in record order: {@code won}, {@code score}, then the features */
+    public static final List<String> NAMES = names();
+    /** Floats per record */
+    public static final int WIDTH = NAMES.size();
+    /** Offsets of the two labels, filled in when the game is over */
+    public static final int WON = 0, SCORE = 1;
+
+    private static final int COLOURS = DistrictColor.values().length;
+
+    private static List<String> names() {
+        List<String> n = new ArrayList<>();
+        n.add("won");
+        n.add("score");
+        for (String s : OWN) n.add(s);
+        for (DistrictColor c : DistrictColor.values()) n.add("city_" + c.name().toLowerCase());
+        for (int o = 1; o <= MAX_OPPONENTS; o++)
+            for (String s : PER_OPPONENT) n.add("opp" + o + "_" + s);
+        return n;
+    }
+
+    /**
+     * Writes the features of {@code p}'s position into {@code out}; labels
+     * are zeroed.
+     * @param out destination
+     * @param off first float of the record
+     * @param g the game
+     * @param p the deciding player
+     * @param kind {@link #PICK} or {@link #TURN}
+     * @param rank character being picked or played
+     */
+    public static void fill(float[] out, int off, CitadelsGame g, Player p, int kind, int rank) {
+        List<Player> players = g.getPlayers();
+        int n = players.size(), seat = p.getId();
+        int i = off;
+        out[i++] = 0;                                       // won
+        out[i++] = 0;                                       // score
+        out[i++] = kind;
+        out[i++] = g.getRound();
+        out[i++] = n;
+        out[i++] = seat;
+        out[i++] = g.getCrownedSeat() == seat ? 1 : 0;
+        out[i++] = rank;
+        out[i++] = p.getGold();
+        out[i++] = p.getHand().size();
+        out[i++] = p.getHandPoints();
+        out[i++] = p.getCity().size();
+        out[i++] = p.getCityPoints();
+        out[i++] = p.getExposedDistricts();
+        out[i++] = g.getDistrictDeckSize();
+        for (int c = 0; c < COLOURS; c++) out[i++] = p.getCityColourCount(c);
+        for (int o = 1; o <= MAX_OPPONENTS; o++) {
+            if (o < n) {
+                Player q = players.get((seat + o) % n);
+                out[i++] = q.getGold();
+                out[i++] = q.getHand().size();
+                out[i++] = q.getCity().size();
+                out[i++] = q.getCityPoints();
+            } else {
+                for (int k = 0; k < PER_OPPONENT.length; k++) out[i++] = 0;
+            }
+        }
+    }
+}
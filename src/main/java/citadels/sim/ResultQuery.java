@@ -0,0 +1,320 @@
+package citadels.sim;
+
+import citadels.model.game.CitadelsGame;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.IntStream;
+
+/**
+ * A filtered aggregation over a results store, for example
+ * {@code winrate where seat=1 and first=Architect and seats=5} or
+ * {@code avg score where won=1 by purple}.
+ *
+ * <pre>
+ *   query  := agg [column] [where cond (and cond)*] [by column]
+ *   agg    := count | winrate | avg | sum | min | max
+ *   cond   := column (= | != | &lt; | &lt;= | &gt; | &gt;=) value
+ *   value  := integer | character name
+ * </pre>
+ *
+ * <p>Chunks are scanned in parallel, each through its own memory mapping
+ * of only the columns the query reads. A chunk decodes one column at a
+ * time into a plain array, narrows a selection with one tight loop per
+ * condition, then aggregates what is left.</p>
+ */
+public final class ResultQuery {
+
+    /** Aggregations */
+    public enum Agg { COUNT, WINRATE, AVG, SUM, MIN, MAX }
+
+    private static final int EQ = 0, NE = 1, LT = 2, LE = 3, GT = 4, GE = 5;
+    private static final String[] OPS = { "=", "!=", "<", "<=", ">", ">=" };
+
+    private final Agg agg;
+    private final Column of;                 // aggregated column, null for count/winrate
+    private final Column[] condColumns;
+    private final int[] condOps;
+    private final long[] condValues;
+    private final Column by;                 // grouping column, or null
+
+    private ResultQuery(Agg agg, Column of, List<Column> cols, List<Integer> ops, List<Long> values, Column by) {
+        this.agg = agg;
+        this.of = of;
+        this.condColumns = cols.toArray(new Column[0]);
+        this.condOps = ops.stream().mapToInt(Integer::intValue).toArray();
+        this.condValues = values.stream().mapToLong(Long::longValue).toArray();
+        this.by = by;
+    }
+
+    /**
+     * Parses a query.
+     * @param text the query text
+     * @return the query
+     * @throws IllegalArgumentException with a message for the user if it does not parse
+     */
+    public static ResultQuery parse(String text) {
+        String spaced = text.replaceAll("(<=|>=|!=|=|<|>)", " $1 ").trim();
+        List<String> t = spaced.isEmpty() ? new ArrayList<>() : Arrays.asList(spaced.split("\\s+"));
+        if (t.isEmpty()) throw new IllegalArgumentException("query <count|winrate|avg|sum|min|max> [column] [where ...] [by column]");
+        int i = 0;
+        Agg agg;
+        try {
+            agg = Agg.valueOf(t.get(i++).toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown aggregation '" + t.get(0) + "'.");
+        }
+        Column of = null;
+        if (agg != Agg.COUNT && agg != Agg.WINRATE) {
+            if (i >= t.size()) throw new IllegalArgumentException(t.get(0) + " needs a column.");
+            of = Column.of(t.get(i++));
+        }
+        List<Column> cols = new ArrayList<>();
+        List<Integer> ops = new ArrayList<>();
+        List<Long> values = new ArrayList<>();
+        Column by = null;
+        if (i < t.size() && t.get(i).equalsIgnoreCase("where")) {
+            do {
+                i++;
+                if (i + 2 >= t.size())
+                    throw new IllegalArgumentException("Incomplete condition.");
+                cols.add(Column.of(t.get(i)));
+                int op = Arrays.asList(OPS).indexOf(t.get(i + 1));
+                if (op < 0) throw new IllegalArgumentException("Unknown operator '" + t.get(i + 1) + "'.");
+                ops.add(op);
+                values.add(value(t.get(i + 2)));
+                i += 3;
+            } while (i < t.size() && t.get(i).equalsIgnoreCase("and"));
+        }
+        if (i < t.size() && t.get(i).equalsIgnoreCase("by")) {
+            if (i + 1 >= t.size()) throw new IllegalArgumentException("by needs a column.");
+            by = Column.of(t.get(i + 1));
+            i += 2;
+        }
+        if (i < t.size()) throw new IllegalArgumentException("Unexpected '" + t.get(i) + "'.");
+        return new ResultQuery(agg, of, cols, ops, values, by);
+    }
+
+    private static long value(String s) {
+        try {
+            return Long.parseLong(s);
+        } catch (NumberFormatException e) {
+            for (int r = 1; r <= 8; r++) if (CitadelsGame.rankName(r).equalsIgnoreCase(s)) return r;
+            throw new IllegalArgumentException("Not a number or character: '" + s + "'.");
+        }
+    }
+
+    /**
+     * Rows every column of a store has; 0 if there is no store.
+     * @param dir the store directory
+     * @return the row count
+     * @throws IOException if a column file cannot be read
+     */
+    public static long rows(Path dir) throws IOException {
+        long rows = Long.MAX_VALUE;
+        for (Column c : Column.values()) {
+            Path f = ResultWriter.file(dir, c);
+            rows = Math.min(rows, Files.exists(f) ? Files.size(f) / c.width : 0);
+        }
+        return rows;
+    }
+
+    /** Totals of one group */
+    public static final class Acc {
+        long rows, wins, sum;
+        long min = Long.MAX_VALUE, max = Long.MIN_VALUE;
+
+        void merge(Acc o) {
+            rows += o.rows;
+            wins += o.wins;
+            sum += o.sum;
+            min = Math.min(min, o.min);
+            max = Math.max(max, o.max);
+        }
+
+        /** Rows in the group */
+        public long rows() { return rows; }
+
+        /** Wins in the group (winrate queries only) */
+        public long wins() { return wins; }
+    }
+
+    /**
+     * Runs the query over a store.
+     * @param dir the store directory
+     * @return totals per group value in order; one entry keyed 0 without {@code by}
+     * @throws IOException if the store cannot be read
+     */
+    public Map<Long, Acc> execute(Path dir) throws IOException {
+        long rows = rows(dir);
+        Set<Column> needed = EnumSet.noneOf(Column.class);
+        needed.addAll(Arrays.asList(condColumns));
+        if (of != null) needed.add(of);
+        if (by != null) needed.add(by);
+        if (agg == Agg.WINRATE) needed.add(Column.WON);
+
+        Map<Column, FileChannel> files = new EnumMap<>(Column.class);
+        try {
+            for (Column c : needed)
+                files.put(c, FileChannel.open(ResultWriter.file(dir, c), StandardOpenOption.READ));
+            int chunks = (int) ((rows + ResultWriter.CHUNK_ROWS - 1) / ResultWriter.CHUNK_ROWS);
+            return IntStream.range(0, chunks).parallel()
+                    .mapToObj(chunk -> scan(files, chunk, rows))
+                    .reduce(new TreeMap<>(), ResultQuery::merge);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            for (FileChannel f : files.values()) f.close();
+        }
+    }
+
+    private static Map<Long, Acc> merge(Map<Long, Acc> a, Map<Long, Acc> b) {
+        Map<Long, Acc> out = new TreeMap<>(a);
+        for (Map.Entry<Long, Acc> e : b.entrySet()) {
+            Acc acc = out.get(e.getKey());
+            if (acc == null) out.put(e.getKey(), e.getValue());
+            else {
+                Acc sum = new Acc();               // never modify an input: reduce reuses its identity
+                sum.merge(acc);
+                sum.merge(e.getValue());
+                out.put(e.getKey(), sum);
+            }
+        }
+        return out;
+    }
+
+    private Map<Long, Acc> scan(Map<Column, FileChannel> files, int chunk, long rows) {
+        long start = (long) chunk * ResultWriter.CHUNK_ROWS;
+        int n = (int) Math.min(ResultWriter.CHUNK_ROWS, rows - start);
+        Map<Column, long[]> data = new EnumMap<>(Column.class);
+        for (Map.Entry<Column, FileChannel> e : files.entrySet())
+            data.put(e.getKey(), decode(e.getValue(), e.getKey(), start, n));
+
+        boolean[] sel = new boolean[n];
+        Arrays.fill(sel, true);
+        for (int c = 0; c < condColumns.length; c++) {
+            long[] v = data.get(condColumns[c]);
+            long x = condValues[c];
+            switch (condOps[c]) {
+                case EQ: for (int i = 0; i < n; i++) sel[i] &= v[i] == x; break;
+                case NE: for (int i = 0; i < n; i++) sel[i] &= v[i] != x; break;
+                case LT: for (int i = 0; i < n; i++) sel[i] &= v[i] <  x; break;
+                case LE: for (int i = 0; i < n; i++) sel[i] &= v[i] <= x; break;
+                case GT: for (int i = 0; i < n; i++) sel[i] &= v[i] >  x; break;
+                default: for (int i = 0; i < n; i++) sel[i] &= v[i] >= x; break;
+            }
+        }
+
+        long[] won = data.get(Column.WON);
+        long[] val = of == null ? null : data.get(of);
+        long[] key = by == null ? null : data.get(by);
+        Map<Long, Acc> groups = new TreeMap<>();
+        Acc single = key == null ? new Acc() : null;
+        Acc[] dense = key != null && by.width == 1 ? new Acc[256] : null;   // no boxing for byte keys
+        for (int i = 0; i < n; i++) {
+            if (!sel[i]) continue;
+            Acc a;
+            if (single != null) a = single;
+            else if (dense != null) {
+                a = dense[(int) key[i]];
+                if (a == null) a = dense[(int) key[i]] = new Acc();
+            } else a = groups.computeIfAbsent(key[i], k -> new Acc());
+            a.rows++;
+            if (won != null) a.wins += won[i];
+            if (val != null) {
+                a.sum += val[i];
+                if (val[i] < a.min) a.min = val[i];
+                if (val[i] > a.max) a.max = val[i];
+            }
+        }
+        if (single != null) groups.put(0L, single);
+        if (dense != null)
+            for (int k = 0; k < dense.length; k++) if (dense[k] != null) groups.put((long) k, dense[k]);
+        return groups;
+    }
+
+    private static long[] decode(FileChannel f, Column c, long start, int n) {
+        long[] out = new long[n];
+        try {
+            MappedByteBuffer m = f.map(FileChannel.MapMode.READ_ONLY, start * c.width, (long) n * c.width);
+            m.order(ByteOrder.LITTLE_ENDIAN);
+            switch (c.width) {
+                case 1:  for (int i = 0; i < n; i++) out[i] = m.get(i) & 0xFF; break;
+                case 2:  for (int i = 0; i < n; i++) out[i] = m.getShort(i << 1); break;
+                default: for (int i = 0; i < n; i++) out[i] = m.getLong(i << 3); break;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out;
+    }
+
+    /**
+     * Runs the query and formats the answer, one line per group.
+     * @param dir the store directory
+     * @return the lines
+     * @throws IOException if the store cannot be read
+     */
+    public List<String> report(Path dir) throws IOException {
+        long t0 = System.nanoTime();
+        long rows = rows(dir);
+        Map<Long, Acc> result = execute(dir);
+        List<String> lines = new ArrayList<>();
+        for (Map.Entry<Long, Acc> e : result.entrySet()) {
+            Acc a = e.getValue();
+            String group = by == null ? "" : String.format("%s=%-10s ", by.key(), label(by, e.getKey()));
+            lines.add(group + String.format("rows %d: %s", a.rows, answer(a)));
+        }
+        if (lines.isEmpty()) lines.add("No rows match.");
+        lines.add(String.format("(%d rows scanned in %.0f ms)", rows, (System.nanoTime() - t0) / 1e6));
+        return lines;
+    }
+
+    private String answer(Acc a) {
+        switch (agg) {
+            case COUNT:   return String.valueOf(a.rows);
+            case WINRATE: {
+                double[] ci = SimStats.wilson(a.wins, a.rows);
+                return String.format("win rate %.2f%% (95%% CI %.2f%% - %.2f%%)",
+                        a.rows == 0 ? 0 : 100.0 * a.wins / a.rows, 100 * ci[0], 100 * ci[1]);
+            }
+            case AVG:     return String.format("avg %s %.3f", of.key(), a.rows == 0 ? 0 : (double) a.sum / a.rows);
+            case SUM:     return "sum " + of.key() + " " + a.sum;
+            case MIN:     return "min " + of.key() + " " + (a.rows == 0 ? "-" : String.valueOf(a.min));
+            default:      return "max " + of.key() + " " + (a.rows == 0 ? "-" : String.valueOf(a.max));
+        }
+    }
+
+    private static String label(Column c, long v) {
+        boolean rank = c == Column.FIRST || c == Column.FINAL;
+        return rank && v >= 1 && v <= 8 ? CitadelsGame.rankName((int) v) : String.valueOf(v);
+    }
+
+    /**
+     * Answers one query from the command line.
+     * @param args {@code <store dir> <query...>}
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("usage: ResultQuery <dir> <query>");
+            return;
+        }
+        String q = String.join(" ", Arrays.copyOfRange(args, 1, args.length));
+        for (String line : parse(q).report(Path.of(args[0]))) System.out.println(line);
+    }
+}
@@ -0,0 +1,151 @@
+package citadels.sim;
+
+import citadels.model.card.DistrictCard;
+import citadels.model.card.DistrictColor;
+import citadels.model.game.CitadelsGame;
+import citadels.model.game.ScoreCalculator;
+import citadels.model.player.Player;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+/**
+ * Appends finished games to a results store: a directory with one file
+ * per {@link Column}, one row per player per game.
+ *
+ * <p>Rows are buffered a chunk at a time ({@link #CHUNK_ROWS} rows) and
+ * written column by column, which is also the unit {@link ResultQuery}
+ * maps and scans. Opening a store that was cut off mid-write trims every
+ * column to the rows they all have, so the columns always line up.</p>
+ */
+public final class ResultWriter implements Closeable {
+
+    /** Rows per chunk, the unit of writing and of parallel scans */
+    public static final int CHUNK_ROWS = 1 << 16;
+    /** Where campaigns and the {@code query} command look by default */
+    public static final String DEFAULT_DIR = "results";
+
+    private static final Column[] COLUMNS = Column.values();
+
+    private final FileChannel[] files = new FileChannel[COLUMNS.length];
+    private final ByteBuffer[] buffers = new ByteBuffer[COLUMNS.length];
+    private int buffered;
+    private long rows;
+
+    /**
+     * Opens (or creates) a store for appending.
+     * @param dir the store directory
+     * @throws IOException if a column file cannot be opened
+     */
+    public ResultWriter(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        rows = ResultQuery.rows(dir);
+        try {
+            for (Column c : COLUMNS) {
+                FileChannel f = FileChannel.open(file(dir, c),
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                files[c.ordinal()] = f;
+                f.truncate(rows * c.width);
+                f.position(rows * c.width);
+                buffers[c.ordinal()] = ByteBuffer.allocate(CHUNK_ROWS * c.width).order(ByteOrder.LITTLE_ENDIAN);
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    static Path file(Path dir, Column c) {
+        return dir.resolve(c.key() + ".col");
+    }
+
+    /**
+     * Adds one row per player of a finished game. Safe to call from any thread.
+     * @param g the game, after {@code GAME_OVER}
+     * @param roundChars per seat, the rank picked in each round, 4 bits per
+     *                   round from the low bits (round 1 is the first pick)
+     * @throws IOException if a full chunk cannot be written
+     */
+    public synchronized void append(CitadelsGame g, long[] roundChars) throws IOException {
+        Map<Player, Integer> scores = g.finalScores();
+        Player winner = ScoreCalculator.winner(scores);
+        int rounds = Math.min(255, g.getRound() - 1);
+        for (Map.Entry<Player, Integer> e : scores.entrySet()) {
+            Player p = e.getKey();
+            int seat = p.getId();
+            long chars = seat < roundChars.length ? roundChars[seat] : 0;
+            long city = 0;
+            int purple = 0;
+            for (DistrictCard d : p.getCity()) {
+                if (d.getId() >= 0 && d.getId() < 64) city |= 1L << d.getId();
+                if (d.getColor() == DistrictColor.PURPLE) purple++;
+            }
+            put(Column.GAME, g.getGameId());
+            put(Column.SEED, g.getSeed());
+            put(Column.SEATS, scores.size());
+            put(Column.SEAT, seat + 1);
+            put(Column.ROUNDS, rounds);
+            put(Column.FIRST, chars & 0xF);
+            put(Column.FINAL, p.getCharacter() == null ? 0 : p.getCharacter().getRank());
+            put(Column.CHARS, chars);
+            put(Column.GOLD, p.getGold());
+            put(Column.HAND, Math.min(255, p.getHand().size()));
+            put(Column.CITY, city);
+            put(Column.DISTRICTS, p.getCity().size());
+            put(Column.PURPLE, purple);
+            put(Column.SCORE, e.getValue());
+            put(Column.WON, p == winner ? 1 : 0);
+            rows++;
+            if (++buffered == CHUNK_ROWS) flush();
+        }
+    }
+
+    private void put(Column c, long v) {
+        ByteBuffer b = buffers[c.ordinal()];
+        switch (c.width) {
+            case 1:  b.put((byte) v); break;
+            case 2:  b.putShort((short) v); break;
+            default: b.putLong(v); break;
+        }
+    }
+
+    /**
+     * Writes out the rows buffered so far.
+     * @throws IOException if writing fails
+     */
+    public synchronized void flush() throws IOException {
+        if (buffered == 0) return;
+        for (int i = 0; i < COLUMNS.length; i++) {
+            ByteBuffer b = buffers[i];
+            b.flip();
+            while (b.hasRemaining()) files[i].write(b);
+            b.clear();
+        }
+        buffered = 0;
+    }
+
+    /** Rows in the store, written or still buffered */
+    public synchronized long rows() { return rows; }
+
+    @Override
+    public synchronized void close() throws IOException {
+        IOException failure = null;
+        try {
+            if (files[COLUMNS.length - 1] != null) flush();
+        } catch (IOException e) {
+            failure = e;
+        }
+        for (FileChannel f : files) {
+            if (f == null) continue;
+            try { f.close(); } catch (IOException e) { if (failure == null) failure = e; }
+        }
+        if (failure != null) throw failure;
+    }
+}
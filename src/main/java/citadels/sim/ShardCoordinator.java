@@ -0,0 +1,491 @@
+package citadels.sim;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Plays a seed range across {@link ShardWorker} processes: cuts it into
+ * shards, hands one to each worker as it asks, and merges the statistics
+ * and result lines each sends back when a shard is done.
+ *
+ * <p>A worker that runs out while the queue is empty steals: the
+ * coordinator asks the worker with the most seeds not started yet on its
+ * shard, as the workers last reported, to give up half of them, and hands
+ * them over as a new shard. A worker that goes away loses its shard, which goes back on the
+ * queue as it stands and is played again from the start, so each seed
+ * counts exactly once. A shard that has failed {@link #MAX_ATTEMPTS} times
+ * is dropped and its games reported as lost.</p>
+ *
+ * <p>The line protocol, one message a line:</p>
+ * <pre>
+ *  worker:      hello &lt;threads&gt;
+ *  coordinator: shard &lt;id&gt; &lt;from&gt; &lt;to&gt; &lt;players&gt; &lt;strategies,...&gt; &lt;thinkMillis&gt; &lt;results 0|1&gt;
+ *  worker:      left &lt;id&gt; &lt;seeds&gt;                 (not started yet, every so often)
+ *  worker:      game &lt;id&gt; &lt;json&gt;                   (a result line, if asked for)
+ *  worker:      done &lt;id&gt; &lt;games&gt; &lt;statistics&gt;       (see {@link SimStats.Snapshot#encode})
+ *  coordinator: split &lt;id&gt;
+ *  worker:      cut &lt;id&gt; &lt;new to&gt;                   (-1 if the shard is not there)
+ *  coordinator: quit
+ * </pre>
+ *
+ * <p>Messages are decided under the coordinator's lock but written after
+ * it is released, so a worker slow to read holds up only its own link.</p>
+ */
+public final class ShardCoordinator implements Closeable {
+
+    /** Tries a shard gets before it is given up */
+    public static final int MAX_ATTEMPTS = 3;
+
+    private final long from, to;
+    private final int players;
+    private final List<String> strategies;
+    private final long thinkMillis;
+    private final Writer results;
+    private final SimStats stats = new SimStats();
+    private final ServerSocket server;
+    private final Thread acceptor;
+    private final List<Process> processes = new ArrayList<>();
+
+    /* guarded by this */
+    private final Deque<Shard> queue = new ArrayDeque<>();
+    private final List<Link> links = new ArrayList<>();
+    private final List<Link> outgoing = new ArrayList<>();   // links with messages to write
+    private long shards, played, lost, steals, reassigned;
+    private boolean closed;
+
+    /**
+     * Cuts the range into shards and starts listening for workers.
+     * @param address where workers connect (port 0 picks a free one)
+     * @param from first seed
+     * @param to seed after the last
+     * @param shardSize seeds per shard before any stealing
+     * @param players seats per game
+     * @param strategies strategies the seats take turns at, from {@link SimJob#STRATEGIES}
+     * @param thinkMillis AI think budget per decision
+     * @param results receives a JSON line per game, or null; the coordinator does not close it
+     * @throws IOException if the socket cannot be opened
+     */
+    public ShardCoordinator(InetSocketAddress address, long from, long to, long shardSize, int players,
+                            List<String> strategies, long thinkMillis, Writer results) throws IOException {
+        SimJob.check(from, to, players, strategies, thinkMillis);
+        if (shardSize < 1) throw new IllegalArgumentException("Shards need at least one seed");
+        for (String s : strategies)
+            if (s.contains(",")) throw new IllegalArgumentException("Bad strategy " + s);
+        this.from = from;
+        this.to = to;
+        this.players = players;
+        this.strategies = new ArrayList<>(strategies);
+        this.thinkMillis = thinkMillis;
+        this.results = results;
+        for (long s = from; s < to; s += Math.min(shardSize, to - s))
+            queue.add(new Shard(++shards, s, Math.min(to, s + shardSize)));
+        this.server = new ServerSocket();
+        server.bind(address);
+        this.acceptor = new Thread(this::accept, "shard-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /** Port workers connect to */
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    /**
+     * Starts a worker process on this host, with this process's Java and
+     * class path.
+     * @param threads games the worker plays at once
+     * @return the process
+     * @throws IOException if it cannot be started
+     */
+    public Process launch(int threads) throws IOException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        String host = server.getInetAddress().isAnyLocalAddress()
+                ? InetAddress.getLoopbackAddress().getHostAddress() : server.getInetAddress().getHostAddress();
+        Process p = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                ShardWorker.class.getName(), host, String.valueOf(getPort()), String.valueOf(threads))
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        synchronized (this) {
+            processes.add(p);
+        }
+        return p;
+    }
+
+    /**
+     * Waits for every shard to be played or given up.
+     * @param millis longest wait
+     * @return true if finished
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public synchronized boolean await(long millis) throws InterruptedException {
+        long end = System.nanoTime() + millis * 1_000_000;
+        for (long left = millis; !finished() && left > 0; left = (end - System.nanoTime()) / 1_000_000) wait(left);
+        return finished();
+    }
+
+    /** The merged statistics of the shards done so far */
+    public SimStats stats() { return stats; }
+
+    /** Games played in shards that are done */
+    public synchronized long played() { return played; }
+
+    /** Games of shards given up after {@link #MAX_ATTEMPTS} tries */
+    public synchronized long lost() { return lost; }
+
+    /** Shards made by stealing from a running one */
+    public synchronized long steals() { return steals; }
+
+    /** Shards put back on the queue because their worker went away */
+    public synchronized long reassigned() { return reassigned; }
+
+    /** Workers connected */
+    public synchronized int workers() { return links.size(); }
+
+    /** Worker processes started by {@link #launch} that are still running */
+    public synchronized int launched() {
+        int n = 0;
+        for (Process p : processes) if (p.isAlive()) n++;
+        return n;
+    }
+
+    /** One line on where the run is */
+    public synchronized String progress() {
+        return String.format("%d of %d games, %d lost, %d workers, %d queued shards, %d steals, %d reassigned",
+                played, to - from, lost, links.size(), queue.size(), steals, reassigned);
+    }
+
+    /** Tells the workers to stop, stops listening and ends the processes it launched. */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            closed = true;
+            for (Link l : links) l.quit();
+            notifyAll();
+        }
+        flush();
+        server.close();
+        synchronized (this) {
+            for (Process p : processes) p.destroy();
+        }
+    }
+
+    private boolean finished() {
+        return played + lost == to - from;
+    }
+
+    /* writes what the last calls decided to send; never called holding the lock */
+    private void flush() {
+        List<Link> todo;
+        synchronized (this) {
+            if (outgoing.isEmpty()) return;
+            todo = new ArrayList<>(outgoing);
+            outgoing.clear();
+        }
+        for (Link l : todo) l.drain();
+    }
+
+    /* ================================================================ *
+     *  Workers                                                          *
+     * ================================================================ */
+
+    private void accept() {
+        while (!server.isClosed()) {
+            try {
+                Socket s = server.accept();
+                s.setTcpNoDelay(true);
+                Link l = new Link(s);
+                Thread t = new Thread(() -> l.read(), "shard-link");
+                t.setDaemon(true);
+                t.start();
+            } catch (IOException e) {
+                if (!server.isClosed()) System.err.println("Accepting a worker failed: " + e);
+            }
+        }
+    }
+
+    /* gives an idle worker a shard: from the queue, else by stealing */
+    private void idle(Link l) {
+        if (closed || l.dead) return;
+        Shard s = queue.poll();
+        if (s != null) {
+            assign(l, s);
+            return;
+        }
+        Shard victim = null;
+        for (Link o : links) {
+            Shard r = o.shard;
+            if (r == null || r.thief != null || r.spent || r.left < 2 || o == l) continue;
+            if (victim == null || r.left > victim.left) victim = r;
+        }
+        if (victim == null) {
+            l.waiting = true;                                  // woken when a shard comes back
+        } else {
+            victim.thief = l;
+            l.waiting = false;
+            victim.owner.send("split " + victim.id);
+        }
+    }
+
+    private void assign(Link l, Shard s) {
+        s.owner = l;
+        s.lines.clear();
+        l.shard = s;
+        l.waiting = false;
+        l.send("shard " + s.id + " " + s.from + " " + s.to + " " + players + " "
+                + String.join(",", strategies) + " " + thinkMillis + " " + (results == null ? 0 : 1));
+    }
+
+    /* a shard came back to the queue: idle workers may take it */
+    private void wake() {
+        for (Link o : new ArrayList<>(links)) if (o.waiting) idle(o);
+    }
+
+    private synchronized void hello(Link l) {
+        links.add(l);
+        idle(l);
+    }
+
+    private synchronized void done(Link l, long id, long games, String encoded) throws IOException {
+        Shard s = l.shard;
+        if (s == null || s.id != id) return;
+        if (games != s.to - s.from) throw new IOException("Shard " + id + " came back with " + games + " games");
+        stats.add(SimStats.Snapshot.decode(encoded));
+        if (results != null) {
+            for (String line : s.lines) results.write(line + "\n");
+            results.flush();
+        }
+        played += games;
+        l.shard = null;
+        s.owner = null;
+        Link thief = s.thief;                                  // its split came too late
+        s.thief = null;
+        if (finished()) {
+            notifyAll();
+            for (Link o : links) o.quit();
+        } else {
+            idle(l);
+            if (thief != null && thief.shard == null) idle(thief);
+        }
+    }
+
+    private synchronized void left(Link l, long id, long seeds) {
+        Shard s = l.shard;
+        if (s != null && s.id == id) s.left = seeds;
+    }
+
+    private synchronized void cut(Link l, long id, long end) {
+        Shard s = l.shard;
+        if (s == null || s.id != id || s.thief == null) return;
+        Link thief = s.thief;
+        s.thief = null;
+        if (end <= s.from || end >= s.to) {
+            s.spent = true;                                    // too little left to share
+            if (thief.shard == null) idle(thief);
+            return;
+        }
+        Shard taken = new Shard(++shards, end, s.to);
+        s.to = end;
+        s.left = Math.min(s.to - s.from, taken.to - taken.from);  // it kept no more than it gave
+        steals++;
+        if (thief.dead || closed || thief.shard != null) {
+            queue.addFirst(taken);
+            wake();
+        } else {
+            assign(thief, taken);
+        }
+    }
+
+    private synchronized void gone(Link l) {
+        if (!l.dead) {
+            l.dead = true;
+            links.remove(l);
+        }
+        Shard s = l.shard;
+        l.shard = null;
+        if (s != null) {
+            s.owner = null;
+            s.lines.clear();
+            if (s.thief != null) {                             // it will never answer the split
+                Link thief = s.thief;
+                s.thief = null;
+                if (thief.shard == null) thief.waiting = true;
+            }
+            s.spent = false;
+            s.left = s.to - s.from;
+            if (++s.attempts >= MAX_ATTEMPTS) {
+                System.err.println("Giving up shard " + s.id + " [" + s.from + ", " + s.to + ")");
+                lost += s.to - s.from;
+                if (finished()) {
+                    notifyAll();
+                    for (Link o : links) o.quit();
+                }
+            } else {
+                reassigned++;
+                queue.addFirst(s);
+            }
+        }
+        wake();
+    }
+
+    /** Seeds some worker is to play; ends shrink when stolen from */
+    private static final class Shard {
+        final long id;
+        final long from;
+        long to;
+        int attempts;
+        Link owner;
+        Link thief;                                            // waiting on a split of this
+        boolean spent;                                         // a split found nothing to give
+        long left;                                             // seeds not started, as last reported
+        final List<String> lines = new ArrayList<>();          // results held until done
+
+        Shard(long id, long from, long to) {
+            this.id = id;
+            this.from = from;
+            this.to = to;
+            this.left = to - from;
+        }
+    }
+
+    /** A connected worker, read by its own thread */
+    private final class Link {
+        private final Socket socket;
+        private final Writer out;
+        private final List<String> outbox = new ArrayList<>();     // guarded by the coordinator
+        Shard shard;
+        boolean waiting, dead;
+
+        Link(Socket socket) throws IOException {
+            this.socket = socket;
+            this.out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+        }
+
+        void read() {
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    String[] w = line.split(" ", 4);
+                    if (w[0].equals("hello")) {
+                        hello(this);
+                    } else if (w[0].equals("left") && w.length == 3) {
+                        left(this, Long.parseLong(w[1]), Long.parseLong(w[2]));
+                    } else if (w[0].equals("game") && w.length >= 3) {
+                        synchronized (ShardCoordinator.this) {
+                            if (shard != null && shard.id == Long.parseLong(w[1]))
+                                shard.lines.add(line.substring(w[0].length() + w[1].length() + 2));
+                        }
+                    } else if (w[0].equals("done") && w.length == 4) {
+                        done(this, Long.parseLong(w[1]), Long.parseLong(w[2]), w[3]);
+                    } else if (w[0].equals("cut") && w.length == 3) {
+                        cut(this, Long.parseLong(w[1]), Long.parseLong(w[2]));
+                    } else {
+                        throw new IOException("Unexpected line from a worker: " + line);
+                    }
+                    flush();
+                }
+            } catch (IOException | IllegalArgumentException e) {
+                synchronized (ShardCoordinator.this) {
+                    if (!closed) System.err.println("Worker " + socket.getRemoteSocketAddress() + " failed: " + e);
+                }
+            } finally {
+                close();
+                gone(this);
+                flush();
+            }
+        }
+
+        /* queues a message for the next flush; called holding the coordinator's lock */
+        void send(String message) {
+            if (outbox.isEmpty()) outgoing.add(this);
+            outbox.add(message);
+        }
+
+        /* writes the queued messages in order, one flusher at a time */
+        void drain() {
+            synchronized (out) {
+                List<String> todo;
+                synchronized (ShardCoordinator.this) {
+                    todo = new ArrayList<>(outbox);
+                    outbox.clear();
+                }
+                try {
+                    for (String m : todo) {
+                        out.write(m);
+                        out.write('\n');
+                    }
+                    out.flush();
+                } catch (IOException e) {
+                    close();                                   // the reader sees it and gives the shard back
+                }
+            }
+        }
+
+        void quit() {
+            send("quit");
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // closing anyway
+            }
+        }
+    }
+
+    /**
+     * Plays a seed range on worker processes started here.
+     * @param args {@code games workers threadsPerWorker [players] [results file]}
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 3) {
+            System.err.println("usage: ShardCoordinator games workers threadsPerWorker [players] [results file]");
+            System.exit(2);
+        }
+        long games  = Long.parseLong(args[0]);
+        int workers = Integer.parseInt(args[1]);
+        int threads = Integer.parseInt(args[2]);
+        int players = args.length > 3 ? Integer.parseInt(args[3]) : 4;
+        long shard  = Long.getLong("citadels.shard.size", Math.max(1, Math.min(1000, games / (workers * 8L))));
+        InetSocketAddress address = new InetSocketAddress(
+                System.getProperty("citadels.shard.host", "127.0.0.1"), Integer.getInteger("citadels.shard.port", 0));
+        try (Writer out = args.length > 4 ? Files.newBufferedWriter(Paths.get(args[4]), StandardCharsets.UTF_8) : null;
+             ShardCoordinator c = new ShardCoordinator(address, 0, games, shard, players,
+                     Collections.singletonList("ai"), 0, out)) {
+            System.out.println("Coordinator listening on port " + c.getPort());
+            long t0 = System.nanoTime();
+            for (int i = 0; i < workers; i++) c.launch(threads);
+            while (!c.await(10_000)) {
+                System.out.println(c.progress());
+                if (c.workers() == 0 && c.launched() == 0) {
+                    System.err.println("Every worker has gone, with " + (games - c.played() - c.lost()) + " games unplayed");
+                    System.exit(1);
+                }
+            }
+            double secs = (System.nanoTime() - t0) / 1e9;
+            System.out.println(c.progress());
+            System.out.printf("%.1f s, %.1f games/s%n", secs, c.played() / secs);
+            c.stats().snapshot().report().forEach(System.out::println);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package citadels.sim;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+/**
+ * A simulation worker: connects to a {@link ShardCoordinator}, plays each
+ * shard of seeds it is given on all its threads as a {@link SimJob}, and
+ * sends back the shard's statistics, and its result lines if asked, once
+ * the whole shard is done. Nothing of a shard counts until then, so a
+ * worker that dies halfway loses only its current shard, which the
+ * coordinator hands to someone else.
+ *
+ * <p>While a shard runs, the worker tells the coordinator every
+ * {@link #REPORT_MILLIS} how many of its seeds are not started yet, and
+ * the coordinator may ask for half of them, for a worker that has run out;
+ * see {@link SimJob#split}.</p>
+ *
+ * <p>Run with {@code java -cp citadels.jar citadels.sim.ShardWorker host port [threads]}.</p>
+ */
+public final class ShardWorker {
+
+    /** How often a running shard's seeds left are reported; {@code -Dcitadels.shard.reportMillis} */
+    public static final long REPORT_MILLIS = Long.getLong("citadels.shard.reportMillis", 500);
+
+    private final Socket socket;
+    private final BufferedReader in;
+    private final Writer out;
+    private final int threads;
+    private volatile SimJob current;
+
+    private ShardWorker(Socket socket, int threads) throws IOException {
+        this.socket = socket;
+        this.in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        this.out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+        this.threads = threads;
+    }
+
+    /**
+     * Works for a coordinator until it says {@code quit} or goes away.
+     * @param host the coordinator's host
+     * @param port the coordinator's port
+     * @param threads games played at once
+     * @throws IOException if the connection fails
+     */
+    public static void run(String host, int port, int threads) throws IOException {
+        try (Socket s = new Socket(host, port)) {
+            s.setTcpNoDelay(true);
+            new ShardWorker(s, threads).serve();
+        }
+    }
+
+    private void serve() throws IOException {
+        send("hello " + threads);
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] w = line.split(" ");
+                if (w[0].equals("shard") && w.length == 8) {
+                    start(w);
+                } else if (w[0].equals("split") && w.length == 2) {
+                    SimJob job = current;
+                    long id = Long.parseLong(w[1]);
+                    synchronized (out) {                      // not to cross a done with the old end
+                        send("cut " + id + " " + (job != null && job.id() == id ? job.split() : -1));
+                    }
+                } else if (w[0].equals("quit")) {
+                    break;
+                }
+            }
+        } finally {
+            SimJob job = current;
+            if (job != null) job.cancel();
+        }
+    }
+
+    /* shard <id> <from> <to> <players> <strategies> <thinkMillis> <results 0|1> */
+    private void start(String[] w) {
+        boolean results = w[7].equals("1");
+        SimJob job = new SimJob(Long.parseLong(w[1]), Long.parseLong(w[2]), Long.parseLong(w[3]),
+                Integer.parseInt(w[4]), Arrays.asList(w[5].split(",")), Long.parseLong(w[6]),
+                results ? Integer.MAX_VALUE : 0);               // every line of the shard goes back
+        current = job;
+        List<Thread> lanes = new ArrayList<>(threads);
+        for (int t = 0; t < threads; t++) {
+            BooleanSupplier lane = job.lane();
+            lanes.add(new Thread(() -> { while (lane.getAsBoolean()) { } }, "shard-" + job.id() + "-" + t));
+        }
+        Thread finisher = new Thread(() -> {
+            lanes.forEach(Thread::start);
+            try {
+                for (Thread t : lanes)
+                    for (t.join(REPORT_MILLIS); t.isAlive(); t.join(REPORT_MILLIS))
+                        send("left " + job.id() + " " + job.left());
+                if (job.state() != SimJob.State.DONE) return;
+                List<String> lines = new ArrayList<>();
+                if (results) job.results(0, lines);
+                StringBuilder sb = new StringBuilder();
+                for (String l : lines) sb.append("game ").append(job.id()).append(' ').append(l).append('\n');
+                String totals = job.stats().snapshot().encode();
+                synchronized (out) {
+                    send(sb.append("done ").append(job.id()).append(' ').append(job.total())
+                           .append(' ').append(totals).toString());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException e) {
+                closeQuietly();                           // the reader sees it and stops
+            }
+        }, "shard-" + job.id());
+        finisher.setDaemon(true);
+        for (Thread t : lanes) t.setDaemon(true);
+        finisher.start();
+    }
+
+    private void send(String message) throws IOException {
+        synchronized (out) {
+            out.write(message);
+            out.write('\n');
+            out.flush();
+        }
+    }
+
+    private void closeQuietly() {
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+            // closing anyway
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("usage: ShardWorker host port [threads]");
+            System.exit(2);
+        }
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        run(args[0], Integer.parseInt(args[1]), threads);
+    }
+}
@@ -0,0 +1,340 @@
+package citadels.sim;
+
+import citadels.cli.QuietHandler;
+import citadels.model.game.CitadelsGame;
+import citadels.model.game.ScoreCalculator;
+import citadels.model.game.Step;
+import citadels.model.player.AIPlayer;
+import citadels.model.player.Player;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+/**
+ * A simulation job: one all-AI game for each seed of a range, with the
+ * seats played by named strategies, gathering {@link SimStats} and a
+ * result line per game. Only the last result lines are kept, for readers
+ * to stream; the statistics cover every game.
+ *
+ * <p>The games are played by <em>lanes</em>, each a game at a time, one
+ * round per call, so that a scheduler can put the job aside between rounds
+ * (see {@link citadels.server.Scheduler}). Seat {@code s} of the game with
+ * seed {@code n} plays strategy {@code (s + n) % strategies}, so each
+ * strategy gets every seat equally often.</p>
+ *
+ * <p>A job can hand the seeds it has not started on to someone else
+ * ({@link #split}); {@link ShardWorker} does so when another process
+ * runs out of work.</p>
+ */
+public final class SimJob {
+
+    /** Strategy names a job accepts */
+    public static final List<String> STRATEGIES = Arrays.asList("ai", "rollout", "random");
+
+    /** Result lines a job keeps by default; {@code -Dcitadels.jobs.keptResults} */
+    public static final int KEPT_RESULTS = Integer.getInteger("citadels.jobs.keptResults", 10_000);
+
+    /** Where a job is */
+    public enum State { QUEUED, RUNNING, DONE, CANCELLED }
+
+    private final long id;
+    private final long from;
+    private long to, next;                                     // guarded by this
+    private final int players;
+    private final String[] strategies;
+    private final long thinkMillis;
+    private final SimStats stats = new SimStats();
+    private final int keep;
+    private final ArrayDeque<String> results = new ArrayDeque<>(); // guarded by this: the last lines
+    private long resultCount;                                  // guarded by this: lines ever made
+    private int lanes;                                         // guarded by this
+    private volatile State state = State.QUEUED;
+    private volatile long startNanos, endNanos;
+
+    /**
+     * @param id the job's number
+     * @param from first seed
+     * @param to seed after the last
+     * @param players seats per game, 4 to 7
+     * @param strategies strategies the seats take turns at, from {@link #STRATEGIES}
+     * @param thinkMillis AI think budget per decision
+     */
+    public SimJob(long id, long from, long to, int players, List<String> strategies, long thinkMillis) {
+        this(id, from, to, players, strategies, thinkMillis, KEPT_RESULTS);
+    }
+
+    /**
+     * @param id the job's number
+     * @param from first seed
+     * @param to seed after the last
+     * @param players seats per game, 4 to 7
+     * @param strategies strategies the seats take turns at, from {@link #STRATEGIES}
+     * @param thinkMillis AI think budget per decision
+     * @param keep result lines kept for readers, the older dropped; 0 makes none
+     */
+    public SimJob(long id, long from, long to, int players, List<String> strategies, long thinkMillis, int keep) {
+        check(from, to, players, strategies, thinkMillis);
+        if (keep < 0) throw new IllegalArgumentException("Kept results must be 0 or more");
+        this.id = id;
+        this.from = from;
+        this.to = to;
+        this.players = players;
+        this.strategies = strategies.toArray(new String[0]);
+        this.thinkMillis = thinkMillis;
+        this.keep = keep;
+        this.next = from;
+    }
+
+    /**
+     * Checks the makings of a job, as its constructor does.
+     * @param from first seed
+     * @param to seed after the last
+     * @param players seats per game, 4 to 7
+     * @param strategies strategies the seats take turns at, from {@link #STRATEGIES}
+     * @param thinkMillis AI think budget per decision
+     * @throws IllegalArgumentException if one is out of range
+     */
+    public static void check(long from, long to, int players, List<String> strategies, long thinkMillis) {
+        if (to <= from) throw new IllegalArgumentException("The seed range is empty");
+        if (players < 4 || players > 7) throw new IllegalArgumentException("Players must be 4-7");
+        if (strategies.isEmpty()) throw new IllegalArgumentException("No strategies");
+        for (String s : strategies)
+            if (!STRATEGIES.contains(s)) throw new IllegalArgumentException("Unknown strategy " + s);
+        if (thinkMillis < 0) throw new IllegalArgumentException("Think budget must be 0 or more");
+    }
+
+    /** The job's number */
+    public long id() { return id; }
+
+    /** Where the job is */
+    public State state() { return state; }
+
+    /** Games in the job */
+    public synchronized long total() { return to - from; }
+
+    /** Seeds no lane has started on */
+    public synchronized long left() { return to - next; }
+
+    /**
+     * Gives up the second half of the seeds no lane has started on, for
+     * someone else to play.
+     * @return the new end of the job's range; the seeds from there to the
+     *         old end are no longer this job's. Unchanged if fewer than two
+     *         were left.
+     */
+    public synchronized long split() {
+        if (to - next >= 2) to = next + (to - next) / 2;
+        return to;
+    }
+
+    /**
+     * Waits for the job to finish.
+     * @param millis longest wait
+     * @return true if it is done or cancelled
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public synchronized boolean await(long millis) throws InterruptedException {
+        long end = System.nanoTime() + millis * 1_000_000;
+        for (long left = millis; !isFinished() && left > 0; left = (end - System.nanoTime()) / 1_000_000) wait(left);
+        return isFinished();
+    }
+
+    /** The statistics so far */
+    public SimStats stats() { return stats; }
+
+    /**
+     * Makes a lane that plays the job's games one round per call.
+     * @return the lane; it answers false once the job has no games left for it
+     */
+    public synchronized BooleanSupplier lane() {
+        lanes++;
+        return new Lane();
+    }
+
+    /** Stops the job after the rounds being played. */
+    public synchronized void cancel() {
+        if (isFinished()) return;
+        state = State.CANCELLED;
+        endNanos = System.nanoTime();
+        notifyAll();
+    }
+
+    /**
+     * Waits until there is a result line from {@code start} on, or the job ends.
+     * @param start index of the line wanted
+     * @param millis longest wait; 0 or less does not wait
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public synchronized void awaitResults(long start, long millis) throws InterruptedException {
+        if (start >= resultCount && !isFinished() && millis > 0) wait(millis);
+    }
+
+    /**
+     * Copies the result lines there are, without waiting. Only the last
+     * lines are kept, so a reader that falls behind skips those dropped.
+     * @param start index of the first line wanted
+     * @param into receives the lines kept from {@code start} on
+     * @return the index to ask for next
+     */
+    public synchronized long results(long start, List<String> into) {
+        long skip = start - (resultCount - results.size());
+        for (String line : results) if (skip-- <= 0) into.add(line);
+        return resultCount;
+    }
+
+    private synchronized long end() { return to; }
+
+    /** Whether the job is done or cancelled; no result lines come after that */
+    public boolean isFinished() {
+        return state == State.DONE || state == State.CANCELLED;
+    }
+
+    /**
+     * The job's progress and win rates by strategy.
+     * @return a JSON object
+     */
+    @SuppressWarnings("unchecked")
+    public JSONObject progress() {
+        SimStats.Snapshot s = stats.snapshot();
+        JSONObject o = new JSONObject();
+        o.put("id", id);
+        o.put("state", state.name().toLowerCase());
+        o.put("from", from);
+        o.put("to", end());
+        o.put("players", players);
+        o.put("games", s.games());
+        o.put("abandoned", s.abandoned());
+        o.put("total", total());
+        long end = endNanos, start = startNanos;
+        double secs = start == 0 ? 0 : ((end == 0 ? System.nanoTime() : end) - start) / 1e9;
+        o.put("seconds", Math.round(secs * 10) / 10.0);
+        o.put("gamesPerSecond", secs <= 0 ? 0.0 : Math.round(s.games() / secs * 10) / 10.0);
+        JSONArray rows = new JSONArray();
+        for (int k = 0; k < SimStats.MAX_STRATEGIES; k++) {
+            long n = s.appearances(SimStats.Dimension.STRATEGY, k);
+            if (n == 0) continue;
+            JSONObject r = new JSONObject();
+            r.put("strategy", s.strategyName(k));
+            r.put("players", n);
+            r.put("wins", s.wins(SimStats.Dimension.STRATEGY, k));
+            r.put("meanScore", Math.round(s.meanScore(SimStats.Dimension.STRATEGY, k) * 100) / 100.0);
+            rows.add(r);
+        }
+        o.put("strategies", rows);
+        return o;
+    }
+
+    private static Player seat(int s, String strategy) {
+        switch (strategy) {
+            case "rollout": return AIPlayer.rollout(s);
+            case "random":  return AIPlayer.explorer(s, 1);
+            default:        return new AIPlayer(s);
+        }
+    }
+
+    /* a lane has finished: the job is done when the last one has */
+    private synchronized void laneDone() {
+        if (--lanes == 0 && state == State.RUNNING) {
+            state = State.DONE;
+            endNanos = System.nanoTime();
+        }
+        notifyAll();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void finish(CitadelsGame g, long seed, String[] names, Campaign.PickLog picks) {
+        int[] first = new int[players];
+        for (int i = 0; i < players; i++) first[i] = (int) (picks.chars[i] & 0xF);
+        stats.record(g, first, names);
+        if (keep == 0) return;
+        Map<Player, Integer> scores = g.finalScores();
+        JSONObject o = new JSONObject();
+        o.put("seed", seed);
+        o.put("rounds", g.getRound() - 1);
+        o.put("winner", ScoreCalculator.winner(scores).getId());
+        JSONArray points = new JSONArray(), who = new JSONArray();
+        for (Player p : g.getPlayers()) {
+            points.add(scores.get(p));
+            who.add(names[p.getId()]);
+        }
+        o.put("scores", points);
+        o.put("strategies", who);
+        String line = o.toJSONString();
+        synchronized (this) {
+            results.addLast(line);
+            if (results.size() > keep) results.removeFirst();
+            resultCount++;
+            notifyAll();
+        }
+    }
+
+    /** Plays games one round per call until the seeds run out. */
+    private final class Lane implements BooleanSupplier {
+        private CitadelsGame game;
+        private Campaign.PickLog picks;
+        private String[] names;
+        private long seed;
+        private Step step;
+        private boolean done;
+
+        @Override
+        public boolean getAsBoolean() {
+            if (done) return false;
+            if (state == State.CANCELLED) {
+                if (game != null) game.abandon();
+                return stop();
+            }
+            if (game == null && !deal()) return stop();
+            try {
+                int round = game.getRound();
+                while (step.kind() != Step.Kind.GAME_OVER && game.getRound() == round) step = game.step(null);
+                if (step.kind() == Step.Kind.GAME_OVER) {
+                    finish(game, seed, names, picks);
+                    game = null;
+                } else if (game.getRound() > Campaign.ROUND_LIMIT) {
+                    giveUp();
+                }
+            } catch (RuntimeException e) {
+                System.err.println("Game " + seed + " of job " + id + " failed: " + e);
+                giveUp();
+            }
+            return true;
+        }
+
+        private void giveUp() {
+            game.abandon();
+            stats.recordAbandoned();
+            game = null;
+        }
+
+        private boolean deal() {
+            synchronized (SimJob.this) {
+                if (next >= to) return false;
+                seed = next++;
+                if (state == State.QUEUED) {
+                    state = State.RUNNING;
+                    startNanos = System.nanoTime();
+                }
+            }
+            names = new String[players];
+            for (int s = 0; s < players; s++) names[s] = strategies[(int) Math.floorMod(s + seed, (long) strategies.length)];
+            game = new CitadelsGame(players, QuietHandler.INSTANCE, seed, s -> seat(s, names[s]));
+            game.setThinkMillis(thinkMillis);
+            picks = new Campaign.PickLog(game, players);
+            game.addListener(picks);
+            step = game.step(null);
+            return true;
+        }
+
+        private boolean stop() {
+            done = true;
+            laneDone();
+            return false;
+        }
+    }
+}
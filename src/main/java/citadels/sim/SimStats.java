@@ -0,0 +1,410 @@
+package citadels.sim;
+
+import citadels.model.card.DistrictCard;
+import citadels.model.card.DistrictColor;
+import citadels.model.game.CitadelsGame;
+import citadels.model.game.ScoreCalculator;
+import citadels.model.player.Player;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Why simulated games are won: win rates and scores by seat, by character
+ * held in the final round, by first character picked, by purple districts
+ * built and by strategy, plus the score distribution.
+ *
+ * <p>Every worker thread writes to its own shard, a padded array of plain
+ * counters with one writer, so recording never contends. A snapshot sums
+ * the shards while workers keep going; each shard carries a sequence
+ * number (odd while a game is being written), so a snapshot never sees
+ * half a game. Everything is kept as exact integer sums, which stay exact
+ * for billions of games; doubles only appear in the report.</p>
+ */
+public final class SimStats {
+
+    /** Strategies told apart (by player class); any more share the last row */
+    public static final int MAX_STRATEGIES = 8;
+    /** Scores are bucketed one point wide up to here; higher ones share the top bucket */
+    public static final int MAX_SCORE = 127;
+
+    /** What the rows of a table are keyed by */
+    public enum Dimension {
+        SEAT("seat", 8),
+        FINAL_CHARACTER("final character", 9),
+        FIRST_PICK("first pick", 9),
+        PURPLE_BUILT("purple built", 9),
+        STRATEGY("strategy", MAX_STRATEGIES);
+
+        final String label;
+        final int keys;
+
+        Dimension(String label, int keys) {
+            this.label = label;
+            this.keys = keys;
+        }
+    }
+
+    /* ---- cell layout, shared by shards and snapshots ---- */
+
+    private static final int PAD = 16;                   // 128 bytes either side: no false sharing
+    private static final int VERSION = 0;
+    private static final int GAMES = 1;
+    private static final int ABANDONED = 2;
+    private static final int ROUNDS = 3;
+    private static final int SCORES = 4;                 // histogram of every player's score
+    private static final int WIN_SCORES = SCORES + MAX_SCORE + 1;
+    private static final int[] OFFSET = new int[Dimension.values().length];
+    /* per key: appearances, wins, score sum, score sum of squares */
+    private static final int SEEN = 0, WON = 1, SUM = 2, SQ = 3, PER_KEY = 4;
+    private static final int CELLS;
+
+    static {
+        int next = WIN_SCORES + MAX_SCORE + 1;
+        for (Dimension d : Dimension.values()) {
+            OFFSET[d.ordinal()] = next;
+            next += d.keys * PER_KEY;
+        }
+        CELLS = next;
+    }
+
+    private final List<Shard> shards = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<Shard> local = ThreadLocal.withInitial(() -> {
+        Shard s = new Shard();
+        shards.add(s);
+        return s;
+    });
+    private final Map<String, Integer> strategyIds = new ConcurrentHashMap<>();
+    private final AtomicReferenceArray<String> strategyNames = new AtomicReferenceArray<>(MAX_STRATEGIES);
+
+    /**
+     * Records a finished game. Call from the thread that played it.
+     * @param g the game, after {@code GAME_OVER}
+     * @param firstPicks rank each seat picked first, 0 if unknown
+     */
+    public void record(CitadelsGame g, int[] firstPicks) {
+        record(g, firstPicks, null);
+    }
+
+    /**
+     * Records a finished game whose seats played named strategies. Call
+     * from the thread that played it.
+     * @param g the game, after {@code GAME_OVER}
+     * @param firstPicks rank each seat picked first, 0 if unknown
+     * @param strategies strategy of each seat, or null to tell them apart by player class
+     */
+    public void record(CitadelsGame g, int[] firstPicks, String[] strategies) {
+        Map<Player, Integer> scores = g.finalScores();
+        Player winner = ScoreCalculator.winner(scores);
+        Shard s = local.get();
+        s.begin();
+        s.add(GAMES, 1);
+        s.add(ROUNDS, g.getRound() - 1);
+        for (Map.Entry<Player, Integer> e : scores.entrySet()) {
+            Player p = e.getKey();
+            int score = e.getValue();
+            boolean won = p == winner;
+            s.add(SCORES + Math.min(score, MAX_SCORE), 1);
+            if (won) s.add(WIN_SCORES + Math.min(score, MAX_SCORE), 1);
+
+            int seat = p.getId();
+            s.row(Dimension.SEAT, Math.min(seat, Dimension.SEAT.keys - 1), won, score);
+            s.row(Dimension.FINAL_CHARACTER, p.getCharacter() == null ? 0 : p.getCharacter().getRank(), won, score);
+            s.row(Dimension.FIRST_PICK, seat < firstPicks.length ? firstPicks[seat] : 0, won, score);
+            s.row(Dimension.PURPLE_BUILT, Math.min(purple(p), Dimension.PURPLE_BUILT.keys - 1), won, score);
+            s.row(Dimension.STRATEGY, strategy(strategies == null ? p.getClass().getSimpleName()
+                    : strategies[seat]), won, score);
+        }
+        s.end();
+    }
+
+    /** Counts a game that was given up before it finished. */
+    public void recordAbandoned() {
+        Shard s = local.get();
+        s.begin();
+        s.add(ABANDONED, 1);
+        s.end();
+    }
+
+    /**
+     * Adds totals gathered elsewhere, such as in another process. Strategy
+     * rows are matched by name.
+     * @param other the totals to add
+     */
+    public void add(Snapshot other) {
+        int[] row = new int[MAX_STRATEGIES];
+        for (int k = 0; k < MAX_STRATEGIES; k++)
+            row[k] = other.strategyNames[k] == null ? k : strategy(other.strategyNames[k]);
+        int rows = OFFSET[Dimension.STRATEGY.ordinal()];
+        Shard s = local.get();
+        s.begin();
+        for (int i = GAMES; i < CELLS; i++) {
+            long v = other.c[i];
+            if (v == 0) continue;
+            int r = i - rows;
+            s.add(r >= 0 && r < MAX_STRATEGIES * PER_KEY ? rows + row[r / PER_KEY] * PER_KEY + r % PER_KEY : i, v);
+        }
+        s.end();
+    }
+
+    private static int purple(Player p) {
+        int n = 0;
+        for (DistrictCard d : p.getCity()) if (d.getColor() == DistrictColor.PURPLE) n++;
+        return n;
+    }
+
+    private int strategy(String name) {
+        Integer id = strategyIds.get(name);
+        if (id != null) return id;
+        synchronized (strategyIds) {
+            id = strategyIds.get(name);
+            if (id == null) {
+                id = Math.min(strategyIds.size(), MAX_STRATEGIES - 1);
+                if (strategyNames.get(id) == null) strategyNames.set(id, name);
+                else strategyNames.set(id, "other");     // the last row is shared
+                strategyIds.put(name, id);
+            }
+            return id;
+        }
+    }
+
+    /**
+     * Sums all shards without stopping the workers.
+     * @return a consistent total of every game recorded so far
+     */
+    public Snapshot snapshot() {
+        long[] total = new long[CELLS];
+        long[] copy = new long[CELLS];
+        for (Shard s : shards) {
+            s.readInto(copy);
+            for (int i = 0; i < CELLS; i++) total[i] += copy[i];
+        }
+        String[] names = new String[MAX_STRATEGIES];
+        for (int i = 0; i < MAX_STRATEGIES; i++) names[i] = strategyNames.get(i);
+        return new Snapshot(total, names);
+    }
+
+    /**
+     * 95% Wilson score interval of a proportion; good near 0 and 1 and for
+     * small samples, where the normal approximation is not.
+     * @param successes wins
+     * @param n trials
+     * @return {low, high}, or {0, 1} if {@code n} is 0
+     */
+    public static double[] wilson(long successes, long n) {
+        if (n == 0) return new double[] { 0, 1 };
+        final double z = 1.96, z2 = z * z;
+        double p = (double) successes / n;
+        double denom = 1 + z2 / n;
+        double centre = (p + z2 / (2.0 * n)) / denom;
+        double half = z * Math.sqrt(p * (1 - p) / n + z2 / (4.0 * n * n)) / denom;
+        return new double[] { Math.max(0, centre - half), Math.min(1, centre + half) };
+    }
+
+    /** One worker's counters; only the owning thread writes. */
+    private static final class Shard {
+        private final AtomicLongArray cells = new AtomicLongArray(PAD + CELLS + PAD);
+
+        void add(int i, long delta) {
+            int j = PAD + i;
+            cells.lazySet(j, cells.get(j) + delta);       // single writer: an ordered store is enough
+        }
+
+        void row(Dimension d, int key, boolean won, int score) {
+            int base = OFFSET[d.ordinal()] + key * PER_KEY;
+            add(base + SEEN, 1);
+            if (won) add(base + WON, 1);
+            add(base + SUM, score);
+            add(base + SQ, (long) score * score);
+        }
+
+        void begin() { cells.set(PAD + VERSION, cells.get(PAD + VERSION) + 1); }  // odd: writing
+
+        void end() { cells.lazySet(PAD + VERSION, cells.get(PAD + VERSION) + 1); }
+
+        void readInto(long[] out) {
+            while (true) {
+                long v = cells.get(PAD + VERSION);
+                if ((v & 1) == 0) {
+                    for (int i = 0; i < CELLS; i++) out[i] = cells.get(PAD + i);
+                    if (cells.get(PAD + VERSION) == v) return;
+                }
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    /** Totals at one moment, and the tables made from them. */
+    public static final class Snapshot {
+        private final long[] c;
+        private final String[] strategyNames;
+
+        Snapshot(long[] cells, String[] strategyNames) {
+            this.c = cells;
+            this.strategyNames = strategyNames;
+        }
+
+        /**
+         * The totals as one line of text, for another process to {@link #decode}.
+         * @return the strategy names, then the non-zero cells as {@code index:value}
+         */
+        public String encode() {
+            StringBuilder sb = new StringBuilder();
+            for (int k = 0; k < MAX_STRATEGIES; k++) {
+                if (k > 0) sb.append(',');
+                if (strategyNames[k] != null) sb.append(strategyNames[k]);
+            }
+            sb.append(';');
+            for (int i = GAMES; i < CELLS; i++) {
+                if (c[i] == 0) continue;
+                if (sb.charAt(sb.length() - 1) != ';') sb.append(',');
+                sb.append(i).append(':').append(c[i]);
+            }
+            return sb.toString();
+        }
+
+        /**
+         * Reads totals written by {@link #encode}.
+         * @param line the encoded totals
+         * @return the snapshot
+         * @throws IllegalArgumentException if the line is not encoded totals
+         */
+        public static Snapshot decode(String line) {
+            int semi = line.indexOf(';');
+            if (semi < 0) throw new IllegalArgumentException("Not encoded statistics");
+            String[] names = new String[MAX_STRATEGIES];
+            String[] given = line.substring(0, semi).split(",", -1);
+            for (int k = 0; k < Math.min(given.length, MAX_STRATEGIES); k++)
+                if (!given[k].isEmpty()) names[k] = given[k];
+            long[] cells = new long[CELLS];
+            if (semi + 1 < line.length()) {
+                for (String cell : line.substring(semi + 1).split(",")) {
+                    int colon = cell.indexOf(':');
+                    int i = colon < 0 ? -1 : Integer.parseInt(cell.substring(0, colon));
+                    if (i < GAMES || i >= CELLS) throw new IllegalArgumentException("Not a cell: " + cell);
+                    cells[i] = Long.parseLong(cell.substring(colon + 1));
+                }
+            }
+            return new Snapshot(cells, names);
+        }
+
+        /** Finished games */
+        public long games() { return c[GAMES]; }
+
+        /** Games given up unfinished */
+        public long abandoned() { return c[ABANDONED]; }
+
+        /** Mean rounds per finished game */
+        public double meanRounds() { return games() == 0 ? 0 : (double) c[ROUNDS] / games(); }
+
+        /**
+         * Players that had this key, counted once per game.
+         * @param d the dimension
+         * @param key seat, rank, purple count or strategy id
+         * @return appearances
+         */
+        public long appearances(Dimension d, int key) { return cell(d, key, SEEN); }
+
+        /**
+         * Wins by players that had this key.
+         * @param d the dimension
+         * @param key seat, rank, purple count or strategy id
+         * @return wins
+         */
+        public long wins(Dimension d, int key) { return cell(d, key, WON); }
+
+        /**
+         * Name of a strategy row.
+         * @param key strategy id
+         * @return the name, or null if nobody played it
+         */
+        public String strategyName(int key) { return strategyNames[key]; }
+
+        /**
+         * Mean final score of players that had this key.
+         * @param d the dimension
+         * @param key seat, rank, purple count or strategy id
+         * @return mean points, 0 if none
+         */
+        public double meanScore(Dimension d, int key) {
+            long n = appearances(d, key);
+            return n == 0 ? 0 : (double) cell(d, key, SUM) / n;
+        }
+
+        /* half width of the 95% interval of the mean score */
+        private double scoreMargin(Dimension d, int key) {
+            long n = appearances(d, key);
+            if (n < 2) return 0;
+            double mean = meanScore(d, key);
+            double var = (cell(d, key, SQ) - mean * cell(d, key, SUM)) / (n - 1);
+            return 1.96 * Math.sqrt(Math.max(0, var) / n);
+        }
+
+        private long cell(Dimension d, int key, int field) {
+            return c[OFFSET[d.ordinal()] + key * PER_KEY + field];
+        }
+
+        /**
+         * Score below which {@code percentile} percent of scores fall.
+         * @param winners only the winners' scores
+         * @param percentile 0 to 100
+         * @return points, capped at {@link #MAX_SCORE}
+         */
+        public int scorePercentile(boolean winners, double percentile) {
+            int base = winners ? WIN_SCORES : SCORES;
+            long n = 0;
+            for (int i = 0; i <= MAX_SCORE; i++) n += c[base + i];
+            if (n == 0) return 0;
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100 * n)), seen = 0;
+            for (int i = 0; i <= MAX_SCORE; i++) if ((seen += c[base + i]) >= rank) return i;
+            return MAX_SCORE;
+        }
+
+        /**
+         * One table per dimension with win rates, their 95% intervals and
+         * mean scores, then the score distribution.
+         * @return the lines
+         */
+        public List<String> report() {
+            List<String> lines = new ArrayList<>();
+            lines.add(String.format("%d games (%d abandoned), %.2f rounds/game",
+                    games(), abandoned(), meanRounds()));
+            for (Dimension d : Dimension.values()) {
+                lines.add("");
+                lines.add(String.format("%-18s %8s %10s %7s %17s %16s",
+                        "by " + d.label, "players", "wins", "win%", "95% CI", "mean score"));
+                for (int k = 0; k < d.keys; k++) {
+                    long n = appearances(d, k);
+                    if (n == 0) continue;
+                    double[] ci = wilson(wins(d, k), n);
+                    lines.add(String.format("  %-16s %8d %10d %6.2f%% %7.2f%% - %5.2f%% %7.2f +- %.2f",
+                            keyName(d, k), n, wins(d, k), 100.0 * wins(d, k) / n,
+                            100 * ci[0], 100 * ci[1], meanScore(d, k), scoreMargin(d, k)));
+                }
+            }
+            lines.add("");
+            lines.add(String.format("scores:         p10 %d, p50 %d, p90 %d, p99 %d",
+                    scorePercentile(false, 10), scorePercentile(false, 50),
+                    scorePercentile(false, 90), scorePercentile(false, 99)));
+            lines.add(String.format("winning scores: p10 %d, p50 %d, p90 %d, p99 %d",
+                    scorePercentile(true, 10), scorePercentile(true, 50),
+                    scorePercentile(true, 90), scorePercentile(true, 99)));
+            return lines;
+        }
+
+        private String keyName(Dimension d, int k) {
+            switch (d) {
+                case SEAT:            return "Player " + (k + 1);
+                case FINAL_CHARACTER:
+                case FIRST_PICK:      return k == 0 ? "none" : CitadelsGame.rankName(k);
+                case PURPLE_BUILT:    return k == d.keys - 1 ? k + "+" : String.valueOf(k);
+                default:              return strategyNames[k] == null ? "#" + k : strategyNames[k];
+            }
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package citadels.sim;
+
+import citadels.model.game.CitadelsGame;
+import citadels.model.game.GameListener;
+import citadels.model.game.ScoreCalculator;
+import citadels.model.player.Player;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Streams {@link FeatureVector} records from self-play to a flat binary
+ * file for offline training.
+ *
+ * <p>File layout, all little-endian: the magic {@code "CTDF"}, a format
+ * version (int), the header length in bytes (int), floats per record
+ * (int), the record count (long, filled in on close), then every field
+ * name as a length-prefixed UTF-8 string. Records follow, {@code width}
+ * float32 each.</p>
+ *
+ * <p>Each simulator thread owns a {@link Recorder}. It keeps a game's
+ * records until the outcome is known, labels them, and copies them into a
+ * preallocated block. Full blocks go to the writer thread through a
+ * bounded queue and come back empty through another, so nothing is
+ * allocated per record, and a slow disk holds the workers back instead of
+ * growing the heap.</p>
+ */
+public final class TrainingWriter implements Closeable {
+
+    /** File magic, "CTDF" */
+    public static final int MAGIC = 0x46445443;
+    /** Format version */
+    public static final int VERSION = 1;
+    /** Records per block handed to the writer thread */
+    public static final int BLOCK_RECORDS = 1024;
+
+    private static final int RECORD_COUNT_AT = 16;       // after magic, version, header length, width
+
+    private final FileChannel out;
+    private final BlockingQueue<Block> full;
+    private final BlockingQueue<Block> free;
+    private final Block poison = new Block(0);
+    private final Thread writer;
+    private volatile IOException failure;
+    private volatile long records;                       // written by the writer thread only
+    private boolean closed;
+
+    /**
+     * Creates (or replaces) a training file and starts its writer thread.
+     * @param file the file to write
+     * @param blocks blocks in flight; more absorb bursts, fewer bound memory
+     * @throws IOException if the file cannot be created
+     */
+    public TrainingWriter(Path file, int blocks) throws IOException {
+        out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        out.write(header());
+        full = new ArrayBlockingQueue<>(blocks + 1);
+        free = new ArrayBlockingQueue<>(blocks);
+        for (int i = 0; i < blocks; i++) free.add(new Block(BLOCK_RECORDS));
+        writer = new Thread(this::drain, "training-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    private static ByteBuffer header() {
+        int len = 24;
+        for (String n : FeatureVector.NAMES) len += 2 + n.getBytes(StandardCharsets.UTF_8).length;
+        ByteBuffer h = ByteBuffer.allocate(len).order(ByteOrder.LITTLE_ENDIAN);
+        h.putInt(MAGIC).putInt(VERSION).putInt(len).putInt(FeatureVector.WIDTH).putLong(0);
+        for (String n : FeatureVector.NAMES) {
+            byte[] b = n.getBytes(StandardCharsets.UTF_8);
+            h.putShort((short) b.length).put(b);
+        }
+        h.flip();
+        return h;
+    }
+
+    /**
+     * A recorder for one simulator thread.
+     * @return a new recorder
+     */
+    public Recorder recorder() { return new Recorder(); }
+
+    /** Records of many games on their way to the file; reused, never reallocated. */
+    private static final class Block {
+        final float[] data;
+        int records;
+
+        Block(int capacity) { data = new float[capacity * FeatureVector.WIDTH]; }
+    }
+
+    /* hands a filled block to the writer; waits while the writer is behind */
+    private void submit(Block block) {
+        try {
+            full.put(block);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Block take() {
+        try {
+            Block b = free.take();
+            b.records = 0;
+            return b;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the training writer");
+        }
+    }
+
+    private void drain() {
+        ByteBuffer bytes = ByteBuffer.allocateDirect(BLOCK_RECORDS * FeatureVector.WIDTH * 4)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            while (true) {
+                Block block = full.take();
+                if (block == poison) return;
+                int n = block.records;
+                bytes.clear();
+                bytes.asFloatBuffer().put(block.data, 0, n * FeatureVector.WIDTH);
+                bytes.limit(n * FeatureVector.WIDTH * 4);
+                try {
+                    while (bytes.hasRemaining()) out.write(bytes);
+                    records += n;
+                } catch (IOException e) {
+                    if (failure == null) failure = e;    // keep draining so workers never hang
+                }
+                free.put(block);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Records written so far. Exact once the writer is closed.
+     * @return the count
+     */
+    public long records() { return records; }
+
+    /**
+     * Waits for every submitted block, fills in the record count and closes
+     * the file. Recorders must have been flushed.
+     * @throws IOException if any write failed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        try {
+            full.put(poison);
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            ByteBuffer n = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN).putLong(0, records);
+            out.write(n, RECORD_COUNT_AT);
+        } finally {
+            out.close();
+        }
+        if (failure != null) throw failure;
+    }
+
+    /**
+     * Collects one thread's decision points. Attach it to each game with
+     * {@link #begin}, then call {@link #finish} or {@link #discard}.
+     * Not thread-safe: one per simulator thread.
+     */
+    public final class Recorder implements GameListener {
+        private float[] game = new float[64 * FeatureVector.WIDTH];   // grows to the longest game, then stays
+        private int gameRecords;
+        private CitadelsGame current;
+        private Block block;
+
+        private Recorder() { }
+
+        /**
+         * Starts recording a game.
+         * @param g the game, before its first step
+         */
+        public void begin(CitadelsGame g) {
+            current = g;
+            gameRecords = 0;
+            g.addListener(this);
+        }
+
+        @Override
+        public void characterChosen(Player p, int rank) {
+            if (current != null) add(p, FeatureVector.PICK, rank);
+        }
+
+        @Override
+        public void characterRevealed(int rank, Player p) {
+            if (current != null && p != null && !current.isKilled(rank)) add(p, FeatureVector.TURN, rank);
+        }
+
+        private void add(Player p, int kind, int rank) {
+            int off = gameRecords * FeatureVector.WIDTH;
+            if (off + FeatureVector.WIDTH > game.length) game = java.util.Arrays.copyOf(game, game.length * 2);
+            FeatureVector.fill(game, off, current, p, kind, rank);
+            game[off + FeatureVector.WON] = p.getId();   // seat until the outcome is known
+            gameRecords++;
+        }
+
+        /**
+         * Labels the game's records with its outcome and queues them.
+         */
+        public void finish() {
+            Map<Player, Integer> scores = current.finalScores();
+            Player winner = ScoreCalculator.winner(scores);
+            int w = FeatureVector.WIDTH;
+            for (int r = 0; r < gameRecords; r++) {
+                int off = r * w;
+                Player p = current.getPlayer((int) game[off + FeatureVector.WON]);
+                game[off + FeatureVector.WON] = p == winner ? 1 : 0;
+                game[off + FeatureVector.SCORE] = scores.get(p);
+                if (block == null) block = take();
+                System.arraycopy(game, off, block.data, block.records * w, w);
+                if (++block.records == BLOCK_RECORDS) {
+                    submit(block);
+                    block = null;
+                }
+            }
+            current = null;
+        }
+
+        /** Drops the records of an unfinished game. */
+        public void discard() {
+            current = null;
+            gameRecords = 0;
+        }
+
+        /** Hands over a partly filled block; call when the thread is done. */
+        public void flush() {
+            if (block != null) submit(block);
+            block = null;
+        }
+    }
+}
@@ -0,0 +1,330 @@
+package citadels.sim;
+
+import citadels.ai.BeliefTracker;
+import citadels.ai.Determiniser;
+import citadels.cli.QuietHandler;
+import citadels.model.game.CitadelsGame;
+import citadels.model.game.GameState;
+import citadels.model.game.Move;
+import citadels.model.game.MoveGenerator;
+import citadels.model.game.ScoreCalculator;
+import citadels.model.game.Step;
+import citadels.model.player.Player;
+import citadels.util.CardRepoSingleton;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Estimates how a game in progress is likely to end by playing it out many
+ * times with AI players in every seat.
+ *
+ * <p>Each continuation starts from a {@link CitadelsGame#fork fork} of the
+ * game in which the {@link Determiniser} has dealt again everything the
+ * observing seat cannot see. The AI then plays to the end.</p>
+ *
+ * <p>{@link #estimate} reports each seat's chance of winning and expected
+ * score; {@link #rankMoves} plays the first decision of the seat to move
+ * itself, once per legal move, and orders the moves by how often the seat
+ * then wins.</p>
+ */
+public final class WinOracle {
+
+    /** Continuations per estimate when the caller does not say */
+    public static final int DEFAULT_CONTINUATIONS = 2000;
+    /** Legal moves considered by {@link #rankMoves}; the rest are ignored */
+    public static final int MAX_CANDIDATES = 256;
+
+    private static final int NO_MOVE = -1;
+
+    private final int threads;
+
+    /**
+     * @param threads worker threads per request
+     */
+    public WinOracle(int threads) {
+        if (threads < 1) throw new IllegalArgumentException("Threads must be at least 1");
+        this.threads = threads;
+    }
+
+    /**
+     * Plays {@code root} out from the point of view of {@code observer}.
+     * The game must not change while this runs.
+     * @param root the game to analyse
+     * @param observer seat whose knowledge the continuations respect
+     * @param continuations how many games to play out
+     * @param budgetMillis stop early after this long; 0 for no limit
+     * @return per-seat outcomes
+     */
+    public Estimate estimate(CitadelsGame root, int observer, int continuations, long budgetMillis) {
+        checkPlayable(root, observer);
+        return run(root, observer, new int[] { NO_MOVE }, continuations, budgetMillis)[0];
+    }
+
+    /**
+     * Tries every legal move of the seat to move, round-robin, until the
+     * budget is spent, and ranks them by that seat's chance of winning.
+     * The game must not change while this runs.
+     * @param root the game to analyse
+     * @param budgetMillis time to spend
+     * @return the moves tried, best first; empty if no seat is to move
+     */
+    public List<Choice> rankMoves(CitadelsGame root, long budgetMillis) {
+        int seat = root.getSeatToMove();
+        if (seat < 0) return new ArrayList<>();
+        checkPlayable(root, seat);
+        int[] buf = new int[MAX_CANDIDATES];
+        int n = Math.min(MoveGenerator.generate(root, root.getPlayer(seat), root.getPhase(),
+                root.getTurnFlags(), buf), buf.length);
+        if (n == 0) return new ArrayList<>();
+        int[] moves = java.util.Arrays.copyOf(buf, n);
+
+        Estimate[] results = run(root, seat, moves, Long.MAX_VALUE, Math.max(1, budgetMillis));
+        List<Choice> ranked = new ArrayList<>();
+        for (int i = 0; i < n; i++)
+            if (results[i].games() > 0) ranked.add(new Choice(moves[i], seat, results[i]));
+        ranked.sort(Comparator.comparingDouble(Choice::winProbability)
+                .thenComparingDouble(Choice::meanScore).reversed());
+        return ranked;
+    }
+
+    private static void checkPlayable(CitadelsGame root, int seat) {
+        if (seat < 0 || seat >= root.getPlayers().size())
+            throw new IllegalArgumentException("No seat " + (seat + 1) + " in this game");
+        if (root.isGameOver()) throw new IllegalArgumentException("The game is already over");
+    }
+
+    /* plays continuations for each first move on the worker threads and merges their tallies */
+    private Estimate[] run(CitadelsGame root, int observer, int[] moves, long limit, long budgetMillis) {
+        int seats = root.getPlayers().size();
+        long deadline = budgetMillis > 0 ? System.nanoTime() + budgetMillis * 1_000_000 : Long.MAX_VALUE;
+        AtomicLong next = new AtomicLong();
+        Estimate[] total = new Estimate[moves.length];
+        for (int i = 0; i < moves.length; i++) total[i] = new Estimate(seats);
+
+        List<Thread> workers = new ArrayList<>(threads);
+        for (int t = 0; t < threads; t++) {
+            Thread w = new Thread(() -> {
+                Random rng = new Random(ThreadLocalRandom.current().nextLong());
+                BeliefTracker beliefs = new BeliefTracker(observer, seats, 0);
+                Estimate[] mine = new Estimate[moves.length];
+                for (int i = 0; i < moves.length; i++) mine[i] = new Estimate(seats);
+                long i;
+                // every move gets one continuation, whatever the clock says
+                while ((i = next.getAndIncrement()) < limit && (i < moves.length || System.nanoTime() < deadline)) {
+                    int m = (int) (i % moves.length);
+                    play(root, observer, moves[m], rng, beliefs, mine[m]);
+                }
+                synchronized (total) {
+                    for (int k = 0; k < moves.length; k++) total[k].add(mine[k]);
+                }
+            }, "oracle-" + t);
+            w.setDaemon(true);
+            workers.add(w);
+            w.start();
+        }
+        try {
+            for (Thread w : workers) w.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return total;
+    }
+
+    private void play(CitadelsGame root, int observer, int move, Random rng, BeliefTracker beliefs, Estimate out) {
+        CitadelsGame g = root.fork(QuietHandler.INSTANCE, rng.nextLong());
+        Determiniser.deal(g, observer, rng, beliefs);
+        if (move != NO_MOVE && !g.playMove(move)) {     // not legal in this world after all
+            g.abandon();
+            return;
+        }
+        Step s = g.step(null);
+        while (s.kind() != Step.Kind.GAME_OVER) {
+            if (g.getRound() > Campaign.ROUND_LIMIT) {
+                g.abandon();
+                out.abandoned++;
+                return;
+            }
+            s = g.step(null);
+        }
+        Map<Player, Integer> scores = g.finalScores();
+        out.record(ScoreCalculator.winner(scores).getId(), scores);
+    }
+
+    /**
+     * Outcomes of the continuations from one starting point. Mutable only
+     * while the oracle fills it in.
+     */
+    public static final class Estimate {
+        private final long[] wins;
+        private final long[] scoreSum;
+        private final long[] scoreSquares;
+        private long games;
+        private long abandoned;
+
+        Estimate(int seats) {
+            wins = new long[seats];
+            scoreSum = new long[seats];
+            scoreSquares = new long[seats];
+        }
+
+        void record(int winner, Map<Player, Integer> scores) {
+            games++;
+            wins[winner]++;
+            scores.forEach((p, s) -> {
+                scoreSum[p.getId()] += s;
+                scoreSquares[p.getId()] += (long) s * s;
+            });
+        }
+
+        void add(Estimate o) {
+            games += o.games;
+            abandoned += o.abandoned;
+            for (int s = 0; s < wins.length; s++) {
+                wins[s] += o.wins[s];
+                scoreSum[s] += o.scoreSum[s];
+                scoreSquares[s] += o.scoreSquares[s];
+            }
+        }
+
+        /** Continuations played to the end */
+        public long games() { return games; }
+
+        /** Continuations given up after {@link Campaign#ROUND_LIMIT} rounds */
+        public long abandoned() { return abandoned; }
+
+        /** Seats in the game */
+        public int seats() { return wins.length; }
+
+        /**
+         * @param seat 0-based seat
+         * @return share of the continuations the seat won
+         */
+        public double winProbability(int seat) {
+            return games == 0 ? 0 : (double) wins[seat] / games;
+        }
+
+        /**
+         * @param seat 0-based seat
+         * @return 95% Wilson interval of {@link #winProbability}
+         */
+        public double[] winInterval(int seat) { return SimStats.wilson(wins[seat], games); }
+
+        /**
+         * @param seat 0-based seat
+         * @return mean final score
+         */
+        public double meanScore(int seat) {
+            return games == 0 ? 0 : (double) scoreSum[seat] / games;
+        }
+
+        /**
+         * @param seat 0-based seat
+         * @return half-width of the 95% confidence interval of {@link #meanScore}
+         */
+        public double scoreMargin(int seat) {
+            if (games < 2) return 0;
+            double mean = meanScore(seat);
+            double var = (scoreSquares[seat] - games * mean * mean) / (games - 1);
+            return 1.96 * Math.sqrt(Math.max(0, var) / games);
+        }
+
+        /**
+         * One line per seat
+         * @param observer the seat the estimate was made for, marked "(you)"
+         * @return the table
+         */
+        public List<String> report(int observer) {
+            List<String> lines = new ArrayList<>();
+            lines.add(String.format("%d continuations (%d abandoned)", games, abandoned));
+            for (int s = 0; s < wins.length; s++) {
+                double[] ci = winInterval(s);
+                lines.add(String.format("Player %d%-6s win %6.2f%% (%5.2f%% - %5.2f%%), score %5.2f +- %.2f",
+                        s + 1, s == observer ? " (you)" : "", 100 * winProbability(s),
+                        100 * ci[0], 100 * ci[1], meanScore(s), scoreMargin(s)));
+            }
+            return lines;
+        }
+    }
+
+    /** A candidate first move and how the moving seat fared after it. */
+    public static final class Choice {
+        private final int move;
+        private final int seat;
+        private final Estimate outcome;
+
+        Choice(int move, int seat, Estimate outcome) {
+            this.move = move;
+            this.seat = seat;
+            this.outcome = outcome;
+        }
+
+        /** The packed {@link Move} */
+        public int move() { return move; }
+
+        /** Everything the continuations after this move produced */
+        public Estimate outcome() { return outcome; }
+
+        /** The moving seat's chance of winning after this move */
+        public double winProbability() { return outcome.winProbability(seat); }
+
+        /** The moving seat's expected final score after this move */
+        public double meanScore() { return outcome.meanScore(seat); }
+
+        @Override
+        public String toString() {
+            double[] ci = outcome.winInterval(seat);
+            return String.format("%-24s win %6.2f%% (%5.2f%% - %5.2f%%), score %5.2f, %d games",
+                    Move.toString(move), 100 * winProbability(), 100 * ci[0], 100 * ci[1],
+                    meanScore(), outcome.games());
+        }
+    }
+
+    /**
+     * Loads a game saved by the {@code save} command, without output.
+     * @param file the JSON file
+     * @return the game, at the start of the saved round
+     * @throws IOException if the file cannot be read or is not a saved game
+     */
+    public static CitadelsGame load(Path file) throws IOException {
+        try (Reader r = Files.newBufferedReader(file)) {
+            JSONObject js = (JSONObject) new JSONParser().parse(r);
+            return GameState.deserialise(js, QuietHandler.INSTANCE, CardRepoSingleton.INSTANCE);
+        } catch (ParseException | RuntimeException e) {
+            throw new IOException("Not a saved game: " + file, e);
+        }
+    }
+
+    /**
+     * Prints the win probabilities of a saved game.
+     * @param args {@code <save file> [seat] [continuations] [threads]}, seat 1-based,
+     *             default 1, {@value #DEFAULT_CONTINUATIONS}, all CPUs
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.out.println("usage: WinOracle <save file> [seat] [continuations] [threads]");
+            return;
+        }
+        CitadelsGame g = load(Paths.get(args[0]));
+        int seat = args.length > 1 ? Integer.parseInt(args[1]) - 1 : 0;
+        int n = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_CONTINUATIONS;
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        long t0 = System.nanoTime();
+        Estimate e = new WinOracle(threads).estimate(g, seat, n, 0);
+        for (String line : e.report(seat)) System.out.println(line);
+        System.out.printf("Done in %.1f s%n", (System.nanoTime() - t0) / 1e9);
+    }
+}
@@ -14,6 +14,8 @@ public enum CardRepoSingleton implements CardRepository {
 
     /* ------------------------------------------------------------------ */
     private final Map<String, DistrictCard> districtMap;
+    private final DistrictCard[] districtById;   // index = type id
+    private final int[] copies;                  // index = type id
     private final Map<Integer, CharacterCard> characterMap;
 
     CardRepoSingleton() {
@@ -23,6 +25,14 @@ public enum CardRepoSingleton implements CardRepository {
         for (DistrictCard d : all) m.putIfAbsent(d.getName(), d); // keep one prototype
         districtMap = Collections.unmodifiableMap(m);
 
+        /* ids are dense row numbers, so arrays are enough */
+        districtById = new DistrictCard[m.size()];
+        copies = new int[m.size()];
+        for (DistrictCard d : all) {
+            districtById[d.getId()] = d;
+            copies[d.getId()]++;
+        }
+
         /* build character prototypes (new each round if you prefer) */
         Map<Integer, CharacterCard> c = new HashMap<>();
         c.put(1, new Assassin());
@@ -44,6 +54,23 @@ public enum CardRepoSingleton implements CardRepository {
         return d;
     }
 
+    @Override
+    public int districtTypeCount() {
+        return districtById.length;
+    }
+
+    @Override
+    public DistrictCard districtById(int id) {
+        if (id < 0 || id >= districtById.length)
+            throw new IllegalArgumentException("No district id: " + id);
+        return districtById[id];
+    }
+
+    @Override
+    public int copiesOf(int id) {
+        return (id < 0 || id >= copies.length) ? 0 : copies[id];
+    }
+
     @Override
     public CharacterCard characterByRank(int rank) {
         CharacterCard c = characterMap.get(rank);
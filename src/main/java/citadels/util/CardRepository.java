@@ -12,6 +12,15 @@ public interface CardRepository {
 
     DistrictCard  districtByName(String name);
 
+    /** Number of distinct district types (ids run 0 .. count-1). */
+    int districtTypeCount();
+
+    /** Returns the prototype district with the given type id. */
+    DistrictCard  districtById(int id);
+
+    /** How many copies of the given district type are in a full deck. */
+    int copiesOf(int id);
+
     /** Returns a prototype CharacterCard for the given rank (1–8). */
     CharacterCard characterByRank(int rank);
 }
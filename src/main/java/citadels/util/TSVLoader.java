@@ -25,6 +25,7 @@ public final class TSVLoader {
         if (in == null) throw new RuntimeException("cards.tsv not found");
 
         List<DistrictCard> deck = new ArrayList<>();
+        int typeId = 0; //one id per valid row, shared by every copy
 
         //try to read the file (utf-8 encoding)
         try (BufferedReader br = new BufferedReader(new InputStreamReader(in, "UTF-8"))) {
@@ -69,7 +70,8 @@ public final class TSVLoader {
 
                 //add quantity copies
                 for (int i = 0; i < qty; i++)
-                    deck.add(new DistrictCard(name, color, cost, special));
+                    deck.add(new DistrictCard(typeId, name, color, cost, special));
+                typeId++;
             }
         } catch (Exception e) {
             throw new RuntimeException("Failed to load cards.tsv", e);
@@ -0,0 +1,91 @@
+package citadels;
+
+import citadels.ai.BeliefTracker;
+import citadels.cli.CommandHandler;
+import citadels.model.card.DistrictCard;
+import citadels.model.game.CitadelsGame;
+import citadels.model.player.AIPlayer;
+import citadels.model.player.Player;
+import citadels.util.CardRepoSingleton;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** Checks the AI's hidden-card tracker against the real game state. */
+public class BeliefTrackerTest {
+
+    private static CitadelsGame newGame() {
+        CommandHandler cli = new CommandHandler() {
+            public void println(String msg) {}
+            public String prompt(String m) { return ""; }
+        };
+        return new CitadelsGame(4, cli);
+    }
+
+    @Test
+    public void unknownSlotsMatchHiddenCards() {
+        CitadelsGame g = newGame();
+        BeliefTracker b = ((AIPlayer) g.getPlayer(1)).beliefs();
+
+        // three other hands of 4 plus the whole deck are hidden from seat 2
+        assertEquals(3 * 4 + g.getDistrictDeckSize(), b.unknownSlots());
+
+        Player builder = g.getPlayer(2);
+        builder.gainGold(20);
+        g.drawCards(builder, 2);                        // 6 hidden cards
+        g.buildDistrict(builder, builder.getHand().get(0)); // one becomes public
+        assertEquals(4 + 5 + 4 + g.getDistrictDeckSize(), b.unknownSlots());
+        assertEquals(g.getPlayer(2).getHand().size(), b.handSize(2));
+    }
+
+    @Test
+    public void swapRevealsTheGivenHand() {
+        CitadelsGame g = newGame();
+        Player me = g.getPlayer(1), other = g.getPlayer(2);
+        BeliefTracker b = ((AIPlayer) me).beliefs();
+        List<DistrictCard> given = new ArrayList<>(me.getHand());
+
+        g.swapHands(me, other);
+
+        int[][] hands = new int[4][16];
+        int[] deck = new int[128];
+        b.sample(new Random(1), hands, deck);
+
+        int[] expected = new int[given.size()];
+        for (int i = 0; i < given.size(); i++) expected[i] = given.get(i).getId();
+        int[] sampled = Arrays.copyOf(hands[2], given.size());
+        Arrays.sort(expected);
+        Arrays.sort(sampled);
+        assertArrayEquals(expected, sampled);
+    }
+
+    @Test
+    public void aKnownCardDiscardedFaceDownIsForgottenOnceItCannotFit() {
+        CitadelsGame g = newGame();
+        Player me = g.getPlayer(1), other = g.getPlayer(2);
+        BeliefTracker b = ((AIPlayer) me).beliefs();
+        g.swapHands(me, other);
+
+        // they draw, throw one of our old cards away face down, and build the new one
+        other.gainGold(40);
+        g.drawCards(other, 1);
+        g.discardFromHand(other, 0);
+        g.buildDistrict(other, other.getHand().get(other.getHand().size() - 1));
+        assertEquals(other.getHand().size(), b.handSize(2));
+
+        // room to spare, so cards remembered beyond the hand would show rather than overflow
+        int[][] hands = new int[4][16];
+        for (int[] h : hands) Arrays.fill(h, -1);
+        b.sample(new Random(1), hands, new int[128]);
+        for (int s = 0; s < 4; s++) {
+            int n = 0;
+            while (n < hands[s].length && hands[s][n] >= 0) n++;
+            assertEquals(g.getPlayer(s).getHand().size(), n, "cards sampled for seat " + s);
+        }
+        double cards = 0;                               // known cards plus the unknown slots left
+        for (int t = 0; t < CardRepoSingleton.INSTANCE.districtTypeCount(); t++) cards += b.expectedCount(2, t);
+        assertEquals(b.handSize(2), cards, 1e-9, "remembered cards fit the hand");
+    }
+}
@@ -0,0 +1,175 @@
+package citadels;
+
+import citadels.bot.BotClient;
+import citadels.bot.BotMatch;
+import citadels.bot.EchoBot;
+import citadels.cli.QuietHandler;
+import citadels.metrics.Metrics;
+import citadels.model.card.DistrictCard;
+import citadels.model.card.DistrictColor;
+import citadels.model.game.CitadelsGame;
+import citadels.model.game.Step;
+import citadels.model.player.AIPlayer;
+import citadels.model.player.BotPlayer;
+import citadels.model.player.Player;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.PrintStream;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** Bots play through the line protocol, many games to one pipe. */
+public class BotClientTest {
+
+    /* a client wired to a bot running on a thread of this JVM */
+    private static BotClient inProcess(Consumer<Pipes> bot) throws IOException {
+        PipedOutputStream toBot = new PipedOutputStream();
+        PipedInputStream botIn = new PipedInputStream(toBot, 1 << 16);
+        PipedOutputStream botOut = new PipedOutputStream();
+        PipedInputStream fromBot = new PipedInputStream(botOut, 1 << 16);
+        Thread t = new Thread(() -> bot.accept(new Pipes(botIn, botOut)), "test-bot");
+        t.setDaemon(true);
+        t.start();
+        return new BotClient(fromBot, toBot);
+    }
+
+    private static final class Pipes {
+        final BufferedReader in;
+        final PrintStream out;
+        final PipedInputStream raw;
+        final PipedOutputStream rawOut;
+
+        Pipes(PipedInputStream in, PipedOutputStream out) {
+            this.raw = in;
+            this.rawOut = out;
+            this.in = new BufferedReader(new InputStreamReader(in));
+            this.out = new PrintStream(out, true);
+        }
+    }
+
+    private static void echo(Pipes p) {
+        try {
+            EchoBot.serve(p.raw, p.rawOut);
+        } catch (IOException e) {
+            // the test is over
+        }
+    }
+
+    @Test
+    public void theEchoBotPlaysParallelGamesOverOnePipe() throws Exception {
+        long requests = Metrics.BOT_REQUESTS.get(), fallbacks = Metrics.BOT_FALLBACKS.get();
+        try (BotClient bot = inProcess(BotClientTest::echo)) {
+            assertEquals("echo", bot.name());
+            BotMatch m = new BotMatch(bot, 4);
+            m.run(8, 4);
+            assertEquals(8, m.games());
+            assertEquals(0, bot.outstanding());
+        }
+        assertTrue(Metrics.BOT_REQUESTS.get() - requests > 8 * 10);
+        assertEquals(fallbacks, Metrics.BOT_FALLBACKS.get());
+    }
+
+    @Test
+    public void answersAreMatchedById() throws Exception {
+        try (BotClient bot = inProcess(p -> {
+            try {
+                p.in.readLine();
+                p.out.println("info warming up");           // ignored by the engine
+                p.out.println("ready backwards");
+                String a = p.in.readLine(), b = p.in.readLine();
+                p.out.println("res " + b.split(" ")[1] + " second");
+                p.out.println("res " + a.split(" ")[1] + " first");
+                p.in.readLine();                            // quit
+            } catch (IOException e) {
+                throw new AssertionError(e);
+            }
+        })) {
+            assertEquals("backwards", bot.name());
+            List<String> options = Arrays.asList("first", "second");
+            CompletableFuture<String> a = bot.request(new JSONObject(), options);
+            CompletableFuture<String> b = bot.request(new JSONObject(), options);
+            assertEquals("first", a.get(10, TimeUnit.SECONDS));
+            assertEquals("second", b.get(10, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void aBotThatGoesAwayLeavesTheSeatToTheFallback() throws Exception {
+        long fallbacks = Metrics.BOT_FALLBACKS.get();
+        try (BotClient bot = inProcess(p -> {
+            try {
+                p.in.readLine();
+                p.out.println("ready quitter");
+                p.rawOut.close();
+            } catch (IOException e) {
+                throw new AssertionError(e);
+            }
+        })) {
+            CitadelsGame g = new CitadelsGame(4, QuietHandler.INSTANCE, 3,
+                    s -> s == 0 ? new BotPlayer(s, bot, 60_000) : new AIPlayer(s));
+            long t0 = System.nanoTime();
+            Step s = g.step(null);
+            for (int guard = 0; guard < 10_000 && s.kind() != Step.Kind.GAME_OVER; guard++) s = g.step(null);
+            assertTrue(g.isGameOver());
+            assertTrue(System.nanoTime() - t0 < TimeUnit.SECONDS.toNanos(60), "nobody waited for the timeout");
+            assertEquals(-1, bot.choose(new JSONObject(), Arrays.asList("gold"), 60_000));
+        }
+        assertTrue(Metrics.BOT_FALLBACKS.get() > fallbacks);
+    }
+
+    @Test
+    public void aBotIsOfferedEveryMoveOfALongTurn() throws Exception {
+        AtomicInteger offered = new AtomicInteger();
+        try (BotClient bot = inProcess(p -> {
+            try {
+                p.in.readLine();
+                p.out.println("ready ender");
+                String line;
+                while ((line = p.in.readLine()) != null && line.startsWith("req ")) {
+                    String[] w = line.split(" ", 3);
+                    JSONArray options = (JSONArray) ((JSONObject) new JSONParser().parse(w[2])).get("options");
+                    if (options.contains("end") && offered.get() == 0) offered.set(options.size());
+                    p.out.println("res " + w[1] + " " + (options.contains("end") ? "end" : "0"));
+                }
+            } catch (IOException | ParseException e) {
+                throw new AssertionError(e);
+            }
+        })) {
+            CitadelsGame g = new CitadelsGame(4, QuietHandler.INSTANCE, 5, s -> new BotPlayer(s, bot, 60_000));
+            for (Player p : g.getPlayers()) {                    // nobody robs or swaps: the bot only ends
+                p.gainGold(200);
+                for (int i = 0; i < 80; i++) p.addCardToHand(new DistrictCard("Hut " + i, DistrictColor.GREEN, 1, null));
+            }
+            Step s = g.step(null);
+            for (int guard = 0; guard < 10_000 && offered.get() == 0 && s.kind() != Step.Kind.GAME_OVER; guard++)
+                s = g.step(null);
+            assertTrue(offered.get() > 80, offered.get() + " options");   // a build per card, and end
+        }
+    }
+
+    @Test
+    public void aBotProcessSpeaksOverItsStandardStreams() throws Exception {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        try (BotClient bot = BotClient.launch(Arrays.asList(java, "-cp", System.getProperty("java.class.path"),
+                EchoBot.class.getName()))) {
+            assertEquals("echo", bot.name());
+            assertEquals(0, bot.choose(new JSONObject(), Arrays.asList("gold", "cards"), 30_000));
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package citadels;
+
+import citadels.ai.BuildPlanner;
+import citadels.model.card.DistrictCard;
+import citadels.model.card.DistrictColor;
+import citadels.model.game.ScoreCalculator;
+import citadels.model.player.AIPlayer;
+import citadels.model.player.Player;
+import citadels.util.TSVLoader;
+
+import java.util.*;
+
+/**
+ * Micro-benchmark: the old greedy sort loop against {@link BuildPlanner}.
+ * Reports time per decision and average points gained per decision.
+ *
+ * <p>Run with {@code java -cp <test+main classpath> citadels.BuildPlannerBenchmark [rounds]}.</p>
+ */
+public final class BuildPlannerBenchmark {
+
+    private static final int SCENARIOS = 4096;
+
+    public static void main(String[] args) {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        Player[] scenarios = scenarios(new Random(42));
+        BuildPlanner planner = new BuildPlanner();
+        DistrictCard[] out = new DistrictCard[3];
+
+        // quality (one pass, not timed)
+        long greedyPts = 0, plannedPts = 0;
+        for (Player p : scenarios) {
+            greedyPts  += points(p, greedy(p, 3));
+            int n = planner.plan(p, 3, ScoreCalculator.FIRST_COMPLETE_BONUS, out);
+            plannedPts += points(p, Arrays.asList(out).subList(0, n));
+        }
+
+        // speed (warm-up round, then timed rounds)
+        long sink = 0;
+        for (int warm = 0; warm < 2; warm++) {
+            long t0 = System.nanoTime();
+            for (int r = 0; r < rounds; r++)
+                for (Player p : scenarios) sink += greedy(p, 3).size();
+            long t1 = System.nanoTime();
+            for (int r = 0; r < rounds; r++)
+                for (Player p : scenarios)
+                    sink += planner.plan(p, 3, ScoreCalculator.FIRST_COMPLETE_BONUS, out);
+            long t2 = System.nanoTime();
+            if (warm == 0) continue;
+
+            long ops = (long) rounds * SCENARIOS;
+            System.out.printf("greedy : %8.1f ns/decision, %.3f pts/decision%n",
+                    (t1 - t0) / (double) ops, greedyPts / (double) SCENARIOS);
+            System.out.printf("planner: %8.1f ns/decision, %.3f pts/decision%n",
+                    (t2 - t1) / (double) ops, plannedPts / (double) SCENARIOS);
+        }
+        if (sink == 42) System.out.println(); // keep the JIT honest
+    }
+
+    /** The pre-planner AI build loop, kept here as the baseline. */
+    private static List<DistrictCard> greedy(Player p, int limit) {
+        Comparator<DistrictCard> order = Comparator.<DistrictCard>comparingInt(DistrictCard::getCost).reversed()
+                .thenComparing(c -> c.getColor() == DistrictColor.PURPLE ? 0 : 1)
+                .thenComparing(DistrictCard::getName);
+        List<DistrictCard> chosen = new ArrayList<>();
+        int gold = p.getGold();
+        while (chosen.size() < limit) {
+            final int g = gold;
+            Optional<DistrictCard> best = p.getHand().stream()
+                    .filter(c -> c.getCost() <= g && !p.cityContains(c.getName()))
+                    .filter(c -> chosen.stream().noneMatch(o -> o.getName().equals(c.getName())))
+                    .sorted(order)
+                    .findFirst();
+            if (!best.isPresent()) break;
+            chosen.add(best.get());
+            gold -= best.get().getCost();
+        }
+        return chosen;
+    }
+
+    /** Score gained by adding {@code build} to the player's city. */
+    private static int points(Player p, List<DistrictCard> build) {
+        Player scratch = new AIPlayer(p.getId());
+        for (DistrictCard d : p.getCity()) scratch.addDistrictToCity(d);
+        int before = ScoreCalculator.compute(Collections.singletonList(scratch), -1).get(scratch);
+        for (DistrictCard d : build) scratch.addDistrictToCity(d);
+        int first = scratch.getCity().size() >= ScoreCalculator.CITY_SIZE ? p.getId() : -1;
+        return ScoreCalculator.compute(Collections.singletonList(scratch), first).get(scratch) - before;
+    }
+
+    private static Player[] scenarios(Random rng) {
+        List<DistrictCard> deck = TSVLoader.loadDistrictDeck();
+        Player[] out = new Player[SCENARIOS];
+        for (int i = 0; i < SCENARIOS; i++) {
+            Collections.shuffle(deck, rng);
+            Player p = new AIPlayer(1);
+            p.gainGold(rng.nextInt(13) - p.getGold());
+            int city = rng.nextInt(8), hand = 2 + rng.nextInt(6), k = 0;
+            for (; k < city; k++)
+                if (!p.cityContains(deck.get(k).getName())) p.addDistrictToCity(deck.get(k));
+            for (int j = 0; j < hand; j++) p.addCardToHand(deck.get(k + j));
+            out[i] = p;
+        }
+        return out;
+    }
+}
@@ -0,0 +1,69 @@
+package citadels;
+
+import citadels.ai.BuildPlanner;
+import citadels.model.card.DistrictCard;
+import citadels.model.card.DistrictColor;
+import citadels.model.player.AIPlayer;
+import citadels.model.player.Player;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** Unit tests for the knapsack build planner. */
+public class BuildPlannerTest {
+
+    private static DistrictCard card(String name, DistrictColor c, int cost) {
+        return new DistrictCard(name, c, cost, null);
+    }
+
+    @Test
+    public void architectBeatsGreedyFirstPick() {
+        Player p = new AIPlayer(1);
+        p.gainGold(6 - p.getGold());                       // 6 gold
+        p.addCardToHand(card("Palace",  DistrictColor.YELLOW, 5));
+        p.addCardToHand(card("Docks",   DistrictColor.GREEN,  3));
+        p.addCardToHand(card("Manor",   DistrictColor.YELLOW, 3));
+
+        DistrictCard[] out = new DistrictCard[3];
+        int n = new BuildPlanner().plan(p, 3, 4, out);
+
+        // greedy would take Palace (5) and be stuck; 3 + 3 uses all six gold
+        assertEquals(2, n);
+        assertEquals(6, out[0].getCost() + out[1].getCost());
+    }
+
+    @Test
+    public void skipsDuplicatesAndCityCards() {
+        Player p = new AIPlayer(1);
+        p.gainGold(10 - p.getGold());
+        p.addDistrictToCity(card("Castle", DistrictColor.YELLOW, 4));
+        p.addCardToHand(card("Castle",  DistrictColor.YELLOW, 4));
+        p.addCardToHand(card("Market",  DistrictColor.GREEN,  2));
+        p.addCardToHand(card("Market",  DistrictColor.GREEN,  2));
+
+        DistrictCard[] out = new DistrictCard[3];
+        int n = new BuildPlanner().plan(p, 3, 4, out);
+
+        assertEquals(1, n);
+        assertEquals("Market", out[0].getName());
+    }
+
+    @Test
+    public void prefersDiversityBonus() {
+        Player p = new AIPlayer(1);
+        p.gainGold(4 - p.getGold());
+        p.addDistrictToCity(card("Castle",  DistrictColor.YELLOW, 4));
+        p.addDistrictToCity(card("Temple",  DistrictColor.BLUE,   1));
+        p.addDistrictToCity(card("Tavern",  DistrictColor.GREEN,  1));
+        p.addDistrictToCity(card("Keep",    DistrictColor.PURPLE, 3));
+        p.addCardToHand(card("Watchtower",  DistrictColor.RED,    1)); // closes all colours
+        p.addCardToHand(card("Market",      DistrictColor.GREEN,  3));
+
+        DistrictCard[] out = new DistrictCard[1];
+        int n = new BuildPlanner().plan(p, 1, 4, out);
+
+        // 1 + 3 diversity points beats the 3-cost Market
+        assertEquals(1, n);
+        assertEquals("Watchtower", out[0].getName());
+    }
+}
@@ -0,0 +1,44 @@
+package citadels;
+
+import citadels.ai.BeliefTracker;
+import citadels.cli.QuietHandler;
+import citadels.model.card.DistrictCard;
+import citadels.model.game.CitadelsGame;
+import citadels.model.player.AIPlayer;
+import citadels.model.player.Player;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** What character abilities do to the cards and the players. */
+public class CharacterAbilityTest {
+
+    @Test
+    public void aDestroyedDistrictGoesUnderTheDeck() {
+        CitadelsGame g = new CitadelsGame(4, QuietHandler.INSTANCE);
+        Player warlord = g.getPlayer(0), victim = g.getPlayer(2);
+        victim.gainGold(20);
+        DistrictCard built = victim.getHand().get(0);
+        g.buildDistrict(victim, built);
+        int deck = g.getDistrictDeckSize();
+
+        warlord.gainGold(20);
+        g.destroyDistrict(warlord, victim, 0);
+
+        assertTrue(victim.getCity().isEmpty());
+        assertEquals(deck + 1, g.getDistrictDeckSize());
+        List<String> names = g.getDistrictDeckNames();
+        assertEquals(built.getName(), names.get(names.size() - 1));
+
+        // everyone saw it go, so the AI knows where it is
+        BeliefTracker b = ((AIPlayer) g.getPlayer(1)).beliefs();
+        int[][] hands = new int[4][16];
+        int[] sampled = new int[128];
+        int n = b.sample(new Random(1), hands, sampled);
+        assertEquals(g.getDistrictDeckSize(), n);
+        assertEquals(built.getId(), sampled[n - 1]);
+    }
+}
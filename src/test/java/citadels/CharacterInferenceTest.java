@@ -0,0 +1,52 @@
+package citadels;
+
+import citadels.ai.CharacterInference;
+import citadels.model.player.AIPlayer;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** Checks the selection-phase inference on small hand-worked cases. */
+public class CharacterInferenceTest {
+
+    private static int bit(int rank) { return 1 << (rank - 1); }
+
+    @Test
+    public void lastPickerSeesOneCard() {
+        // 7 players, nothing face up, seat 3 picks last and only sees the Warlord
+        CharacterInference inf = new CharacterInference();
+        inf.observePick(4, 7, 6, 0, bit(8), 8);
+
+        assertEquals(1.0, inf.probability(3, 8), 1e-9);
+        for (int seat = 0; seat < 7; seat++) {
+            if (seat == 3) continue;
+            assertEquals(0.0, inf.probability(seat, 8), 1e-9);
+            assertEquals(1.0 / 7, inf.probability(seat, 1), 1e-9); // six seats + face-down
+        }
+
+        inf.characterRevealed(1, new AIPlayer(5));               // seat 6 is the Assassin
+        assertEquals(1.0, inf.probability(5, 1), 1e-9);
+        assertEquals(1.0 / 6, inf.probability(0, 2), 1e-9);
+    }
+
+    @Test
+    public void firstPickerInFourPlayerGame() {
+        // 4 players: Bishop and Warlord face up (never the King), seat 0 picks first from 5 cards
+        int up = bit(5) | bit(8);
+        int passing = bit(1) | bit(2) | bit(3) | bit(4) | bit(6);
+        CharacterInference inf = new CharacterInference();
+        inf.observePick(0, 4, 0, up, passing, 1);
+
+        // Architect must be the face-down card
+        for (int seat = 1; seat < 4; seat++) {
+            assertEquals(0.0, inf.probability(seat, 7), 1e-9);
+            assertEquals(0.25, inf.probability(seat, 2), 1e-9);  // 3 seats + 1 unpicked
+            assertEquals(0.25, inf.probability(seat, 4), 1e-9);
+            assertEquals(0.0, inf.probability(seat, 8), 1e-9);   // face up
+        }
+
+        inf.characterRevealed(2, null);                           // nobody is the Thief
+        assertEquals(1.0 / 3, inf.probability(1, 3), 1e-9);
+        assertEquals(0.0, inf.probability(2, 2), 1e-9);
+    }
+}
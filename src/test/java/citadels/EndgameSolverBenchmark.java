@@ -0,0 +1,76 @@
+package citadels;
+
+import citadels.ai.EndgameSolver;
+import citadels.ai.TranspositionTable;
+import citadels.cli.QuietHandler;
+import citadels.model.game.*;
+import citadels.model.player.Player;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Nodes per second and time per solve of {@link EndgameSolver} on late-game
+ * positions (a city one district short), at picks and at turns, with the
+ * state fully known. Each solve starts from an empty table.
+ *
+ * <p>Run with {@code java -cp <test+main classpath> citadels.EndgameSolverBenchmark [players] [positions] [nodes]}.</p>
+ */
+public final class EndgameSolverBenchmark {
+
+    public static void main(String[] args) {
+        int players = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        int positions = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        long budget = args.length > 2 ? Long.parseLong(args[2]) : 20_000;
+
+        for (boolean pick : new boolean[] { true, false }) {
+            List<CitadelsGame> games = new ArrayList<>();
+            for (long seed = 1; games.size() < positions && seed < 50L * positions; seed++) {
+                CitadelsGame g = late(players, seed, pick);
+                if (g != null) games.add(g);
+            }
+            TranspositionTable tt = new TranspositionTable(1 << 18);
+            EndgameSolver solver = new EndgameSolver(tt);
+            for (int warm = 0; warm < 2; warm++) {
+                long nodes = 0, total = 0, worst = 0;
+                int complete = 0;
+                for (CitadelsGame g : games) {
+                    tt.clear();
+                    long t0 = System.nanoTime();
+                    EndgameSolver.Result r = solver.solve(g, budget);
+                    long t = System.nanoTime() - t0;
+                    total += t;
+                    worst = Math.max(worst, t);
+                    if (r == null) continue;
+                    nodes += r.nodes();
+                    if (r.isComplete()) complete++;
+                }
+                if (warm == 0) continue;
+                System.out.printf("%s, %d players: %.2f M nodes/s, %.1f ms mean, %.1f ms worst, %d/%d to round end%n",
+                        pick ? "picks" : "turns", players, nodes * 1e3 / total, total / 1e6 / games.size(),
+                        worst / 1e6, complete, games.size());
+            }
+        }
+    }
+
+    /* plays a game with seat 0 passive until it is to move with a city one district short */
+    private static CitadelsGame late(int players, long seed, boolean pick) {
+        CitadelsGame g = new CitadelsGame(players, 1, QuietHandler.INSTANCE, seed);
+        Step s = g.step(null);
+        for (int guard = 0; guard < 100_000 && s.kind() != Step.Kind.GAME_OVER; guard++) {
+            int to = g.getSeatToMove();
+            boolean picking = g.getPhase() == GamePhase.SELECTION;
+            int longest = 0;
+            for (Player p : g.getPlayers()) longest = Math.max(longest, p.getCity().size());
+            if (to == 0 && picking == pick && longest >= ScoreCalculator.CITY_SIZE - 1) return g;
+            String in = null;
+            if (s.isAwaitingInput()) {
+                if (to == 0 && picking) in = CitadelsGame.rankName(Integer.numberOfTrailingZeros(g.getAvailableRanks()) + 1);
+                else if (to == 0) in = (g.getTurnFlags() & MoveGenerator.RESOURCES_TAKEN) == 0 ? "gold" : "end";
+                else in = "t";
+            }
+            s = g.step(in);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,133 @@
+package citadels;
+
+import citadels.ai.BeliefTracker;
+import citadels.ai.Determiniser;
+import citadels.ai.EndgameSolver;
+import citadels.ai.TranspositionTable;
+import citadels.cli.QuietHandler;
+import citadels.model.card.DistrictCard;
+import citadels.model.card.DistrictColor;
+import citadels.model.game.Action;
+import citadels.model.game.CitadelsGame;
+import citadels.model.game.GamePhase;
+import citadels.model.game.Move;
+import citadels.model.game.Step;
+import citadels.model.player.Player;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static citadels.TestGames.SCRIPT;
+import static citadels.TestGames.describe;
+import static org.junit.jupiter.api.Assertions.*;
+
+/** The endgame solver finds the moves that decide the game, and leaves the game alone. */
+public class EndgameSolverTest {
+
+    /* a 4-player game at the first-round turn of the human in seat 0, holding the Assassin */
+    private static CitadelsGame assassinTurn() {
+        for (long seed = 1; seed < 100; seed++) {
+            CitadelsGame g = new CitadelsGame(4, 1, QuietHandler.INSTANCE, seed);
+            Step s = g.step(null);
+            int fed = 0;
+            for (int guard = 0; guard < 10_000; guard++) {
+                if (g.getPhase() == GamePhase.TURN && g.getSeatToMove() == 0) break;
+                s = g.step(s.isAwaitingInput() ? SCRIPT[fed++ % SCRIPT.length] : null);
+            }
+            if (g.getSeatToMove() == 0 && g.getPlayer(0).getCharacter().getRank() == 1) return g;
+        }
+        throw new AssertionError("no seed gives seat 0 the Assassin");
+    }
+
+    /* seven districts of one colour, gold to build an eighth, and optionally a cheap eighth in hand */
+    private static void oneShort(Player p, boolean eighth) {
+        for (int i = 1; i <= 7; i++) p.addDistrictToCity(new DistrictCard("Tower " + i, DistrictColor.values()[0], 6, null));
+        if (eighth) p.addCardToHand(new DistrictCard("Tower 8", DistrictColor.values()[0], 1, null));
+        p.gainGold(10);
+    }
+
+    @Test
+    public void completingTheCityIsProvenAWin() {
+        CitadelsGame g = assassinTurn();
+        Player me = g.getPlayer(0);
+        oneShort(me, true);
+        List<String> before = describe(g);
+
+        EndgameSolver solver = new EndgameSolver(new TranspositionTable(1 << 16));
+        EndgameSolver.Result first = solver.solve(g, 1_000_000);
+        assertNotNull(first);
+        assertTrue(first.isProven(), first.toString());
+        assertTrue(first.value() > 0);
+        assertEquals(before, describe(g));
+
+        EndgameSolver.Result again = solver.solve(g, 1_000_000);   // the table remembers
+        assertArrayEquals(first.moves(), again.moves());
+        assertEquals(first.value(), again.value());
+        assertTrue(again.nodes() < first.nodes());
+
+        for (int guard = 0; guard < 10 && me.getCity().size() < 8; guard++) {
+            if (g.isAwaitingDrawChoice()) { g.step("1"); continue; }
+            for (int m : solver.solve(g, 1_000_000).moves())
+                if (Move.type(m) != Move.END) assertTrue(g.apply(Action.of(0, m)), Move.toString(m));
+        }
+        assertEquals(8, me.getCity().size());
+    }
+
+    @Test
+    public void theAssassinStopsAPlayerAboutToFinish() {
+        CitadelsGame g = assassinTurn();
+        Player leader = g.getPlayer(1);
+        oneShort(leader, true);
+
+        EndgameSolver.Result r = new EndgameSolver(new TranspositionTable(1 << 16)).solve(g, 1_000_000);
+        assertNotNull(r);
+        assertTrue(r.isComplete(), r.toString());
+        assertTrue(r.value() < 0);
+        assertEquals(Move.of(Move.KILL, leader.getCharacter().getRank()), r.moves()[0], r.toString());
+    }
+
+    @Test
+    public void aPassedDeadlineStopsTheSearch() {
+        CitadelsGame g = new CitadelsGame(7, 1, QuietHandler.INSTANCE, 5); // a 7-player pick: far more than one look at the clock
+        Step s = g.step(null);
+        for (int guard = 0; guard < 100 && !(g.getPhase() == GamePhase.SELECTION && g.getSeatToMove() == 0); guard++)
+            s = g.step(s.isAwaitingInput() ? "t" : null);
+        oneShort(g.getPlayer(3), true);
+
+        EndgameSolver.Result r = new EndgameSolver(new TranspositionTable(1 << 16))
+                .solve(g, null, 1_000_000, System.nanoTime() - 1);
+        if (r != null) {                                  // an iteration may finish before the first look at the clock
+            assertTrue(r.isTimedOut(), r.toString());
+            assertFalse(r.isComplete());
+            assertTrue(r.moves().length > 0);
+        }
+    }
+
+    @Test
+    public void picksInASampledWorld() {
+        CitadelsGame g = new CitadelsGame(4, 1, QuietHandler.INSTANCE, 5);
+        Step s = g.step(null);
+        for (int guard = 0; guard < 100 && !(g.getPhase() == GamePhase.SELECTION && g.getSeatToMove() == 0); guard++)
+            s = g.step(s.isAwaitingInput() ? "t" : null);
+        assertEquals(0, g.getSeatToMove());
+        oneShort(g.getPlayer(2), false);          // its hand is real cards, which the tracker can place
+        List<String> before = describe(g);
+
+        BeliefTracker beliefs = new BeliefTracker(0, 4, 0);
+        beliefs.stateRestored(g);
+        Determiniser.World w = Determiniser.sample(g, 0, new Random(1), beliefs);
+        assertEquals(g.getDistrictDeckSize(), w.deckSize());
+        assertEquals(g.getPlayer(2).getHand().size(), w.hand(2).length);
+
+        EndgameSolver.Result r = new EndgameSolver(new TranspositionTable(1 << 16)).solve(g, w, 5_000_000, Long.MAX_VALUE);
+        assertNotNull(r);
+        assertTrue(r.isComplete(), r.toString());
+        int[] moves = r.moves();
+        assertEquals(1, moves.length, Arrays.toString(moves));
+        assertEquals(Move.PICK, Move.type(moves[0]));
+        assertTrue((g.getAvailableRanks() & 1 << (Move.a(moves[0]) - 1)) != 0);
+        assertEquals(before, describe(g));
+    }
+}
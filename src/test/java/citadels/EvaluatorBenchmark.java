@@ -0,0 +1,81 @@
+package citadels;
+
+import citadels.ai.Evaluator;
+import citadels.model.card.DistrictCard;
+import citadels.model.player.AIPlayer;
+import citadels.model.player.Player;
+import citadels.util.TSVLoader;
+
+import java.util.*;
+
+/**
+ * Micro-benchmark for the resource decision: the old hand-size rule against
+ * the one-ply {@link Evaluator} lookahead, with incremental features and with
+ * features recomputed from the lists.
+ *
+ * <p>Run with {@code java -cp <test+main classpath> citadels.EvaluatorBenchmark [rounds]}.</p>
+ */
+public final class EvaluatorBenchmark {
+
+    private static final int SCENARIOS = 4096;
+
+    public static void main(String[] args) {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        Player[] ps = scenarios(new Random(42));
+        Evaluator eval = Evaluator.shared();
+
+        long sink = 0;
+        for (int warm = 0; warm < 2; warm++) {
+            long t0 = System.nanoTime();
+            for (int r = 0; r < rounds; r++) for (Player p : ps) sink += heuristic(p) ? 1 : 0;
+            long t1 = System.nanoTime();
+            for (int r = 0; r < rounds; r++) for (Player p : ps) sink += onePly(eval, p) ? 1 : 0;
+            long t2 = System.nanoTime();
+            for (int r = 0; r < rounds; r++) for (Player p : ps) sink += scratch(eval, p) ? 1 : 0;
+            long t3 = System.nanoTime();
+            if (warm == 0) continue;
+
+            double ops = (double) rounds * SCENARIOS;
+            System.out.printf("old rule          : %6.1f ns/decision%n", (t1 - t0) / ops);
+            System.out.printf("one-ply, increm.  : %6.1f ns/decision%n", (t2 - t1) / ops);
+            System.out.printf("one-ply, rescan   : %6.1f ns/decision%n", (t3 - t2) / ops);
+        }
+        int agree = 0;
+        for (Player p : ps) if (heuristic(p) == onePly(eval, p)) agree++;
+        System.out.printf("decisions agreeing with the old rule: %.1f%%%n", 100.0 * agree / SCENARIOS);
+        if (sink == 42) System.out.println();
+    }
+
+    /** Pre-evaluator rule: true = draw cards. */
+    private static boolean heuristic(Player p) {
+        boolean canAfford = p.getHand().stream().anyMatch(c -> c.getCost() <= p.getGold());
+        if (!canAfford && p.getGold() < 2) return false;
+        return p.getHand().size() <= 2;
+    }
+
+    private static boolean onePly(Evaluator e, Player p) {
+        return e.afterDraw(p, 1, 3.5) > e.afterGold(p, 2);
+    }
+
+    private static boolean scratch(Evaluator e, Player p) {
+        // what a non-incremental evaluator pays: rescan for each candidate
+        double gold = e.evaluateFromScratch(p) + 2 * e.weight(Evaluator.Feature.GOLD);
+        double draw = e.evaluateFromScratch(p) + e.afterDraw(p, 1, 3.5) - e.evaluate(p);
+        return draw > gold;
+    }
+
+    private static Player[] scenarios(Random rng) {
+        List<DistrictCard> deck = TSVLoader.loadDistrictDeck();
+        Player[] out = new Player[SCENARIOS];
+        for (int i = 0; i < SCENARIOS; i++) {
+            Collections.shuffle(deck, rng);
+            Player p = new AIPlayer(1);
+            p.gainGold(rng.nextInt(10));
+            int city = rng.nextInt(8), hand = rng.nextInt(6), k = 0;
+            for (; k < city; k++) p.addDistrictToCity(deck.get(k));
+            for (int j = 0; j < hand; j++) p.addCardToHand(deck.get(k + j));
+            out[i] = p;
+        }
+        return out;
+    }
+}
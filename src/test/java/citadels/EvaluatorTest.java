@@ -0,0 +1,40 @@
+package citadels;
+
+import citadels.ai.Evaluator;
+import citadels.cli.CommandHandler;
+import citadels.model.game.CitadelsGame;
+import citadels.model.player.Player;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** The incremental evaluation must always match a full rescan. */
+public class EvaluatorTest {
+
+    @Test
+    public void incrementalMatchesFromScratch() {
+        CommandHandler cli = new CommandHandler() {
+            public void println(String msg) {}
+            public String prompt(String m) { return ""; }
+        };
+        CitadelsGame g = new CitadelsGame(5, cli);
+        Evaluator eval = Evaluator.shared();
+        Random rng = new Random(7);
+
+        for (int step = 0; step < 2000; step++) {
+            Player p = g.getPlayer(rng.nextInt(5));
+            Player q = g.getPlayer(rng.nextInt(5));
+            switch (rng.nextInt(5)) {
+                case 0: g.drawCards(p, 1); break;
+                case 1: p.gainGold(rng.nextInt(4)); break;
+                case 2: if (!p.getHand().isEmpty()) g.buildDistrict(p, p.getHand().get(0)); break;
+                case 3: if (!p.getCity().isEmpty()) g.destroyDistrict(q, p, 0); break;
+                default: if (p != q) g.swapHands(p, q); break;
+            }
+            for (Player x : g.getPlayers())
+                assertEquals(eval.evaluateFromScratch(x), eval.evaluate(x), 1e-9, "step " + step);
+        }
+    }
+}
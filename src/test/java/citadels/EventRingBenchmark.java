@@ -0,0 +1,48 @@
+package citadels;
+
+import citadels.event.EventRing;
+import citadels.event.EventType;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Cost of {@link EventRing#publish} on the game thread with 0, 1 and 10
+ * consumers attached. Events go out in bursts that fit the ring, as a game
+ * publishes a few dozen per turn; only the bursts are timed, not the
+ * consumers catching up in between.
+ *
+ * <p>Run with {@code java -cp <test+main classpath> citadels.EventRingBenchmark [events]}.</p>
+ */
+public final class EventRingBenchmark {
+
+    private static final int BURST = 256;
+
+    public static void main(String[] args) {
+        int events = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        for (int warm = 0; warm < 2; warm++)
+            for (int consumers : new int[] { 0, 1, 10 }) run(consumers, events);
+    }
+
+    private static void run(int consumers, int events) {
+        EventRing ring = new EventRing(1024);
+        AtomicLongArray seen = new AtomicLongArray(consumers);   // events handled, per consumer
+        for (int c = 0; c < consumers; c++) {
+            final int id = c;
+            ring.attach((e, seq, end) -> seen.lazySet(id, seq + 1), "bench-consumer-" + c);
+        }
+        long ns = 0;
+        for (int i = 0; i < events; ) {
+            long t0 = System.nanoTime();
+            for (int end = i + BURST; i < end; i++) ring.publish(EventType.GOLD_COLLECTED, 1, i & 7, i, -1);
+            ns += System.nanoTime() - t0;
+            while (!caughtUp(seen, i)) Thread.yield();
+        }
+        ring.close(10_000);
+        System.out.printf("%2d consumers: %.1f ns/event%n", consumers, (double) ns / events);
+    }
+
+    private static boolean caughtUp(AtomicLongArray seen, long n) {
+        for (int c = 0; c < seen.length(); c++) if (seen.get(c) != n) return false;
+        return true;
+    }
+}
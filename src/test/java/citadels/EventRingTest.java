@@ -0,0 +1,72 @@
+package citadels;
+
+import citadels.cli.QuietHandler;
+import citadels.event.EventRing;
+import citadels.event.EventType;
+import citadels.model.game.CitadelsGame;
+import citadels.model.game.Step;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** Events reach every consumer thread, in order, even when the ring wraps. */
+public class EventRingTest {
+
+    @Test
+    public void everyConsumerSeesEveryEventInOrder() {
+        EventRing ring = new EventRing(8);              // tiny: the producer laps often
+        int n = 20_000;
+        int[][] seen = new int[2][1];
+        boolean[] ordered = { true, true };
+        for (int c = 0; c < 2; c++) {
+            final int id = c;
+            ring.attach((e, seq, end) -> {
+                if (e.a() != seen[id][0]) ordered[id] = false;
+                seen[id][0]++;
+            }, "test-consumer-" + c);
+        }
+        for (int i = 0; i < n; i++) ring.publish(EventType.GOLD_COLLECTED, 1, 0, i, 0);
+        assertTrue(ring.close(5_000));
+        for (int c = 0; c < 2; c++) {
+            assertEquals(n, seen[c][0]);
+            assertTrue(ordered[c]);
+        }
+    }
+
+    @Test
+    public void gamePublishesItsProgress() {
+        CitadelsGame g = new CitadelsGame(5, 0, QuietHandler.INSTANCE);
+        AtomicIntegerArray count = new AtomicIntegerArray(EventType.COUNT);
+        g.events().attach((e, seq, end) -> count.incrementAndGet(e.type()), "test-events");
+
+        Step s = g.step(null);
+        while (s.kind() != Step.Kind.GAME_OVER) s = g.step(null);
+        assertTrue(g.events().close(5_000));
+
+        int rounds = g.getRound() - 1;
+        assertEquals(rounds, count.get(EventType.ROUND_START));
+        assertEquals(5 * rounds, count.get(EventType.CHARACTER_CHOSEN));
+        assertEquals(1, count.get(EventType.GAME_OVER));
+        assertTrue(count.get(EventType.DISTRICT_BUILT) >= 8);
+    }
+
+    @Test
+    public void theConsumersStopWhenTheGameEnds() throws InterruptedException {
+        for (boolean finish : new boolean[] { true, false }) {
+            CitadelsGame g = new CitadelsGame(4, 0, QuietHandler.INSTANCE, 2);
+            AtomicReference<Thread> consumer = new AtomicReference<>();
+            g.events().attach((e, seq, end) -> consumer.set(Thread.currentThread()), "test-events");
+
+            Step s = g.step(null);
+            while (finish ? s.kind() != Step.Kind.GAME_OVER : g.getRound() < 2) s = g.step(null);
+            if (!finish) g.abandon();
+
+            Thread t = consumer.get();
+            t.join(5_000);
+            assertFalse(t.isAlive(), finish ? "over" : "abandoned");
+        }
+    }
+}
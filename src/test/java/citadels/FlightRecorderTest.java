@@ -0,0 +1,52 @@
+package citadels;
+
+import citadels.cli.QuietHandler;
+import citadels.model.game.CitadelsGame;
+import citadels.model.game.Step;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** A Flight Recorder recording shows every round, turn and AI decision of a game. */
+public class FlightRecorderTest {
+
+    @Test
+    public void headlessGameIsTraced() throws Exception {
+        Path file = Files.createTempFile("citadels", ".jfr");
+        CitadelsGame g;
+        try (Recording r = new Recording()) {
+            for (String name : new String[] { "Round", "Turn", "AiDecision", "District" })
+                r.enable("citadels." + name).withoutThreshold();
+            r.start();
+            g = new CitadelsGame(4, 0, QuietHandler.INSTANCE);
+            Step s = g.step(null);
+            while (s.kind() != Step.Kind.GAME_OVER) s = g.step(null);
+            r.stop();
+            r.dump(file);
+        }
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        Files.delete(file);
+
+        long rounds = 0, turns = 0, decisions = 0;
+        for (RecordedEvent e : events) {
+            if (e.getLong("gameId") != g.getGameId()) continue;
+            switch (e.getEventType().getName()) {
+                case "citadels.Round": rounds++; break;
+                case "citadels.Turn": turns++; break;
+                case "citadels.AiDecision": decisions++; break;
+            }
+        }
+        assertEquals(g.getRound() - 1, rounds);
+        assertTrue(turns >= rounds, "at least one turn per round");
+        assertTrue(decisions >= turns, "every AI turn is a decision");
+        assertTrue(events.stream().anyMatch(e -> e.getEventType().getName().equals("citadels.Round")
+                && e.getBoolean("gameOver")));
+    }
+}
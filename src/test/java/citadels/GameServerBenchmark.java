@@ -0,0 +1,81 @@
+package citadels;
+
+import citadels.server.GameServer;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Memory per waiting game and command round trip on a loaded
+ * {@link GameServer}: opens {@code games} one-person games that all sit in
+ * the selection pause, then times {@code all} on one of them.
+ *
+ * <p>Run with {@code java -cp <test+main classpath> citadels.GameServerBenchmark [games] [samples]}.
+ * Each game holds two sockets in this process, so raise {@code ulimit -n} for big runs.</p>
+ */
+public final class GameServerBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int games   = args.length > 0 ? Integer.parseInt(args[0]) : 2_000;
+        int samples = args.length > 1 ? Integer.parseInt(args[1]) : 2_000;
+
+        Runtime rt = Runtime.getRuntime();
+        try (GameServer server = new GameServer(new InetSocketAddress("127.0.0.1", 0), 4, 1,
+                rt.availableProcessors())) {
+            server.start();
+            long before = usedHeap(rt);
+
+            List<Socket> sockets = new ArrayList<>(games);
+            BufferedReader probeIn = null;
+            Writer probeOut = null;
+            for (int i = 0; i < games; i++) {
+                Socket s = new Socket("127.0.0.1", server.getPort());
+                s.setSoTimeout(10_000);
+                sockets.add(s);
+                BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+                readUntil(in, "SELECTION PHASE");
+                if (i == 0) {
+                    probeIn = in;
+                    probeOut = new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8);
+                }
+            }
+            long after = usedHeap(rt);
+            System.out.printf("%d waiting games, %d connections: %.1f KB heap per game%n",
+                    games, server.getConnectionCount(), (after - before) / 1024.0 / games);
+
+            long[] ns = new long[samples];
+            for (int i = 0; i < samples; i++) {
+                long t0 = System.nanoTime();
+                probeOut.write("all\n");
+                probeOut.flush();
+                readUntil(probeIn, "> ");
+                ns[i] = System.nanoTime() - t0;
+            }
+            java.util.Arrays.sort(ns);
+            System.out.printf("'all' round trip: p50 %.1f us, p99 %.1f us%n",
+                    ns[samples / 2] / 1e3, ns[samples * 99 / 100] / 1e3);
+
+            for (Socket s : sockets) s.close();
+        }
+    }
+
+    private static void readUntil(BufferedReader in, String text) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int ch;
+        while ((ch = in.read()) >= 0) {
+            if (ch == '\n') { line.setLength(0); continue; }
+            line.append((char) ch);
+            if (line.indexOf(text) >= 0) return;
+        }
+        throw new EOFException("closed before \"" + text + "\"");
+    }
+
+    private static long usedHeap(Runtime rt) {
+        for (int i = 0; i < 3; i++) System.gc();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+}
@@ -0,0 +1,107 @@
+package citadels;
+
+import citadels.server.GameServer;
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** Two people share a game through {@link GameServer} over loopback. */
+public class GameServerTest {
+
+    @Test
+    public void twoClientsShareOneGame() throws IOException {
+        try (GameServer server = new GameServer(new InetSocketAddress("127.0.0.1", 0), 4, 2, 2)) {
+            server.start();
+            try (Client a = new Client(server.getPort()); Client b = new Client(server.getPort())) {
+                a.readUntil("SELECTION PHASE");
+                b.readUntil("SELECTION PHASE");
+                assertEquals(2, server.getConnectionCount());
+
+                a.readUntil("was removed.");              // no pause: nobody presses t for the others
+                b.readUntil("was removed.");              // public output reaches both seats
+            }
+        }
+    }
+
+    @Test
+    public void aTypoDoesNotEndTheTable() throws IOException {
+        try (GameServer server = new GameServer(new InetSocketAddress("127.0.0.1", 0), 4, 1, 1)) {
+            server.start();
+            try (Client a = new Client(server.getPort())) {
+                a.socket.setSoTimeout(300);
+                boolean picking = false;
+                while (true) {
+                    String line;
+                    try {
+                        line = a.in.readLine();
+                    } catch (SocketTimeoutException e) {
+                        a.send("t");                      // waiting at a pause, most likely
+                        continue;
+                    }
+                    assertNotNull(line, "connection closed before the turn");
+                    assertFalse(line.contains("The game stopped"), line);
+                    if (line.contains("Choose your character")) picking = true;
+                    else if (picking && line.startsWith(" - ")) {
+                        a.send(line.substring(3).trim());
+                        picking = false;
+                    } else if (line.startsWith("Your turn.")) break;
+                }
+                a.socket.setSoTimeout(5000);
+                a.send("gold");                           // collects
+                a.send("gold x");                         // then asks after a player, badly
+                a.send("gold 1");
+                a.readUntil("Invalid player number.");
+                a.readUntil("Player 1 has");              // the table is still there
+            }
+        }
+    }
+
+    @Test
+    public void overlongLineClosesConnection() throws IOException {
+        try (GameServer server = new GameServer(new InetSocketAddress("127.0.0.1", 0), 4, 2, 1)) {
+            server.start();
+            try (Client a = new Client(server.getPort())) {
+                a.readUntil("Welcome");
+                char[] big = new char[5000];
+                java.util.Arrays.fill(big, 'x');
+                a.send(new String(big));
+                a.readUntil("Line too long.");
+                assertNull(a.in.readLine());              // server hung up
+            }
+        }
+    }
+
+    private static final class Client implements Closeable {
+        final Socket socket;
+        final BufferedReader in;
+        final Writer out;
+
+        Client(int port) throws IOException {
+            socket = new Socket("127.0.0.1", port);
+            socket.setSoTimeout(5000);
+            in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+        }
+
+        void send(String line) throws IOException {
+            out.write(line + "\n");
+            out.flush();
+        }
+
+        void readUntil(String text) throws IOException {
+            String line;
+            while ((line = in.readLine()) != null)
+                if (line.contains(text)) return;
+            fail("connection closed before \"" + text + "\"");
+        }
+
+        @Override
+        public void close() throws IOException { socket.close(); }
+    }
+}
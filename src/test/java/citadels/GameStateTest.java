@@ -0,0 +1,45 @@
+package citadels;
+
+import citadels.cli.QuietHandler;
+import citadels.model.card.DistrictCard;
+import citadels.model.game.CitadelsGame;
+import citadels.model.game.GameState;
+import citadels.model.player.Player;
+import citadels.util.CardRepoSingleton;
+import org.json.simple.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** A saved game loads back as it was. */
+public class GameStateTest {
+
+    @Test
+    public void aLoadedGameHoldsWhatWasSaved() {
+        CitadelsGame g = new CitadelsGame(5, 0, QuietHandler.INSTANCE, 7);
+        while (g.getRound() < 3) g.step(null);
+
+        JSONObject saved = GameState.serialise(g);
+        CitadelsGame loaded = GameState.deserialise(saved, QuietHandler.INSTANCE, CardRepoSingleton.INSTANCE);
+
+        assertEquals(g.getRound(), loaded.getRound());
+        assertEquals(g.getCrownedSeat(), loaded.getCrownedSeat());
+        assertEquals(g.getDistrictDeckNames(), loaded.getDistrictDeckNames());
+        for (int s = 0; s < 5; s++) {
+            Player a = g.getPlayer(s), b = loaded.getPlayer(s);
+            assertEquals(a.getGold(), b.getGold());
+            assertEquals(names(a.getHand()), names(b.getHand()), "hand of seat " + s);
+            assertEquals(names(a.getCity()), names(b.getCity()), "city of seat " + s);
+        }
+        assertEquals(saved, GameState.serialise(loaded));
+    }
+
+    private static List<String> names(List<DistrictCard> cards) {
+        List<String> n = new ArrayList<>();
+        for (DistrictCard d : cards) n.add(d.getName());
+        return n;
+    }
+}
@@ -0,0 +1,76 @@
+package citadels;
+
+import citadels.cli.CommandHandler;
+import citadels.model.game.CitadelsGame;
+import citadels.model.game.GamePhase;
+import citadels.model.game.Step;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** Drives rounds through {@link CitadelsGame#step} without ever blocking. */
+public class GameStepTest {
+
+    private static final String[] SCRIPT = {
+        "t", "Assassin", "Thief", "Magician", "King", "Bishop", "Merchant", "Architect", "Warlord",
+        "gold", "build 1", "end"
+    };
+
+    private static CitadelsGame newGame() {
+        CommandHandler cli = new CommandHandler() {
+            public void println(String msg) {}
+            public String prompt(String m) { throw new AssertionError("step() must not block on prompt"); }
+        };
+        return new CitadelsGame(5, cli);
+    }
+
+    @Test
+    public void roundRunsOnFedInput() {
+        CitadelsGame g = newGame();
+        Step s = g.step(null);
+        assertTrue(s.isAwaitingInput());
+        assertEquals(0, s.seat());                    // only the human is ever waited for
+
+        int fed = 0;
+        for (int guard = 0; guard < 10_000 && !s.isRoundOver(); guard++) {
+            s = g.step(s.isAwaitingInput() ? SCRIPT[fed++ % SCRIPT.length] : null);
+        }
+        assertTrue(s.isRoundOver());
+        assertEquals(2, g.getRound());
+        g.getPlayers().forEach(p -> assertNotNull(p.getCharacter()));
+    }
+
+    @Test
+    public void allMarksTheSeatAsking() {
+        List<String> out = new ArrayList<>();
+        CommandHandler cli = new CommandHandler() {
+            public void println(String msg) { out.add(msg); }
+            public String prompt(String m) { throw new AssertionError("step() must not block on prompt"); }
+        };
+        CitadelsGame g = new CitadelsGame(4, 2, cli, 9);
+        Step s = g.step(null);
+        int fed = 0;
+        for (int guard = 0; guard < 10_000; guard++) {
+            if (g.getPhase() == GamePhase.TURN && s.isAwaitingInput() && s.seat() == 1) break;
+            s = g.step(s.isAwaitingInput() ? SCRIPT[fed++ % SCRIPT.length] : null);
+        }
+        assertEquals(1, s.seat());
+        out.clear();
+        g.step("all");
+        assertTrue(out.stream().anyMatch(l -> l.startsWith("Player 2 (you):")), out.toString());
+        assertTrue(out.stream().noneMatch(l -> l.startsWith("Player 1 (you)")), out.toString());
+    }
+
+    @Test
+    public void waitingGameStaysPut() {
+        CitadelsGame g = newGame();
+        Step first = g.step(null);
+        Step again = g.step(null);                    // no input: nothing happens
+        assertTrue(again.isAwaitingInput());
+        assertEquals(first.seat(), again.seat());
+        assertEquals(1, g.getRound());
+    }
+}
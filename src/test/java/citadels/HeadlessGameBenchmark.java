@@ -0,0 +1,43 @@
+package citadels;
+
+import citadels.cli.CommandHandler;
+import citadels.cli.QuietHandler;
+import citadels.model.game.CitadelsGame;
+import citadels.model.game.Step;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Time and allocation per all-AI game, with narration built and thrown away
+ * versus the {@link QuietHandler}, which never builds it.
+ *
+ * <p>Run with {@code java -cp <test+main classpath> citadels.HeadlessGameBenchmark [games]}.</p>
+ */
+public final class HeadlessGameBenchmark {
+
+    public static void main(String[] args) {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 2_000;
+        CommandHandler discarding = new CommandHandler() {
+            public void println(String msg) {}
+            public String prompt(String m) { return ""; }
+        };
+        for (int warm = 0; warm < 2; warm++) {
+            run("discarding sink", discarding, games);
+            run("quiet sink     ", QuietHandler.INSTANCE, games);
+        }
+    }
+
+    private static void run(String label, CommandHandler cli, int games) {
+        com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long tid = Thread.currentThread().getId();
+        long a0 = mx.getThreadAllocatedBytes(tid), t0 = System.nanoTime();
+        for (int i = 0; i < games; i++) {
+            CitadelsGame g = new CitadelsGame(4 + i % 4, 0, cli);
+            Step s = g.step(null);
+            while (s.kind() != Step.Kind.GAME_OVER) s = g.step(null);
+        }
+        long ns = System.nanoTime() - t0, bytes = mx.getThreadAllocatedBytes(tid) - a0;
+        System.out.printf("%s: %.1f us/game, %.1f KB allocated/game%n",
+                label, ns / 1e3 / games, bytes / 1024.0 / games);
+    }
+}
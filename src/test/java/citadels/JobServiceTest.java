@@ -0,0 +1,146 @@
+package citadels;
+
+import citadels.server.JobService;
+import citadels.server.Scheduler;
+import citadels.sim.SimJob;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** Simulation jobs submitted, watched and read back over local HTTP. */
+public class JobServiceTest {
+
+    @Test
+    public void aJobPlaysEverySeedAndStreamsTheResults() throws Exception {
+        try (Scheduler s = new Scheduler(2); JobService jobs = service(s)) {
+            JSONObject job = object(call(jobs, "POST", "/jobs",
+                    "{\"from\": 100, \"to\": 106, \"players\": 5, \"strategies\": [\"ai\", \"random\"]}", 201));
+            long id = ((Number) job.get("id")).longValue();
+
+            List<String> lines = new ArrayList<>();
+            HttpURLConnection c = open(jobs, "GET", "/jobs/" + id + "/results");
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(c.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = in.readLine()) != null) lines.add(line);
+            }
+            assertEquals(6, lines.size());
+            Set<Long> seeds = new HashSet<>();
+            for (String l : lines) {
+                JSONObject r = object(l);
+                seeds.add(((Number) r.get("seed")).longValue());
+                assertEquals(5, ((JSONArray) r.get("scores")).size());
+            }
+            assertEquals(6, seeds.size());
+            assertTrue(seeds.contains(100L) && seeds.contains(105L));
+
+            JSONObject progress = object(call(jobs, "GET", "/jobs/" + id, null, 200));
+            assertEquals("done", progress.get("state"));
+            assertEquals(6L, ((Number) progress.get("games")).longValue());
+            JSONArray rows = (JSONArray) progress.get("strategies");
+            long players = 0, wins = 0;
+            for (Object r : rows) {
+                players += ((Number) ((JSONObject) r).get("players")).longValue();
+                wins += ((Number) ((JSONObject) r).get("wins")).longValue();
+            }
+            assertEquals(2, rows.size());
+            assertEquals(6 * 5, players);
+            assertEquals(6, wins);
+            assertEquals(1, array(call(jobs, "GET", "/jobs", null, 200)).size());
+        }
+    }
+
+    @Test
+    public void aCancelledJobStops() throws Exception {
+        try (Scheduler s = new Scheduler(1); JobService jobs = service(s)) {
+            call(jobs, "POST", "/jobs", "{\"to\": 1000000}", 201);
+            JSONObject progress = object(call(jobs, "DELETE", "/jobs/1", null, 200));
+            assertEquals("cancelled", progress.get("state"));
+            assertTrue(((Number) progress.get("games")).longValue() < 1_000_000);
+            call(jobs, "GET", "/jobs/1", null, 404);
+        }
+    }
+
+    @Test
+    public void aJobKeepsOnlyItsLastResultLines() throws Exception {
+        SimJob job = new SimJob(1, 0, 5, 4, Arrays.asList("ai", "random"), 0, 2);
+        BooleanSupplier lane = job.lane();
+        while (lane.getAsBoolean()) { }
+        assertEquals(SimJob.State.DONE, job.state());
+        assertEquals(5, job.stats().snapshot().games());
+
+        List<String> lines = new ArrayList<>();
+        assertEquals(5, job.results(0, lines));
+        assertEquals(2, lines.size());
+        assertEquals(3L, ((Number) object(lines.get(0)).get("seed")).longValue());
+        lines.clear();
+        assertEquals(5, job.results(4, lines));
+        assertEquals(1, lines.size());
+    }
+
+    @Test
+    public void badRequestsAreRefused() throws Exception {
+        try (Scheduler s = new Scheduler(1); JobService jobs = service(s)) {
+            call(jobs, "POST", "/jobs", "not json", 400);
+            call(jobs, "POST", "/jobs", "{\"from\": 5}", 400);
+            call(jobs, "POST", "/jobs", "{\"to\": 5, \"players\": 9}", 400);
+            call(jobs, "POST", "/jobs", "{\"to\": 5, \"strategies\": [\"cheat\"]}", 400);
+            call(jobs, "GET", "/jobs/7", null, 404);
+            call(jobs, "PUT", "/jobs", "{}", 405);
+        }
+    }
+
+    private static JobService service(Scheduler s) throws IOException {
+        JobService jobs = new JobService(new InetSocketAddress("127.0.0.1", 0), s, 2);
+        jobs.start();
+        return jobs;
+    }
+
+    private static HttpURLConnection open(JobService jobs, String method, String path) throws IOException {
+        HttpURLConnection c = (HttpURLConnection) new URL("http://127.0.0.1:" + jobs.getPort() + path).openConnection();
+        c.setRequestMethod(method);
+        c.setConnectTimeout(5000);
+        c.setReadTimeout(60_000);
+        return c;
+    }
+
+    private static String call(JobService jobs, String method, String path, String body, int status) throws IOException {
+        HttpURLConnection c = open(jobs, method, path);
+        if (body != null) {
+            c.setDoOutput(true);
+            try (OutputStream out = c.getOutputStream()) {
+                out.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        assertEquals(status, c.getResponseCode());
+        try (InputStream in = status < 400 ? c.getInputStream() : c.getErrorStream()) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8).trim();
+        }
+    }
+
+    private static JSONObject object(String json) throws Exception {
+        return (JSONObject) new JSONParser().parse(json);
+    }
+
+    private static JSONArray array(String json) throws Exception {
+        return (JSONArray) new JSONParser().parse(json);
+    }
+}
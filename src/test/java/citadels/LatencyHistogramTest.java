@@ -0,0 +1,50 @@
+package citadels;
+
+import citadels.cli.CommandLatency;
+import citadels.metrics.LatencyHistogram;
+import citadels.metrics.Metrics;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** Percentiles stay within the bucket precision, and commands find their histogram. */
+public class LatencyHistogramTest {
+
+    @Test
+    public void percentilesWithinOnePointSixPercent() {
+        LatencyHistogram h = Metrics.latency("test.accuracy");
+        h.reset();
+        Random rnd = new Random(7);
+        long[] values = new long[100_000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (long) Math.exp(rnd.nextDouble() * 20);   // 1 ns .. 0.5 s, log-uniform
+            h.record(values[i]);
+        }
+        Arrays.sort(values);
+        assertEquals(values.length, h.count());
+        assertEquals(values[values.length - 1], h.maxNanos());
+        for (double p : new double[] { 50, 99, 99.9 }) {
+            long exact = values[(int) Math.ceil(p / 100 * values.length) - 1];
+            long got = h.percentile(p);
+            assertTrue(got >= exact && got <= exact + exact / 64 + 1, p + ": " + got + " vs " + exact);
+        }
+        h.record(Long.MAX_VALUE);                                   // beyond the range: top bucket
+        assertEquals(Long.MAX_VALUE, h.percentile(100));
+    }
+
+    @Test
+    public void commandLinesMapToKeywords() {
+        assertSame(Metrics.latency("cmd.hand"), CommandLatency.of("hand"));
+        assertSame(Metrics.latency("cmd.build"), CommandLatency.of("  BUILD 2"));
+        assertSame(Metrics.latency("cmd.city"), CommandLatency.of("list 3"));
+        assertSame(Metrics.latency("cmd.t"), CommandLatency.of("t"));
+        assertSame(CommandLatency.OTHER, CommandLatency.of("tt"));
+        assertSame(CommandLatency.OTHER, CommandLatency.of(""));
+
+        CommandLatency.of("all").record(2_000_000);
+        assertTrue(Metrics.latencyReport().stream().anyMatch(l -> l.startsWith("cmd.all ")));
+    }
+}
@@ -0,0 +1,104 @@
+package citadels;
+
+import citadels.cli.CommandHandler;
+import citadels.cli.QuietHandler;
+import citadels.metrics.EngineStats;
+import citadels.metrics.Metrics;
+import citadels.model.game.CitadelsGame;
+import citadels.model.game.Step;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import javax.management.ObjectName;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** The engine records its progress, and JMX and {@code stats} report it. */
+public class MetricsTest {
+
+    @Test
+    public void headlessGameIsCounted() {
+        long games = Metrics.GAMES_COMPLETED.get(), rounds = Metrics.ROUNDS.get();
+        long decisions = Metrics.DECISIONS.get(), aiTurns = Metrics.AI_TURN.count();
+
+        CitadelsGame g = new CitadelsGame(4, 0, QuietHandler.INSTANCE);
+        Step s = g.step(null);
+        while (s.kind() != Step.Kind.GAME_OVER) s = g.step(null);
+
+        assertEquals(games + 1, Metrics.GAMES_COMPLETED.get());
+        assertEquals(rounds + g.getRound() - 1, Metrics.ROUNDS.get());
+        assertTrue(Metrics.DECISIONS.get() > decisions);
+        assertTrue(Metrics.AI_TURN.count() > aiTurns);
+    }
+
+    @Test
+    public void playoutsAreNotCounted() {
+        CitadelsGame g = new CitadelsGame(4, 0, QuietHandler.INSTANCE, 3);
+        g.setThinkMillis(0);
+        Step s = g.step(null);
+        while (g.getRound() < 2) s = g.step(null);
+
+        long started = Metrics.GAMES_STARTED.get(), games = Metrics.GAMES_COMPLETED.get();
+        long abandoned = Metrics.GAMES_ABANDONED.get(), rounds = Metrics.ROUNDS.get();
+        long decisions = Metrics.DECISIONS.get(), aiTurns = Metrics.AI_TURN.count();
+        long turnPhases = Metrics.TURN_PHASE.count(), completed = Metrics.COMPLETED_ROUNDS.get();
+
+        CitadelsGame fork = g.fork(QuietHandler.INSTANCE, 1);
+        assertTrue(fork.isPlayout());
+        assertEquals(g.getGameId(), fork.getGameId());
+        s = fork.step(null);
+        while (s.kind() != Step.Kind.GAME_OVER) s = fork.step(null);
+        g.fork(QuietHandler.INSTANCE, 2).abandon();
+
+        assertEquals(started, Metrics.GAMES_STARTED.get());
+        assertEquals(games, Metrics.GAMES_COMPLETED.get());
+        assertEquals(abandoned, Metrics.GAMES_ABANDONED.get());
+        assertEquals(rounds, Metrics.ROUNDS.get());
+        assertEquals(completed, Metrics.COMPLETED_ROUNDS.get());
+        assertEquals(decisions, Metrics.DECISIONS.get());
+        assertEquals(aiTurns, Metrics.AI_TURN.count());
+        assertEquals(turnPhases, Metrics.TURN_PHASE.count());
+        assertFalse(g.isPlayout());
+    }
+
+    @Test
+    public void aiSearchFollowsTheThinkBudget() {
+        long searches = Metrics.AI_SEARCHES.get(), hits = Metrics.AI_DEADLINE_HITS.get();
+        long fallbacks = Metrics.AI_FALLBACKS.get(), decisions = Metrics.AI_DECISION.count();
+
+        CitadelsGame quick = new CitadelsGame(4, 0, QuietHandler.INSTANCE, 8);
+        quick.setThinkMillis(0);                          // heuristics only
+        Step s = quick.step(null);
+        while (s.kind() != Step.Kind.GAME_OVER) s = quick.step(null);
+        assertEquals(searches, Metrics.AI_SEARCHES.get());
+        assertTrue(Metrics.AI_DECISION.count() > decisions);
+
+        CitadelsGame slow = new CitadelsGame(4, 0, QuietHandler.INSTANCE, 8);
+        slow.setThinkMillis(60_000);                      // the node budget ends every search first
+        s = slow.step(null);
+        while (s.kind() != Step.Kind.GAME_OVER) s = slow.step(null);
+        assertTrue(Metrics.AI_SEARCHES.get() > searches);
+        assertEquals(hits, Metrics.AI_DEADLINE_HITS.get());
+        assertTrue(Metrics.AI_FALLBACKS.get() - fallbacks <= Metrics.AI_SEARCHES.get() - searches);
+    }
+
+    @Test
+    public void exposedThroughJmxAndStats() throws Exception {
+        Metrics.registerMBean();
+        Metrics.registerMBean();                          // second call is harmless
+        Object started = ManagementFactory.getPlatformMBeanServer()
+                .getAttribute(new ObjectName(EngineStats.OBJECT_NAME), "GamesStarted");
+        assertEquals(Metrics.GAMES_STARTED.get(), ((Long) started).longValue());
+
+        List<String> out = new ArrayList<>();
+        CommandHandler cli = new CommandHandler() {
+            public void println(String msg) { out.add(msg); }
+            public String prompt(String m) { return ""; }
+        };
+        cli.printStats();
+        assertTrue(out.get(0).contains("rounds/s"));
+        assertTrue(out.stream().anyMatch(l -> l.startsWith("games.active = ")));
+    }
+}
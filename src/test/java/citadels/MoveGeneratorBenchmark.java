@@ -0,0 +1,49 @@
+package citadels;
+
+import citadels.cli.CommandHandler;
+import citadels.model.card.CharacterCard;
+import citadels.model.character.*;
+import citadels.model.game.*;
+import citadels.model.player.Player;
+
+/**
+ * Throughput of {@link MoveGenerator} over the action step of every
+ * character with an active ability, in a freshly dealt 7-player game.
+ *
+ * <p>Run with {@code java -cp <test+main classpath> citadels.MoveGeneratorBenchmark [calls]}.</p>
+ */
+public final class MoveGeneratorBenchmark {
+
+    public static void main(String[] args) {
+        int calls = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+        CommandHandler quiet = new CommandHandler() {
+            public void println(String msg) {}
+            public String prompt(String m) { return ""; }
+        };
+        CitadelsGame g = new CitadelsGame(7, quiet);
+        CharacterCard[] chars = { new Assassin(), new Thief(), new Magician(), new King(), new Warlord() };
+        Player[] ps = new Player[chars.length];
+        for (int i = 0; i < chars.length; i++) {
+            ps[i] = g.getPlayer(i);
+            ps[i].setCharacter(chars[i]);
+            ps[i].gainGold(i);
+        }
+
+        int[] buf = new int[256];
+        long sink = 0;
+        for (int warm = 0; warm < 2; warm++) {
+            long moves = 0, t0 = System.nanoTime();
+            for (int c = 0; c < calls; c++) {
+                int n = MoveGenerator.generate(g, ps[c % ps.length], GamePhase.TURN,
+                        MoveGenerator.RESOURCES_TAKEN, buf);
+                moves += n;
+                sink += buf[n - 1];
+            }
+            long t1 = System.nanoTime();
+            if (warm == 0) continue;
+            System.out.printf("%.1f ns/call, %.1f M calls/s, %.1f moves/call%n",
+                    (double) (t1 - t0) / calls, calls * 1e3 / (t1 - t0), (double) moves / calls);
+        }
+        if (sink == 42) System.out.println();
+    }
+}
@@ -0,0 +1,108 @@
+package citadels;
+
+import citadels.cli.CommandHandler;
+import citadels.model.card.DistrictCard;
+import citadels.model.card.DistrictColor;
+import citadels.model.character.*;
+import citadels.model.game.*;
+import citadels.model.player.Player;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** Checks that the move generator lists exactly what the rules allow. */
+public class MoveGeneratorTest {
+
+    private static CitadelsGame newGame() {
+        CommandHandler cli = new CommandHandler() {
+            public void println(String msg) {}
+            public String prompt(String m) { return ""; }
+        };
+        return new CitadelsGame(4, cli);
+    }
+
+    private static boolean contains(int[] buf, int n, int move) {
+        for (int i = 0; i < n; i++) if (buf[i] == move) return true;
+        return false;
+    }
+
+    @Test
+    public void resourcesComeFirst() {
+        CitadelsGame g = newGame();
+        Player p = g.getPlayer(0);
+        p.setCharacter(new King());
+        int[] buf = new int[64];
+
+        int n = MoveGenerator.generate(g, p, GamePhase.TURN, 0, buf);
+        assertEquals(2, n);
+        assertEquals(Move.of(Move.GOLD, 0), buf[0]);
+        assertEquals(Move.of(Move.CARDS, 0), buf[1]);
+
+        n = MoveGenerator.generate(g, p, GamePhase.TURN, MoveGenerator.RESOURCES_TAKEN, buf);
+        assertEquals(Move.of(Move.END, 0), buf[n - 1]);
+        for (int i = 0; i < n - 1; i++) {
+            assertEquals(Move.BUILD, Move.type(buf[i]));
+            assertTrue(Rules.canBuild(p, p.getHand().get(Move.a(buf[i]))));
+        }
+    }
+
+    @Test
+    public void warlordSkipsProtectedAndUnaffordable() {
+        CitadelsGame g = newGame();
+        Player warlord = g.getPlayer(0), bishop = g.getPlayer(1), other = g.getPlayer(2);
+        warlord.setCharacter(new Warlord());
+        bishop.addDistrictToCity(new DistrictCard("Temple", DistrictColor.BLUE, 1, null));
+        g.setBishopProtection(bishop, true);
+        other.addDistrictToCity(new DistrictCard("Tavern", DistrictColor.GREEN, 1, null));
+        other.addDistrictToCity(new DistrictCard("Palace", DistrictColor.YELLOW, 5, null));
+
+        int[] buf = new int[64];
+        int n = MoveGenerator.generate(g, warlord, GamePhase.TURN,
+                MoveGenerator.RESOURCES_TAKEN, buf);
+
+        assertTrue(contains(buf, n, Move.of(Move.DESTROY, 2, 0)));  // Tavern is free
+        assertFalse(contains(buf, n, Move.of(Move.DESTROY, 2, 1))); // Palace costs 4, we have 2
+        assertFalse(contains(buf, n, Move.of(Move.DESTROY, 1, 0))); // Bishop
+        assertFalse(contains(buf, n, Move.of(Move.DESTROY, 0, 0)));
+    }
+
+    @Test
+    public void aLargeHandGivesTheMagicianAFewRedraws() {
+        CitadelsGame g = newGame();
+        Player magician = g.getPlayer(0);
+        magician.setCharacter(new Magician());
+        magician.addDistrictToCity(new DistrictCard("Tavern", DistrictColor.GREEN, 1, null));
+        java.util.List<DistrictCard> hand = new java.util.ArrayList<>();
+        hand.add(new DistrictCard("Tavern", DistrictColor.GREEN, 1, null));   // already built
+        hand.add(new DistrictCard("Palace", DistrictColor.YELLOW, 5, null));  // out of reach
+        while (hand.size() < Move.MAX_MASK_BITS) hand.add(new DistrictCard("Temple", DistrictColor.BLUE, 1, null));
+        magician.replaceHand(hand);
+        int h = hand.size();
+
+        int[] buf = new int[64];
+        int n = MoveGenerator.generate(g, magician, GamePhase.TURN, MoveGenerator.RESOURCES_TAKEN, buf);
+        assertTrue(n <= buf.length, n + " moves");
+        assertEquals(Move.of(Move.END, 0), buf[n - 1]);
+        assertTrue(contains(buf, n, Move.of(Move.REDRAW, 0, 1 << 1)));
+        assertTrue(contains(buf, n, Move.of(Move.REDRAW, 0, 0b11)));      // the dead cards
+        assertTrue(contains(buf, n, Move.of(Move.REDRAW, 0, (1 << h) - 1)));
+        assertFalse(contains(buf, n, Move.of(Move.REDRAW, 0, 3 << 2)));
+    }
+
+    @Test
+    public void thiefCannotRobTheKilledAndSmallBufferReportsCount() {
+        CitadelsGame g = newGame();
+        Player thief = g.getPlayer(0);
+        thief.setCharacter(new Thief());
+        g.killCharacter(4);
+
+        int[] big = new int[64];
+        int n = MoveGenerator.generate(g, thief, GamePhase.TURN, 0, big);
+        assertEquals(2 + 5, n);                                    // gold, cards, ranks 3,5,6,7,8
+        assertFalse(contains(big, n, Move.of(Move.STEAL, 4)));
+
+        int[] small = new int[3];
+        assertEquals(n, MoveGenerator.generate(g, thief, GamePhase.TURN, 0, small));
+        assertArrayEquals(java.util.Arrays.copyOf(big, 3), small);
+    }
+}
@@ -0,0 +1,49 @@
+package citadels;
+
+import citadels.ai.OpeningBook;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Time per {@link OpeningBook#lookup} in a memory-mapped book of random
+ * contexts, for contexts in the book and not in it.
+ *
+ * <p>Run with {@code java -cp <test+main classpath> citadels.OpeningBookBenchmark [contexts] [lookups]}.</p>
+ */
+public final class OpeningBookBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int contexts = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int lookups = args.length > 1 ? Integer.parseInt(args[1]) : 10_000_000;
+
+        Random rng = new Random(42);
+        long[] keys = new long[contexts];
+        int[] ranks = new int[contexts], zeros = new int[contexts];
+        for (int i = 0; i < contexts; i++) {
+            keys[i] = rng.nextLong() & Long.MAX_VALUE;
+            ranks[i] = 1 + rng.nextInt(8);
+        }
+        long[] probes = new long[1 << 16];
+        for (int i = 0; i < probes.length; i++) probes[i] = i % 2 == 0 ? keys[rng.nextInt(contexts)] : rng.nextLong();
+
+        Path file = Files.createTempFile("citadels", ".book");
+        try {
+            OpeningBook.write(file, keys, ranks, zeros, zeros);
+            OpeningBook book = OpeningBook.open(file);
+            long sink = 0;
+            for (int warm = 0; warm < 2; warm++) {
+                long t0 = System.nanoTime();
+                for (int i = 0; i < lookups; i++) sink += book.lookup(probes[i & (probes.length - 1)]);
+                long t = System.nanoTime() - t0;
+                if (warm == 0) continue;
+                System.out.printf("%d contexts (%d MB): %.0f ns/lookup, half of them misses%n",
+                        contexts, Files.size(file) >> 20, (double) t / lookups);
+            }
+            if (sink == 42) System.out.println();
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
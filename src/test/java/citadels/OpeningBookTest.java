@@ -0,0 +1,93 @@
+package citadels;
+
+import citadels.ai.OpeningBook;
+import citadels.sim.BookBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** Opening books written from self-play come back through binary search. */
+public class OpeningBookTest {
+
+    @Test
+    public void lookupsFindEveryContextWritten() throws Exception {
+        Path file = Files.createTempFile("citadels", ".book");
+        try {
+            long[] keys = { 42, -7, Long.MAX_VALUE, 0, Long.MIN_VALUE, 1L << 40 };   // unsorted, both signs
+            int[] ranks = { 1, 2, 3, 4, 5, 6 };
+            int[] zeros = new int[keys.length];
+            OpeningBook.write(file, keys, ranks, zeros, zeros);
+            assertEquals(16 + keys.length * OpeningBook.RECORD_BYTES, Files.size(file));
+
+            OpeningBook book = OpeningBook.open(file);
+            assertEquals(keys.length, book.size());
+            for (int i = 0; i < keys.length; i++) assertEquals(ranks[i], book.lookup(keys[i]));
+            for (long missing : new long[] { 41, 43, -8, 1, Long.MAX_VALUE - 1 }) assertEquals(0, book.lookup(missing));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+        Path empty = Files.createTempFile("citadels", ".book");
+        try {
+            OpeningBook.write(empty, new long[0], new int[0], new int[0], new int[0]);
+            assertEquals(0, OpeningBook.open(empty).lookup(42));
+        } finally {
+            Files.deleteIfExists(empty);
+        }
+    }
+
+    @Test
+    public void damagedFilesAreRefused() throws Exception {
+        Path file = Files.createTempFile("citadels", ".book");
+        try {
+            OpeningBook.write(file, new long[] { 1, 2 }, new int[] { 1, 2 }, new int[2], new int[2]);
+            byte[] whole = Files.readAllBytes(file);
+            Files.write(file, Arrays.copyOf(whole, whole.length - 1));
+            assertThrows(IOException.class, () -> OpeningBook.open(file));
+            Files.write(file, new byte[] { 1, 2, 3, 4 });
+            assertThrows(IOException.class, () -> OpeningBook.open(file));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void selfPlayKeepsTheContextsSeenOften() throws Exception {
+        Path file = Files.createTempFile("citadels", ".book");
+        Path often = Files.createTempFile("citadels", ".book");   // not over the mapped one
+        try {
+            BookBuilder b = new BookBuilder(4, 1);
+            b.run(40, 2);
+            assertEquals(40, b.games());
+
+            assertEquals(b.contexts(), b.write(file, 1));
+            OpeningBook all = OpeningBook.open(file);
+            assertEquals(b.contexts(), all.size());
+
+            int kept = b.write(often, 3);
+            assertTrue(kept < b.contexts());
+            ByteBuffer r = ByteBuffer.wrap(Files.readAllBytes(often)).order(ByteOrder.LITTLE_ENDIAN);
+            long last = Long.MIN_VALUE;
+            for (int i = 0; i < kept; i++) {
+                int at = 16 + i * OpeningBook.RECORD_BYTES;
+                long key = r.getLong(at);
+                assertTrue(i == 0 || key > last, "sorted and distinct");
+                last = key;
+                int rank = r.getShort(at + 8), permille = r.getShort(at + 10), plays = r.getInt(at + 12);
+                assertTrue((key >>> 13 & 0xFF & 1 << (rank - 1)) != 0, "the pick was passing");
+                assertTrue(permille >= 0 && permille <= 1000);
+                assertTrue(plays >= 3);
+                assertEquals(rank, all.lookup(key));
+            }
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(often);
+        }
+    }
+}
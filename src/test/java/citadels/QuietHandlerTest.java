@@ -0,0 +1,46 @@
+package citadels;
+
+import citadels.cli.CommandHandler;
+import citadels.cli.QuietHandler;
+import citadels.model.game.CitadelsGame;
+import citadels.model.game.Step;
+import org.junit.jupiter.api.Test;
+
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** Headless all-AI games through {@link QuietHandler}. */
+public class QuietHandlerTest {
+
+    private static Step playOut(CitadelsGame g) {
+        Step s = g.step(null);
+        for (int guard = 0; guard < 100_000 && s.kind() != Step.Kind.GAME_OVER; guard++) {
+            assertFalse(s.isAwaitingInput(), "nobody can answer in a headless game");
+            s = g.step(null);
+        }
+        return s;
+    }
+
+    @Test
+    public void headlessGameRunsToTheEnd() {
+        CitadelsGame g = new CitadelsGame(5, 0, QuietHandler.INSTANCE);
+        assertEquals(Step.Kind.GAME_OVER, playOut(g).kind());
+        assertTrue(g.isGameOver());
+    }
+
+    @Test
+    public void narrationWithValuesIsLazy() {
+        int[] eager = new int[1];
+        CommandHandler counting = new CommandHandler() {
+            public void println(String msg) {   // only fixed texts may come this way
+                if (msg.matches(".*\\d.*") && !msg.startsWith("=")) eager[0]++;
+            }
+            public void println(Supplier<String> msg) { }
+            public String prompt(String m) { throw new AssertionError("no prompts"); }
+        };
+        CitadelsGame g = new CitadelsGame(4, 0, counting);
+        playOut(g);
+        assertEquals(0, eager[0]);
+    }
+}
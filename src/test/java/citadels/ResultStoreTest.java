@@ -0,0 +1,69 @@
+package citadels;
+
+import citadels.sim.Campaign;
+import citadels.sim.Column;
+import citadels.sim.ResultQuery;
+import citadels.sim.ResultWriter;
+import citadels.sim.SimStats;
+import citadels.sim.SimStats.Dimension;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** Games appended to the columnar store come back through queries. */
+public class ResultStoreTest {
+
+    @Test
+    public void queriesAgreeWithCampaignStats() throws Exception {
+        Path dir = Files.createTempDirectory("citadels-results");
+        try {
+            Campaign c;
+            try (ResultWriter w = new ResultWriter(dir)) {
+                c = new Campaign(5, w);
+                c.run(120, 2);
+            }
+            SimStats.Snapshot s = c.stats().snapshot();
+            assertEquals(5 * s.games(), ResultQuery.rows(dir));
+
+            Map<Long, ResultQuery.Acc> bySeat = ResultQuery.parse("winrate by seat").execute(dir);
+            assertEquals(5, bySeat.size());
+            for (int seat = 1; seat <= 5; seat++) {
+                assertEquals(s.games(), bySeat.get((long) seat).rows());
+                assertEquals(s.wins(Dimension.SEAT, seat - 1), bySeat.get((long) seat).wins());
+            }
+
+            ResultQuery.Acc arch = ResultQuery.parse("winrate where seat=1 and first=Architect and seats=5")
+                    .execute(dir).get(0L);
+            long archRows = arch == null ? 0 : arch.rows();
+            long all = ResultQuery.parse("count where first = 7").execute(dir).get(0L).rows();
+            assertEquals(s.appearances(Dimension.FIRST_PICK, 7), all);
+            assertTrue(archRows <= all);
+
+            // reopening appends after what is there
+            try (ResultWriter w = new ResultWriter(dir)) {
+                assertEquals(5 * s.games(), w.rows());
+            }
+            assertTrue(ResultQuery.parse("avg score where won=1 by purple").report(dir).size() > 1);
+        } finally {
+            try (Stream<Path> files = Files.walk(dir)) {
+                files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+            }
+        }
+    }
+
+    @Test
+    public void badQueriesExplainThemselves() {
+        assertThrows(IllegalArgumentException.class, () -> ResultQuery.parse("median score"));
+        assertThrows(IllegalArgumentException.class, () -> ResultQuery.parse("avg"));
+        assertThrows(IllegalArgumentException.class, () -> ResultQuery.parse("count where seat"));
+        assertThrows(IllegalArgumentException.class, () -> ResultQuery.parse("count where colour=1"));
+        assertThrows(IllegalArgumentException.class, () -> ResultQuery.parse("count where first=Jester"));
+        assertEquals(Column.FIRST, Column.of("First"));
+    }
+}
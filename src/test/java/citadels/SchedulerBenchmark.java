@@ -0,0 +1,66 @@
+package citadels;
+
+import citadels.cli.QuietHandler;
+import citadels.model.game.CitadelsGame;
+import citadels.model.game.Step;
+import citadels.model.player.AIPlayer;
+import citadels.server.JobService;
+import citadels.server.Scheduler;
+import citadels.sim.SimJob;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Latency of interactive game work on a {@link Scheduler}, idle and with a
+ * simulation job filling every thread batch work may use. Each interactive
+ * task plays one round of a game, about what a person's command sets off,
+ * and is timed from queueing to the end of the round.
+ *
+ * <p>Run with {@code java -cp <test+main classpath> citadels.SchedulerBenchmark [threads] [samples]}.</p>
+ */
+public final class SchedulerBenchmark {
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors() + 1;
+        int samples = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+
+        try (Scheduler s = new Scheduler(threads);
+             JobService jobs = new JobService(new InetSocketAddress("127.0.0.1", 0), s, threads)) {
+            report("idle", measure(s, samples));
+            SimJob job = jobs.submit(0, Long.MAX_VALUE, 4, Collections.singletonList("ai"), 0);
+            Thread.sleep(1000);                                  // let the job fill its threads
+            report("under simulation", measure(s, samples));
+            System.out.printf("simulation meanwhile: %s%n", job.progress().toJSONString());
+            job.cancel();
+        }
+    }
+
+    private static long[] measure(Scheduler s, int samples) throws InterruptedException {
+        long[] ns = new long[samples];
+        for (int i = 0; i < samples; i++) {
+            CitadelsGame g = new CitadelsGame(4, QuietHandler.INSTANCE, i, AIPlayer::new);
+            g.setThinkMillis(0);
+            CountDownLatch done = new CountDownLatch(1);
+            long t0 = System.nanoTime();
+            s.execute(() -> {
+                Step st = g.step(null);
+                while (st.kind() != Step.Kind.GAME_OVER && g.getRound() == 1) st = g.step(null);
+                done.countDown();
+            });
+            done.await();
+            ns[i] = System.nanoTime() - t0;
+            Thread.sleep(2);                                     // a person's pace, not a flood
+        }
+        Arrays.sort(ns);
+        return ns;
+    }
+
+    private static void report(String label, long[] ns) {
+        System.out.printf("%-17s round p50 %.2f ms, p99 %.2f ms, max %.2f ms%n", label,
+                ns[ns.length / 2] / 1e6, ns[ns.length * 99 / 100] / 1e6, ns[ns.length - 1] / 1e6);
+    }
+}
@@ -0,0 +1,81 @@
+package citadels;
+
+import citadels.metrics.Metrics;
+import citadels.server.Scheduler;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** People's game work goes ahead of simulation, which steps aside between slices. */
+public class SchedulerTest {
+
+    @Test
+    public void batchWorkStepsAsideBetweenSlices() throws Exception {
+        try (Scheduler s = new Scheduler(1, 1)) {
+            AtomicInteger slices = new AtomicInteger();
+            CountDownLatch started = new CountDownLatch(1);
+            s.submit(() -> {                              // a job that never ends, 20 ms a slice
+                started.countDown();
+                sleep(20);
+                return slices.incrementAndGet() < 1_000_000;
+            });
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            long preempted = Metrics.SCHED_PREEMPTIONS.get();
+            AtomicInteger seenAt = new AtomicInteger(-1);
+            AtomicLong waited = new AtomicLong();
+            CountDownLatch ran = new CountDownLatch(1);
+            AtomicLong queued = new AtomicLong();
+            Runnable task = () -> {
+                waited.set(System.nanoTime() - queued.get());
+                seenAt.set(slices.get());
+                ran.countDown();
+            };
+            int before = slices.get();
+            queued.set(System.nanoTime());
+            s.execute(task);
+            assertTrue(ran.await(5, TimeUnit.SECONDS));
+            assertTrue(seenAt.get() - before <= 1, "ran after the slice under way, not after the batch");
+            assertTrue(waited.get() < TimeUnit.MILLISECONDS.toNanos(500));
+            assertTrue(Metrics.SCHED_PREEMPTIONS.get() > preempted);
+
+            int after = slices.get();
+            sleep(200);
+            assertTrue(slices.get() > after, "the batch carries on afterwards");
+        }
+    }
+
+    @Test
+    public void aSpareThreadTakesInteractiveWorkAtOnce() throws Exception {
+        try (Scheduler s = new Scheduler(2)) {
+            CountDownLatch busy = new CountDownLatch(2);
+            for (int i = 0; i < 2; i++) {
+                s.submit(() -> {                          // one slice that takes a long time
+                    busy.countDown();
+                    sleep(2000);
+                    return false;
+                });
+            }
+            assertFalse(busy.await(300, TimeUnit.MILLISECONDS), "batch work holds one thread at most");
+
+            CountDownLatch ran = new CountDownLatch(1);
+            long t0 = System.nanoTime();
+            s.execute(ran::countDown);
+            assertTrue(ran.await(5, TimeUnit.SECONDS));
+            assertTrue(System.nanoTime() - t0 < TimeUnit.MILLISECONDS.toNanos(500));
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
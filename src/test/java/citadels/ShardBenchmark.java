@@ -0,0 +1,36 @@
+package citadels;
+
+import citadels.sim.ShardCoordinator;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Collections;
+
+/**
+ * Games per second of one seed range played by 1, 2, 4 ... worker
+ * processes of one thread each, to see how far the sharding scales on this
+ * host. Start-up of the worker JVMs is included, so use enough games for
+ * it not to matter.
+ *
+ * <p>Run with {@code java -cp <test+main classpath> citadels.ShardBenchmark [games] [max workers]}.</p>
+ */
+public final class ShardBenchmark {
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        long games  = args.length > 0 ? Long.parseLong(args[0]) : 2000;
+        int most    = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        double base = 0;
+        for (int workers = 1; workers <= most; workers *= 2) {
+            try (ShardCoordinator c = new ShardCoordinator(new InetSocketAddress("127.0.0.1", 0), 0, games,
+                    Math.max(1, games / (workers * 8L)), 4, Collections.singletonList("ai"), 0, null)) {
+                long t0 = System.nanoTime();
+                for (int i = 0; i < workers; i++) c.launch(1);
+                while (!c.await(60_000)) System.out.println("  " + c.progress());
+                double rate = c.played() / ((System.nanoTime() - t0) / 1e9);
+                if (workers == 1) base = rate;
+                System.out.printf("%2d workers: %8.1f games/s, speed-up %.2f, %d steals%n",
+                        workers, rate, rate / base, c.steals());
+            }
+        }
+    }
+}
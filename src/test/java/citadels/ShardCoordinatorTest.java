@@ -0,0 +1,161 @@
+package citadels;
+
+import citadels.sim.ShardCoordinator;
+import citadels.sim.ShardWorker;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** Seed ranges shared out to workers, stolen back and forth, and replayed when a worker dies. */
+public class ShardCoordinatorTest {
+
+    @Test
+    public void everySeedIsPlayedOnceAcrossWorkers() throws Exception {
+        StringWriter out = new StringWriter();
+        try (ShardCoordinator c = coordinator(0, 24, 5, out)) {
+            worker(c, 1);
+            worker(c, 2);
+            assertTrue(c.await(120_000));
+            assertEquals(24, c.played());
+            assertEquals(24, c.stats().snapshot().games() + c.stats().snapshot().abandoned());
+            assertSeeds(out.toString(), 0, 24);
+        }
+    }
+
+    @Test
+    public void aWorkerWithNothingLeftStealsFromAnother() throws Exception {
+        StringWriter out = new StringWriter();
+        try (ShardCoordinator c = coordinator(100, 130, 30, out)) {
+            worker(c, 1);
+            while (c.workers() < 1) Thread.sleep(10);
+            worker(c, 1);                                       // the one shard is taken by now
+            assertTrue(c.await(120_000));
+            assertTrue(c.steals() > 0);
+            assertEquals(30, c.played());
+            assertSeeds(out.toString(), 100, 130);
+        }
+    }
+
+    @Test
+    public void theWorkerWithTheMostSeedsLeftIsStolenFrom() throws Exception {
+        try (ShardCoordinator c = coordinator(0, 40, 20, null);
+             Socket a = new Socket("127.0.0.1", c.getPort());
+             Socket b = new Socket("127.0.0.1", c.getPort());
+             Socket thief = new Socket("127.0.0.1", c.getPort())) {
+            BufferedReader ra = hello(a);
+            String first = ra.readLine();                       // a comes first, so wins ties
+            BufferedReader rb = hello(b);
+            String second = rb.readLine();
+            say(a, "left " + first.split(" ")[1] + " 3");       // nearly through
+            say(b, "left " + second.split(" ")[1] + " 15");
+            Thread.sleep(500);                                  // for the reports to be read
+            hello(thief);
+            assertEquals("split " + second.split(" ")[1], rb.readLine());
+            assertFalse(ra.ready());
+        }
+    }
+
+    @Test
+    public void theShardOfAWorkerThatDiesIsPlayedAgain() throws Exception {
+        StringWriter out = new StringWriter();
+        try (ShardCoordinator c = coordinator(0, 12, 4, out)) {
+            try (Socket s = new Socket("127.0.0.1", c.getPort())) {  // takes a shard, then goes
+                Writer w = new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8);
+                w.write("hello 1\n");
+                w.flush();
+                String shard = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8)).readLine();
+                assertTrue(shard.startsWith("shard "), shard);
+                w.write("game " + shard.split(" ")[1] + " {\"seed\": 0}\n");  // half a shard, never finished
+                w.flush();
+            }
+            worker(c, 2);
+            assertTrue(c.await(120_000));
+            assertEquals(1, c.reassigned());
+            assertEquals(12, c.played());
+            assertEquals(0, c.lost());
+            assertSeeds(out.toString(), 0, 12);
+        }
+    }
+
+    @Test
+    public void workerProcessesPlayTheRange() throws Exception {
+        try (ShardCoordinator c = coordinator(0, 8, 2, null)) {
+            c.launch(1);
+            c.launch(1);
+            assertTrue(c.await(120_000));
+            assertEquals(8, c.stats().snapshot().games() + c.stats().snapshot().abandoned());
+        }
+    }
+
+    @Test
+    public void aRunWhoseWorkersAllDiedCanTellSo() throws Exception {
+        try (ShardCoordinator c = coordinator(0, 1_000_000, 1000, null)) {
+            Process p = c.launch(1);
+            for (int guard = 0; guard < 3000 && c.workers() < 1; guard++) Thread.sleep(10);
+            assertEquals(1, c.launched());
+            p.destroyForcibly().waitFor();
+            for (int guard = 0; guard < 3000 && c.workers() > 0; guard++) Thread.sleep(10);
+            assertEquals(0, c.workers());
+            assertEquals(0, c.launched());
+            assertFalse(c.await(0));
+        }
+    }
+
+    private static ShardCoordinator coordinator(long from, long to, long shard, Writer out) throws IOException {
+        return new ShardCoordinator(new InetSocketAddress("127.0.0.1", 0), from, to, shard, 4,
+                Arrays.asList("ai", "random"), 0, out);
+    }
+
+    /* a hand-driven worker says hello; its shard is the first line read */
+    private static BufferedReader hello(Socket s) throws IOException {
+        s.setSoTimeout(30_000);
+        say(s, "hello 1");
+        return new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+    }
+
+    private static void say(Socket s, String line) throws IOException {
+        Writer w = new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8);
+        w.write(line + "\n");
+        w.flush();
+    }
+
+    /* a worker on a thread of this process */
+    private static void worker(ShardCoordinator c, int threads) {
+        Thread t = new Thread(() -> {
+            try {
+                ShardWorker.run("127.0.0.1", c.getPort(), threads);
+            } catch (IOException e) {
+                // the coordinator closed
+            }
+        });
+        t.setDaemon(true);
+        t.start();
+    }
+
+    private static void assertSeeds(String lines, long from, long to) throws Exception {
+        Set<Long> seeds = new HashSet<>();
+        int n = 0;
+        for (String l : lines.split("\n")) {
+            if (l.isEmpty()) continue;
+            seeds.add(((Number) ((JSONObject) new JSONParser().parse(l)).get("seed")).longValue());
+            n++;
+        }
+        assertEquals(n, seeds.size(), "a seed came back twice");
+        for (long s = from; s < to; s++) assertTrue(seeds.contains(s), "seed " + s + " missing");
+    }
+}
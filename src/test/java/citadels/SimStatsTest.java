@@ -0,0 +1,55 @@
+package citadels;
+
+import citadels.sim.Campaign;
+import citadels.sim.SimStats;
+import citadels.sim.SimStats.Dimension;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** Campaign statistics add up, even when read while workers are writing. */
+public class SimStatsTest {
+
+    @Test
+    public void snapshotsTakenMidCampaignAreConsistent() throws Exception {
+        Campaign c = new Campaign(4);
+        Thread runner = new Thread(() -> {
+            try { c.run(300, 3); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+        });
+        runner.start();
+        while (runner.isAlive()) {
+            checkTotals(c.stats().snapshot());
+            Thread.sleep(1);
+        }
+        SimStats.Snapshot s = c.stats().snapshot();
+        checkTotals(s);
+        assertEquals(300, s.games() + s.abandoned());
+        assertTrue(s.report().stream().anyMatch(l -> l.startsWith("by first pick")));
+    }
+
+    private static void checkTotals(SimStats.Snapshot s) {
+        long wins = 0, purple = 0, picks = 0;
+        for (int seat = 0; seat < 4; seat++) {
+            assertEquals(s.games(), s.appearances(Dimension.SEAT, seat));
+            wins += s.wins(Dimension.SEAT, seat);
+        }
+        for (int k = 0; k < 9; k++) {
+            purple += s.appearances(Dimension.PURPLE_BUILT, k);
+            picks += s.wins(Dimension.FIRST_PICK, k);
+        }
+        assertEquals(s.games(), wins, "one winner per game");
+        assertEquals(4 * s.games(), purple);
+        assertEquals(s.games(), picks);
+        assertEquals(0, s.appearances(Dimension.FIRST_PICK, 0), "every seat picked");
+    }
+
+    @Test
+    public void wilsonInterval() {
+        double[] ci = SimStats.wilson(50, 100);
+        assertEquals(0.4038, ci[0], 1e-4);
+        assertEquals(0.5962, ci[1], 1e-4);
+        ci = SimStats.wilson(0, 10);
+        assertEquals(0, ci[0], 1e-12);
+        assertEquals(0.2775, ci[1], 1e-4);
+    }
+}
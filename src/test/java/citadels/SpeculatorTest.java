@@ -0,0 +1,92 @@
+package citadels;
+
+import citadels.ai.Speculator;
+import citadels.cli.QuietHandler;
+import citadels.metrics.Metrics;
+import citadels.model.card.DistrictCard;
+import citadels.model.card.DistrictColor;
+import citadels.model.game.CitadelsGame;
+import citadels.model.game.GamePhase;
+import citadels.model.game.Step;
+import citadels.model.player.Player;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static citadels.TestGames.describe;
+import static org.junit.jupiter.api.Assertions.*;
+
+/** AI decisions worked out while a person thinks are used once the person answers. */
+public class SpeculatorTest {
+
+    /* a 4-player game at the pick of the human in seat 0, with seat 2 one district short */
+    private static CitadelsGame latePick(long thinkMillis) {
+        CitadelsGame g = new CitadelsGame(4, 1, QuietHandler.INSTANCE, 5);
+        g.setThinkMillis(thinkMillis);
+        Step s = g.step(null);
+        for (int guard = 0; guard < 100 && !(g.getPhase() == GamePhase.SELECTION && g.getSeatToMove() == 0); guard++)
+            s = g.step(s.isAwaitingInput() ? "t" : null);
+        Player p = g.getPlayer(2);
+        for (int i = 1; i <= 7; i++) p.addDistrictToCity(new DistrictCard("Tower " + i, DistrictColor.values()[0], 6, null));
+        p.gainGold(10);
+        assertTrue(g.step("nobody").isAwaitingInput());   // asks again, now late in the game
+        return g;
+    }
+
+    @Test
+    public void thePickAfterThePersonsIsWorkedOutAhead() throws InterruptedException {
+        CitadelsGame g = latePick(60_000);
+        List<String> before = describe(g);
+        assertTrue(g.awaitSpeculation(120_000));
+        assertEquals(before, describe(g));                 // the forks leave the game alone
+
+        long hits = Metrics.AI_SPECULATION_HITS.get();
+        int rank = Integer.numberOfTrailingZeros(g.getAvailableRanks()) + 1;
+        g.step(CitadelsGame.rankName(rank));
+        assertTrue(Metrics.AI_SPECULATION_HITS.get() > hits);
+        assertEquals(rank, g.getPlayer(0).getCharacter().getRank());
+    }
+
+    @Test
+    public void aLineThatChangesNothingKeepsTheWorkGoing() throws InterruptedException {
+        CitadelsGame g = latePick(60_000);
+        long started = Metrics.AI_SPECULATIONS.get();
+        assertTrue(g.step("nobody").isAwaitingInput());    // a wrong name: same wait, same speculation
+        assertTrue(g.step("nobody").isAwaitingInput());
+        assertEquals(started, Metrics.AI_SPECULATIONS.get());
+        assertTrue(g.awaitSpeculation(120_000));
+
+        long hits = Metrics.AI_SPECULATION_HITS.get();
+        int rank = Integer.numberOfTrailingZeros(g.getAvailableRanks()) + 1;
+        g.step(CitadelsGame.rankName(rank));
+        assertTrue(Metrics.AI_SPECULATION_HITS.get() > hits);
+    }
+
+    @Test
+    public void noThinkBudgetMeansNoSpeculation() throws InterruptedException {
+        long started = Metrics.AI_SPECULATIONS.get();
+        CitadelsGame g = latePick(0);
+        assertTrue(g.awaitSpeculation(0));
+        assertEquals(started, Metrics.AI_SPECULATIONS.get());
+    }
+
+    @Test
+    public void theKeyTellsHandOrdersApart() {
+        CitadelsGame g = latePick(0);
+        Player p = g.getPlayer(g.getSeatToMove());
+        List<DistrictCard> hand = new ArrayList<>(p.getHand());
+        assertTrue(hand.size() >= 2 && !hand.get(0).getName().equals(hand.get(1).getName()));
+        long key = Speculator.key(g), zobrist = g.zobrist();
+
+        List<DistrictCard> swapped = new ArrayList<>(hand);    // same cards, so "build 1" means another one
+        Collections.swap(swapped, 0, 1);
+        p.replaceHand(swapped);
+        assertEquals(zobrist, g.zobrist());
+        assertNotEquals(key, Speculator.key(g));
+
+        p.replaceHand(hand);
+        assertEquals(key, Speculator.key(g));
+    }
+}
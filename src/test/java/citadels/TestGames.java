@@ -0,0 +1,31 @@
+package citadels;
+
+import citadels.model.game.CitadelsGame;
+import citadels.model.player.Player;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** Helpers shared by the tests that play games through {@code step}. */
+final class TestGames {
+
+    /** Answers for a person's seat: continue, then each character in turn */
+    static final String[] SCRIPT = {
+        "t", "Assassin", "Thief", "Magician", "King", "Bishop", "Merchant", "Architect", "Warlord"
+    };
+
+    private TestGames() { }
+
+    /**
+     * The state of a game as text, to check that something left it alone.
+     * @param g the game
+     * @return one line per player, then round, phase and deck
+     */
+    static List<String> describe(CitadelsGame g) {
+        List<String> d = new ArrayList<>();
+        for (Player p : g.getPlayers())
+            d.add(p.getGold() + " " + p.getHand() + " " + p.getCity() + " " + p.getCharacter());
+        d.add(g.getRound() + " " + g.getPhase() + " " + g.getDistrictDeckNames());
+        return d;
+    }
+}
@@ -0,0 +1,53 @@
+package citadels;
+
+import citadels.sim.Campaign;
+import citadels.sim.FeatureVector;
+import citadels.sim.TrainingWriter;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** Self-play decision points reach the training file whole and labelled. */
+public class TrainingWriterTest {
+
+    @Test
+    public void campaignStreamsLabelledRecords() throws Exception {
+        Path file = Files.createTempFile("citadels", ".ctdf");
+        try {
+            Campaign c;
+            try (TrainingWriter w = new TrainingWriter(file, 2)) {   // few blocks: workers must wait for the writer
+                c = new Campaign(4, null, w);
+                c.run(60, 3);
+            }
+            ByteBuffer b = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN);
+            assertEquals(TrainingWriter.MAGIC, b.getInt());
+            assertEquals(TrainingWriter.VERSION, b.getInt());
+            int header = b.getInt(), width = b.getInt();
+            long records = b.getLong();
+            assertEquals(FeatureVector.WIDTH, width);
+            assertEquals(header + records * width * 4, b.capacity());
+
+            long games = c.stats().snapshot().games(), wins = 0, turns = 0;
+            b.position(header);
+            for (long r = 0; r < records; r++) {
+                float[] rec = new float[width];
+                b.asFloatBuffer().get(rec);
+                b.position(b.position() + width * 4);
+                assertTrue(rec[FeatureVector.WON] == 0 || rec[FeatureVector.WON] == 1);
+                assertTrue(rec[FeatureVector.SCORE] >= 0);
+                assertEquals(4, rec[FeatureVector.NAMES.indexOf("seats")], 0);
+                if (rec[FeatureVector.NAMES.indexOf("kind")] == FeatureVector.TURN) turns++;
+                else if (rec[FeatureVector.WON] == 1 && rec[FeatureVector.NAMES.indexOf("round")] == 1) wins++;
+            }
+            assertEquals(games, wins, "one winning first-round pick per game");
+            assertTrue(turns > 0);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
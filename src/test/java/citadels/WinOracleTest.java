@@ -0,0 +1,100 @@
+package citadels;
+
+import citadels.cli.CommandHandler;
+import citadels.cli.QuietHandler;
+import citadels.model.game.CitadelsGame;
+import citadels.model.game.GamePhase;
+import citadels.model.game.Move;
+import citadels.model.game.Step;
+import citadels.sim.WinOracle;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static citadels.TestGames.SCRIPT;
+import static citadels.TestGames.describe;
+import static org.junit.jupiter.api.Assertions.*;
+
+/** Forks play on without touching the original, and the oracle's numbers add up. */
+public class WinOracleTest {
+
+    @Test
+    public void forkIsACopyThatPlaysOnAlone() {
+        CitadelsGame g = new CitadelsGame(5, 0, QuietHandler.INSTANCE, 42);
+        for (int i = 0; i < 30; i++) g.step(null);        // somewhere in the first rounds
+        List<String> before = describe(g);
+
+        CitadelsGame f = g.fork(QuietHandler.INSTANCE, 7);
+        assertEquals(before, describe(f));
+        Step s = f.step(null);
+        while (s.kind() != Step.Kind.GAME_OVER) s = f.step(null);
+
+        assertTrue(f.isGameOver());
+        assertEquals(before, describe(g));
+    }
+
+    @Test
+    public void winProbabilitiesAddUp() {
+        CitadelsGame g = new CitadelsGame(4, 0, QuietHandler.INSTANCE, 3);
+        while (g.getRound() < 3) g.step(null);
+        List<String> before = describe(g);
+
+        WinOracle.Estimate e = new WinOracle(2).estimate(g, 1, 200, 0);
+        assertEquals(200, e.games() + e.abandoned());
+        double sum = 0;
+        for (int s = 0; s < e.seats(); s++) {
+            sum += e.winProbability(s);
+            double[] ci = e.winInterval(s);
+            assertTrue(ci[0] <= e.winProbability(s) && e.winProbability(s) <= ci[1]);
+            assertTrue(e.meanScore(s) > 0);
+        }
+        assertEquals(1.0, sum, 1e-9);
+        assertEquals(5, e.report(1).size());
+        assertEquals(before, describe(g));
+    }
+
+    @Test
+    public void hintRanksTheMovesOfTheWaitingSeat() {
+        CitadelsGame g = new CitadelsGame(4, 1, QuietHandler.INSTANCE, 11);
+        Step s = g.step(null);
+        int fed = 0;
+        for (int guard = 0; guard < 10_000; guard++) {
+            if (g.getPhase() == GamePhase.TURN && g.getSeatToMove() == 0) break;
+            s = g.step(s.isAwaitingInput() ? SCRIPT[fed++ % SCRIPT.length] : null);
+        }
+        assertEquals(0, g.getSeatToMove());
+        List<String> before = describe(g);
+
+        List<WinOracle.Choice> ranked = new WinOracle(2).rankMoves(g, 300);
+        assertFalse(ranked.isEmpty());
+        List<String> moves = new ArrayList<>();
+        for (WinOracle.Choice c : ranked) moves.add(Move.toString(c.move()));
+        assertTrue(moves.contains("gold"));
+        for (int i = 1; i < ranked.size(); i++)
+            assertTrue(ranked.get(i - 1).winProbability() >= ranked.get(i).winProbability());
+        assertEquals(before, describe(g));
+        assertEquals(0, g.getSeatToMove());             // still the human's turn
+    }
+
+    @Test
+    public void aSharedTableCapsTheHintBudget() {
+        CitadelsGame g = new CitadelsGame(4, 1, QuietHandler.INSTANCE, 11);
+        Step s = g.step(null);
+        int fed = 0;
+        while (!(g.getPhase() == GamePhase.TURN && g.getSeatToMove() == 0))
+            s = g.step(s.isAwaitingInput() ? SCRIPT[fed++ % SCRIPT.length] : null);
+
+        List<String> out = new ArrayList<>();
+        CommandHandler hosted = new CommandHandler() {
+            public void println(String msg) { out.add(msg); }
+            public String prompt(String m) { return ""; }
+            public boolean allowsFiles() { return false; }
+            public int analysisThreads() { return 1; }
+        };
+        long t0 = System.nanoTime();
+        hosted.hint(g, g.getPlayer(0), "100000000");
+        assertTrue(System.nanoTime() - t0 < 4 * CommandHandler.SHARED_MAX_HINT_MILLIS * 1_000_000);
+        assertEquals("Thinking for " + CommandHandler.SHARED_MAX_HINT_MILLIS + " ms, the most allowed here.", out.get(0));
+    }
+}
@@ -0,0 +1,136 @@
+package citadels;
+
+import citadels.ai.TranspositionTable;
+import citadels.cli.QuietHandler;
+import citadels.model.card.DistrictCard;
+import citadels.model.card.DistrictColor;
+import citadels.model.game.CitadelsGame;
+import citadels.model.game.GameState;
+import citadels.model.game.Move;
+import citadels.model.game.Step;
+import citadels.model.game.Zobrist;
+import citadels.model.player.AIPlayer;
+import citadels.model.player.Player;
+import citadels.util.CardRepoSingleton;
+import org.json.simple.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** Incremental Zobrist keys match the from-scratch ones, and the table keeps what it should. */
+public class ZobristTest {
+
+    @Test
+    public void incrementalKeyAgreesAfterEveryStep() {
+        for (int seed = 1; seed <= 20; seed++) {
+            CitadelsGame g = new CitadelsGame(4 + seed % 4, 0, QuietHandler.INSTANCE, seed);
+            assertEquals(Zobrist.compute(g), g.zobrist());
+            Step s;
+            do {
+                s = g.step(null);
+                assertEquals(Zobrist.compute(g), g.zobrist(), "seed " + seed + ", round " + g.getRound());
+            } while (s.kind() != Step.Kind.GAME_OVER && g.getRound() < 200);
+        }
+    }
+
+    @Test
+    public void equalStatesHaveEqualKeys() {
+        CitadelsGame g = new CitadelsGame(5, 0, QuietHandler.INSTANCE, 99);
+        while (g.getRound() < 3) g.step(null);
+
+        assertEquals(g.zobrist(), g.fork(QuietHandler.INSTANCE, 1).zobrist());
+
+        JSONObject saved = GameState.serialise(g);
+        CitadelsGame loaded = GameState.deserialise(saved, QuietHandler.INSTANCE, CardRepoSingleton.INSTANCE);
+        assertEquals(Zobrist.compute(loaded), loaded.zobrist());
+        assertEquals(g.zobrist(), loaded.zobrist());
+
+        long before = g.zobrist();
+        Player p = g.getPlayer(0);
+        p.gainGold(3);
+        assertNotEquals(before, g.zobrist());
+        p.spendGold(3);
+        assertEquals(before, g.zobrist());
+    }
+
+    @Test
+    public void duplicateCardsDoNotCancel() {
+        Player p = new AIPlayer(2);
+        long empty = p.zobrist();
+        DistrictCard temple = new DistrictCard("Temple", DistrictColor.values()[0], 1, null);
+        p.addCardToHand(temple);
+        long one = p.zobrist();
+        p.addCardToHand(temple);
+        assertNotEquals(empty, p.zobrist());
+        assertNotEquals(one, p.zobrist());
+        assertEquals(Zobrist.compute(p), p.zobrist());
+
+        p.removeCardFromHand(0);
+        assertEquals(one, p.zobrist());
+        p.addDistrictToCity(temple);
+        p.replaceHand(new ArrayList<>());
+        assertEquals(Zobrist.compute(p), p.zobrist());
+        p.removeDistrictFromCity(0);
+        assertEquals(empty, p.zobrist());
+    }
+
+    @Test
+    public void tableReplacesByDepth() {
+        TranspositionTable tt = new TranspositionTable(1000);
+        assertEquals(1024, tt.capacity());
+        long k = 0x1234_5678_9ABC_DEF0L;
+        assertEquals(TranspositionTable.MISS, tt.probe(k));
+
+        int move = Move.of(Move.DESTROY, 3, 5);
+        tt.store(k, move, -42, 6, TranspositionTable.LOWER);
+        long d = tt.probe(k);
+        assertEquals(move, TranspositionTable.move(d));
+        assertEquals(-42, TranspositionTable.value(d));
+        assertEquals(6, TranspositionTable.depth(d));
+        assertEquals(TranspositionTable.LOWER, TranspositionTable.bound(d));
+
+        // same bucket, shallower: goes to the second entry, the deep one stays
+        long other = k + ((long) 512 << 32) + 512;           // same index, different key
+        tt.store(other, 0, 7, 2, TranspositionTable.EXACT);
+        assertEquals(6, TranspositionTable.depth(tt.probe(k)));
+        assertEquals(7, TranspositionTable.value(tt.probe(other)));
+
+        // deeper: takes the first entry
+        tt.store(other, 0, 8, 9, TranspositionTable.EXACT);
+        assertEquals(9, TranspositionTable.depth(tt.probe(other)));
+        assertEquals(TranspositionTable.MISS, tt.probe(k + 1));
+
+        tt.clear();
+        assertEquals(TranspositionTable.MISS, tt.probe(other));
+    }
+
+    @Test
+    public void concurrentReadersNeverSeeTornEntries() throws InterruptedException {
+        TranspositionTable tt = new TranspositionTable(64);   // tiny: constant collisions
+        AtomicBoolean bad = new AtomicBoolean();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            final int id = t;
+            Thread th = new Thread(() -> {
+                java.util.Random r = new java.util.Random(id);
+                for (int i = 0; i < 200_000; i++) {
+                    long key = r.nextInt(1000) * 0x9E3779B97F4A7C15L;
+                    if (r.nextBoolean()) {
+                        tt.store(key, (int) key, (short) (key >>> 40), (int) (key & 0xFF), TranspositionTable.EXACT);
+                    } else {
+                        long d = tt.probe(key);
+                        if (d != TranspositionTable.MISS && TranspositionTable.move(d) != (int) key) bad.set(true);
+                    }
+                }
+            });
+            threads.add(th);
+            th.start();
+        }
+        for (Thread th : threads) th.join();
+        assertFalse(bad.get());
+    }
+}